@@ -0,0 +1,62 @@
+package net.modularmods.protogl.benchmark;
+
+import net.modularmods.protogl.ProtoGL;
+import net.modularmods.protogl.animation.AnimationSampler;
+import net.modularmods.protogl.gl.backend.RecordingBackend;
+import net.modularmods.protogl.model.ModelInstance;
+import net.modularmods.protogl.model.PModel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Keyframe sampling of a synthetic clip animating every node of a chain, applied to the model and to an instance.
+ */
+@State(Scope.Benchmark)
+public class AnimationBenchmark {
+
+    @Param({"16", "64"})
+    public int nodes;
+
+    @Param({"30", "300"})
+    public int keys;
+
+    private AnimationSampler sampler;
+    private ModelInstance instance;
+    private float time;
+
+    @Setup
+    public void setup() {
+        ProtoGL.setBackend(new RecordingBackend());
+        PModel model = new PModel("model", SyntheticModels.chain(nodes));
+        sampler = new AnimationSampler(SyntheticModels.clip(nodes, keys), model);
+        instance = model.instantiate();
+    }
+
+    /**
+     * Playback moving forward by one 60 Hz frame, the common case served by the key cursors.
+     */
+    @Benchmark
+    public AnimationSampler sampleForward() {
+        sampler.sample(time += 1f / 60f);
+        return sampler;
+    }
+
+    /**
+     * Random seeks, falling back to binary search.
+     */
+    @Benchmark
+    public AnimationSampler sampleSeek() {
+        time = (time + keys * 0.37f) % keys;
+        sampler.sample(time);
+        return sampler;
+    }
+
+    @Benchmark
+    public ModelInstance sampleInstance() {
+        sampler.sample(time += 1f / 60f, instance);
+        return instance;
+    }
+}
@@ -0,0 +1,76 @@
+package net.modularmods.protogl.benchmark;
+
+import net.modularmods.protogl.loader.PModelLoader;
+import net.modularmods.protogl.loader.PModelWriter;
+import net.modularmods.protogl.loader.data.ModelData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Decoding {@code files} synthetic PMod files with concurrent {@link PModelLoader#loadPModAsync} calls on a pool of
+ * {@code threads} workers, waiting for all of them; with one thread, the files are decoded one after the other.
+ */
+@State(Scope.Benchmark)
+public class AsyncLoaderBenchmark {
+
+    @Param({"10000"})
+    public int vertices;
+
+    @Param({"16"})
+    public int files;
+
+    @Param({"1", "4", "8"})
+    public int threads;
+
+    private Path directory;
+    private Path[] paths;
+    private ExecutorService executor;
+    private CompletableFuture<?>[] futures;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("protogl-bench");
+        paths = new Path[files];
+        for (int i = 0; i < files; i++) {
+            paths[i] = directory.resolve("model" + i + ".pmod");
+            PModelWriter.writePMod(SyntheticModels.gridModel(vertices, i % 2 == 1), paths[i], ByteOrder.BIG_ENDIAN);
+        }
+        executor = Executors.newFixedThreadPool(threads);
+        futures = new CompletableFuture<?>[files];
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        executor.shutdown();
+        for (Path path : paths) {
+            Files.deleteIfExists(path);
+        }
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public int loadAll() {
+        for (int i = 0; i < files; i++) {
+            futures[i] = PModelLoader.loadPModAsync(paths[i], executor);
+        }
+        CompletableFuture.allOf(futures).join();
+        int nodes = 0;
+        for (CompletableFuture<?> future : futures) {
+            nodes += ((ModelData) future.join()).getNodeData().length;
+        }
+        return nodes;
+    }
+}
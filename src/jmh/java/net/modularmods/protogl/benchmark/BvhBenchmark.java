@@ -0,0 +1,116 @@
+package net.modularmods.protogl.benchmark;
+
+import net.modularmods.protogl.gl.Bounds;
+import net.modularmods.protogl.spatial.BoundingVolumeHierarchy;
+import org.joml.FrustumIntersection;
+import org.joml.Matrix4f;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+
+/**
+ * A {@link BoundingVolumeHierarchy} over N boxes scattered in a {@value #WORLD}-unit cube, seen by a camera at its
+ * edge. {@code frustumQuery} culls through the hierarchy and {@code linearCull} tests every box, as culling each
+ * instance does; {@code rebuild} runs the SAH build on a pool of {@code threads} workers and {@code moveAll} moves a
+ * tenth of the boxes.
+ */
+@State(Scope.Benchmark)
+public class BvhBenchmark {
+
+    private static final float WORLD = 1000f;
+
+    @Param({"10000", "100000"})
+    public int entries;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    private ForkJoinPool pool;
+    private BoundingVolumeHierarchy<Integer> hierarchy;
+    private float[] boxes;
+    private int[] proxies;
+    private final FrustumIntersection frustum = new FrustumIntersection();
+    private final Random random = new Random(42);
+    private int visible;
+    private final IntConsumer counter = proxy -> visible++;
+
+    @Setup
+    public void setup() {
+        pool = new ForkJoinPool(threads);
+        hierarchy = new BoundingVolumeHierarchy<>(pool);
+        boxes = new float[entries * Bounds.BOX_STRIDE];
+        List<Integer> items = new ArrayList<>(entries);
+        for (int i = 0; i < entries; i++) {
+            place(i);
+            items.add(i);
+        }
+        proxies = new int[entries];
+        hierarchy.insertAll(items, boxes, proxies);
+        frustum.set(new Matrix4f().perspective((float) Math.toRadians(60), 16f / 9f, 0.1f, 400f)
+                .lookAt(WORLD / 2, 10f, -10f, WORLD / 2, 10f, WORLD, 0f, 1f, 0f));
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public int frustumQuery() {
+        visible = 0;
+        return hierarchy.queryFrustum(frustum, counter);
+    }
+
+    @Benchmark
+    public int linearCull() {
+        int count = 0;
+        for (int o = 0; o < boxes.length; o += Bounds.BOX_STRIDE) {
+            if (frustum.testAab(boxes[o], boxes[o + 1], boxes[o + 2], boxes[o + 3], boxes[o + 4], boxes[o + 5])) count++;
+        }
+        return count;
+    }
+
+    @Benchmark
+    public double rebuild() {
+        hierarchy.rebuild();
+        return hierarchy.getCost();
+    }
+
+    @Benchmark
+    public int moveAll() {
+        int moved = 0;
+        for (int i = random.nextInt(10); i < entries; i += 10) {
+            int o = i * Bounds.BOX_STRIDE;
+            float dx = random.nextFloat() - 0.5f;
+            float dz = random.nextFloat() - 0.5f;
+            boxes[o] += dx;
+            boxes[o + 3] += dx;
+            boxes[o + 2] += dz;
+            boxes[o + 5] += dz;
+            if (hierarchy.update(proxies[i], boxes, o)) moved++;
+        }
+        return moved;
+    }
+
+    private void place(int i) {
+        int o = i * Bounds.BOX_STRIDE;
+        float x = random.nextFloat() * WORLD;
+        float z = random.nextFloat() * WORLD;
+        float size = 1f + random.nextFloat() * 2f;
+        boxes[o] = x;
+        boxes[o + 1] = 0f;
+        boxes[o + 2] = z;
+        boxes[o + 3] = x + size;
+        boxes[o + 4] = size * 2f;
+        boxes[o + 5] = z + size;
+    }
+}
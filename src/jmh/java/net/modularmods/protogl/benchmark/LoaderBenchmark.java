@@ -0,0 +1,67 @@
+package net.modularmods.protogl.benchmark;
+
+import net.modularmods.protogl.loader.PModelLoader;
+import net.modularmods.protogl.loader.PModelWriter;
+import net.modularmods.protogl.loader.data.ModelData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Decoding throughput of {@link PModelLoader} on synthetic models, from memory, from a file and from a native-order
+ * memory-mapped file.
+ */
+@State(Scope.Benchmark)
+public class LoaderBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int vertices;
+
+    @Param({"false", "true"})
+    public boolean skinned;
+
+    private byte[] bytes;
+    private Path file;
+    private Path nativeFile;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        ModelData model = SyntheticModels.gridModel(vertices, skinned);
+        bytes = SyntheticModels.toPMod(model);
+        file = Files.createTempFile("protogl-bench", ".pmod");
+        Files.write(file, bytes);
+        nativeFile = Files.createTempFile("protogl-bench-native", ".pmod");
+        PModelWriter.writePMod(model, nativeFile, ByteOrder.nativeOrder());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(nativeFile);
+    }
+
+    @Benchmark
+    public ModelData decodeBuffer() {
+        return PModelLoader.loadPMod(ByteBuffer.wrap(bytes));
+    }
+
+    @Benchmark
+    public ModelData loadFile() {
+        return PModelLoader.loadPMod(file);
+    }
+
+    @Benchmark
+    public ModelData loadMapped() {
+        return PModelLoader.loadPModMapped(nativeFile);
+    }
+}
@@ -0,0 +1,67 @@
+package net.modularmods.protogl.benchmark;
+
+import net.modularmods.protogl.ProtoGL;
+import net.modularmods.protogl.animation.AnimationClip;
+import net.modularmods.protogl.animation.AnimationLayer;
+import net.modularmods.protogl.animation.AnimationMixer;
+import net.modularmods.protogl.animation.AnimationSampler;
+import net.modularmods.protogl.gl.backend.RecordingBackend;
+import net.modularmods.protogl.model.PModel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Pose evaluation of an {@link AnimationMixer} on a {@value #NODES}-node chain, in poses per second. {@code blend}
+ * mixes N weighted clips in one layer; {@code layered} stacks N layers, alternating masked override and additive
+ * layers over a base layer.
+ */
+@State(Scope.Benchmark)
+public class MixerBenchmark {
+
+    private static final int NODES = 64;
+
+    @Param({"2", "4", "8"})
+    public int layers;
+
+    private AnimationMixer blendMixer;
+    private AnimationMixer layeredMixer;
+
+    @Setup
+    public void setup() {
+        ProtoGL.setBackend(new RecordingBackend());
+        PModel model = new PModel("model", SyntheticModels.chain(NODES));
+        AnimationClip clip = SyntheticModels.clip(NODES, 30);
+
+        blendMixer = new AnimationMixer(model);
+        AnimationLayer blend = blendMixer.addLayer(AnimationLayer.BlendMode.OVERRIDE);
+        for (int i = 0; i < layers; i++) {
+            blend.add(new AnimationSampler(clip, model), 1f + i).setTime(i * 3.7f);
+        }
+
+        layeredMixer = new AnimationMixer(model);
+        for (int i = 0; i < layers; i++) {
+            AnimationLayer.BlendMode mode = i % 2 == 0 ? AnimationLayer.BlendMode.OVERRIDE : AnimationLayer.BlendMode.ADDITIVE;
+            AnimationLayer layer = layeredMixer.addLayer(mode);
+            if (i > 0) {
+                layer.setMask(layeredMixer.subtreeMask("node" + (NODES / 2)));
+                layer.setWeight(0.5f);
+            }
+            layer.play(new AnimationSampler(clip, model)).setTime(i * 3.7f);
+        }
+    }
+
+    @Benchmark
+    public float[] blend() {
+        blendMixer.evaluate(1f / 60f);
+        return blendMixer.getPose();
+    }
+
+    @Benchmark
+    public float[] layered() {
+        layeredMixer.evaluate(1f / 60f);
+        return layeredMixer.getPose();
+    }
+}
@@ -0,0 +1,50 @@
+package net.modularmods.protogl.benchmark;
+
+import net.modularmods.protogl.ProtoGL;
+import net.modularmods.protogl.gl.backend.RecordingBackend;
+import net.modularmods.protogl.model.Node;
+import net.modularmods.protogl.model.PModel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Node access by name through {@link PModel#getNode(String)} against pre-resolved handles.
+ */
+@State(Scope.Benchmark)
+public class NodeLookupBenchmark {
+
+    @Param({"100", "1000"})
+    public int nodes;
+
+    private PModel model;
+    private String[] names;
+    private int[] handles;
+    private int next;
+
+    @Setup
+    public void setup() {
+        ProtoGL.setBackend(new RecordingBackend());
+        model = new PModel("model", SyntheticModels.wide(nodes));
+        names = new String[nodes];
+        handles = new int[nodes];
+        for (int i = 0; i < nodes; i++) {
+            names[i] = "node" + i;
+            handles[i] = model.resolve(names[i]);
+        }
+    }
+
+    @Benchmark
+    public Node byName() {
+        next = (next + 1) % nodes;
+        return model.getNode(names[next]);
+    }
+
+    @Benchmark
+    public Node byHandle() {
+        next = (next + 1) % nodes;
+        return model.node(handles[next]);
+    }
+}
@@ -0,0 +1,57 @@
+package net.modularmods.protogl.benchmark;
+
+import net.modularmods.protogl.ProtoGL;
+import net.modularmods.protogl.gl.backend.RecordingBackend;
+import net.modularmods.protogl.loader.data.ModelData;
+import net.modularmods.protogl.loader.data.NodeData;
+import net.modularmods.protogl.model.ModelInstance;
+import net.modularmods.protogl.model.PModel;
+import net.modularmods.protogl.render.RenderQueue;
+import org.joml.Matrix4f;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Emitting, sorting and submitting draw packets for a crowd of instances, against the headless recording backend.
+ */
+@State(Scope.Benchmark)
+public class RenderQueueBenchmark {
+
+    @Param({"100", "1000"})
+    public int instances;
+
+    private final RenderQueue queue = new RenderQueue();
+    private final Matrix4f view = new Matrix4f();
+    private ModelInstance[] crowd;
+
+    @Setup
+    public void setup() {
+        ProtoGL.setBackend(new RecordingBackend());
+        // Four meshes, so packets interleave several VAOs
+        NodeData[] nodes = new NodeData[4];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = new NodeData("mesh" + i, null, new float[3], new float[]{0f, 0f, 0f, 1f}, new float[]{1f, 1f, 1f},
+                    SyntheticModels.grid(100, false));
+        }
+        PModel model = new PModel("model", new ModelData(nodes));
+
+        crowd = new ModelInstance[instances];
+        Matrix4f placement = new Matrix4f();
+        for (int i = 0; i < instances; i++) {
+            crowd[i] = model.instantiate();
+            crowd[i].update(placement.translation(i % 32, 0f, -(i / 32f)), true);
+        }
+    }
+
+    @Benchmark
+    public RenderQueue submitAndFlush() {
+        for (int i = 0; i < crowd.length; i++) {
+            queue.submit(crowd[i], 1 + (i & 1), 0, view);
+        }
+        queue.flush();
+        return queue;
+    }
+}
@@ -0,0 +1,88 @@
+package net.modularmods.protogl.benchmark;
+
+import net.modularmods.protogl.animation.AnimationClip;
+import net.modularmods.protogl.animation.AnimationSampler;
+import net.modularmods.protogl.animation.CpuSkinning;
+import net.modularmods.protogl.animation.PoseEvaluator;
+import net.modularmods.protogl.animation.SkinnedPose;
+import net.modularmods.protogl.loader.data.ModelData;
+import net.modularmods.protogl.model.Skeleton;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * CPU pose evaluation and skinning of {@value #INSTANCES} animated instances of a {@value #VERTICES}-vertex grid,
+ * on pools of 1 to N threads. Scores are per skinned vertex, so the throughput reads as skinned vertices per second.
+ */
+@State(Scope.Benchmark)
+public class SkinningBenchmark {
+
+    private static final int INSTANCES = 64;
+    private static final int VERTICES = 4096; // A 64 x 64 grid
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    private ForkJoinPool pool;
+    private PoseEvaluator evaluator;
+    private final List<SkinnedPose> poses = new ArrayList<>();
+    private float time;
+
+    @Setup
+    public void setup() {
+        ModelData model = SyntheticModels.gridModel(VERTICES, true);
+        CpuSkinning[] meshes = CpuSkinning.forModel(model);
+        Skeleton skeleton = new Skeleton(model.getJointData());
+        AnimationClip clip = SyntheticModels.clip("joint", skeleton.getJointCount(), 30);
+
+        pool = new ForkJoinPool(threads);
+        evaluator = new PoseEvaluator(pool, PoseEvaluator.DEFAULT_GRAIN);
+        poses.clear();
+        for (int i = 0; i < INSTANCES; i++) {
+            SkinnedPose pose = new SkinnedPose(skeleton.copy(), meshes);
+            pose.setSampler(new AnimationSampler(clip, pose.getSkeleton()));
+            pose.setTime(i * 0.1f);
+            poses.add(pose);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INSTANCES * VERTICES)
+    public List<SkinnedPose> evaluateAndSkin() {
+        advance();
+        evaluator.evaluate(poses, true);
+        return poses;
+    }
+
+    /**
+     * Poses only, as needed for hit detection against joints.
+     */
+    @Benchmark
+    @OperationsPerInvocation(INSTANCES)
+    public List<SkinnedPose> evaluatePoses() {
+        advance();
+        evaluator.evaluate(poses, false);
+        return poses;
+    }
+
+    private void advance() {
+        time += 1f / 60f;
+        for (int i = 0; i < INSTANCES; i++) {
+            poses.get(i).setTime(time + i * 0.1f);
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package net.modularmods.protogl.benchmark;
+
+import net.modularmods.protogl.animation.AnimationClip;
+import net.modularmods.protogl.gl.MeshData;
+import net.modularmods.protogl.loader.PModelWriter;
+import net.modularmods.protogl.loader.data.JointData;
+import net.modularmods.protogl.loader.data.ModelData;
+import net.modularmods.protogl.loader.data.NodeData;
+
+import java.nio.ByteOrder;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+
+/**
+ * Generates synthetic models and clips, so benchmarks need no checked-in assets. Generation is deterministic.
+ * <p>
+ * Can be run on its own to write PMod files: {@code SyntheticModels <directory> <vertices>...}.
+ */
+public final class SyntheticModels {
+
+    private static final float[] IDENTITY_ROTATION = {0f, 0f, 0f, 1f};
+    private static final float[] UNIT_SCALE = {1f, 1f, 1f};
+
+    private SyntheticModels() {
+    }
+
+    /**
+     * Builds a square grid mesh.
+     * @param vertexCount Approximate number of vertices, rounded down to a square.
+     * @param skinned Whether to add joint indices and weights (4 joints, weights summing to 1).
+     * @return The mesh data.
+     */
+    public static MeshData grid(int vertexCount, boolean skinned) {
+        int side = Math.max(2, (int) Math.sqrt(vertexCount));
+        int vertices = side * side;
+        float[] positions = new float[vertices * 3];
+        float[] uvs = new float[vertices * 2];
+        float[] normals = new float[vertices * 3];
+        float[] joints = skinned ? new float[vertices * 4] : null;
+        float[] weights = skinned ? new float[vertices * 4] : null;
+
+        for (int y = 0; y < side; y++) {
+            for (int x = 0; x < side; x++) {
+                int v = y * side + x;
+                positions[v * 3] = x;
+                positions[v * 3 + 2] = y;
+                uvs[v * 2] = x / (float) (side - 1);
+                uvs[v * 2 + 1] = y / (float) (side - 1);
+                normals[v * 3 + 1] = 1f;
+                if (skinned) {
+                    for (int j = 0; j < 4; j++) {
+                        joints[v * 4 + j] = (v + j) % 16;
+                        weights[v * 4 + j] = 0.25f;
+                    }
+                }
+            }
+        }
+
+        int[] indices = new int[(side - 1) * (side - 1) * 6];
+        int i = 0;
+        for (int y = 0; y < side - 1; y++) {
+            for (int x = 0; x < side - 1; x++) {
+                int v = y * side + x;
+                indices[i++] = v;
+                indices[i++] = v + side;
+                indices[i++] = v + 1;
+                indices[i++] = v + 1;
+                indices[i++] = v + side;
+                indices[i++] = v + side + 1;
+            }
+        }
+        return skinned ? new MeshData(positions, uvs, normals, indices, joints, weights) : new MeshData(positions, uvs, normals, indices);
+    }
+
+    /**
+     * Builds a model holding a single grid mesh, with an armature of 16 joints when skinned.
+     * @param vertexCount Approximate number of vertices.
+     * @param skinned Whether the mesh is skinned.
+     * @return The model data.
+     */
+    public static ModelData gridModel(int vertexCount, boolean skinned) {
+        NodeData[] nodes = {new NodeData("grid", null, new float[3], IDENTITY_ROTATION.clone(), UNIT_SCALE.clone(), grid(vertexCount, skinned))};
+        if (!skinned) {
+            return new ModelData(nodes);
+        }
+        JointData[] joints = new JointData[16];
+        for (int j = 0; j < joints.length; j++) {
+            float[] inverseBind = new float[16];
+            inverseBind[0] = inverseBind[5] = inverseBind[10] = inverseBind[15] = 1f;
+            joints[j] = new JointData("joint" + j, j == 0 ? "" : "joint" + (j - 1), inverseBind);
+        }
+        return new ModelData(nodes, "skeleton", joints);
+    }
+
+    /**
+     * Builds a hierarchy of mesh-less nodes where each node is the child of the previous one.
+     * @param nodeCount Number of nodes.
+     * @return The model data.
+     */
+    public static ModelData chain(int nodeCount) {
+        NodeData[] nodes = new NodeData[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            nodes[i] = node("node" + i, i == 0 ? null : "node" + (i - 1), i);
+        }
+        return new ModelData(nodes);
+    }
+
+    /**
+     * Builds a hierarchy of mesh-less nodes where every node but the first is a child of the first.
+     * @param nodeCount Number of nodes.
+     * @return The model data.
+     */
+    public static ModelData wide(int nodeCount) {
+        NodeData[] nodes = new NodeData[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            nodes[i] = node("node" + i, i == 0 ? null : "node0", i);
+        }
+        return new ModelData(nodes);
+    }
+
+    /**
+     * Builds a clip animating the rotation and translation of nodes named as by {@link #chain(int)}.
+     * @param nodeCount Number of animated nodes.
+     * @param keyCount Number of keys per channel, one per time unit.
+     * @return The clip.
+     */
+    public static AnimationClip clip(int nodeCount, int keyCount) {
+        return clip("node", nodeCount, keyCount);
+    }
+
+    /**
+     * Builds a clip animating the rotation and translation of nodes or joints named {@code prefix + index}, e.g.
+     * {@code "joint"} for the armature of {@link #gridModel(int, boolean)}.
+     * @param prefix Name prefix of the animated nodes.
+     * @param nodeCount Number of animated nodes.
+     * @param keyCount Number of keys per channel, one per time unit.
+     * @return The clip.
+     */
+    public static AnimationClip clip(String prefix, int nodeCount, int keyCount) {
+        int channels = nodeCount * 2;
+        byte[] types = new byte[channels];
+        String[] names = new String[channels];
+        int[] keyOffsets = new int[channels];
+        int[] keyCounts = new int[channels];
+        int[] valueOffsets = new int[channels];
+        float[] times = new float[channels * keyCount];
+        float[] values = new float[nodeCount * keyCount * (3 + 4)];
+
+        Random random = new Random(42);
+        int value = 0;
+        for (int c = 0; c < channels; c++) {
+            types[c] = c % 2 == 0 ? AnimationClip.CHANNEL_TRANSLATION : AnimationClip.CHANNEL_ROTATION;
+            names[c] = prefix + c / 2;
+            keyOffsets[c] = c * keyCount;
+            keyCounts[c] = keyCount;
+            valueOffsets[c] = value;
+            for (int k = 0; k < keyCount; k++) {
+                times[c * keyCount + k] = k;
+                if (types[c] == AnimationClip.CHANNEL_TRANSLATION) {
+                    values[value++] = random.nextFloat();
+                    values[value++] = random.nextFloat();
+                    values[value++] = random.nextFloat();
+                } else {
+                    float angle = random.nextFloat() * (float) Math.PI;
+                    values[value++] = 0f;
+                    values[value++] = (float) Math.sin(angle / 2);
+                    values[value++] = 0f;
+                    values[value++] = (float) Math.cos(angle / 2);
+                }
+            }
+        }
+        return new AnimationClip("synthetic", types, names, keyOffsets, keyCounts, valueOffsets, times, values);
+    }
+
+    /**
+     * Encodes a model in the PMod format, big-endian like files exported by the Blender add-on.
+     * @param modelData The model.
+     * @return The file contents.
+     */
+    public static byte[] toPMod(ModelData modelData) {
+        return PModelWriter.toBytes(modelData, ByteOrder.BIG_ENDIAN);
+    }
+
+    private static NodeData node(String name, String parent, int i) {
+        return new NodeData(name, parent, new float[]{i % 7, 1f, 0f}, IDENTITY_ROTATION.clone(), UNIT_SCALE.clone(), null);
+    }
+
+    /**
+     * Writes one grid model per requested size.
+     * @param args The output directory, then vertex counts.
+     */
+    public static void main(String[] args) {
+        Path directory = Paths.get(args[0]);
+        for (int i = 1; i < args.length; i++) {
+            int vertices = Integer.parseInt(args[i]);
+            PModelWriter.writePMod(gridModel(vertices, false), directory.resolve("grid_" + vertices + ".pmod"), ByteOrder.BIG_ENDIAN);
+            PModelWriter.writePMod(gridModel(vertices, true), directory.resolve("grid_" + vertices + "_skinned.pmod"), ByteOrder.BIG_ENDIAN);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package net.modularmods.protogl.benchmark;
+
+import net.modularmods.protogl.ProtoGL;
+import net.modularmods.protogl.gl.backend.RecordingBackend;
+import net.modularmods.protogl.loader.data.ModelData;
+import net.modularmods.protogl.model.Node;
+import net.modularmods.protogl.model.PModel;
+import org.joml.Matrix4f;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * World matrix updates over deep and wide hierarchies, through {@link PModel}'s linear pass and through the recursive
+ * {@link Node#render(Matrix4f)} of a plain node tree.
+ */
+@State(Scope.Benchmark)
+public class TraversalBenchmark {
+
+    @Param({"deep", "wide"})
+    public String shape;
+
+    @Param({"100", "1000"})
+    public int nodes;
+
+    private PModel model;
+    private Node tree;
+    private Node treeLeaf;
+    private final Matrix4f root = new Matrix4f();
+    private float angle;
+
+    @Setup
+    public void setup() {
+        ProtoGL.setBackend(new RecordingBackend());
+        ModelData data = shape.equals("deep") ? SyntheticModels.chain(nodes) : SyntheticModels.wide(nodes);
+        model = new PModel("model", data);
+
+        tree = new Node("root");
+        Node parent = tree;
+        for (int i = 1; i < nodes; i++) {
+            Node node = new Node("node" + i);
+            node.setPosition(i % 7, 1f, 0f);
+            parent.addChild(node);
+            if (shape.equals("deep")) parent = node;
+            treeLeaf = node;
+        }
+    }
+
+    /**
+     * Every node is recomputed: the root moves each frame.
+     */
+    @Benchmark
+    public PModel modelRootMoved() {
+        root.rotationY(angle += 0.01f);
+        model.render(root);
+        return model;
+    }
+
+    /**
+     * Nothing changed: measures the cost of skipping clean nodes.
+     */
+    @Benchmark
+    public PModel modelUnchanged() {
+        model.render(root);
+        return model;
+    }
+
+    /**
+     * A single leaf moves.
+     */
+    @Benchmark
+    public PModel modelLeafMoved() {
+        model.node(nodes - 1).setPosition(angle += 0.01f, 0f, 0f);
+        model.render(root);
+        return model;
+    }
+
+    @Benchmark
+    public Node treeRootMoved() {
+        root.rotationY(angle += 0.01f);
+        tree.render(root);
+        return tree;
+    }
+
+    @Benchmark
+    public Node treeLeafMoved() {
+        treeLeaf.setPosition(angle += 0.01f, 0f, 0f);
+        tree.render(root);
+        return tree;
+    }
+}
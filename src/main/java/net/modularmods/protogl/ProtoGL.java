@@ -1,7 +1,11 @@
 package net.modularmods.protogl;
 
 import lombok.Getter;
+import net.modularmods.protogl.gl.backend.GraphicsBackend;
+import net.modularmods.protogl.gl.backend.LwjglBackend;
 import net.modularmods.protogl.loader.PModelLoader;
+import net.modularmods.protogl.profiling.Metrics;
+import net.modularmods.protogl.profiling.MetricsBackend;
 import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -15,10 +19,26 @@ public class ProtoGL {
     @Getter
     private static final Logger logger = LogManager.getLogger(ProtoGL.class);
 
+    @Getter
+    private static GraphicsBackend backend = instrument(new LwjglBackend()); // Target of every GL call, swapped for a RecordingBackend when headless
+
     public ProtoGL() {
         instance = this;
     }
 
+    /**
+     * Replaces the backend every GL call goes through. When metrics are enabled, the backend is wrapped so that its
+     * calls are counted.
+     * @param backend The new backend.
+     */
+    public static void setBackend(GraphicsBackend backend) {
+        ProtoGL.backend = instrument(backend);
+    }
+
+    private static GraphicsBackend instrument(GraphicsBackend backend) {
+        return Metrics.ENABLED ? new MetricsBackend(backend) : backend;
+    }
+
     public static void main(String[] args) {
         Configurator.setRootLevel(Level.DEBUG); // Set global log level to debug
     }
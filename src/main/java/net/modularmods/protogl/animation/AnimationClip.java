@@ -0,0 +1,84 @@
+package net.modularmods.protogl.animation;
+
+import lombok.Getter;
+
+/**
+ * A single animation decoded from a {@code .panim} file. Keyframes of every channel are packed into shared primitive
+ * arrays: channel {@code c} owns {@code keyCounts[c]} keys starting at {@code keyOffsets[c]} in {@link #getTimes()},
+ * and their values start at {@code valueOffsets[c]} in {@link #getValues()} with a stride of 3 (translation, scale)
+ * or 4 (rotation quaternion, x y z w).
+ */
+@Getter
+public class AnimationClip {
+
+    public static final byte CHANNEL_TRANSLATION = 0;
+    public static final byte CHANNEL_ROTATION = 1;
+    public static final byte CHANNEL_SCALE = 2;
+
+    private final String name;          // Name of the animation
+    private final float duration;       // Time of the last keyframe over all channels
+    private final byte[] channelTypes;  // Channel type per channel (translation, rotation or scale)
+    private final String[] nodeNames;   // Name of the node each channel affects
+    private final int[] keyOffsets;     // Index of the first key of each channel in times
+    private final int[] keyCounts;      // Number of keys of each channel
+    private final int[] valueOffsets;   // Index of the first value of each channel in values
+    private final float[] times;        // Keyframe times of all channels
+    private final float[] values;       // Keyframe values of all channels
+
+    /**
+     * Constructs an animation clip from packed channel data.
+     * @param name Name of the animation.
+     * @param channelTypes Channel type per channel.
+     * @param nodeNames Name of the node each channel affects.
+     * @param keyOffsets Index of the first key of each channel in times.
+     * @param keyCounts Number of keys of each channel.
+     * @param valueOffsets Index of the first value of each channel in values.
+     * @param times Keyframe times of all channels, ascending per channel.
+     * @param values Keyframe values of all channels.
+     */
+    public AnimationClip(String name, byte[] channelTypes, String[] nodeNames, int[] keyOffsets, int[] keyCounts,
+                         int[] valueOffsets, float[] times, float[] values) {
+        this.name = name;
+        this.channelTypes = channelTypes;
+        this.nodeNames = nodeNames;
+        this.keyOffsets = keyOffsets;
+        this.keyCounts = keyCounts;
+        this.valueOffsets = valueOffsets;
+        this.times = times;
+        this.values = values;
+
+        float duration = 0f;
+        for (int c = 0; c < keyCounts.length; c++) {
+            if (keyCounts[c] > 0) {
+                duration = Math.max(duration, times[keyOffsets[c] + keyCounts[c] - 1]);
+            }
+        }
+        this.duration = duration;
+    }
+
+    /**
+     * Returns the number of channels in this clip.
+     * @return the channel count.
+     */
+    public int getChannelCount() {
+        return channelTypes.length;
+    }
+
+    /**
+     * Returns the memory held by the clip's keyframes and channel tables, excluding names.
+     * @return The size in bytes.
+     */
+    public long getSizeInBytes() {
+        return (long) (times.length + values.length) * Float.BYTES
+                + (long) (keyOffsets.length + keyCounts.length + valueOffsets.length) * Integer.BYTES + channelTypes.length;
+    }
+
+    /**
+     * Returns the number of floats per keyframe value for a channel type.
+     * @param channelType The channel type.
+     * @return 4 for rotations, 3 otherwise.
+     */
+    public static int getValueSize(byte channelType) {
+        return channelType == CHANNEL_ROTATION ? 4 : 3;
+    }
+}
@@ -0,0 +1,126 @@
+package net.modularmods.protogl.animation;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A layer of an {@link AnimationMixer}. The clips playing in a layer are blended together by weight into the layer's
+ * pose, which is then combined with the layers below it, scaled by the layer weight and its optional mask:
+ * <ul>
+ *     <li>{@link BlendMode#OVERRIDE} layers move the pose towards theirs, e.g. aiming over locomotion;</li>
+ *     <li>{@link BlendMode#ADDITIVE} layers add their difference from the rest pose, e.g. breathing or recoil.</li>
+ * </ul>
+ */
+public class AnimationLayer {
+
+    public enum BlendMode {
+        OVERRIDE,
+        ADDITIVE
+    }
+
+    @Getter
+    private final BlendMode mode;
+
+    @Getter
+    @Setter
+    private AnimationMask mask; // Weight per node, null for every node
+
+    private final WeightFade weight = new WeightFade(1f);
+    private final List<AnimationState> states = new ArrayList<>();
+    private final List<AnimationState> statesView = Collections.unmodifiableList(states);
+
+    AnimationLayer(BlendMode mode) {
+        this.mode = mode;
+    }
+
+    public float getWeight() {
+        return weight.get();
+    }
+
+    /**
+     * Sets the influence of this layer over the layers below it, cancelling any fade.
+     * @param weight The weight in [0, 1].
+     */
+    public void setWeight(float weight) {
+        this.weight.set(weight);
+    }
+
+    /**
+     * Moves the layer weight linearly to a target, e.g. to fade aiming in and out.
+     * @param target The weight at the end of the fade.
+     * @param duration The length of the fade in mixer time.
+     */
+    public void fadeTo(float target, float duration) {
+        weight.fadeTo(target, duration);
+    }
+
+    /**
+     * Adds a clip to the ones playing in this layer.
+     * @param sampler The sampler of the clip, bound to the same model or skeleton as the mixer.
+     * @param weight The weight of the clip relative to the others.
+     * @return The playback state of the clip.
+     */
+    public AnimationState add(AnimationSampler sampler, float weight) {
+        AnimationState state = new AnimationState(sampler, weight);
+        states.add(state);
+        return state;
+    }
+
+    /**
+     * Plays a clip alone in this layer, stopping the others immediately.
+     * @param sampler The sampler of the clip.
+     * @return The playback state of the clip.
+     */
+    public AnimationState play(AnimationSampler sampler) {
+        states.clear();
+        return add(sampler, 1f);
+    }
+
+    /**
+     * Fades a clip in while every clip playing in this layer fades out and is removed.
+     * @param sampler The sampler of the clip.
+     * @param duration The length of the cross-fade in mixer time; 0 behaves like {@link #play}.
+     * @return The playback state of the clip.
+     */
+    public AnimationState crossFade(AnimationSampler sampler, float duration) {
+        if (duration <= 0f) return play(sampler);
+        for (int i = 0, size = states.size(); i < size; i++) {
+            states.get(i).fadeOut(duration);
+        }
+        AnimationState state = add(sampler, 0f);
+        state.fadeTo(1f, duration);
+        return state;
+    }
+
+    public void remove(AnimationState state) {
+        states.remove(state);
+    }
+
+    public void clear() {
+        states.clear();
+    }
+
+    /**
+     * Returns the clips playing in this layer, including those fading out.
+     * @return An unmodifiable view of the states.
+     */
+    public List<AnimationState> getStates() {
+        return statesView;
+    }
+
+    /**
+     * Advances playback and fades, removing clips that finished fading out.
+     */
+    void advance(float deltaTime) {
+        weight.advance(deltaTime);
+        for (int i = states.size() - 1; i >= 0; i--) {
+            AnimationState state = states.get(i);
+            state.advance(deltaTime);
+            if (state.isFinished()) states.remove(i);
+        }
+    }
+}
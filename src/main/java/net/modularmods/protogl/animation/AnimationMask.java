@@ -0,0 +1,67 @@
+package net.modularmods.protogl.animation;
+
+import lombok.Getter;
+
+/**
+ * Per-node weights restricting an {@link AnimationLayer} to part of a hierarchy, e.g. the upper body. Nodes are
+ * addressed like the pose of the {@link AnimationMixer} the mask is used with.
+ */
+public class AnimationMask {
+
+    @Getter
+    private final float[] weights; // Weight per node, in [0, 1]
+
+    /**
+     * Creates a mask excluding every node.
+     * @param nodeCount The number of nodes of the mixer's pose.
+     */
+    public AnimationMask(int nodeCount) {
+        this.weights = new float[nodeCount];
+    }
+
+    /**
+     * Creates a mask including a node and all of its descendants.
+     * @param parents Parent index per node, -1 for roots.
+     * @param nodeCount The number of nodes of the mixer's pose.
+     * @param root The root of the subtree, -1 for an empty mask.
+     * @return The mask.
+     */
+    public static AnimationMask subtree(int[] parents, int nodeCount, int root) {
+        AnimationMask mask = new AnimationMask(nodeCount);
+        if (root < 0) return mask;
+        for (int i = 0; i < nodeCount; i++) {
+            // Walk up to the root of the hierarchy; the step limit guards against cyclic parents
+            int node = i;
+            for (int steps = 0; node >= 0 && node != root && steps < nodeCount; steps++) {
+                node = parents[node];
+            }
+            if (node == root) mask.weights[i] = 1f;
+        }
+        return mask;
+    }
+
+    public int getNodeCount() {
+        return weights.length;
+    }
+
+    public float get(int node) {
+        return weights[node];
+    }
+
+    public AnimationMask set(int node, float weight) {
+        weights[node] = weight;
+        return this;
+    }
+
+    /**
+     * Creates the complement of this mask, e.g. the lower body from an upper body mask.
+     * @return A new mask with a weight of {@code 1 - w} for every node.
+     */
+    public AnimationMask invert() {
+        AnimationMask mask = new AnimationMask(weights.length);
+        for (int i = 0; i < weights.length; i++) {
+            mask.weights[i] = 1f - weights[i];
+        }
+        return mask;
+    }
+}
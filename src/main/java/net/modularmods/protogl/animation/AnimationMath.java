@@ -0,0 +1,122 @@
+package net.modularmods.protogl.animation;
+
+import net.modularmods.protogl.model.TransformHierarchy;
+
+/**
+ * Allocation-free interpolation helpers working on packed float arrays.
+ */
+public final class AnimationMath {
+
+    private AnimationMath() {
+    }
+
+    /**
+     * Linearly interpolates two 3-component vectors.
+     * @param src The array holding both keys.
+     * @param a Offset of the first vector.
+     * @param b Offset of the second vector.
+     * @param t Interpolation factor in [0, 1].
+     * @param dst The array receiving the result.
+     * @param dstOffset Offset of the result.
+     */
+    public static void lerp3(float[] src, int a, int b, float t, float[] dst, int dstOffset) {
+        dst[dstOffset] = src[a] + (src[b] - src[a]) * t;
+        dst[dstOffset + 1] = src[a + 1] + (src[b + 1] - src[a + 1]) * t;
+        dst[dstOffset + 2] = src[a + 2] + (src[b + 2] - src[a + 2]) * t;
+    }
+
+    /**
+     * Normalized linear interpolation of two quaternions (x, y, z, w), taking the shortest path.
+     * @param src The array holding both keys.
+     * @param a Offset of the first quaternion.
+     * @param b Offset of the second quaternion.
+     * @param t Interpolation factor in [0, 1].
+     * @param dst The array receiving the result.
+     * @param dstOffset Offset of the result.
+     */
+    public static void nlerp(float[] src, int a, int b, float t, float[] dst, int dstOffset) {
+        float dot = src[a] * src[b] + src[a + 1] * src[b + 1] + src[a + 2] * src[b + 2] + src[a + 3] * src[b + 3];
+        float s0 = 1f - t;
+        float s1 = dot < 0f ? -t : t; // Flip the second key to stay on the shortest arc
+        float x = s0 * src[a] + s1 * src[b];
+        float y = s0 * src[a + 1] + s1 * src[b + 1];
+        float z = s0 * src[a + 2] + s1 * src[b + 2];
+        float w = s0 * src[a + 3] + s1 * src[b + 3];
+        normalize4(x, y, z, w, dst, dstOffset);
+    }
+
+    /**
+     * Spherical linear interpolation of two quaternions (x, y, z, w), taking the shortest path.
+     * Falls back to {@link #nlerp} for nearly identical rotations.
+     * @param src The array holding both keys.
+     * @param a Offset of the first quaternion.
+     * @param b Offset of the second quaternion.
+     * @param t Interpolation factor in [0, 1].
+     * @param dst The array receiving the result.
+     * @param dstOffset Offset of the result.
+     */
+    public static void slerp(float[] src, int a, int b, float t, float[] dst, int dstOffset) {
+        float dot = src[a] * src[b] + src[a + 1] * src[b + 1] + src[a + 2] * src[b + 2] + src[a + 3] * src[b + 3];
+        float absDot = Math.abs(dot);
+        if (absDot > 0.9995f) {
+            nlerp(src, a, b, t, dst, dstOffset);
+            return;
+        }
+        float angle = (float) Math.acos(absDot);
+        float invSin = 1f / (float) Math.sin(angle);
+        float s0 = (float) Math.sin((1f - t) * angle) * invSin;
+        float s1 = (float) Math.sin(t * angle) * invSin;
+        if (dot < 0f) s1 = -s1;
+        dst[dstOffset] = s0 * src[a] + s1 * src[b];
+        dst[dstOffset + 1] = s0 * src[a + 1] + s1 * src[b + 1];
+        dst[dstOffset + 2] = s0 * src[a + 2] + s1 * src[b + 2];
+        dst[dstOffset + 3] = s0 * src[a + 3] + s1 * src[b + 3];
+    }
+
+    /**
+     * Writes a normalized quaternion, or identity if its length is zero.
+     */
+    public static void normalize4(float x, float y, float z, float w, float[] dst, int dstOffset) {
+        float lengthSquared = x * x + y * y + z * z + w * w;
+        if (lengthSquared == 0f) {
+            dst[dstOffset] = 0f;
+            dst[dstOffset + 1] = 0f;
+            dst[dstOffset + 2] = 0f;
+            dst[dstOffset + 3] = 1f;
+            return;
+        }
+        float invLength = 1f / (float) Math.sqrt(lengthSquared);
+        dst[dstOffset] = x * invLength;
+        dst[dstOffset + 1] = y * invLength;
+        dst[dstOffset + 2] = z * invLength;
+        dst[dstOffset + 3] = w * invLength;
+    }
+
+    /**
+     * Interpolates two poses laid out as {@link TransformHierarchy#getLocals()}: translations and scales linearly,
+     * rotations with a shortest-path nlerp.
+     * @param from The pose at factor 0.
+     * @param to The pose at factor 1.
+     * @param t Interpolation factor in [0, 1].
+     * @param dst The pose receiving the result, which may be from or to.
+     * @param nodeCount The number of nodes to interpolate.
+     */
+    public static void lerpPose(float[] from, float[] to, float t, float[] dst, int nodeCount) {
+        int stride = TransformHierarchy.LOCAL_STRIDE;
+        for (int o = 0, end = nodeCount * stride; o < end; o += stride) {
+            lerp3(from, o, to, o, t, dst, o);
+            lerp3(from, o + 7, to, o + 7, t, dst, o + 7);
+            float dot = from[o + 3] * to[o + 3] + from[o + 4] * to[o + 4] + from[o + 5] * to[o + 5] + from[o + 6] * to[o + 6];
+            float s0 = 1f - t;
+            float s1 = dot < 0f ? -t : t;
+            normalize4(s0 * from[o + 3] + s1 * to[o + 3], s0 * from[o + 4] + s1 * to[o + 4],
+                    s0 * from[o + 5] + s1 * to[o + 5], s0 * from[o + 6] + s1 * to[o + 6], dst, o + 3);
+        }
+    }
+
+    private static void lerp3(float[] a, int aOffset, float[] b, int bOffset, float t, float[] dst, int dstOffset) {
+        dst[dstOffset] = a[aOffset] + (b[bOffset] - a[aOffset]) * t;
+        dst[dstOffset + 1] = a[aOffset + 1] + (b[bOffset + 1] - a[aOffset + 1]) * t;
+        dst[dstOffset + 2] = a[aOffset + 2] + (b[bOffset + 2] - a[aOffset + 2]) * t;
+    }
+}
@@ -0,0 +1,297 @@
+package net.modularmods.protogl.animation;
+
+import lombok.Getter;
+import lombok.Setter;
+import net.modularmods.protogl.model.ModelInstance;
+import net.modularmods.protogl.model.PModel;
+import net.modularmods.protogl.model.Skeleton;
+import net.modularmods.protogl.model.TransformHierarchy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+/**
+ * Plays several clips on a model or skeleton at once. Layers are evaluated bottom to top into a pose laid out as
+ * {@link TransformHierarchy#getLocals()}, starting from the rest pose captured at construction; see
+ * {@link AnimationLayer} for how clips and layers are combined. The resulting pose is then copied to the model, an
+ * instance of it or a skeleton.
+ * <p>
+ * A mixer bound to a {@link PModel} addresses nodes by handle and one bound to a {@link Skeleton} by joint index, so
+ * its samplers must be bound to the same model or skeleton. Nodes can be left out of evaluation with
+ * {@link #setActiveNodes}, leaving them in the rest pose. Updating and evaluating do not allocate.
+ */
+public class AnimationMixer {
+
+    private static final int STRIDE = TransformHierarchy.LOCAL_STRIDE;
+
+    @Getter
+    private final int nodeCount;
+    @Getter
+    private final float[] restPose;   // Pose of nodes no layer affects, and reference of additive layers
+    @Getter
+    private final float[] pose;       // Result of the last evaluation
+    private final float[] layerPose;  // Blend of the clips of the layer being evaluated
+    private final float[] samplePose; // Pose of a single clip
+    private final int[] parents;      // Parent index per node, for masks
+    private final ToIntFunction<String> resolver; // Node or joint name to index
+    @Getter
+    @Setter
+    private boolean[] activeNodes;    // Whether each node is evaluated, null for every node
+
+    private final List<AnimationLayer> layers = new ArrayList<>();
+    private final List<AnimationLayer> layersView = Collections.unmodifiableList(layers);
+
+    /**
+     * Creates a mixer for the nodes of a model, with the model's current local transforms as rest pose.
+     * @param model The model.
+     */
+    public AnimationMixer(PModel model) {
+        this(model.getTransforms().getLocals(), model.getTransforms().getParents(), model.getTransforms().getCount(), model::resolve);
+    }
+
+    /**
+     * Creates a mixer for the joints of a skeleton, with the skeleton's current pose as rest pose.
+     * @param skeleton The skeleton, or any copy of it.
+     */
+    public AnimationMixer(Skeleton skeleton) {
+        this(skeleton.getLocals(), skeleton.getParents(), skeleton.getJointCount(), skeleton::indexOf);
+    }
+
+    private AnimationMixer(float[] locals, int[] parents, int nodeCount, ToIntFunction<String> resolver) {
+        this.nodeCount = nodeCount;
+        this.restPose = new float[nodeCount * STRIDE];
+        this.pose = new float[nodeCount * STRIDE];
+        this.layerPose = new float[nodeCount * STRIDE];
+        this.samplePose = new float[nodeCount * STRIDE];
+        this.parents = parents.clone();
+        this.resolver = resolver;
+        System.arraycopy(locals, 0, restPose, 0, restPose.length);
+        System.arraycopy(restPose, 0, pose, 0, pose.length);
+    }
+
+    /**
+     * Adds a layer on top of the existing ones.
+     * @param mode How the layer combines with the layers below it.
+     * @return The new layer, with a weight of 1 and no mask.
+     */
+    public AnimationLayer addLayer(AnimationLayer.BlendMode mode) {
+        AnimationLayer layer = new AnimationLayer(mode);
+        layers.add(layer);
+        return layer;
+    }
+
+    public void removeLayer(AnimationLayer layer) {
+        layers.remove(layer);
+    }
+
+    /**
+     * Returns the layers, bottom first.
+     * @return An unmodifiable view of the layers.
+     */
+    public List<AnimationLayer> getLayers() {
+        return layersView;
+    }
+
+    /**
+     * Creates a mask including a node or joint and all of its descendants.
+     * @param name The name of the subtree's root.
+     * @return The mask, empty if there is no such node.
+     */
+    public AnimationMask subtreeMask(String name) {
+        return AnimationMask.subtree(parents, nodeCount, resolver.applyAsInt(name));
+    }
+
+    /**
+     * Advances the playback time of every clip and every fade.
+     * @param deltaTime The elapsed time.
+     */
+    public void update(float deltaTime) {
+        for (int i = 0, size = layers.size(); i < size; i++) {
+            layers.get(i).advance(deltaTime);
+        }
+    }
+
+    /**
+     * Evaluates every layer into {@link #getPose()}.
+     */
+    public void evaluate() {
+        System.arraycopy(restPose, 0, pose, 0, pose.length);
+        for (int i = 0, size = layers.size(); i < size; i++) {
+            AnimationLayer layer = layers.get(i);
+            float weight = layer.getWeight();
+            if (weight <= 0f || !blendStates(layer.getStates())) continue;
+
+            AnimationMask mask = layer.getMask();
+            float[] maskWeights = mask != null ? mask.getWeights() : null;
+            int maskCount = maskWeights != null ? Math.min(maskWeights.length, nodeCount) : nodeCount;
+            boolean additive = layer.getMode() == AnimationLayer.BlendMode.ADDITIVE;
+            for (int n = 0; n < maskCount; n++) {
+                float alpha = maskWeights != null ? weight * maskWeights[n] : weight;
+                if (alpha <= 0f || activeNodes != null && !activeNodes[n]) continue;
+                if (additive) {
+                    add(n * STRIDE, Math.min(alpha, 1f));
+                } else {
+                    override(n * STRIDE, Math.min(alpha, 1f));
+                }
+            }
+        }
+    }
+
+    /**
+     * Advances by a time step, then evaluates.
+     * @param deltaTime The elapsed time.
+     */
+    public void evaluate(float deltaTime) {
+        update(deltaTime);
+        evaluate();
+    }
+
+    /**
+     * Copies the last evaluated pose to the nodes of the model this mixer was created for.
+     * @param model The model.
+     */
+    public void apply(PModel model) {
+        TransformHierarchy transforms = model.getTransforms();
+        int count = Math.min(nodeCount, transforms.getCount());
+        System.arraycopy(pose, 0, transforms.getLocals(), 0, count * STRIDE);
+        for (int i = 0; i < count; i++) {
+            transforms.markDirty(i);
+        }
+    }
+
+    /**
+     * Copies the last evaluated pose to an instance of the model this mixer was created for.
+     * @param instance The instance.
+     */
+    public void apply(ModelInstance instance) {
+        int count = Math.min(nodeCount, instance.getNodeCount());
+        System.arraycopy(pose, 0, instance.getLocals(), 0, count * STRIDE);
+        for (int i = 0; i < count; i++) {
+            instance.markDirty(i);
+        }
+    }
+
+    /**
+     * Copies the last evaluated pose to the skeleton this mixer was created for, or a copy of it. Call
+     * {@link Skeleton#update()} afterwards to compute the matrix palette.
+     * @param skeleton The skeleton.
+     */
+    public void apply(Skeleton skeleton) {
+        int count = Math.min(nodeCount, skeleton.getJointCount());
+        System.arraycopy(pose, 0, skeleton.getLocals(), 0, count * STRIDE);
+    }
+
+    /**
+     * Blends the clips of a layer by weight into {@link #layerPose}: translations and scales are averaged, rotations
+     * are summed on the hemisphere of the first clip and normalized.
+     * @return false if no clip has a positive weight.
+     */
+    private boolean blendStates(List<AnimationState> states) {
+        float total = 0f;
+        int contributing = 0;
+        for (int i = 0, size = states.size(); i < size; i++) {
+            float weight = states.get(i).getWeight();
+            if (weight > 0f) {
+                total += weight;
+                contributing++;
+            }
+        }
+        if (contributing == 0) return false;
+
+        boolean first = true;
+        for (int i = 0, size = states.size(); i < size; i++) {
+            AnimationState state = states.get(i);
+            float weight = state.getWeight();
+            if (weight <= 0f) continue;
+
+            if (contributing == 1) {
+                // A single clip: sample straight into the layer pose
+                System.arraycopy(restPose, 0, layerPose, 0, layerPose.length);
+                state.getSampler().sample(state.getTime(), layerPose, activeNodes);
+                return true;
+            }
+
+            System.arraycopy(restPose, 0, samplePose, 0, samplePose.length);
+            state.getSampler().sample(state.getTime(), samplePose, activeNodes);
+            float w = weight / total;
+            for (int o = 0; o < layerPose.length; o += STRIDE) {
+                if (activeNodes != null && !activeNodes[o / STRIDE]) continue;
+                float rw = w;
+                if (!first && layerPose[o + 3] * samplePose[o + 3] + layerPose[o + 4] * samplePose[o + 4]
+                        + layerPose[o + 5] * samplePose[o + 5] + layerPose[o + 6] * samplePose[o + 6] < 0f) {
+                    rw = -w; // Stay on the shortest arc
+                }
+                for (int k = 0; k < STRIDE; k++) {
+                    float scaled = samplePose[o + k] * (k >= 3 && k < 7 ? rw : w);
+                    layerPose[o + k] = first ? scaled : layerPose[o + k] + scaled;
+                }
+            }
+            first = false;
+        }
+        for (int o = 0; o < layerPose.length; o += STRIDE) {
+            AnimationMath.normalize4(layerPose[o + 3], layerPose[o + 4], layerPose[o + 5], layerPose[o + 6], layerPose, o + 3);
+        }
+        return true;
+    }
+
+    /**
+     * Moves a node of the pose towards the layer pose.
+     */
+    private void override(int o, float alpha) {
+        if (alpha >= 1f) {
+            System.arraycopy(layerPose, o, pose, o, STRIDE);
+            return;
+        }
+        for (int k = 0; k < 3; k++) {
+            pose[o + k] += (layerPose[o + k] - pose[o + k]) * alpha;
+            pose[o + 7 + k] += (layerPose[o + 7 + k] - pose[o + 7 + k]) * alpha;
+        }
+        float dot = pose[o + 3] * layerPose[o + 3] + pose[o + 4] * layerPose[o + 4]
+                + pose[o + 5] * layerPose[o + 5] + pose[o + 6] * layerPose[o + 6];
+        float s0 = 1f - alpha;
+        float s1 = dot < 0f ? -alpha : alpha;
+        AnimationMath.normalize4(s0 * pose[o + 3] + s1 * layerPose[o + 3], s0 * pose[o + 4] + s1 * layerPose[o + 4],
+                s0 * pose[o + 5] + s1 * layerPose[o + 5], s0 * pose[o + 6] + s1 * layerPose[o + 6], pose, o + 3);
+    }
+
+    /**
+     * Adds the difference between the layer pose and the rest pose to a node of the pose: translations are offset,
+     * rotations multiplied by {@code inverse(rest) * layer} and scales multiplied by {@code layer / rest}.
+     */
+    private void add(int o, float alpha) {
+        for (int k = 0; k < 3; k++) {
+            pose[o + k] += (layerPose[o + k] - restPose[o + k]) * alpha;
+            float rest = restPose[o + 7 + k];
+            if (rest != 0f) pose[o + 7 + k] *= 1f + (layerPose[o + 7 + k] / rest - 1f) * alpha;
+        }
+
+        // delta = conjugate(rest) * layer, rest being a unit quaternion
+        float rx = -restPose[o + 3], ry = -restPose[o + 4], rz = -restPose[o + 5], rw = restPose[o + 6];
+        float lx = layerPose[o + 3], ly = layerPose[o + 4], lz = layerPose[o + 5], lw = layerPose[o + 6];
+        float dx = rw * lx + rx * lw + ry * lz - rz * ly;
+        float dy = rw * ly - rx * lz + ry * lw + rz * lx;
+        float dz = rw * lz + rx * ly - ry * lx + rz * lw;
+        float dw = rw * lw - rx * lx - ry * ly - rz * lz;
+        if (dw < 0f) {
+            dx = -dx;
+            dy = -dy;
+            dz = -dz;
+            dw = -dw;
+        }
+        // Scale the delta by nlerp from identity
+        float s0 = 1f - alpha;
+        dx *= alpha;
+        dy *= alpha;
+        dz *= alpha;
+        dw = s0 + dw * alpha;
+
+        // pose = pose * delta
+        float px = pose[o + 3], py = pose[o + 4], pz = pose[o + 5], pw = pose[o + 6];
+        AnimationMath.normalize4(pw * dx + px * dw + py * dz - pz * dy,
+                pw * dy - px * dz + py * dw + pz * dx,
+                pw * dz + px * dy - py * dx + pz * dw,
+                pw * dw - px * dx - py * dy - pz * dz, pose, o + 3);
+    }
+}
@@ -0,0 +1,267 @@
+package net.modularmods.protogl.animation;
+
+import lombok.Getter;
+import lombok.Setter;
+import net.modularmods.protogl.model.ModelInstance;
+import net.modularmods.protogl.model.Node;
+import net.modularmods.protogl.model.PModel;
+import net.modularmods.protogl.model.Skeleton;
+import net.modularmods.protogl.model.TransformHierarchy;
+
+import java.util.Arrays;
+
+/**
+ * Evaluates an {@link AnimationClip} at arbitrary times and writes the result into the nodes of a {@link PModel}.
+ * Channels are bound to their target nodes once at construction, and each channel keeps a cursor on its last
+ * keyframe so that playback moving forward finds the next key in constant time (falling back to a binary search
+ * on seeks). Sampling does not allocate.
+ */
+public class AnimationSampler {
+
+    @Getter
+    private final AnimationClip clip;
+
+    private final Node[] targets; // Target node per channel, null if the model has no such node
+    private final int[] handles;  // Target node handle per channel, -1 if the model has no such node
+    private final int[] cursors;  // Last keyframe index used per channel
+    private final float[] scratch = new float[4];
+
+    @Getter
+    @Setter
+    private boolean looping = true; // Wrap times past the end of the clip instead of holding the last pose
+
+    @Getter
+    @Setter
+    private boolean slerp = false; // Use slerp instead of nlerp for rotations
+
+    /**
+     * Binds a clip to the nodes of a model.
+     * @param clip The clip to sample.
+     * @param model The model whose nodes receive the sampled transforms.
+     */
+    public AnimationSampler(AnimationClip clip, PModel model) {
+        this.clip = clip;
+        this.targets = new Node[clip.getChannelCount()];
+        this.handles = new int[clip.getChannelCount()];
+        this.cursors = new int[clip.getChannelCount()];
+
+        String[] nodeNames = clip.getNodeNames();
+        for (int c = 0; c < targets.length; c++) {
+            handles[c] = model.resolve(nodeNames[c]);
+            targets[c] = handles[c] >= 0 ? model.node(handles[c]) : null;
+        }
+    }
+
+    /**
+     * Creates a sampler bound to no target, used offline to read a clip through {@link #sampleChannel}.
+     * @param clip The clip to sample.
+     */
+    AnimationSampler(AnimationClip clip) {
+        this.clip = clip;
+        this.targets = new Node[clip.getChannelCount()];
+        this.handles = new int[clip.getChannelCount()];
+        this.cursors = new int[clip.getChannelCount()];
+        Arrays.fill(handles, -1);
+    }
+
+    /**
+     * Binds a clip to the joints of a skeleton, matching channel node names to joint names. A sampler bound this way
+     * is applied with {@link #sample(float, Skeleton)}, to the skeleton or to any copy of it.
+     * @param clip The clip to sample.
+     * @param skeleton The skeleton whose joints receive the sampled transforms.
+     */
+    public AnimationSampler(AnimationClip clip, Skeleton skeleton) {
+        this.clip = clip;
+        this.targets = new Node[clip.getChannelCount()];
+        this.handles = new int[clip.getChannelCount()];
+        this.cursors = new int[clip.getChannelCount()];
+
+        String[] nodeNames = clip.getNodeNames();
+        for (int c = 0; c < handles.length; c++) {
+            handles[c] = skeleton.indexOf(nodeNames[c]);
+        }
+    }
+
+    /**
+     * Samples every channel at the given time and applies the values to the bound nodes.
+     * @param time The time in the clip's time unit.
+     */
+    public void sample(float time) {
+        float t = wrapTime(time);
+        byte[] channelTypes = clip.getChannelTypes();
+
+        for (int c = 0; c < targets.length; c++) {
+            Node target = targets[c];
+            if (target == null || clip.getKeyCounts()[c] == 0) continue;
+
+            sampleChannel(c, t, scratch, 0);
+            switch (channelTypes[c]) {
+                case AnimationClip.CHANNEL_TRANSLATION -> target.setPosition(scratch[0], scratch[1], scratch[2]);
+                case AnimationClip.CHANNEL_ROTATION -> target.setRotation(scratch[0], scratch[1], scratch[2], scratch[3]);
+                case AnimationClip.CHANNEL_SCALE -> target.setScale(scratch[0], scratch[1], scratch[2]);
+            }
+        }
+    }
+
+    /**
+     * Samples every channel at the given time and applies the values to an instance of the bound model. The keyframe
+     * cursors and scratch values are shared by every call, so each instance, and each thread, should use its own
+     * sampler; sampling several instances at different times with one sampler keeps moving its cursors back and forth.
+     * @param time The time in the clip's time unit.
+     * @param instance An instance of the model this sampler was bound to.
+     */
+    public void sample(float time, ModelInstance instance) {
+        float t = wrapTime(time);
+        byte[] channelTypes = clip.getChannelTypes();
+
+        for (int c = 0; c < handles.length; c++) {
+            int handle = handles[c];
+            if (handle < 0 || handle >= instance.getNodeCount() || clip.getKeyCounts()[c] == 0) continue;
+
+            sampleChannel(c, t, scratch, 0);
+            switch (channelTypes[c]) {
+                case AnimationClip.CHANNEL_TRANSLATION -> instance.setTranslation(handle, scratch[0], scratch[1], scratch[2]);
+                case AnimationClip.CHANNEL_ROTATION -> instance.setRotation(handle, scratch[0], scratch[1], scratch[2], scratch[3]);
+                case AnimationClip.CHANNEL_SCALE -> instance.setScale(handle, scratch[0], scratch[1], scratch[2]);
+            }
+        }
+    }
+
+    /**
+     * Samples every channel at the given time and applies the values to the joints of a skeleton. Call
+     * {@link Skeleton#update()} afterwards to compute the matrix palette.
+     * @param time The time in the clip's time unit.
+     * @param skeleton The skeleton this sampler was bound to, or a copy of it.
+     */
+    public void sample(float time, Skeleton skeleton) {
+        float t = wrapTime(time);
+        byte[] channelTypes = clip.getChannelTypes();
+
+        for (int c = 0; c < handles.length; c++) {
+            int joint = handles[c];
+            if (joint < 0 || clip.getKeyCounts()[c] == 0) continue;
+
+            sampleChannel(c, t, scratch, 0);
+            switch (channelTypes[c]) {
+                case AnimationClip.CHANNEL_TRANSLATION -> skeleton.setTranslation(joint, scratch[0], scratch[1], scratch[2]);
+                case AnimationClip.CHANNEL_ROTATION -> skeleton.setRotation(joint, scratch[0], scratch[1], scratch[2], scratch[3]);
+                case AnimationClip.CHANNEL_SCALE -> skeleton.setScale(joint, scratch[0], scratch[1], scratch[2]);
+            }
+        }
+    }
+
+    /**
+     * Samples every channel at the given time into a pose laid out as {@link TransformHierarchy#getLocals()}, indexed
+     * by the node handles or joint indices this sampler is bound to. Nodes the clip does not animate are left as is.
+     * @param time The time in the clip's time unit.
+     * @param pose The pose receiving the sampled transforms, {@value TransformHierarchy#LOCAL_STRIDE} floats per node.
+     */
+    public void sample(float time, float[] pose) {
+        sample(time, pose, null);
+    }
+
+    /**
+     * Samples the channels of some nodes at the given time into a pose, as {@link #sample(float, float[])}.
+     * @param time The time in the clip's time unit.
+     * @param pose The pose receiving the sampled transforms.
+     * @param activeNodes Whether each node is sampled, or null for every node.
+     */
+    public void sample(float time, float[] pose, boolean[] activeNodes) {
+        float t = wrapTime(time);
+        byte[] channelTypes = clip.getChannelTypes();
+        int nodeCount = pose.length / TransformHierarchy.LOCAL_STRIDE;
+
+        for (int c = 0; c < handles.length; c++) {
+            int handle = handles[c];
+            if (handle < 0 || handle >= nodeCount || clip.getKeyCounts()[c] == 0) continue;
+            if (activeNodes != null && !activeNodes[handle]) continue;
+
+            int offset = handle * TransformHierarchy.LOCAL_STRIDE;
+            switch (channelTypes[c]) {
+                case AnimationClip.CHANNEL_ROTATION -> offset += 3;
+                case AnimationClip.CHANNEL_SCALE -> offset += 7;
+            }
+            sampleChannel(c, t, pose, offset);
+        }
+    }
+
+    /**
+     * Samples a single channel, without wrapping the time.
+     * @param channel The channel index.
+     * @param time The time, clamped to the channel's first and last keys.
+     * @param dst The array receiving 3 or 4 floats depending on the channel type.
+     * @param dstOffset Offset of the result.
+     */
+    public void sampleChannel(int channel, float time, float[] dst, int dstOffset) {
+        int count = clip.getKeyCounts()[channel];
+        int keyOffset = clip.getKeyOffsets()[channel];
+        int valueOffset = clip.getValueOffsets()[channel];
+        byte channelType = clip.getChannelTypes()[channel];
+        int valueSize = AnimationClip.getValueSize(channelType);
+        float[] times = clip.getTimes();
+        float[] values = clip.getValues();
+
+        int key = findKey(channel, times, keyOffset, count, time);
+        int a = valueOffset + key * valueSize;
+
+        if (key >= count - 1 || time <= times[keyOffset + key]) {
+            // Before the first key or after the last one: hold the key value
+            System.arraycopy(values, a, dst, dstOffset, valueSize);
+            return;
+        }
+
+        float t0 = times[keyOffset + key];
+        float t1 = times[keyOffset + key + 1];
+        float factor = t1 > t0 ? (time - t0) / (t1 - t0) : 0f;
+        int b = a + valueSize;
+
+        if (channelType == AnimationClip.CHANNEL_ROTATION) {
+            if (slerp) {
+                AnimationMath.slerp(values, a, b, factor, dst, dstOffset);
+            } else {
+                AnimationMath.nlerp(values, a, b, factor, dst, dstOffset);
+            }
+        } else {
+            AnimationMath.lerp3(values, a, b, factor, dst, dstOffset);
+        }
+    }
+
+    /**
+     * Resets every channel cursor to the first keyframe.
+     */
+    public void reset() {
+        Arrays.fill(cursors, 0);
+    }
+
+    /**
+     * Finds the last keyframe whose time is not after the given time, starting from the cached cursor.
+     */
+    private int findKey(int channel, float[] times, int keyOffset, int count, float time) {
+        int cursor = cursors[channel];
+        if (cursor < count - 1 && times[keyOffset + cursor] <= time) {
+            // Common case: still inside the current segment, or moved into the next one
+            if (time < times[keyOffset + cursor + 1]) return cursor;
+            if (cursor + 2 < count && time < times[keyOffset + cursor + 2]) return cursors[channel] = cursor + 1;
+        }
+
+        // Seek: binary search for the last key with times[key] <= time
+        int low = 0;
+        int high = count - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (times[keyOffset + mid] <= time) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return cursors[channel] = low;
+    }
+
+    private float wrapTime(float time) {
+        float duration = clip.getDuration();
+        if (!looping || duration <= 0f) return time;
+        float t = time % duration;
+        return t < 0f ? t + duration : t;
+    }
+}
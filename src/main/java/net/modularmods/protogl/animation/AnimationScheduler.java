@@ -0,0 +1,193 @@
+package net.modularmods.protogl.animation;
+
+import lombok.Getter;
+import lombok.Setter;
+import net.modularmods.protogl.model.ModelInstance;
+import net.modularmods.protogl.model.Skeleton;
+import net.modularmods.protogl.profiling.Counter;
+import net.modularmods.protogl.profiling.Metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Animation level of detail: decides each frame which registered instances evaluate a new pose. Instances near the
+ * camera update every frame, distant ones every 2nd or 4th frame and offscreen ones every
+ * {@link #getOffscreenInterval()} frames. Instances sharing a rate are staggered by registration order, so that a
+ * crowd at quarter rate spreads its evaluations evenly over 4 frames.
+ * <p>
+ * Between evaluations, visible instances are interpolated: an evaluation samples the mixer ahead, at the time of the
+ * next evaluation, and the frames in between move the shown pose towards it, so a steady playback shows the poses
+ * a full-rate update would, within the interpolation error. Offscreen instances are not interpolated, nothing being
+ * drawn for them.
+ * <p>
+ * A budget caps the number of evaluations per frame; due instances over the budget are deferred to the next frame,
+ * visible ones first. Scheduling does not allocate.
+ */
+public class AnimationScheduler {
+
+    @Getter
+    @Setter
+    private float halfRateDistance = 25f;    // Distance from which instances update every 2nd frame
+    @Getter
+    @Setter
+    private float quarterRateDistance = 50f; // Distance from which instances update every 4th frame
+    @Getter
+    @Setter
+    private int offscreenInterval = 4;       // Frames between updates of offscreen instances
+    @Getter
+    @Setter
+    private int maxEvaluationsPerFrame;      // Pose evaluations allowed per frame, 0 for no limit
+    @Getter
+    @Setter
+    private boolean interpolating = true;    // Interpolate visible instances between evaluations
+
+    private final List<ScheduledAnimation> entries = new ArrayList<>();
+    private final List<ScheduledAnimation> entriesView = Collections.unmodifiableList(entries);
+    private int nextPhase;
+    private int cursor; // First entry served, rotated every frame so deferrals are shared fairly
+    @Getter
+    private long frame;
+
+    @Getter
+    private int evaluatedCount;    // Pose evaluations during the last frame
+    @Getter
+    private int skippedCount;      // Instances not due during the last frame, because of a reduced rate
+    @Getter
+    private int deferredCount;     // Instances due but deferred by the budget during the last frame
+    @Getter
+    private long totalSkipped;     // Skipped and deferred evaluations since creation
+
+    /**
+     * Registers an instance animated by a mixer bound to its model.
+     * @param mixer The mixer computing the instance's pose.
+     * @param instance The instance receiving the pose.
+     * @return The scheduling state of the instance.
+     */
+    public ScheduledAnimation add(AnimationMixer mixer, ModelInstance instance) {
+        ScheduledAnimation entry = new ScheduledAnimation(mixer, instance, null, nextPhase++);
+        entries.add(entry);
+        return entry;
+    }
+
+    /**
+     * Registers a skeleton animated by a mixer bound to it; its palette is computed after each new pose.
+     * @param mixer The mixer computing the skeleton's pose.
+     * @param skeleton The skeleton receiving the pose.
+     * @return The scheduling state of the skeleton.
+     */
+    public ScheduledAnimation add(AnimationMixer mixer, Skeleton skeleton) {
+        ScheduledAnimation entry = new ScheduledAnimation(mixer, null, skeleton, nextPhase++);
+        entries.add(entry);
+        return entry;
+    }
+
+    public void remove(ScheduledAnimation entry) {
+        entries.remove(entry);
+    }
+
+    public List<ScheduledAnimation> getEntries() {
+        return entriesView;
+    }
+
+    /**
+     * Advances every instance by a frame, evaluating those that are due within the budget and interpolating the
+     * others.
+     * @param deltaTime The time elapsed since the last frame.
+     */
+    public void update(float deltaTime) {
+        frame++;
+        evaluatedCount = 0;
+        skippedCount = 0;
+        deferredCount = 0;
+
+        int size = entries.size();
+        int budget = maxEvaluationsPerFrame > 0 ? maxEvaluationsPerFrame : Integer.MAX_VALUE;
+        for (int k = 0; k < size; k++) {
+            entries.get(k).ahead -= deltaTime;
+        }
+        // Visible instances first, so the budget goes to what is on screen
+        for (int pass = 0; pass < 2; pass++) {
+            boolean visible = pass == 0;
+            for (int k = 0; k < size; k++) {
+                ScheduledAnimation entry = entries.get((cursor + k) % size);
+                if (entry.isVisible() != visible) continue;
+
+                int interval = intervalOf(entry);
+                entry.interval = interval;
+                boolean due = !entry.evaluated || entry.overdue || (frame + entry.phase) % interval == 0;
+                if (due && budget > 0) {
+                    evaluate(entry, deltaTime, interval);
+                    budget--;
+                    evaluatedCount++;
+                    continue;
+                }
+                if (due) {
+                    entry.overdue = true;
+                    deferredCount++;
+                } else {
+                    skippedCount++;
+                }
+                if (visible) interpolate(entry);
+            }
+        }
+        cursor = size > 0 ? (cursor + 1) % size : 0;
+        totalSkipped += skippedCount + deferredCount;
+
+        if (Metrics.ENABLED) {
+            Metrics.add(Counter.POSES_EVALUATED, evaluatedCount);
+            Metrics.add(Counter.POSES_SKIPPED, skippedCount + deferredCount);
+        }
+    }
+
+    /**
+     * Returns the number of frames between evaluations of an instance.
+     * @param entry The instance.
+     * @return 1, 2 or 4 for visible instances depending on distance, {@link #getOffscreenInterval()} otherwise.
+     */
+    public int intervalOf(ScheduledAnimation entry) {
+        if (!entry.isVisible()) return Math.max(offscreenInterval, 1);
+        if (entry.getDistance() >= quarterRateDistance) return 4;
+        if (entry.getDistance() >= halfRateDistance) return 2;
+        return 1;
+    }
+
+    private void evaluate(ScheduledAnimation entry, float deltaTime, int interval) {
+        // Frames until the instance is next due, fewer than the interval after a deferral or on the first evaluation
+        int frames = interval - (int) ((frame + entry.phase) % interval);
+        boolean smooth = interpolating && entry.isVisible() && frames > 1 && entry.evaluated;
+        // Sample at the time of the next evaluation when interpolating towards it
+        float lookahead = smooth ? (frames - 1) * deltaTime : 0f;
+        float step = Math.max(lookahead - entry.ahead, 0f);
+        AnimationMixer mixer = entry.getMixer();
+        mixer.update(step);
+        entry.ahead += step;
+        mixer.evaluate();
+
+        entry.evaluated = true;
+        entry.overdue = false;
+        entry.step = 0;
+        if (smooth) {
+            System.arraycopy(entry.shown, 0, entry.from, 0, entry.from.length);
+            entry.steps = frames;
+            AnimationMath.lerpPose(entry.from, mixer.getPose(), 1f / frames, entry.shown, mixer.getNodeCount());
+        } else {
+            entry.steps = 0;
+            System.arraycopy(mixer.getPose(), 0, entry.shown, 0, entry.shown.length);
+        }
+        entry.apply(entry.shown);
+    }
+
+    /**
+     * Moves the shown pose one frame further towards the last evaluated one.
+     */
+    private void interpolate(ScheduledAnimation entry) {
+        if (entry.step + 1 >= entry.steps) return;
+        entry.step++;
+        AnimationMixer mixer = entry.getMixer();
+        float factor = (entry.step + 1) / (float) entry.steps;
+        AnimationMath.lerpPose(entry.from, mixer.getPose(), factor, entry.shown, mixer.getNodeCount());
+        entry.apply(entry.shown);
+    }
+}
@@ -0,0 +1,72 @@
+package net.modularmods.protogl.animation;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * A clip playing in an {@link AnimationLayer}: its sampler, playback time and speed, and its weight within the layer.
+ */
+public class AnimationState {
+
+    @Getter
+    private final AnimationSampler sampler;
+
+    @Getter
+    @Setter
+    private float time;         // Playback time in the clip's time unit
+    @Getter
+    @Setter
+    private float speed = 1f;   // Clip time units per unit of mixer time
+
+    private final WeightFade weight;
+    private boolean stopping;   // Removed from its layer once faded out
+
+    AnimationState(AnimationSampler sampler, float weight) {
+        this.sampler = sampler;
+        this.weight = new WeightFade(weight);
+    }
+
+    public float getWeight() {
+        return weight.get();
+    }
+
+    /**
+     * Sets the weight of this clip relative to the other clips of its layer, cancelling any fade.
+     * @param weight The weight, 0 to mute the clip.
+     */
+    public void setWeight(float weight) {
+        this.weight.set(weight);
+        this.stopping = false;
+    }
+
+    /**
+     * Moves the weight linearly to a target.
+     * @param target The weight at the end of the fade.
+     * @param duration The length of the fade in mixer time.
+     */
+    public void fadeTo(float target, float duration) {
+        weight.fadeTo(target, duration);
+        stopping = false;
+    }
+
+    public boolean isFading() {
+        return weight.isFading();
+    }
+
+    /**
+     * Fades the weight out, then removes this state from its layer.
+     */
+    void fadeOut(float duration) {
+        weight.fadeTo(0f, duration);
+        stopping = true;
+    }
+
+    void advance(float deltaTime) {
+        time += deltaTime * speed;
+        weight.advance(deltaTime);
+    }
+
+    boolean isFinished() {
+        return stopping && !weight.isFading();
+    }
+}
@@ -0,0 +1,233 @@
+package net.modularmods.protogl.animation;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Offline conversion of {@link AnimationClip}s to {@link CompressedClip}s. The clip is resampled at a uniform rate:
+ * starting from a thirty-second of the source key rate, the rate is doubled until the compressed clip stays within the
+ * error budget of the source, so smooth clips end up with far fewer keys than they were exported with. Channels whose
+ * value stays within the budget for the whole clip are stored once.
+ */
+@Getter
+@Setter
+public class ClipCompressor {
+
+    private static final int RATE_STEPS = 5; // Halvings of the source rate tried, lowest rate first
+
+    private float maxSampleRate = 60f;           // Highest rate used, in frames per time unit
+    private float translationTolerance = 0.001f; // Error budget for translations, in model units
+    private float rotationTolerance = 0.002f;    // Error budget for rotations, in radians
+    private float scaleTolerance = 0.001f;       // Error budget for scales
+
+    /**
+     * Compresses a clip at the lowest rate meeting the error budget, or at the highest rate if none does.
+     * @param clip The source clip.
+     * @return The compressed clip.
+     */
+    public CompressedClip compress(AnimationClip clip) {
+        float maxRate = Math.min(maxSampleRate, sourceRate(clip));
+        CompressedClip compressed = null;
+        for (int step = RATE_STEPS; step >= 0; step--) {
+            compressed = encode(clip, maxRate / (1 << step));
+            CompressionReport report = measure(clip, compressed);
+            if (report.getMaxTranslationError() <= translationTolerance
+                    && report.getMaxRotationError() <= rotationTolerance
+                    && report.getMaxScaleError() <= scaleTolerance) {
+                break;
+            }
+        }
+        return compressed;
+    }
+
+    /**
+     * Compares a compressed clip against its source.
+     * @param source The source clip.
+     * @param compressed The compressed clip.
+     * @return The sizes and largest errors.
+     */
+    public static CompressionReport measure(AnimationClip source, CompressedClip compressed) {
+        AnimationSampler sampler = new AnimationSampler(source);
+        float[] expected = new float[4];
+        float[] actual = new float[4];
+        float[] scratch = new float[4];
+        float duration = compressed.getDuration();
+        int gridSize = Math.max(2, Math.min(4 * Math.max(compressed.getFrameCount(), maxKeyCount(source)), 8192));
+        float[] errors = new float[3];
+        int constantChannels = 0;
+
+        String[] names = source.getNodeNames();
+        for (int c = 0; c < compressed.getChannelCount(); c++) {
+            if (compressed.isConstant(c)) constantChannels++;
+            int s = findChannel(source, names, compressed.getNodeNames()[c], compressed.getChannelTypes()[c]);
+            if (s < 0) continue;
+
+            byte type = source.getChannelTypes()[s];
+            int keyOffset = source.getKeyOffsets()[s];
+            int keyCount = source.getKeyCounts()[s];
+            // Every source key, then a dense uniform grid
+            for (int i = 0; i < keyCount + gridSize; i++) {
+                float time = i < keyCount ? source.getTimes()[keyOffset + i] : duration * (i - keyCount) / (gridSize - 1);
+                sampler.sampleChannel(s, time, expected, 0);
+                compressed.sampleChannel(c, time, actual, 0, scratch);
+                errors[type] = Math.max(errors[type], error(type, expected, actual));
+            }
+        }
+        return new CompressionReport(source.getName(), source.getSizeInBytes(), compressed.getSizeInBytes(),
+                compressed.getSampleRate(), compressed.getFrameCount(), compressed.getChannelCount(), constantChannels,
+                errors[AnimationClip.CHANNEL_TRANSLATION], errors[AnimationClip.CHANNEL_ROTATION],
+                errors[AnimationClip.CHANNEL_SCALE]);
+    }
+
+    /**
+     * Resamples and quantizes a clip at a given rate. Channels without keys are dropped.
+     * @param clip The source clip.
+     * @param rate The target rate in frames per time unit; it is adjusted so the last frame falls on the duration.
+     * @return The compressed clip.
+     */
+    public CompressedClip encode(AnimationClip clip, float rate) {
+        AnimationSampler sampler = new AnimationSampler(clip);
+        float duration = clip.getDuration();
+        int frameCount = duration > 0f && rate > 0f ? (int) Math.ceil(duration * rate - 1e-4f) + 1 : 1;
+        float sampleRate = frameCount > 1 ? (frameCount - 1) / duration : 0f;
+
+        List<Integer> channels = new ArrayList<>();
+        for (int c = 0; c < clip.getChannelCount(); c++) {
+            if (clip.getKeyCounts()[c] > 0) channels.add(c);
+        }
+        int channelCount = channels.size();
+        byte[] types = new byte[channelCount];
+        String[] names = new String[channelCount];
+        int[] slots = new int[channelCount];
+        float[] ranges = new float[channelCount * 6];
+        float[][] samples = new float[channelCount][];
+
+        int animated = 0;
+        int constantCount = 0;
+        for (int i = 0; i < channelCount; i++) {
+            int c = channels.get(i);
+            byte type = clip.getChannelTypes()[c];
+            int size = AnimationClip.getValueSize(type);
+            types[i] = type;
+            names[i] = clip.getNodeNames()[c];
+            samples[i] = new float[frameCount * size];
+            for (int f = 0; f < frameCount; f++) {
+                sampler.sampleChannel(c, sampleRate > 0f ? f / sampleRate : 0f, samples[i], f * size);
+            }
+            if (type != AnimationClip.CHANNEL_ROTATION) {
+                computeRange(samples[i], frameCount, ranges, i * 6);
+            }
+            if (isConstant(type, samples[i], frameCount)) {
+                slots[i] = -1 - constantCount++ * CompressedClip.KEY_SHORTS;
+            } else {
+                slots[i] = animated++ * CompressedClip.KEY_SHORTS;
+            }
+        }
+
+        int frameStride = animated * CompressedClip.KEY_SHORTS;
+        short[] constants = new short[constantCount * CompressedClip.KEY_SHORTS];
+        short[] frames = new short[frameCount * frameStride];
+        for (int i = 0; i < channelCount; i++) {
+            if (slots[i] < 0) {
+                encodeKey(types[i], samples[i], 0, ranges, i * 6, constants, -1 - slots[i]);
+            } else {
+                int size = AnimationClip.getValueSize(types[i]);
+                for (int f = 0; f < frameCount; f++) {
+                    encodeKey(types[i], samples[i], f * size, ranges, i * 6, frames, f * frameStride + slots[i]);
+                }
+            }
+        }
+        return new CompressedClip(clip.getName(), sampleRate > 0f ? duration : 0f, sampleRate, frameCount, types,
+                names, slots, ranges, constants, frames, frameStride);
+    }
+
+    private static void encodeKey(byte type, float[] values, int offset, float[] ranges, int range, short[] dst, int dstOffset) {
+        if (type == AnimationClip.CHANNEL_ROTATION) {
+            CompressedClip.packRotation(values, offset, dst, dstOffset);
+        } else {
+            for (int i = 0; i < 3; i++) {
+                dst[dstOffset + i] = CompressedClip.quantize(values[offset + i], ranges[range + i], ranges[range + 3 + i]);
+            }
+        }
+    }
+
+    private static void computeRange(float[] values, int frameCount, float[] ranges, int range) {
+        for (int i = 0; i < 3; i++) {
+            float min = Float.POSITIVE_INFINITY;
+            float max = Float.NEGATIVE_INFINITY;
+            for (int f = 0; f < frameCount; f++) {
+                min = Math.min(min, values[f * 3 + i]);
+                max = Math.max(max, values[f * 3 + i]);
+            }
+            ranges[range + i] = min;
+            ranges[range + 3 + i] = max - min;
+        }
+    }
+
+    /**
+     * Indicates whether every frame of a channel is within half the error budget of its first frame.
+     */
+    private boolean isConstant(byte type, float[] values, int frameCount) {
+        int size = AnimationClip.getValueSize(type);
+        float tolerance = 0.5f * switch (type) {
+            case AnimationClip.CHANNEL_ROTATION -> rotationTolerance;
+            case AnimationClip.CHANNEL_SCALE -> scaleTolerance;
+            default -> translationTolerance;
+        };
+        float[] first = new float[4];
+        float[] other = new float[4];
+        System.arraycopy(values, 0, first, 0, size);
+        for (int f = 1; f < frameCount; f++) {
+            System.arraycopy(values, f * size, other, 0, size);
+            if (error(type, first, other) > tolerance) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the distance between two values: an angle in radians for rotations, a Euclidean distance otherwise.
+     */
+    private static float error(byte type, float[] a, float[] b) {
+        if (type == AnimationClip.CHANNEL_ROTATION) {
+            float lengths = (float) Math.sqrt((a[0] * a[0] + a[1] * a[1] + a[2] * a[2] + a[3] * a[3])
+                    * (b[0] * b[0] + b[1] * b[1] + b[2] * b[2] + b[3] * b[3]));
+            float dot = lengths > 0f ? Math.abs(a[0] * b[0] + a[1] * b[1] + a[2] * b[2] + a[3] * b[3]) / lengths : 1f;
+            return 2f * (float) Math.acos(Math.min(dot, 1f));
+        }
+        float dx = a[0] - b[0];
+        float dy = a[1] - b[1];
+        float dz = a[2] - b[2];
+        return (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+
+    /**
+     * Returns the densest key rate of any channel, in keys per time unit.
+     */
+    private static float sourceRate(AnimationClip clip) {
+        float rate = 0f;
+        for (int c = 0; c < clip.getChannelCount(); c++) {
+            int count = clip.getKeyCounts()[c];
+            if (count < 2) continue;
+            int offset = clip.getKeyOffsets()[c];
+            float span = clip.getTimes()[offset + count - 1] - clip.getTimes()[offset];
+            if (span > 0f) rate = Math.max(rate, (count - 1) / span);
+        }
+        return rate;
+    }
+
+    private static int maxKeyCount(AnimationClip clip) {
+        int max = 0;
+        for (int count : clip.getKeyCounts()) max = Math.max(max, count);
+        return max;
+    }
+
+    private static int findChannel(AnimationClip clip, String[] names, String name, byte type) {
+        for (int c = 0; c < names.length; c++) {
+            if (clip.getChannelTypes()[c] == type && names[c].equals(name) && clip.getKeyCounts()[c] > 0) return c;
+        }
+        return -1;
+    }
+}
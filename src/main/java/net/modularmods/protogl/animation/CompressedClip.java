@@ -0,0 +1,222 @@
+package net.modularmods.protogl.animation;
+
+import lombok.Getter;
+
+/**
+ * Compact runtime form of an {@link AnimationClip}, built offline by {@link ClipCompressor}. Every channel is
+ * resampled at one uniform rate and stored as 3 shorts per key:
+ * <ul>
+ *     <li>rotations use the smallest-three encoding: the index of the largest quaternion component in 2 bits and
+ *     the three others in 15 bits each, 48 bits in total;</li>
+ *     <li>translations and scales are quantized to 16 bits per component over the channel's range in the clip.</li>
+ * </ul>
+ * Keys are stored frame-major: all animated channels of frame {@code f} are contiguous, so evaluating a pose reads
+ * two consecutive runs of memory. Channels whose value never changes are stored once, outside of the frames.
+ */
+@Getter
+public class CompressedClip {
+
+    public static final int KEY_SHORTS = 3; // Shorts per key, whatever the channel type
+
+    private static final float QUANTIZED_MAX = 65535f;
+    private static final float ROTATION_RANGE = (float) Math.sqrt(0.5); // Bound of the three smallest components
+    private static final int ROTATION_BITS = 15;
+    private static final int ROTATION_MAX = (1 << ROTATION_BITS) - 1;
+
+    private final String name;          // Name of the animation
+    private final float duration;       // Time of the last frame
+    private final float sampleRate;     // Frames per time unit
+    private final int frameCount;       // Number of frames, the last one at the duration
+    private final byte[] channelTypes;  // Channel type per channel (translation, rotation or scale)
+    private final String[] nodeNames;   // Name of the node each channel affects
+    private final int[] slots;          // Per channel, offset in a frame, or -1 - offset in constants if constant
+    private final float[] ranges;       // Per channel, minimum x y z then extent x y z (translation and scale only)
+    private final short[] constants;    // Keys of constant channels
+    private final short[] frames;       // Keys of animated channels, frame-major
+    private final int frameStride;      // Shorts per frame
+
+    /**
+     * Constructs a compressed clip from encoded data.
+     * @param name Name of the animation.
+     * @param duration Time of the last frame.
+     * @param sampleRate Frames per time unit.
+     * @param frameCount Number of frames.
+     * @param channelTypes Channel type per channel.
+     * @param nodeNames Name of the node each channel affects.
+     * @param slots Offset of each channel's key in a frame, or {@code -1 - offset} in constants.
+     * @param ranges Quantization range of each channel, 6 floats per channel.
+     * @param constants Keys of constant channels.
+     * @param frames Keys of animated channels, {@code frameCount} runs of {@code frameStride} shorts.
+     * @param frameStride Shorts per frame.
+     */
+    public CompressedClip(String name, float duration, float sampleRate, int frameCount, byte[] channelTypes,
+                          String[] nodeNames, int[] slots, float[] ranges, short[] constants, short[] frames, int frameStride) {
+        this.name = name;
+        this.duration = duration;
+        this.sampleRate = sampleRate;
+        this.frameCount = frameCount;
+        this.channelTypes = channelTypes;
+        this.nodeNames = nodeNames;
+        this.slots = slots;
+        this.ranges = ranges;
+        this.constants = constants;
+        this.frames = frames;
+        this.frameStride = frameStride;
+    }
+
+    public int getChannelCount() {
+        return channelTypes.length;
+    }
+
+    /**
+     * Indicates whether a channel holds a single value for the whole clip.
+     * @param channel The channel index.
+     * @return true if the channel is stored once.
+     */
+    public boolean isConstant(int channel) {
+        return slots[channel] < 0;
+    }
+
+    /**
+     * Returns the memory held by the clip's key data and channel tables, excluding names.
+     * @return The size in bytes.
+     */
+    public long getSizeInBytes() {
+        return (long) (frames.length + constants.length) * Short.BYTES + (long) ranges.length * Float.BYTES
+                + (long) slots.length * Integer.BYTES + channelTypes.length;
+    }
+
+    /**
+     * Decodes a channel at a time, interpolating between the two surrounding frames. Does not allocate.
+     * @param channel The channel index.
+     * @param time The time, clamped to the clip.
+     * @param dst The array receiving 3 or 4 floats depending on the channel type.
+     * @param dstOffset Offset of the result.
+     * @param scratch At least 4 floats of scratch space, distinct from dst.
+     */
+    public void sampleChannel(int channel, float time, float[] dst, int dstOffset, float[] scratch) {
+        float position = Math.max(0f, Math.min(time * sampleRate, frameCount - 1));
+        int frame = Math.min((int) position, frameCount - 1);
+        sampleChannel(channel, frame, position - frame, dst, dstOffset, scratch);
+    }
+
+    /**
+     * Decodes a channel between a frame and the next one.
+     * @param channel The channel index.
+     * @param frame The first frame.
+     * @param factor Interpolation factor towards the next frame, in [0, 1].
+     * @param dst The array receiving 3 or 4 floats depending on the channel type.
+     * @param dstOffset Offset of the result.
+     * @param scratch At least 4 floats of scratch space, distinct from dst.
+     */
+    public void sampleChannel(int channel, int frame, float factor, float[] dst, int dstOffset, float[] scratch) {
+        int slot = slots[channel];
+        byte type = channelTypes[channel];
+        if (slot < 0) {
+            decode(channel, type, constants, -1 - slot, dst, dstOffset);
+            return;
+        }
+
+        int a = frame * frameStride + slot;
+        decode(channel, type, frames, a, dst, dstOffset);
+        if (factor <= 0f || frame >= frameCount - 1) return;
+
+        decode(channel, type, frames, a + frameStride, scratch, 0);
+        if (type == AnimationClip.CHANNEL_ROTATION) {
+            // Shortest-arc nlerp between the decoded keys
+            float dot = dst[dstOffset] * scratch[0] + dst[dstOffset + 1] * scratch[1]
+                    + dst[dstOffset + 2] * scratch[2] + dst[dstOffset + 3] * scratch[3];
+            float s0 = 1f - factor;
+            float s1 = dot < 0f ? -factor : factor;
+            AnimationMath.normalize4(s0 * dst[dstOffset] + s1 * scratch[0], s0 * dst[dstOffset + 1] + s1 * scratch[1],
+                    s0 * dst[dstOffset + 2] + s1 * scratch[2], s0 * dst[dstOffset + 3] + s1 * scratch[3], dst, dstOffset);
+        } else {
+            for (int i = 0; i < 3; i++) {
+                dst[dstOffset + i] += (scratch[i] - dst[dstOffset + i]) * factor;
+            }
+        }
+    }
+
+    private void decode(int channel, byte type, short[] data, int offset, float[] dst, int dstOffset) {
+        if (type == AnimationClip.CHANNEL_ROTATION) {
+            unpackRotation(data, offset, dst, dstOffset);
+        } else {
+            int r = channel * 6;
+            for (int i = 0; i < 3; i++) {
+                dst[dstOffset + i] = ranges[r + i] + ranges[r + 3 + i] * (Short.toUnsignedInt(data[offset + i]) / QUANTIZED_MAX);
+            }
+        }
+    }
+
+    /**
+     * Quantizes a value to 16 bits over a range.
+     * @param value The value.
+     * @param min The minimum of the range.
+     * @param extent The size of the range, 0 for a constant.
+     * @return The quantized value, to be read as unsigned.
+     */
+    public static short quantize(float value, float min, float extent) {
+        if (extent <= 0f) return 0;
+        float normalized = Math.max(0f, Math.min((value - min) / extent, 1f));
+        return (short) Math.round(normalized * QUANTIZED_MAX);
+    }
+
+    /**
+     * Encodes a unit quaternion (x, y, z, w) in 48 bits with the smallest-three scheme.
+     * @param src The array holding the quaternion.
+     * @param srcOffset Offset of the quaternion.
+     * @param dst The array receiving 3 shorts.
+     * @param dstOffset Offset of the result.
+     */
+    public static void packRotation(float[] src, int srcOffset, short[] dst, int dstOffset) {
+        int largest = 0;
+        float largestAbs = -1f;
+        float lengthSquared = 0f;
+        for (int i = 0; i < 4; i++) {
+            float c = src[srcOffset + i];
+            lengthSquared += c * c;
+            if (Math.abs(c) > largestAbs) {
+                largestAbs = Math.abs(c);
+                largest = i;
+            }
+        }
+        // q and -q are the same rotation: flip so the dropped component is positive
+        float scale = (src[srcOffset + largest] < 0f ? -1f : 1f) / (float) Math.sqrt(lengthSquared > 0f ? lengthSquared : 1f);
+
+        long bits = largest;
+        for (int i = 0; i < 4; i++) {
+            if (i == largest) continue;
+            float normalized = (src[srcOffset + i] * scale / ROTATION_RANGE) * 0.5f + 0.5f;
+            long quantized = Math.round(Math.max(0f, Math.min(normalized, 1f)) * ROTATION_MAX);
+            bits = bits << ROTATION_BITS | quantized;
+        }
+        dst[dstOffset] = (short) (bits >>> 32);
+        dst[dstOffset + 1] = (short) (bits >>> 16);
+        dst[dstOffset + 2] = (short) bits;
+    }
+
+    /**
+     * Decodes a quaternion written by {@link #packRotation}.
+     * @param src The array holding 3 shorts.
+     * @param srcOffset Offset of the encoded rotation.
+     * @param dst The array receiving the quaternion (x, y, z, w).
+     * @param dstOffset Offset of the result.
+     */
+    public static void unpackRotation(short[] src, int srcOffset, float[] dst, int dstOffset) {
+        long bits = (long) Short.toUnsignedInt(src[srcOffset]) << 32
+                | (long) Short.toUnsignedInt(src[srcOffset + 1]) << 16
+                | Short.toUnsignedInt(src[srcOffset + 2]);
+        int largest = (int) (bits >>> (3 * ROTATION_BITS)) & 3;
+
+        float sum = 0f;
+        int shift = 2 * ROTATION_BITS;
+        for (int i = 0; i < 4; i++) {
+            if (i == largest) continue;
+            float c = (((bits >>> shift) & ROTATION_MAX) / (float) ROTATION_MAX * 2f - 1f) * ROTATION_RANGE;
+            dst[dstOffset + i] = c;
+            sum += c * c;
+            shift -= ROTATION_BITS;
+        }
+        dst[dstOffset + largest] = (float) Math.sqrt(Math.max(0f, 1f - sum));
+    }
+}
@@ -0,0 +1,143 @@
+package net.modularmods.protogl.animation;
+
+import lombok.Getter;
+import lombok.Setter;
+import net.modularmods.protogl.model.ModelInstance;
+import net.modularmods.protogl.model.Node;
+import net.modularmods.protogl.model.PModel;
+import net.modularmods.protogl.model.Skeleton;
+
+/**
+ * Evaluates a {@link CompressedClip} and writes the result into a model, an instance of it or a skeleton. Channels
+ * are bound to node handles (or joint indices) once at construction. Since keys are uniformly spaced, finding the
+ * frames around a time is a multiplication, and channels are decoded in storage order so a pose is read sequentially.
+ * Sampling does not allocate.
+ */
+public class CompressedSampler {
+
+    @Getter
+    private final CompressedClip clip;
+
+    private final Node[] targets; // Target node per channel, null if unbound or sampling a skeleton
+    private final int[] handles;  // Target node handle or joint index per channel, -1 if the target does not exist
+    private final float[] value = new float[4];
+    private final float[] scratch = new float[4];
+
+    @Getter
+    @Setter
+    private boolean looping = true; // Wrap times past the end of the clip instead of holding the last pose
+
+    /**
+     * Binds a clip to the nodes of a model.
+     * @param clip The clip to sample.
+     * @param model The model whose nodes receive the sampled transforms.
+     */
+    public CompressedSampler(CompressedClip clip, PModel model) {
+        this.clip = clip;
+        this.targets = new Node[clip.getChannelCount()];
+        this.handles = new int[clip.getChannelCount()];
+
+        String[] nodeNames = clip.getNodeNames();
+        for (int c = 0; c < targets.length; c++) {
+            handles[c] = model.resolve(nodeNames[c]);
+            targets[c] = handles[c] >= 0 ? model.node(handles[c]) : null;
+        }
+    }
+
+    /**
+     * Binds a clip to the joints of a skeleton, matching channel node names to joint names.
+     * @param clip The clip to sample.
+     * @param skeleton The skeleton whose joints receive the sampled transforms.
+     */
+    public CompressedSampler(CompressedClip clip, Skeleton skeleton) {
+        this.clip = clip;
+        this.targets = new Node[clip.getChannelCount()];
+        this.handles = new int[clip.getChannelCount()];
+
+        String[] nodeNames = clip.getNodeNames();
+        for (int c = 0; c < handles.length; c++) {
+            handles[c] = skeleton.indexOf(nodeNames[c]);
+        }
+    }
+
+    /**
+     * Samples every channel at the given time and applies the values to the bound nodes.
+     * @param time The time in the clip's time unit.
+     */
+    public void sample(float time) {
+        float position = framePosition(time);
+        int frame = (int) position;
+        byte[] channelTypes = clip.getChannelTypes();
+
+        for (int c = 0; c < targets.length; c++) {
+            Node target = targets[c];
+            if (target == null) continue;
+
+            clip.sampleChannel(c, frame, position - frame, value, 0, scratch);
+            switch (channelTypes[c]) {
+                case AnimationClip.CHANNEL_TRANSLATION -> target.setPosition(value[0], value[1], value[2]);
+                case AnimationClip.CHANNEL_ROTATION -> target.setRotation(value[0], value[1], value[2], value[3]);
+                case AnimationClip.CHANNEL_SCALE -> target.setScale(value[0], value[1], value[2]);
+            }
+        }
+    }
+
+    /**
+     * Samples every channel at the given time and applies the values to an instance of the bound model.
+     * @param time The time in the clip's time unit.
+     * @param instance An instance of the model this sampler was bound to.
+     */
+    public void sample(float time, ModelInstance instance) {
+        float position = framePosition(time);
+        int frame = (int) position;
+        byte[] channelTypes = clip.getChannelTypes();
+
+        for (int c = 0; c < handles.length; c++) {
+            int handle = handles[c];
+            if (handle < 0 || handle >= instance.getNodeCount()) continue;
+
+            clip.sampleChannel(c, frame, position - frame, value, 0, scratch);
+            switch (channelTypes[c]) {
+                case AnimationClip.CHANNEL_TRANSLATION -> instance.setTranslation(handle, value[0], value[1], value[2]);
+                case AnimationClip.CHANNEL_ROTATION -> instance.setRotation(handle, value[0], value[1], value[2], value[3]);
+                case AnimationClip.CHANNEL_SCALE -> instance.setScale(handle, value[0], value[1], value[2]);
+            }
+        }
+    }
+
+    /**
+     * Samples every channel at the given time and applies the values to the joints of a skeleton.
+     * @param time The time in the clip's time unit.
+     * @param skeleton The skeleton this sampler was bound to, or a copy of it.
+     */
+    public void sample(float time, Skeleton skeleton) {
+        float position = framePosition(time);
+        int frame = (int) position;
+        byte[] channelTypes = clip.getChannelTypes();
+
+        for (int c = 0; c < handles.length; c++) {
+            int joint = handles[c];
+            if (joint < 0) continue;
+
+            clip.sampleChannel(c, frame, position - frame, value, 0, scratch);
+            switch (channelTypes[c]) {
+                case AnimationClip.CHANNEL_TRANSLATION -> skeleton.setTranslation(joint, value[0], value[1], value[2]);
+                case AnimationClip.CHANNEL_ROTATION -> skeleton.setRotation(joint, value[0], value[1], value[2], value[3]);
+                case AnimationClip.CHANNEL_SCALE -> skeleton.setScale(joint, value[0], value[1], value[2]);
+            }
+        }
+    }
+
+    /**
+     * Converts a time to a fractional frame index within the clip.
+     */
+    private float framePosition(float time) {
+        float duration = clip.getDuration();
+        float t = time;
+        if (looping && duration > 0f) {
+            t = time % duration;
+            if (t < 0f) t += duration;
+        }
+        return Math.max(0f, Math.min(t * clip.getSampleRate(), clip.getFrameCount() - 1));
+    }
+}
@@ -0,0 +1,58 @@
+package net.modularmods.protogl.animation;
+
+import lombok.Getter;
+
+/**
+ * Memory saved and error introduced by compressing a clip, as measured by {@link ClipCompressor#measure}. Errors are
+ * the largest differences found between the source and compressed clips, sampled at every source key and on a
+ * dense uniform grid.
+ */
+@Getter
+public class CompressionReport {
+
+    private final String clipName;
+    private final long sourceBytes;        // Size of the source clip's keys and tables
+    private final long compressedBytes;    // Size of the compressed clip's keys and tables
+    private final float sampleRate;        // Frames per time unit chosen for the compressed clip
+    private final int frameCount;
+    private final int channelCount;
+    private final int constantChannels;    // Channels stored once instead of per frame
+    private final float maxTranslationError; // Largest translation distance, in model units
+    private final float maxRotationError;    // Largest rotation angle, in radians
+    private final float maxScaleError;       // Largest scale distance
+
+    public CompressionReport(String clipName, long sourceBytes, long compressedBytes, float sampleRate, int frameCount,
+                             int channelCount, int constantChannels, float maxTranslationError, float maxRotationError,
+                             float maxScaleError) {
+        this.clipName = clipName;
+        this.sourceBytes = sourceBytes;
+        this.compressedBytes = compressedBytes;
+        this.sampleRate = sampleRate;
+        this.frameCount = frameCount;
+        this.channelCount = channelCount;
+        this.constantChannels = constantChannels;
+        this.maxTranslationError = maxTranslationError;
+        this.maxRotationError = maxRotationError;
+        this.maxScaleError = maxScaleError;
+    }
+
+    public long getSavedBytes() {
+        return sourceBytes - compressedBytes;
+    }
+
+    /**
+     * Returns how many times smaller the compressed clip is.
+     * @return The source size divided by the compressed size.
+     */
+    public double getCompressionRatio() {
+        return compressedBytes == 0 ? 0 : sourceBytes / (double) compressedBytes;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d -> %d bytes (%.1fx), %d frames at %.2f/unit, %d/%d constant channels, "
+                        + "max error translation %.5f, rotation %.5f rad, scale %.5f",
+                clipName, sourceBytes, compressedBytes, getCompressionRatio(), frameCount, sampleRate,
+                constantChannels, channelCount, maxTranslationError, maxRotationError, maxScaleError);
+    }
+}
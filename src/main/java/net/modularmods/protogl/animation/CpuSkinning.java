@@ -0,0 +1,147 @@
+package net.modularmods.protogl.animation;
+
+import lombok.Getter;
+import net.modularmods.protogl.gl.MeshData;
+import net.modularmods.protogl.loader.data.ModelData;
+import net.modularmods.protogl.loader.data.NodeData;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bind-pose data of one skinned mesh, copied out of its {@link MeshData} into plain arrays so that vertices can be
+ * skinned on the CPU, e.g. on a server without a GL context for hit detection. Immutable once built, so it is shared
+ * by every {@link SkinnedPose} of the model and read concurrently by skinning jobs.
+ * <p>
+ * Each vertex is influenced by 4 joints; influences with a zero weight are skipped.
+ */
+public class CpuSkinning {
+
+    public static final int INFLUENCES = 4; // Joint indices and weights per vertex
+
+    @Getter
+    private final int vertexCount;
+    @Getter
+    private final int maxJoint;        // Highest joint index referenced by a vertex
+    private final float[] positions;   // Bind-pose positions, 3 per vertex
+    private final float[] normals;     // Bind-pose normals, 3 per vertex, null if the mesh has none
+    private final int[] joints;        // Joint indices, 4 per vertex
+    private final float[] weights;     // Joint weights, 4 per vertex
+
+    /**
+     * Copies the bind-pose data of a skinned mesh.
+     * @param data The mesh data, array- or buffer-backed.
+     */
+    public CpuSkinning(MeshData data) {
+        if (!data.hasJoints()) {
+            throw new IllegalArgumentException("Mesh is not skinned");
+        }
+        this.positions = toArray(data.getVertices(), data.getVertexBuffer());
+        this.normals = toArray(data.getNormals(), data.getNormalBuffer());
+        this.weights = toArray(data.getWeights(), data.getWeightBuffer());
+        this.vertexCount = positions.length / 3;
+
+        float[] jointIndices = toArray(data.getJoints(), data.getJointBuffer());
+        this.joints = new int[jointIndices.length];
+        int max = 0;
+        for (int i = 0; i < jointIndices.length; i++) {
+            joints[i] = (int) jointIndices[i];
+            max = Math.max(max, joints[i]);
+        }
+        this.maxJoint = max;
+        if (joints.length < vertexCount * INFLUENCES || weights.length < vertexCount * INFLUENCES) {
+            throw new IllegalArgumentException("Mesh has " + vertexCount + " vertices but not " + INFLUENCES + " influences per vertex");
+        }
+    }
+
+    /**
+     * Builds the CPU skinning data of every skinned mesh of a model, in node order.
+     * @param modelData The decoded model.
+     * @return The skinned meshes, empty if there are none.
+     */
+    public static CpuSkinning[] forModel(ModelData modelData) {
+        List<CpuSkinning> meshes = new ArrayList<>();
+        if (modelData.getNodeData() != null) {
+            for (NodeData node : modelData.getNodeData()) {
+                if (node == null) continue;
+                for (MeshData mesh : node.getMeshes()) {
+                    if (mesh.hasJoints()) meshes.add(new CpuSkinning(mesh));
+                }
+            }
+        }
+        return meshes.toArray(new CpuSkinning[0]);
+    }
+
+    public boolean hasNormals() {
+        return normals != null;
+    }
+
+    /**
+     * Skins a range of vertices: each position is transformed by the weighted sum of its joints' skinning matrices,
+     * and each normal by its upper 3x3 then renormalized. Does not allocate.
+     * @param palette Skinning matrices, 16 floats per joint in column-major order.
+     * @param first First vertex to skin.
+     * @param last Vertex after the last one to skin.
+     * @param outPositions Array receiving 3 floats per vertex, at the same offsets as the source.
+     * @param outNormals Array receiving 3 floats per vertex, or null to skip normals.
+     */
+    public void skin(float[] palette, int first, int last, float[] outPositions, float[] outNormals) {
+        float[] positions = this.positions;
+        float[] normals = outNormals != null ? this.normals : null;
+        int[] joints = this.joints;
+        float[] weights = this.weights;
+
+        for (int v = first; v < last; v++) {
+            // Blend the affine part of the influencing matrices
+            float m00 = 0, m01 = 0, m02 = 0, m10 = 0, m11 = 0, m12 = 0;
+            float m20 = 0, m21 = 0, m22 = 0, m30 = 0, m31 = 0, m32 = 0;
+            for (int i = v * INFLUENCES, end = i + INFLUENCES; i < end; i++) {
+                float w = weights[i];
+                if (w == 0f) continue;
+                int b = joints[i] * 16;
+                m00 += w * palette[b];
+                m01 += w * palette[b + 1];
+                m02 += w * palette[b + 2];
+                m10 += w * palette[b + 4];
+                m11 += w * palette[b + 5];
+                m12 += w * palette[b + 6];
+                m20 += w * palette[b + 8];
+                m21 += w * palette[b + 9];
+                m22 += w * palette[b + 10];
+                m30 += w * palette[b + 12];
+                m31 += w * palette[b + 13];
+                m32 += w * palette[b + 14];
+            }
+
+            int o = v * 3;
+            float x = positions[o];
+            float y = positions[o + 1];
+            float z = positions[o + 2];
+            outPositions[o] = m00 * x + m10 * y + m20 * z + m30;
+            outPositions[o + 1] = m01 * x + m11 * y + m21 * z + m31;
+            outPositions[o + 2] = m02 * x + m12 * y + m22 * z + m32;
+
+            if (normals != null) {
+                x = normals[o];
+                y = normals[o + 1];
+                z = normals[o + 2];
+                float nx = m00 * x + m10 * y + m20 * z;
+                float ny = m01 * x + m11 * y + m21 * z;
+                float nz = m02 * x + m12 * y + m22 * z;
+                float lengthSquared = nx * nx + ny * ny + nz * nz;
+                float scale = lengthSquared > 0f ? (float) (1.0 / Math.sqrt(lengthSquared)) : 0f;
+                outNormals[o] = nx * scale;
+                outNormals[o + 1] = ny * scale;
+                outNormals[o + 2] = nz * scale;
+            }
+        }
+    }
+
+    private static float[] toArray(float[] array, FloatBuffer buffer) {
+        if (array != null || buffer == null) return array;
+        float[] copy = new float[buffer.remaining()];
+        buffer.get(buffer.position(), copy);
+        return copy;
+    }
+}
@@ -0,0 +1,144 @@
+package net.modularmods.protogl.animation;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Job system evaluating many {@link SkinnedPose}s in parallel on a {@link ForkJoinPool}, without the GPU. Evaluation
+ * runs in two phases: poses (sampling and skeleton update) are split across workers by instance, then vertex skinning
+ * is split into chunks of at most {@link #getGrain()} vertices, so a few large meshes spread over every worker as well
+ * as many small ones.
+ * <p>
+ * Jobs only write to their own pose and vertex range, so no locking is involved; the calling thread joins the pool
+ * until everything is done. Chunk bookkeeping is reused between calls.
+ */
+public class PoseEvaluator {
+
+    public static final int DEFAULT_GRAIN = 2048; // Vertices per skinning job
+    private static final int POSES_PER_JOB = 4;
+
+    @Getter
+    private final ForkJoinPool pool;
+    @Getter
+    private final int grain;
+
+    private int chunkCount;
+    private int[] chunkPoses = new int[64];  // Pose index per chunk
+    private int[] chunkMeshes = new int[64]; // Mesh index per chunk
+    private int[] chunkFirsts = new int[64]; // First vertex per chunk
+    private int[] chunkLasts = new int[64];  // Vertex after the last per chunk
+
+    /**
+     * Creates an evaluator on the common pool.
+     */
+    public PoseEvaluator() {
+        this(ForkJoinPool.commonPool(), DEFAULT_GRAIN);
+    }
+
+    /**
+     * Creates an evaluator.
+     * @param pool The pool running the jobs; its parallelism sets the number of threads used.
+     * @param grain Maximum number of vertices skinned by one job.
+     */
+    public PoseEvaluator(ForkJoinPool pool, int grain) {
+        this.pool = pool;
+        this.grain = Math.max(grain, 1);
+    }
+
+    /**
+     * Evaluates every pose, then optionally skins every vertex of every pose.
+     * @param poses The poses, each with its own skeleton and sampler.
+     * @param skin Whether to skin vertices, or only compute the palettes.
+     */
+    public void evaluate(List<SkinnedPose> poses, boolean skin) {
+        if (poses.isEmpty()) return;
+        pool.invoke(new PoseJob(poses, 0, poses.size()));
+        if (skin) {
+            buildChunks(poses);
+            if (chunkCount > 0) {
+                pool.invoke(new SkinJob(poses, 0, chunkCount));
+            }
+        }
+    }
+
+    private void buildChunks(List<SkinnedPose> poses) {
+        chunkCount = 0;
+        for (int p = 0, size = poses.size(); p < size; p++) {
+            SkinnedPose pose = poses.get(p);
+            for (int m = 0, meshes = pose.getMeshCount(); m < meshes; m++) {
+                for (int first = 0, count = pose.getVertexCount(m); first < count; first += grain) {
+                    if (chunkCount == chunkPoses.length) {
+                        int capacity = chunkCount * 2;
+                        chunkPoses = Arrays.copyOf(chunkPoses, capacity);
+                        chunkMeshes = Arrays.copyOf(chunkMeshes, capacity);
+                        chunkFirsts = Arrays.copyOf(chunkFirsts, capacity);
+                        chunkLasts = Arrays.copyOf(chunkLasts, capacity);
+                    }
+                    chunkPoses[chunkCount] = p;
+                    chunkMeshes[chunkCount] = m;
+                    chunkFirsts[chunkCount] = first;
+                    chunkLasts[chunkCount] = Math.min(first + grain, count);
+                    chunkCount++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Evaluates a range of poses, splitting it in halves until it is small enough.
+     */
+    @SuppressWarnings("serial") // Never serialized
+    private static class PoseJob extends RecursiveAction {
+        private final List<SkinnedPose> poses;
+        private final int from;
+        private final int to;
+
+        PoseJob(List<SkinnedPose> poses, int from, int to) {
+            this.poses = poses;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= POSES_PER_JOB) {
+                for (int p = from; p < to; p++) {
+                    poses.get(p).evaluate();
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new PoseJob(poses, from, mid), new PoseJob(poses, mid, to));
+        }
+    }
+
+    /**
+     * Skins a range of chunks, splitting it in halves down to single chunks.
+     */
+    @SuppressWarnings("serial") // Never serialized
+    private class SkinJob extends RecursiveAction {
+        private final List<SkinnedPose> poses;
+        private final int from;
+        private final int to;
+
+        SkinJob(List<SkinnedPose> poses, int from, int to) {
+            this.poses = poses;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                poses.get(chunkPoses[from]).skin(chunkMeshes[from], chunkFirsts[from], chunkLasts[from]);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new SkinJob(poses, from, mid), new SkinJob(poses, mid, to));
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package net.modularmods.protogl.animation;
+
+import lombok.Getter;
+import lombok.Setter;
+import net.modularmods.protogl.model.MeshNode;
+import net.modularmods.protogl.model.ModelInstance;
+import net.modularmods.protogl.model.PModel;
+import net.modularmods.protogl.model.Skeleton;
+import net.modularmods.protogl.model.TransformHierarchy;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * An animated instance registered with an {@link AnimationScheduler}: the mixer computing its pose, the instance or
+ * skeleton receiving it, and the visibility and distance the scheduler picks an update rate from.
+ */
+public class ScheduledAnimation {
+
+    @Getter
+    private final AnimationMixer mixer;
+    @Getter
+    private final ModelInstance instance; // Receives the pose, null when driving a skeleton
+    @Getter
+    private final Skeleton skeleton;      // Receives the pose, null when driving an instance
+
+    @Getter
+    @Setter
+    private boolean visible = true; // Whether any part of the instance is on screen
+    @Getter
+    @Setter
+    private float distance;         // Distance to the camera
+
+    @Getter
+    int interval = 1;          // Frames between evaluations, as chosen by the scheduler for the last frame
+    final int phase;           // Offset spreading evaluations of equal rates over frames
+    final float[] from;        // Pose shown when the last evaluation happened
+    final float[] shown;       // Pose interpolated towards the mixer's pose
+    boolean evaluated;         // Whether a pose was evaluated at least once
+    boolean overdue;           // Due but deferred by the budget
+    int steps;                 // Frames to reach the mixer's pose, 0 when not interpolating
+    int step;                  // Frames since the last evaluation
+    float ahead;               // How far the mixer's time runs ahead of real time
+    private boolean[] relevantNodes; // Nodes a visible mesh depends on, null for every node
+
+    ScheduledAnimation(AnimationMixer mixer, ModelInstance instance, Skeleton skeleton, int phase) {
+        this.mixer = mixer;
+        this.instance = instance;
+        this.skeleton = skeleton;
+        this.phase = phase;
+        this.from = new float[mixer.getPose().length];
+        this.shown = new float[mixer.getPose().length];
+    }
+
+    /**
+     * Restricts evaluation to the nodes visible meshes depend on, i.e. each visible {@link MeshNode} and its
+     * ancestors; subtrees without a visible mesh, such as helper nodes or hidden parts, keep their rest pose. Only
+     * applies to instances, since every joint of a skeleton may deform a skinned mesh.
+     * @param visibleMesh Tests whether the mesh node behind a handle is visible.
+     */
+    public void updateRelevantNodes(IntPredicate visibleMesh) {
+        if (instance == null) return;
+        PModel model = instance.getModel();
+        int[] parents = model.getTransforms().getParents();
+        int count = Math.min(mixer.getNodeCount(), instance.getNodeCount());
+        if (relevantNodes == null || relevantNodes.length != mixer.getNodeCount()) {
+            relevantNodes = new boolean[mixer.getNodeCount()];
+        } else {
+            Arrays.fill(relevantNodes, false);
+        }
+
+        // Children come after their parents, so a reverse pass propagates relevance up in one go
+        for (int i = count - 1; i >= 0; i--) {
+            if (model.node(i) instanceof MeshNode && visibleMesh.test(i)) relevantNodes[i] = true;
+            if (relevantNodes[i] && parents[i] >= 0) relevantNodes[parents[i]] = true;
+        }
+        mixer.setActiveNodes(relevantNodes);
+    }
+
+    /**
+     * Evaluates every node again, undoing {@link #updateRelevantNodes}.
+     */
+    public void clearRelevantNodes() {
+        relevantNodes = null;
+        mixer.setActiveNodes(null);
+    }
+
+    /**
+     * Copies a pose to the instance or skeleton, computing the skeleton's palette.
+     */
+    void apply(float[] pose) {
+        int stride = TransformHierarchy.LOCAL_STRIDE;
+        if (instance != null) {
+            int count = Math.min(mixer.getNodeCount(), instance.getNodeCount());
+            System.arraycopy(pose, 0, instance.getLocals(), 0, count * stride);
+            for (int i = 0; i < count; i++) {
+                if (relevantNodes == null || relevantNodes[i]) instance.markDirty(i);
+            }
+        } else {
+            int count = Math.min(mixer.getNodeCount(), skeleton.getJointCount());
+            System.arraycopy(pose, 0, skeleton.getLocals(), 0, count * stride);
+            skeleton.update();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package net.modularmods.protogl.animation;
+
+import lombok.Getter;
+import lombok.Setter;
+import net.modularmods.protogl.model.Skeleton;
+
+/**
+ * Animated state of one instance evaluated on the CPU: its skeleton, an optional sampler driving it, and
+ * preallocated output arrays receiving its skinned vertices. Evaluated in parallel by a {@link PoseEvaluator}.
+ * <p>
+ * Each pose must have its own skeleton and sampler, since both are mutated during evaluation; the
+ * {@link CpuSkinning} data is shared.
+ */
+public class SkinnedPose {
+
+    @Getter
+    private final Skeleton skeleton;
+    private final CpuSkinning[] meshes;
+    private final float[][] positions; // Skinned positions per mesh
+    private final float[][] normals;   // Skinned normals per mesh, null entries for meshes without normals
+    private final float[] palette;     // Copy of the skeleton's palette, read by skinning jobs
+
+    @Getter
+    @Setter
+    private AnimationSampler sampler; // Applied to the skeleton before each evaluation, null to keep the pose
+
+    @Getter
+    @Setter
+    private float time; // Time at which the sampler is evaluated
+
+    /**
+     * Creates a pose and allocates its outputs.
+     * @param skeleton The skeleton of this instance, e.g. a {@link Skeleton#copy()} of the model's.
+     * @param meshes The skinned meshes of the model, see {@link CpuSkinning#forModel}.
+     */
+    public SkinnedPose(Skeleton skeleton, CpuSkinning[] meshes) {
+        this.skeleton = skeleton;
+        this.meshes = meshes;
+        this.positions = new float[meshes.length][];
+        this.normals = new float[meshes.length][];
+        this.palette = new float[skeleton.getJointCount() * 16];
+        for (int m = 0; m < meshes.length; m++) {
+            if (meshes[m].getMaxJoint() >= skeleton.getJointCount()) {
+                throw new IllegalArgumentException("Mesh " + m + " uses joint " + meshes[m].getMaxJoint()
+                        + " but the skeleton has " + skeleton.getJointCount());
+            }
+            positions[m] = new float[meshes[m].getVertexCount() * 3];
+            normals[m] = meshes[m].hasNormals() ? new float[meshes[m].getVertexCount() * 3] : null;
+        }
+    }
+
+    /**
+     * Samples the animation, if any, and computes the skeleton's palette.
+     */
+    public void evaluate() {
+        if (sampler != null) {
+            sampler.sample(time, skeleton);
+        }
+        skeleton.update();
+        skeleton.getPalette().get(0, palette, 0, palette.length);
+    }
+
+    /**
+     * Skins a range of vertices of one mesh with the palette of the last {@link #evaluate()}.
+     * @param mesh The mesh index.
+     * @param first First vertex to skin.
+     * @param last Vertex after the last one to skin.
+     */
+    public void skin(int mesh, int first, int last) {
+        meshes[mesh].skin(palette, first, last, positions[mesh], normals[mesh]);
+    }
+
+    public int getMeshCount() {
+        return meshes.length;
+    }
+
+    public int getVertexCount(int mesh) {
+        return meshes[mesh].getVertexCount();
+    }
+
+    /**
+     * Returns the skinned positions of a mesh.
+     * @param mesh The mesh index.
+     * @return 3 floats per vertex, overwritten by the next skinning.
+     */
+    public float[] getPositions(int mesh) {
+        return positions[mesh];
+    }
+
+    /**
+     * Returns the skinned normals of a mesh.
+     * @param mesh The mesh index.
+     * @return 3 floats per vertex, or null if the mesh has no normals.
+     */
+    public float[] getNormals(int mesh) {
+        return normals[mesh];
+    }
+}
@@ -0,0 +1,57 @@
+package net.modularmods.protogl.animation;
+
+/**
+ * A weight moving linearly towards a target over time, shared by {@link AnimationState}s and {@link AnimationLayer}s.
+ */
+final class WeightFade {
+
+    private float weight;   // Current weight
+    private float from;     // Weight when the fade started
+    private float to;       // Weight when the fade ends
+    private float duration; // Length of the fade, 0 when not fading
+    private float elapsed;  // Time spent fading
+
+    WeightFade(float weight) {
+        this.weight = weight;
+    }
+
+    float get() {
+        return weight;
+    }
+
+    /**
+     * Sets the weight immediately, cancelling any fade.
+     */
+    void set(float weight) {
+        this.weight = weight;
+        this.duration = 0f;
+    }
+
+    /**
+     * Starts moving the weight to a target; a duration of 0 or less sets it immediately.
+     */
+    void fadeTo(float target, float duration) {
+        if (duration <= 0f) {
+            set(target);
+            return;
+        }
+        this.from = weight;
+        this.to = target;
+        this.duration = duration;
+        this.elapsed = 0f;
+    }
+
+    boolean isFading() {
+        return duration > 0f;
+    }
+
+    void advance(float deltaTime) {
+        if (duration <= 0f) return;
+        elapsed += deltaTime;
+        if (elapsed >= duration) {
+            set(to);
+        } else {
+            weight = from + (to - from) * (elapsed / duration);
+        }
+    }
+}
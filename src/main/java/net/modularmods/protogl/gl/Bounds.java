@@ -0,0 +1,228 @@
+package net.modularmods.protogl.gl;
+
+import lombok.Getter;
+
+import java.nio.FloatBuffer;
+
+/**
+ * Axis-aligned bounding box and bounding sphere of a set of points, in the space of the points (e.g. a mesh's local
+ * space). Empty bounds, holding no point, have their minimum above their maximum and a negative radius.
+ * <p>
+ * Hot code handles boxes as {@value #BOX_STRIDE} floats in flat arrays (minimum x y z, then maximum x y z); the static
+ * helpers clear, merge and transform such boxes without allocating.
+ */
+@Getter
+public class Bounds {
+
+	public static final int BOX_STRIDE = 6;
+
+	public static final Bounds EMPTY = new Bounds(Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY,
+			Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY, 0f, 0f, 0f, -1f);
+
+	private final float minX, minY, minZ; // Box minimum
+	private final float maxX, maxY, maxZ; // Box maximum
+	private final float centerX, centerY, centerZ; // Sphere center, the center of the box
+	private final float radius;           // Sphere radius, negative when empty
+
+	public Bounds(float minX, float minY, float minZ, float maxX, float maxY, float maxZ,
+				  float centerX, float centerY, float centerZ, float radius) {
+		this.minX = minX;
+		this.minY = minY;
+		this.minZ = minZ;
+		this.maxX = maxX;
+		this.maxY = maxY;
+		this.maxZ = maxZ;
+		this.centerX = centerX;
+		this.centerY = centerY;
+		this.centerZ = centerZ;
+		this.radius = radius;
+	}
+
+	/**
+	 * Computes the bounds of vertex positions.
+	 * @param vertices Positions, x y z per vertex.
+	 * @return The bounds, {@link #EMPTY} if there is no vertex.
+	 */
+	public static Bounds of(float[] vertices) {
+		return of(vertices, null, vertices.length / 3);
+	}
+
+	/**
+	 * Computes the bounds of vertex positions held by a buffer, from its position to its limit.
+	 * @param vertices Positions, x y z per vertex.
+	 * @return The bounds, {@link #EMPTY} if there is no vertex.
+	 */
+	public static Bounds of(FloatBuffer vertices) {
+		return of(null, vertices, vertices.remaining() / 3);
+	}
+
+	private static Bounds of(float[] array, FloatBuffer buffer, int vertexCount) {
+		if (vertexCount == 0) return EMPTY;
+		float[] box = new float[BOX_STRIDE];
+		clear(box, 0);
+		int base = buffer != null ? buffer.position() : 0;
+		for (int v = 0; v < vertexCount * 3; v += 3) {
+			for (int k = 0; k < 3; k++) {
+				float value = array != null ? array[v + k] : buffer.get(base + v + k);
+				box[k] = Math.min(box[k], value);
+				box[3 + k] = Math.max(box[3 + k], value);
+			}
+		}
+
+		// The sphere is centered on the box, with the distance to the farthest vertex as radius
+		float cx = (box[0] + box[3]) * 0.5f;
+		float cy = (box[1] + box[4]) * 0.5f;
+		float cz = (box[2] + box[5]) * 0.5f;
+		float radiusSquared = 0f;
+		for (int v = 0; v < vertexCount * 3; v += 3) {
+			float dx = (array != null ? array[v] : buffer.get(base + v)) - cx;
+			float dy = (array != null ? array[v + 1] : buffer.get(base + v + 1)) - cy;
+			float dz = (array != null ? array[v + 2] : buffer.get(base + v + 2)) - cz;
+			radiusSquared = Math.max(radiusSquared, dx * dx + dy * dy + dz * dz);
+		}
+		return new Bounds(box[0], box[1], box[2], box[3], box[4], box[5], cx, cy, cz, (float) Math.sqrt(radiusSquared));
+	}
+
+	/**
+	 * Computes one box per joint around the bind-pose positions of the vertices the joint influences with a positive
+	 * weight. Since a skinned vertex is a weighted average of its positions transformed by each joint, it always lies
+	 * within the union of the joint boxes transformed by the joints' skinning matrices, whatever the pose.
+	 * @param data Skinned mesh data, 4 influences per vertex.
+	 * @return {@value #BOX_STRIDE} floats per joint up to the highest joint referenced, empty for joints influencing
+	 * no vertex, or null if the data is not skinned.
+	 */
+	public static float[] ofJoints(MeshData data) {
+		if (!data.hasJoints()) return null;
+		boolean buffered = data.isBufferBacked();
+		float[] vertices = data.getVertices();
+		float[] joints = data.getJoints();
+		float[] weights = data.getWeights();
+		FloatBuffer vertexBuffer = data.getVertexBuffer();
+		FloatBuffer jointBuffer = data.getJointBuffer();
+		FloatBuffer weightBuffer = data.getWeightBuffer();
+		int vertexCount = data.getVertexCount();
+		int influences = Math.min(buffered ? jointBuffer.remaining() : joints.length,
+				buffered ? weightBuffer.remaining() : weights.length);
+
+		int jointCount = 0;
+		for (int i = 0; i < influences; i++) {
+			jointCount = Math.max(jointCount, (int) (buffered ? jointBuffer.get(jointBuffer.position() + i) : joints[i]) + 1);
+		}
+		float[] boxes = new float[jointCount * BOX_STRIDE];
+		for (int j = 0; j < jointCount; j++) {
+			clear(boxes, j * BOX_STRIDE);
+		}
+
+		for (int i = 0; i < influences; i++) {
+			int v = i / 4;
+			if (v >= vertexCount) break;
+			float weight = buffered ? weightBuffer.get(weightBuffer.position() + i) : weights[i];
+			if (weight <= 0f) continue;
+			int o = (int) (buffered ? jointBuffer.get(jointBuffer.position() + i) : joints[i]) * BOX_STRIDE;
+			if (o < 0) continue;
+			for (int k = 0; k < 3; k++) {
+				float value = buffered ? vertexBuffer.get(vertexBuffer.position() + v * 3 + k) : vertices[v * 3 + k];
+				boxes[o + k] = Math.min(boxes[o + k], value);
+				boxes[o + 3 + k] = Math.max(boxes[o + 3 + k], value);
+			}
+		}
+		return boxes;
+	}
+
+	/**
+	 * Indicates whether these bounds hold no point.
+	 * @return true if empty.
+	 */
+	public boolean isEmpty() {
+		return minX > maxX;
+	}
+
+	/**
+	 * Copies the box into a flat array.
+	 * @param dest The array receiving the box.
+	 * @param offset Offset of the box in dest.
+	 */
+	public void getBox(float[] dest, int offset) {
+		dest[offset] = minX;
+		dest[offset + 1] = minY;
+		dest[offset + 2] = minZ;
+		dest[offset + 3] = maxX;
+		dest[offset + 4] = maxY;
+		dest[offset + 5] = maxZ;
+	}
+
+	/**
+	 * Empties a box, so that merging a box into it copies that box.
+	 * @param boxes The array holding the box.
+	 * @param offset Offset of the box.
+	 */
+	public static void clear(float[] boxes, int offset) {
+		boxes[offset] = boxes[offset + 1] = boxes[offset + 2] = Float.POSITIVE_INFINITY;
+		boxes[offset + 3] = boxes[offset + 4] = boxes[offset + 5] = Float.NEGATIVE_INFINITY;
+	}
+
+	/**
+	 * Indicates whether a box holds no point.
+	 * @param boxes The array holding the box.
+	 * @param offset Offset of the box.
+	 * @return true if empty.
+	 */
+	public static boolean isEmpty(float[] boxes, int offset) {
+		return boxes[offset] > boxes[offset + 3];
+	}
+
+	/**
+	 * Grows a box to enclose another one.
+	 * @param src The array holding the box to enclose.
+	 * @param srcOffset Offset of the box to enclose.
+	 * @param dest The array holding the box to grow.
+	 * @param destOffset Offset of the box to grow.
+	 */
+	public static void union(float[] src, int srcOffset, float[] dest, int destOffset) {
+		for (int k = 0; k < 3; k++) {
+			dest[destOffset + k] = Math.min(dest[destOffset + k], src[srcOffset + k]);
+			dest[destOffset + 3 + k] = Math.max(dest[destOffset + 3 + k], src[srcOffset + 3 + k]);
+		}
+	}
+
+	/**
+	 * Computes the box enclosing a transformed box (Arvo's method): for each axis, the contribution of every matrix
+	 * element is taken at whichever end of the source box minimizes or maximizes it. The source box must not be empty.
+	 * @param matrix The affine matrix, column-major.
+	 * @param matrixOffset Offset of the matrix.
+	 * @param src The array holding the box to transform.
+	 * @param srcOffset Offset of the box to transform.
+	 * @param dest The array receiving the transformed box, which may be src.
+	 * @param destOffset Offset of the transformed box.
+	 */
+	public static void transform(float[] matrix, int matrixOffset, float[] src, int srcOffset, float[] dest, int destOffset) {
+		float minX = src[srcOffset], minY = src[srcOffset + 1], minZ = src[srcOffset + 2];
+		float maxX = src[srcOffset + 3], maxY = src[srcOffset + 4], maxZ = src[srcOffset + 5];
+		for (int row = 0; row < 3; row++) {
+			float min = matrix[matrixOffset + 12 + row];
+			float max = min;
+			float a = matrix[matrixOffset + row];
+			float e = a * minX, f = a * maxX;
+			min += Math.min(e, f);
+			max += Math.max(e, f);
+			a = matrix[matrixOffset + 4 + row];
+			e = a * minY;
+			f = a * maxY;
+			min += Math.min(e, f);
+			max += Math.max(e, f);
+			a = matrix[matrixOffset + 8 + row];
+			e = a * minZ;
+			f = a * maxZ;
+			min += Math.min(e, f);
+			max += Math.max(e, f);
+			dest[destOffset + row] = min;
+			dest[destOffset + 3 + row] = max;
+		}
+	}
+
+	@Override
+	public String toString() {
+		if (isEmpty()) return "empty";
+		return "(" + minX + ", " + minY + ", " + minZ + ") - (" + maxX + ", " + maxY + ", " + maxZ + "), radius " + radius;
+	}
+}
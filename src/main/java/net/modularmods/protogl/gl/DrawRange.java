@@ -0,0 +1,26 @@
+package net.modularmods.protogl.gl;
+
+import lombok.Getter;
+
+/**
+ * A sub-draw inside a merged {@link Mesh}: a run of indices that are relative to a base vertex.
+ */
+@Getter
+public class DrawRange {
+
+    private final int firstIndex;  // Index of the first index of the range in the index buffer
+    private final int indexCount;  // Number of indices to draw
+    private final int baseVertex;  // Value added to every index of the range
+
+    /**
+     * Constructs a draw range.
+     * @param firstIndex Index of the first index of the range in the index buffer.
+     * @param indexCount Number of indices to draw.
+     * @param baseVertex Value added to every index of the range.
+     */
+    public DrawRange(int firstIndex, int indexCount, int baseVertex) {
+        this.firstIndex = firstIndex;
+        this.indexCount = indexCount;
+        this.baseVertex = baseVertex;
+    }
+}
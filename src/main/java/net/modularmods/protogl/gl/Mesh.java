@@ -1,12 +1,20 @@
 package net.modularmods.protogl.gl;
 
 import lombok.Getter;
+import lombok.Setter;
+import net.modularmods.protogl.ProtoGL;
+import net.modularmods.protogl.gl.backend.GraphicsBackend;
 import net.modularmods.protogl.gl.buffers.VertexArrayObject;
+import net.modularmods.protogl.profiling.Counter;
+import net.modularmods.protogl.profiling.Metrics;
 import net.modularmods.protogl.render.IRenderable;
-import org.lwjgl.opengl.GL15;
-import org.lwjgl.opengl.GL30;
+import org.lwjgl.BufferUtils;
 import org.lwjgl.opengl.GL31;
 
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
 import static org.lwjgl.opengl.GL11.*;
 
 /**
@@ -18,11 +26,22 @@ public class Mesh implements IRenderable {
 	private final VertexArrayObject vao; // Encapsulates the vertex array object handling all the vertex data
 
 	@Getter
-	private final int boneTransformsUBO; // Uniform Buffer Object (UBO) for bone transformations if the mesh is skinned
+	private int boneTransformsUBO; // Own UBO for bone transformations, 0 until the first updateBoneTransforms
 
 	public boolean isSkinned; // Flag indicating whether the mesh has skinning enabled
 
-	public int MAX_BONES = 20;
+	public static final int INITIAL_BONE_CAPACITY = 64; // Bones the UBO holds when first created
+
+	@Getter
+	private int boneCapacity; // Number of bone matrices the UBO can hold, grown on demand
+
+	@Getter
+	private DrawRange[] drawRanges; // Sub-draws of a merged mesh, or null for a single draw
+
+	@Getter @Setter
+	private Bounds bounds;       // Bounds of the vertices in the mesh's space, null if unknown (never culled)
+	@Getter @Setter
+	private float[] jointBounds; // Bind-pose box of the vertices of each joint, see MeshData#getJointBounds()
 
 	/**
 	 * Constructs a Mesh with a specified VAO and skinning status.
@@ -32,17 +51,8 @@ public class Mesh implements IRenderable {
 	public Mesh(VertexArrayObject vao, boolean isSkinned) {
 		this.vao = vao;
 		this.isSkinned = isSkinned;
-
-		// Initialize the UBO for bone transformations if the mesh is skinned
-		if (isSkinned) {
-			this.boneTransformsUBO = GL15.glGenBuffers(); // Generate a buffer
-			GL15.glBindBuffer(GL31.GL_UNIFORM_BUFFER, boneTransformsUBO); // Bind the buffer
-			// Allocate buffer memory and initialize it for dynamic data updates
-			GL15.glBufferData(GL31.GL_UNIFORM_BUFFER, (long) MAX_BONES * 16 * Float.BYTES, GL31.GL_DYNAMIC_DRAW);
-			GL15.glBindBuffer(GL31.GL_UNIFORM_BUFFER, 0); // Unbind the buffer
-		} else {
-			this.boneTransformsUBO = -1; // Set to -1 if not skinned
-		}
+		// The bone UBO is created on the first update: meshes skinned through a shared
+		// net.modularmods.protogl.gl.buffers.SkinningBuffer never need one
 	}
 
 	/**
@@ -58,9 +68,10 @@ public class Mesh implements IRenderable {
 	 */
 	public void cleanup() {
 		vao.cleanup(); // Clean up the VAO
-		// If skinned, delete the UBO
-		if (isSkinned) {
-			GL15.glDeleteBuffers(boneTransformsUBO);
+		// If the bone UBO was created, delete it
+		if (boneTransformsUBO != 0) {
+			ProtoGL.getBackend().deleteBuffer(boneTransformsUBO);
+			boneTransformsUBO = 0;
 		}
 	}
 
@@ -73,61 +84,265 @@ public class Mesh implements IRenderable {
 		VertexArrayObject vao = new VertexArrayObject();
 		vao.setActiveAttributeCount(data.getActiveAttributeCount()); // Configure attributes count
 
-		int[] indices = data.getIndices();
+		if (data.isBufferBacked()) {
+			// Upload straight from the buffer views (e.g. a memory-mapped file) without an intermediate copy
+			IntBuffer indices = data.getIndexBuffer();
 
-		if (indices != null) {
-			vao.storeData(data.getVertexCount(), indices, data.getAttributes()); // Store indexed data
+			if (indices != null) {
+				vao.storeData(data.getVertexCount(), indices, data.getAttributeBuffers()); // Store indexed data
+			} else {
+				vao.storeData(data.getVertexCount(), data.getAttributeBuffers()); // Store non-indexed data
+			}
 		} else {
-			vao.storeData(data.getVertexCount(), data.getAttributes()); // Store non-indexed data
+			int[] indices = data.getIndices();
+
+			if (indices != null) {
+				vao.storeData(data.getVertexCount(), indices, data.getAttributes()); // Store indexed data
+			} else {
+				vao.storeData(data.getVertexCount(), data.getAttributes()); // Store non-indexed data
+			}
 		}
 
-		return new Mesh(vao, data.getJoints() != null); // Return new Mesh, isSkinned determined by presence of joints
+		Mesh mesh = new Mesh(vao, data.hasJoints()); // isSkinned determined by presence of joints
+		mesh.copyBounds(data);
+		return mesh;
+	}
+
+	/**
+	 * Factory method to create a Mesh whose vertices are packed into a single interleaved VBO.
+	 * Attributes of the format that the data does not provide are left out.
+	 * @param data MeshData containing all necessary data to configure the VAO and check for skinning.
+	 * @param format The vertex layout, e.g. {@link VertexFormat#PACKED_SKINNED}.
+	 * @return a new Mesh object.
+	 */
+	public static Mesh load(MeshData data, VertexFormat format) {
+		VertexFormat meshFormat = format.forData(data);
+		ByteBuffer vertices = VertexPacker.pack(data, meshFormat);
+
+		VertexArrayObject vao = new VertexArrayObject();
+		if (data.getIndexBuffer() != null) {
+			vao.storeInterleaved(meshFormat, vertices, data.getIndexBuffer()); // Store indexed data
+		} else if (data.getIndices() != null) {
+			vao.storeInterleaved(meshFormat, vertices, data.getIndices()); // Store indexed data
+		} else {
+			vao.storeInterleaved(meshFormat, vertices); // Store non-indexed data
+		}
+
+		Mesh mesh = new Mesh(vao, data.hasJoints());
+		mesh.copyBounds(data);
+		return mesh;
+	}
+
+	/**
+	 * Indicates whether meshes can be merged into one VAO: they must all be indexed and share the same attributes,
+	 * each holding exactly one value per vertex. The loader keeps empty arrays for attributes a file lacks, which
+	 * would otherwise shift the values of the following parts onto the wrong vertices.
+	 * @param parts The meshes to merge.
+	 * @return true if {@link #loadMerged(MeshData[])} accepts them.
+	 */
+	public static boolean canMerge(MeshData[] parts) {
+		if (parts.length < 2) return false;
+		boolean skinned = parts[0].hasJoints();
+		for (MeshData part : parts) {
+			if (part.getIndexCount() == 0
+					|| part.getActiveAttributeCount() != parts[0].getActiveAttributeCount()
+					|| part.hasJoints() != skinned) {
+				return false;
+			}
+			int vertexCount = part.getVertexCount();
+			for (VertexFormat.Semantic semantic : VertexFormat.Semantic.values()) {
+				boolean used = skinned || (semantic != VertexFormat.Semantic.JOINTS && semantic != VertexFormat.Semantic.WEIGHTS);
+				if (used && VertexPacker.attributeLength(part, semantic) != vertexCount * semantic.getComponents()) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Factory method to create a single Mesh from several meshes, so they share one VAO and one set of buffers.
+	 * Each part keeps its own indices and is drawn as a {@link DrawRange} with a base vertex, which keeps indices
+	 * small enough for 16-bit index buffers.
+	 * @param parts The meshes to merge, see {@link #canMerge(MeshData[])}.
+	 * @return a new Mesh drawing every part.
+	 */
+	public static Mesh loadMerged(MeshData[] parts) {
+		if (!canMerge(parts)) {
+			throw new IllegalArgumentException("Meshes cannot be merged");
+		}
+		int vertexCount = 0;
+		int indexCount = 0;
+		for (MeshData part : parts) {
+			vertexCount += part.getVertexCount();
+			indexCount += part.getIndexCount();
+		}
+
+		boolean skinned = parts[0].hasJoints();
+		FloatBuffer vertices = BufferUtils.createFloatBuffer(vertexCount * 3);
+		FloatBuffer uvs = BufferUtils.createFloatBuffer(vertexCount * 2);
+		FloatBuffer normals = BufferUtils.createFloatBuffer(vertexCount * 3);
+		FloatBuffer joints = skinned ? BufferUtils.createFloatBuffer(vertexCount * 4) : null;
+		FloatBuffer weights = skinned ? BufferUtils.createFloatBuffer(vertexCount * 4) : null;
+		IntBuffer indices = BufferUtils.createIntBuffer(indexCount);
+
+		DrawRange[] ranges = new DrawRange[parts.length];
+		int baseVertex = 0;
+		for (int i = 0; i < parts.length; i++) {
+			MeshData part = parts[i];
+			ranges[i] = new DrawRange(indices.position(), part.getIndexCount(), baseVertex);
+			if (part.isBufferBacked()) {
+				vertices.put(part.getVertexBuffer().duplicate());
+				uvs.put(part.getUvBuffer().duplicate());
+				normals.put(part.getNormalBuffer().duplicate());
+				indices.put(part.getIndexBuffer().duplicate());
+				if (skinned) {
+					joints.put(part.getJointBuffer().duplicate());
+					weights.put(part.getWeightBuffer().duplicate());
+				}
+			} else {
+				vertices.put(part.getVertices());
+				uvs.put(part.getUvs());
+				normals.put(part.getNormals());
+				indices.put(part.getIndices());
+				if (skinned) {
+					joints.put(part.getJoints());
+					weights.put(part.getWeights());
+				}
+			}
+			baseVertex += part.getVertexCount();
+		}
+
+		MeshData merged = new MeshData(vertices.flip(), uvs.flip(), normals.flip(), indices.flip(),
+				skinned ? joints.flip() : null, skinned ? weights.flip() : null);
+		Mesh mesh = load(merged);
+		mesh.drawRanges = ranges;
+		return mesh;
+	}
+
+	private void copyBounds(MeshData data) {
+		bounds = data.getBounds();
+		jointBounds = data.getJointBounds();
 	}
 
 	/**
 	 * Updates the UBO for bone transformations with new data.
-	 * @param boneTransforms Array of floats representing the bone transformations.
+	 * @param boneTransforms Array of floats representing the bone transformations, 16 per bone.
 	 */
 	public void updateBoneTransforms(float[] boneTransforms) {
 		if (isSkinned) {
-			GL15.glBindBuffer(GL31.GL_UNIFORM_BUFFER, boneTransformsUBO); // Bind the buffer
-			GL15.glBufferSubData(GL31.GL_UNIFORM_BUFFER, 0, boneTransforms); // Update buffer data
-			GL15.glBindBuffer(GL31.GL_UNIFORM_BUFFER, 0); // Unbind the buffer
+			GraphicsBackend gl = ProtoGL.getBackend();
+			bindBoneBuffer(gl, boneTransforms.length / 16);
+			gl.bufferSubData(GL31.GL_UNIFORM_BUFFER, 0, boneTransforms); // Update buffer data
+			if (Metrics.ENABLED) Metrics.add(Counter.BONE_BYTES_UPLOADED, (long) boneTransforms.length * Float.BYTES);
+			gl.bindBuffer(GL31.GL_UNIFORM_BUFFER, 0); // Unbind the buffer
+		}
+	}
+
+	/**
+	 * Updates the UBO for bone transformations from a matrix palette, e.g.
+	 * {@link net.modularmods.protogl.model.Skeleton#getPalette()}. Only the bones between the buffer's position and limit are uploaded, and the UBO grows if they do not fit.
+	 * The buffer's position is left unchanged.
+	 * @param boneTransforms Buffer holding 16 floats per bone.
+	 */
+	public void updateBoneTransforms(FloatBuffer boneTransforms) {
+		if (isSkinned) {
+			GraphicsBackend gl = ProtoGL.getBackend();
+			bindBoneBuffer(gl, boneTransforms.remaining() / 16);
+			gl.bufferSubData(GL31.GL_UNIFORM_BUFFER, 0, boneTransforms); // Update the used range only
+			if (Metrics.ENABLED) Metrics.add(Counter.BONE_BYTES_UPLOADED, (long) boneTransforms.remaining() * Float.BYTES);
+			gl.bindBuffer(GL31.GL_UNIFORM_BUFFER, 0); // Unbind the buffer
+		}
+	}
+
+	/**
+	 * Binds the bone UBO, creating it or reallocating it if it cannot hold the given number of bones. The shader's
+	 * uniform block must be declared large enough as well; GL guarantees 16 KB per block, i.e. 256 bones.
+	 */
+	private void bindBoneBuffer(GraphicsBackend gl, int bones) {
+		if (boneTransformsUBO == 0) {
+			boneTransformsUBO = gl.genBuffer();
+		}
+		gl.bindBuffer(GL31.GL_UNIFORM_BUFFER, boneTransformsUBO); // Bind the buffer
+		if (bones > boneCapacity) {
+			boneCapacity = Math.max(bones, Math.max(boneCapacity * 2, INITIAL_BONE_CAPACITY));
+			gl.bufferData(GL31.GL_UNIFORM_BUFFER, (long) boneCapacity * 16 * Float.BYTES, GL31.GL_DYNAMIC_DRAW);
 		}
 	}
 
 	/**
-	 * Implements rendering of the mesh according to the IRenderable interface. This includes binding the VAO,
-	 * enabling necessary attributes, and handling the draw call.
+	 * Implements rendering of the mesh according to the IRenderable interface. This includes binding the VAO
+	 * (which holds the enabled attributes) and the bone UBO, and handling the draw call.
 	 */
 	@Override
 	public void render() {
-		int activeAttributeCount = vao.getActiveAttributeCount(); // Store the count in a local variable
+		draw(0);
+	}
 
+	/**
+	 * Draws several instances of the mesh in one call. The VAO must have an
+	 * {@link net.modularmods.protogl.gl.buffers.InstanceBuffer} attached holding one matrix per instance.
+	 * @param instanceCount The number of instances to draw.
+	 */
+	public void renderInstanced(int instanceCount) {
+		if (instanceCount > 0) {
+			draw(instanceCount);
+		}
+	}
+
+	/**
+	 * Binds the mesh state and issues its draw calls.
+	 * @param instanceCount The number of instances, or 0 for a plain draw.
+	 */
+	private void draw(int instanceCount) {
 		vao.bind(); // Bind the VAO
 
-		// If the mesh is skinned, bind the bone transforms UBO
-		if (isSkinned) {
-			GL31.glBindBufferBase(GL31.GL_UNIFORM_BUFFER, 0, boneTransformsUBO); // Bind UBO at binding point 0
+		// If the mesh has its own bone transforms UBO, bind it
+		if (boneTransformsUBO != 0) {
+			ProtoGL.getBackend().bindBufferBase(GL31.GL_UNIFORM_BUFFER, 0, boneTransformsUBO); // Bind UBO at binding point 0
 		}
 
-		// Bind the required attributes
-		for (int i = 0; i < activeAttributeCount; i++) {
-			vao.bindAttribute(i);
+		drawBound(instanceCount);
+
+		// Unbind the bone transforms UBO
+		if (boneTransformsUBO != 0) {
+			ProtoGL.getBackend().bindBufferBase(GL31.GL_UNIFORM_BUFFER, 0, 0); // Unbind UBO
 		}
 
-		glDrawElements(GL_TRIANGLES, vao.getElementCount(), GL_UNSIGNED_INT, 0); // Issue the draw call
+		vao.unbind(); // Unbind the VAO
+	}
 
-		// Unbind the attributes
-		for (int i = 0; i < activeAttributeCount; i++) {
-			vao.unbindAttribute(i);
+	/**
+	 * Issues the draw calls of this mesh, assuming its VAO (and bone matrices, if skinned) are already bound. Used by
+	 * callers that track bound state themselves, such as a render queue.
+	 * @param instanceCount The number of instances, or 0 for a plain draw.
+	 * @return The number of draw calls issued.
+	 */
+	public int drawBound(int instanceCount) {
+		if (Metrics.ENABLED) Metrics.add(Counter.MESHES_DRAWN, 1);
+		GraphicsBackend gl = ProtoGL.getBackend();
+		int indexType = vao.getIndexType();
+		if (drawRanges == null) {
+			// Issue the draw call
+			if (instanceCount == 0) {
+				gl.drawElements(GL_TRIANGLES, vao.getElementCount(), indexType, 0);
+			} else {
+				gl.drawElementsInstanced(GL_TRIANGLES, vao.getElementCount(), indexType, 0, instanceCount);
+			}
+			return 1;
 		}
 
-		// Unbind the bone transforms UBO if the mesh is skinned
-		if (isSkinned) {
-			GL30.glBindBufferBase(GL31.GL_UNIFORM_BUFFER, 0, 0); // Unbind UBO
+		// One draw per merged part, all from the same bound buffers
+		int indexSize = indexType == GL_UNSIGNED_SHORT ? Short.BYTES : Integer.BYTES;
+		for (DrawRange range : drawRanges) {
+			long offset = (long) range.getFirstIndex() * indexSize;
+			if (instanceCount == 0) {
+				gl.drawElementsBaseVertex(GL_TRIANGLES, range.getIndexCount(), indexType, offset, range.getBaseVertex());
+			} else {
+				gl.drawElementsInstancedBaseVertex(GL_TRIANGLES, range.getIndexCount(), indexType, offset,
+						instanceCount, range.getBaseVertex());
+			}
 		}
-
-		vao.unbind(); // Unbind the VAO
+		return drawRanges.length;
 	}
 }
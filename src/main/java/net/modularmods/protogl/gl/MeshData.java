@@ -3,10 +3,16 @@ package net.modularmods.protogl.gl;
 import lombok.Getter;
 import lombok.Setter;
 
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
 /**
  * Encapsulates all necessary data for constructing a mesh, including vertices, texture coordinates (UVs),
  * normals, joint indices for skeletal animation, and weights. Provides various constructors to handle
  * different types of mesh data based on what attributes are needed.
+ * <p>
+ * Mesh data is either array-backed or buffer-backed. Buffer-backed data only holds direct buffer views (for example
+ * slices of a memory-mapped file) which are uploaded as-is, so no geometry is kept on the Java heap.
  */
 public class MeshData {
 	@Getter
@@ -22,9 +28,25 @@ public class MeshData {
 	@Getter
 	private int[] indices;     // Array of indices defining how vertices are connected
 
+	@Getter
+	private FloatBuffer vertexBuffer;  // Direct view of vertex positions (buffer-backed data only)
+	@Getter
+	private FloatBuffer uvBuffer;      // Direct view of UV coordinates (buffer-backed data only)
+	@Getter
+	private FloatBuffer normalBuffer;  // Direct view of normals (buffer-backed data only)
+	@Getter
+	private FloatBuffer jointBuffer;   // Direct view of joint indices (buffer-backed data only)
+	@Getter
+	private FloatBuffer weightBuffer;  // Direct view of weights (buffer-backed data only)
+	@Getter
+	private IntBuffer indexBuffer;     // Direct view of indices (buffer-backed data only)
+
 	@Getter
 	private int activeAttributeCount = 0;  // Count of active attributes provided in the data
 
+	private Bounds bounds;      // Bounds of the vertex positions, computed on first request
+	private float[] jointBounds; // Bind-pose box of the vertices of each joint, computed on first request
+
 	/**
 	 * Constructor for fully animated mesh data with vertices, UVs, normals, indices, joints, and weights.
 	 * @param vertices Array of vertex positions.
@@ -97,12 +119,104 @@ public class MeshData {
 		activeAttributeCount = 1;  // Attribute: vertices
 	}
 
+	/**
+	 * Constructor for buffer-backed mesh data. The buffers are kept as views, their contents are not copied.
+	 * @param vertices Direct buffer of vertex positions.
+	 * @param uvs Direct buffer of UV coordinates.
+	 * @param normals Direct buffer of normal vectors.
+	 * @param indices Direct buffer of indices.
+	 * @param joints Direct buffer of joint indices, or null for static meshes.
+	 * @param weights Direct buffer of weights, or null for static meshes.
+	 */
+	public MeshData(FloatBuffer vertices, FloatBuffer uvs, FloatBuffer normals, IntBuffer indices, FloatBuffer joints, FloatBuffer weights) {
+		this.vertexBuffer = vertices;
+		this.uvBuffer = uvs;
+		this.normalBuffer = normals;
+		this.indexBuffer = indices;
+		this.jointBuffer = joints;
+		this.weightBuffer = weights;
+
+		activeAttributeCount = joints != null ? 5 : 3;
+	}
+
+	/**
+	 * Indicates whether this mesh data holds buffer views instead of arrays.
+	 * @return true if the data is buffer-backed.
+	 */
+	public boolean isBufferBacked() {
+		return vertexBuffer != null;
+	}
+
+	/**
+	 * Indicates whether this mesh data carries skinning attributes.
+	 * @return true if joint indices are present.
+	 */
+	public boolean hasJoints() {
+		return joints != null || jointBuffer != null;
+	}
+
+	/**
+	 * Computes the bounds of the vertices and, for skinned data, of the vertices of each joint, so that later requests
+	 * do not have to. Called by the loader while decoding, off the GL thread.
+	 */
+	public void computeBounds() {
+		getBounds();
+		getJointBounds();
+	}
+
+	/**
+	 * Returns the bounds of the vertex positions, computing them on the first call.
+	 * @return the bounds, {@link Bounds#EMPTY} for data without vertices.
+	 */
+	public Bounds getBounds() {
+		if (bounds == null) {
+			bounds = isBufferBacked() ? Bounds.of(vertexBuffer) : Bounds.of(vertices);
+		}
+		return bounds;
+	}
+
+	/**
+	 * Returns the bind-pose box of the vertices influenced by each joint, computing them on the first call. Skinned
+	 * vertices stay within these boxes transformed by the skinning matrices, see {@link Bounds#ofJoints(MeshData)}.
+	 * @return {@value Bounds#BOX_STRIDE} floats per joint, or null if the data is not skinned.
+	 */
+	public float[] getJointBounds() {
+		if (jointBounds == null && hasJoints()) {
+			jointBounds = Bounds.ofJoints(this);
+		}
+		return jointBounds;
+	}
+
 	/**
 	 * Computes and returns the number of vertices based on the array length.
 	 * @return the count of vertices (each vertex represented by three floats for x, y, z coordinates).
 	 */
 	public int getVertexCount() {
-		return vertices.length / 3;
+		return (vertices != null ? vertices.length : vertexBuffer.remaining()) / 3;
+	}
+
+	/**
+	 * Returns the number of indices, or 0 if the mesh is not indexed.
+	 * @return the index count.
+	 */
+	public int getIndexCount() {
+		if (indices != null) return indices.length;
+		return indexBuffer != null ? indexBuffer.remaining() : 0;
+	}
+
+	/**
+	 * Returns the size of the geometry held by this mesh data, i.e. the number of bytes uploaded to the GPU
+	 * with the default separate-VBO layout.
+	 * @return the size in bytes.
+	 */
+	public long getSizeInBytes() {
+		long size = (long) getIndexCount() * Integer.BYTES;
+		if (isBufferBacked()) {
+			for (FloatBuffer attribute : getAttributeBuffers()) size += (long) attribute.remaining() * Float.BYTES;
+		} else {
+			for (float[] attribute : getAttributes()) size += (long) attribute.length * Float.BYTES;
+		}
+		return size;
 	}
 
 	/**
@@ -121,4 +235,21 @@ public class MeshData {
 
 		return attributes;  // Returns the organized array of attributes for processing
 	}
+
+	/**
+	 * Collects and returns all attribute buffers of buffer-backed data.
+	 * @return an array of buffers, one per attribute, in the same order as {@link #getAttributes()}.
+	 */
+	public FloatBuffer[] getAttributeBuffers() {
+		FloatBuffer[] attributes = new FloatBuffer[activeAttributeCount];
+
+		int curIndex = 0;
+		if (vertexBuffer != null) attributes[curIndex++] = vertexBuffer;
+		if (uvBuffer != null) attributes[curIndex++] = uvBuffer;
+		if (normalBuffer != null) attributes[curIndex++] = normalBuffer;
+		if (jointBuffer != null) attributes[curIndex++] = jointBuffer;
+		if (weightBuffer != null) attributes[curIndex++] = weightBuffer;
+
+		return attributes;
+	}
 }
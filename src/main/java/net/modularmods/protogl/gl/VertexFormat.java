@@ -0,0 +1,208 @@
+package net.modularmods.protogl.gl;
+
+import lombok.Getter;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL30;
+import org.lwjgl.opengl.GL33;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Describes an interleaved vertex layout: which attributes a vertex holds, how each one is encoded and where it sits
+ * inside the vertex. Attribute locations follow the same order as {@link MeshData#getAttributes()} (position, UVs,
+ * normals, joint indices, weights) so shaders work with both the separate and the interleaved layout.
+ * <p>
+ * Packed encodings trade precision for size: a skinned vertex takes 64 bytes as plain floats but only 28 bytes with
+ * {@link #PACKED_SKINNED}. Shaders reading {@link Encoding#OCTAHEDRAL_SNORM16} normals must decode them.
+ */
+@Getter
+public class VertexFormat {
+
+    /**
+     * Vertex attributes, in attribute location order.
+     */
+    public enum Semantic {
+        POSITION(3),
+        UV(2),
+        NORMAL(3),
+        JOINTS(4),
+        WEIGHTS(4);
+
+        @Getter
+        private final int components; // Number of source floats per vertex in MeshData
+
+        Semantic(int components) {
+            this.components = components;
+        }
+    }
+
+    /**
+     * How an attribute is stored in the vertex buffer.
+     */
+    public enum Encoding {
+        FLOAT(GL11.GL_FLOAT, false, false),
+        HALF_FLOAT(GL30.GL_HALF_FLOAT, false, false),
+        INT_2_10_10_10_REV(GL33.GL_INT_2_10_10_10_REV, true, false), // Signed normalized xyz, 10 bits each
+        OCTAHEDRAL_SNORM16(GL11.GL_SHORT, true, false),               // Unit vector folded onto 2 signed shorts
+        UNSIGNED_BYTE_NORM(GL11.GL_UNSIGNED_BYTE, true, false),
+        UNSIGNED_SHORT_NORM(GL11.GL_UNSIGNED_SHORT, true, false),
+        UNSIGNED_BYTE_INT(GL11.GL_UNSIGNED_BYTE, false, true),        // Integer attribute, read with glVertexAttribIPointer
+        UNSIGNED_SHORT_INT(GL11.GL_UNSIGNED_SHORT, false, true);
+
+        @Getter
+        private final int glType;
+        @Getter
+        private final boolean normalized;
+        @Getter
+        private final boolean integer;
+
+        Encoding(int glType, boolean normalized, boolean integer) {
+            this.glType = glType;
+            this.normalized = normalized;
+            this.integer = integer;
+        }
+
+        /**
+         * Returns the number of components the GL attribute pointer declares for a semantic in this encoding.
+         */
+        public int getGlComponents(Semantic semantic) {
+            return switch (this) {
+                case INT_2_10_10_10_REV -> 4;
+                case OCTAHEDRAL_SNORM16 -> 2;
+                default -> semantic.getComponents();
+            };
+        }
+
+        /**
+         * Returns the number of bytes a semantic takes in this encoding, padded to 4-byte alignment.
+         */
+        public int getSize(Semantic semantic) {
+            int size = switch (this) {
+                case FLOAT -> semantic.getComponents() * Float.BYTES;
+                case HALF_FLOAT, UNSIGNED_SHORT_NORM, UNSIGNED_SHORT_INT -> semantic.getComponents() * Short.BYTES;
+                case INT_2_10_10_10_REV, OCTAHEDRAL_SNORM16 -> Integer.BYTES;
+                case UNSIGNED_BYTE_NORM, UNSIGNED_BYTE_INT -> semantic.getComponents();
+            };
+            return (size + 3) & ~3;
+        }
+    }
+
+    /**
+     * A single attribute of the format.
+     */
+    @Getter
+    public static class Element {
+        private final Semantic semantic;
+        private final Encoding encoding;
+        private final int offset; // Byte offset inside the vertex
+
+        Element(Semantic semantic, Encoding encoding, int offset) {
+            this.semantic = semantic;
+            this.encoding = encoding;
+            this.offset = offset;
+        }
+
+        /**
+         * Returns the attribute location of this element.
+         * @return the location.
+         */
+        public int getLocation() {
+            return semantic.ordinal();
+        }
+    }
+
+    /** Every attribute as 32-bit floats, equivalent to the separate-VBO layout. */
+    public static final VertexFormat FLOATS = builder()
+            .add(Semantic.POSITION, Encoding.FLOAT)
+            .add(Semantic.UV, Encoding.FLOAT)
+            .add(Semantic.NORMAL, Encoding.FLOAT)
+            .add(Semantic.JOINTS, Encoding.FLOAT)
+            .add(Semantic.WEIGHTS, Encoding.FLOAT)
+            .build();
+
+    /** Float positions, half-float UVs, 10_10_10_2 normals: 20 bytes per vertex. */
+    public static final VertexFormat PACKED_STATIC = builder()
+            .add(Semantic.POSITION, Encoding.FLOAT)
+            .add(Semantic.UV, Encoding.HALF_FLOAT)
+            .add(Semantic.NORMAL, Encoding.INT_2_10_10_10_REV)
+            .build();
+
+    /** {@link #PACKED_STATIC} plus byte joint indices and normalized byte weights: 28 bytes per vertex. */
+    public static final VertexFormat PACKED_SKINNED = builder()
+            .add(Semantic.POSITION, Encoding.FLOAT)
+            .add(Semantic.UV, Encoding.HALF_FLOAT)
+            .add(Semantic.NORMAL, Encoding.INT_2_10_10_10_REV)
+            .add(Semantic.JOINTS, Encoding.UNSIGNED_BYTE_INT)
+            .add(Semantic.WEIGHTS, Encoding.UNSIGNED_BYTE_NORM)
+            .build();
+
+    private final List<Element> elements; // Elements in location order
+    private final int stride;              // Size of one vertex in bytes
+
+    private VertexFormat(List<Element> elements, int stride) {
+        this.elements = Collections.unmodifiableList(elements);
+        this.stride = stride;
+    }
+
+    /**
+     * Returns the element for a semantic.
+     * @param semantic The semantic.
+     * @return the element, or null if the format does not contain it.
+     */
+    public Element getElement(Semantic semantic) {
+        for (Element element : elements) {
+            if (element.semantic == semantic) return element;
+        }
+        return null;
+    }
+
+    /**
+     * Restricts this format to the attributes a mesh actually provides.
+     * @param data The mesh data.
+     * @return a format holding only the attributes present in the data.
+     */
+    public VertexFormat forData(MeshData data) {
+        Builder builder = builder();
+        for (Element element : elements) {
+            if (VertexPacker.hasAttribute(data, element.semantic)) {
+                builder.add(element.semantic, element.encoding);
+            }
+        }
+        return builder.build();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Collects elements and assigns their offsets. Elements must be added in location order.
+     */
+    public static class Builder {
+        private final List<Element> elements = new ArrayList<>();
+        private int offset;
+
+        public Builder add(Semantic semantic, Encoding encoding) {
+            if (!elements.isEmpty() && elements.get(elements.size() - 1).semantic.ordinal() >= semantic.ordinal()) {
+                throw new IllegalArgumentException("Elements must be added in location order: " + semantic);
+            }
+            if (encoding == Encoding.INT_2_10_10_10_REV || encoding == Encoding.OCTAHEDRAL_SNORM16) {
+                if (semantic != Semantic.NORMAL) {
+                    throw new IllegalArgumentException(encoding + " can only encode normals");
+                }
+            }
+            if (encoding.isInteger() && semantic != Semantic.JOINTS) {
+                throw new IllegalArgumentException(encoding + " can only encode joint indices");
+            }
+            elements.add(new Element(semantic, encoding, offset));
+            offset += encoding.getSize(semantic);
+            return this;
+        }
+
+        public VertexFormat build() {
+            return new VertexFormat(new ArrayList<>(elements), offset);
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package net.modularmods.protogl.gl;
+
+import org.lwjgl.BufferUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+/**
+ * Packs the attributes of a {@link MeshData} into a single interleaved buffer following a {@link VertexFormat}.
+ * Packing is pure CPU work and needs no GL context.
+ */
+public final class VertexPacker {
+
+    private VertexPacker() {
+    }
+
+    /**
+     * Packs mesh data into a new direct, native-order buffer.
+     * @param data The mesh data to pack. Every attribute of the format must be present for every vertex.
+     * @param format The vertex layout.
+     * @return a buffer of {@code vertexCount * stride} bytes, positioned at 0.
+     * @throws IllegalArgumentException if an attribute of the format is missing or too short.
+     */
+    public static ByteBuffer pack(MeshData data, VertexFormat format) {
+        ByteBuffer dst = BufferUtils.createByteBuffer(data.getVertexCount() * format.getStride());
+        pack(data, format, dst);
+        return dst;
+    }
+
+    /**
+     * Packs mesh data into an existing buffer, starting at its current position, without moving it.
+     * @param data The mesh data to pack. Every attribute of the format must be present for every vertex.
+     * @param format The vertex layout.
+     * @param dst The destination buffer, with at least {@code vertexCount * stride} bytes remaining.
+     * @throws IllegalArgumentException if an attribute of the format is missing or too short.
+     */
+    public static void pack(MeshData data, VertexFormat format, ByteBuffer dst) {
+        int vertexCount = data.getVertexCount();
+        int stride = format.getStride();
+        int base = dst.position();
+
+        for (VertexFormat.Element element : format.getElements()) {
+            VertexFormat.Semantic semantic = element.getSemantic();
+            FloatBuffer src = getAttribute(data, semantic);
+            int components = semantic.getComponents();
+            if (src == null) {
+                throw new IllegalArgumentException("Mesh data has no " + semantic + " attribute");
+            }
+            if (src.remaining() < vertexCount * components) {
+                throw new IllegalArgumentException("Mesh data has " + src.remaining() + " " + semantic + " floats for "
+                        + vertexCount + " vertices, " + vertexCount * components + " are needed");
+            }
+            int srcBase = src.position();
+
+            for (int v = 0; v < vertexCount; v++) {
+                int s = srcBase + v * components;
+                int d = base + v * stride + element.getOffset();
+                switch (element.getEncoding()) {
+                    case FLOAT -> {
+                        for (int c = 0; c < components; c++) dst.putFloat(d + c * Float.BYTES, src.get(s + c));
+                    }
+                    case HALF_FLOAT -> {
+                        for (int c = 0; c < components; c++) dst.putShort(d + c * Short.BYTES, floatToHalf(src.get(s + c)));
+                    }
+                    case INT_2_10_10_10_REV -> dst.putInt(d, packSnorm10(src.get(s), src.get(s + 1), src.get(s + 2)));
+                    case OCTAHEDRAL_SNORM16 -> dst.putInt(d, packOctahedral(src.get(s), src.get(s + 1), src.get(s + 2)));
+                    case UNSIGNED_BYTE_NORM -> {
+                        if (semantic == VertexFormat.Semantic.WEIGHTS) {
+                            putWeightsUnorm8(src, s, dst, d);
+                        } else {
+                            for (int c = 0; c < components; c++) dst.put(d + c, (byte) unorm(src.get(s + c), 255));
+                        }
+                    }
+                    case UNSIGNED_SHORT_NORM -> {
+                        for (int c = 0; c < components; c++) dst.putShort(d + c * Short.BYTES, (short) unorm(src.get(s + c), 65535));
+                    }
+                    case UNSIGNED_BYTE_INT -> {
+                        for (int c = 0; c < components; c++) dst.put(d + c, (byte) checkIndex(src.get(s + c), 255));
+                    }
+                    case UNSIGNED_SHORT_INT -> {
+                        for (int c = 0; c < components; c++) dst.putShort(d + c * Short.BYTES, (short) checkIndex(src.get(s + c), 65535));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Indicates whether mesh data provides an attribute for every vertex. The loader keeps empty arrays for attributes
+     * a file lacks, so an attribute that is there but too short counts as absent.
+     * @param data The mesh data.
+     * @param semantic The attribute.
+     * @return true if present with at least {@code vertexCount * components} floats.
+     */
+    public static boolean hasAttribute(MeshData data, VertexFormat.Semantic semantic) {
+        return attributeLength(data, semantic) >= data.getVertexCount() * semantic.getComponents();
+    }
+
+    /**
+     * Returns the number of floats an attribute holds from its position.
+     * @param data The mesh data.
+     * @param semantic The attribute.
+     * @return the float count, or -1 if the mesh data has no such attribute.
+     */
+    static int attributeLength(MeshData data, VertexFormat.Semantic semantic) {
+        FloatBuffer src = getAttribute(data, semantic);
+        return src != null ? src.remaining() : -1;
+    }
+
+    /**
+     * Returns an attribute as a buffer, wrapping the array of array-backed data without copying it.
+     */
+    private static FloatBuffer getAttribute(MeshData data, VertexFormat.Semantic semantic) {
+        if (data.isBufferBacked()) {
+            return switch (semantic) {
+                case POSITION -> data.getVertexBuffer();
+                case UV -> data.getUvBuffer();
+                case NORMAL -> data.getNormalBuffer();
+                case JOINTS -> data.getJointBuffer();
+                case WEIGHTS -> data.getWeightBuffer();
+            };
+        }
+        float[] array = switch (semantic) {
+            case POSITION -> data.getVertices();
+            case UV -> data.getUvs();
+            case NORMAL -> data.getNormals();
+            case JOINTS -> data.getJoints();
+            case WEIGHTS -> data.getWeights();
+        };
+        return array != null ? FloatBuffer.wrap(array) : null;
+    }
+
+    /**
+     * Quantizes four weights to bytes, keeping their sum at exactly 255 so skinning stays normalized.
+     */
+    private static void putWeightsUnorm8(FloatBuffer src, int s, ByteBuffer dst, int d) {
+        int sum = 0;
+        int largest = 0;
+        int[] quantized = {unorm(src.get(s), 255), unorm(src.get(s + 1), 255), unorm(src.get(s + 2), 255), unorm(src.get(s + 3), 255)};
+        for (int c = 0; c < 4; c++) {
+            sum += quantized[c];
+            if (quantized[c] > quantized[largest]) largest = c;
+        }
+        if (sum > 0) {
+            quantized[largest] = Math.max(0, Math.min(255, quantized[largest] + 255 - sum));
+        }
+        for (int c = 0; c < 4; c++) {
+            dst.put(d + c, (byte) quantized[c]);
+        }
+    }
+
+    private static int unorm(float value, int max) {
+        return Math.round(Math.max(0f, Math.min(1f, value)) * max);
+    }
+
+    private static int checkIndex(float value, int max) {
+        int index = (int) value;
+        if (index < 0 || index > max) {
+            throw new IllegalArgumentException("Joint index " + index + " does not fit in the vertex format");
+        }
+        return index;
+    }
+
+    private static int snorm(float value, int max) {
+        return Math.round(Math.max(-1f, Math.min(1f, value)) * max);
+    }
+
+    /**
+     * Packs a unit vector as GL_INT_2_10_10_10_REV (x in the lowest bits, w = 0).
+     */
+    public static int packSnorm10(float x, float y, float z) {
+        return (snorm(x, 511) & 0x3FF) | (snorm(y, 511) & 0x3FF) << 10 | (snorm(z, 511) & 0x3FF) << 20;
+    }
+
+    /**
+     * Packs a unit vector with octahedral mapping into two signed normalized shorts (x in the low half).
+     */
+    public static int packOctahedral(float x, float y, float z) {
+        float invL1 = 1f / (Math.abs(x) + Math.abs(y) + Math.abs(z));
+        float u = x * invL1;
+        float v = y * invL1;
+        if (z < 0f) {
+            // Fold the lower hemisphere over the diagonals
+            float fu = (1f - Math.abs(v)) * (u >= 0f ? 1f : -1f);
+            float fv = (1f - Math.abs(u)) * (v >= 0f ? 1f : -1f);
+            u = fu;
+            v = fv;
+        }
+        return (snorm(u, 32767) & 0xFFFF) | snorm(v, 32767) << 16;
+    }
+
+    /**
+     * Converts a float to IEEE 754 half precision, rounding to nearest even.
+     */
+    public static short floatToHalf(float value) {
+        int bits = Float.floatToRawIntBits(value);
+        int sign = (bits >>> 16) & 0x8000;
+        int exponent = ((bits >>> 23) & 0xFF) - 127 + 15;
+        int mantissa = bits & 0x7FFFFF;
+
+        if (exponent >= 31) {
+            // Overflow, infinity or NaN
+            boolean nan = ((bits >>> 23) & 0xFF) == 0xFF && mantissa != 0;
+            return (short) (sign | 0x7C00 | (nan ? 0x200 : 0));
+        }
+        if (exponent <= 0) {
+            if (exponent < -10) return (short) sign; // Too small, flush to signed zero
+            // Subnormal half
+            mantissa |= 0x800000;
+            int shift = 14 - exponent;
+            int half = mantissa >> shift;
+            int rest = mantissa & ((1 << shift) - 1);
+            int halfway = 1 << (shift - 1);
+            if (rest > halfway || (rest == halfway && (half & 1) != 0)) half++;
+            return (short) (sign | half);
+        }
+        int half = sign | exponent << 10 | mantissa >> 13;
+        int rest = mantissa & 0x1FFF;
+        if (rest > 0x1000 || (rest == 0x1000 && (half & 1) != 0)) half++; // May carry into the exponent, which is correct
+        return (short) half;
+    }
+}
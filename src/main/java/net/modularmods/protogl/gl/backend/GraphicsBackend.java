@@ -0,0 +1,107 @@
+package net.modularmods.protogl.gl.backend;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * The GL entry points used by ProtoGL. Every class touching the GPU goes through the backend returned by
+ * {@link net.modularmods.protogl.ProtoGL#getBackend()} instead of calling LWJGL directly, so that loading, batching
+ * and submission can run without a GL context against a {@link RecordingBackend}.
+ * <p>
+ * Methods mirror their OpenGL counterparts and take the same enum values.
+ */
+public interface GraphicsBackend {
+
+    // Buffers
+
+    int genBuffer();
+
+    void bindBuffer(int target, int buffer);
+
+    void bufferData(int target, ByteBuffer data, int usage);
+
+    void bufferData(int target, FloatBuffer data, int usage);
+
+    void bufferData(int target, IntBuffer data, int usage);
+
+    void bufferData(int target, ShortBuffer data, int usage);
+
+    /**
+     * Allocates uninitialized storage, orphaning any previous storage of the bound buffer.
+     */
+    void bufferData(int target, long size, int usage);
+
+    void bufferSubData(int target, long offset, ByteBuffer data);
+
+    void bufferSubData(int target, long offset, FloatBuffer data);
+
+    void bufferSubData(int target, long offset, float[] data);
+
+    void bindBufferBase(int target, int index, int buffer);
+
+    void bindBufferRange(int target, int index, int buffer, long offset, long size);
+
+    /**
+     * Allocates immutable storage for the bound buffer. Only available when {@link #supportsBufferStorage()}.
+     */
+    void bufferStorage(int target, long size, int flags);
+
+    /**
+     * Maps a range of the bound buffer into client memory.
+     * @return The mapped memory, or null if mapping failed.
+     */
+    ByteBuffer mapBufferRange(int target, long offset, long length, int access);
+
+    boolean unmapBuffer(int target);
+
+    void deleteBuffer(int buffer);
+
+    // Synchronization
+
+    long fenceSync(int condition, int flags);
+
+    int clientWaitSync(long sync, int flags, long timeout);
+
+    void deleteSync(long sync);
+
+    // Queries
+
+    int getInteger(int pname);
+
+    /**
+     * Indicates whether immutable buffer storage and persistent mapping (GL 4.4 or ARB_buffer_storage) are available.
+     */
+    boolean supportsBufferStorage();
+
+    // Vertex arrays
+
+    int genVertexArray();
+
+    void bindVertexArray(int array);
+
+    void deleteVertexArray(int array);
+
+    void enableVertexAttribArray(int index);
+
+    void disableVertexAttribArray(int index);
+
+    void vertexAttribPointer(int index, int size, int type, boolean normalized, int stride, long offset);
+
+    void vertexAttribIPointer(int index, int size, int type, int stride, long offset);
+
+    void vertexAttribDivisor(int index, int divisor);
+
+    // Drawing
+
+    void useProgram(int program);
+
+    void drawElements(int mode, int count, int type, long offset);
+
+    void drawElementsBaseVertex(int mode, int count, int type, long offset, int baseVertex);
+
+    void drawElementsInstanced(int mode, int count, int type, long offset, int instanceCount);
+
+    void drawElementsInstancedBaseVertex(int mode, int count, int type, long offset, int instanceCount, int baseVertex);
+}
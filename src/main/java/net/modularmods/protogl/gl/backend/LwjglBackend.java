@@ -0,0 +1,193 @@
+package net.modularmods.protogl.gl.backend;
+
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL20;
+import org.lwjgl.opengl.GL30;
+import org.lwjgl.opengl.GL31;
+import org.lwjgl.opengl.GL32;
+import org.lwjgl.opengl.GL33;
+import org.lwjgl.opengl.GL44;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * Backend forwarding every call to LWJGL's OpenGL bindings. Requires a current GL 3.3 context; buffer storage
+ * additionally requires GL 4.4 or ARB_buffer_storage.
+ */
+public class LwjglBackend implements GraphicsBackend {
+
+    @Override
+    public int genBuffer() {
+        return GL15.glGenBuffers();
+    }
+
+    @Override
+    public void bindBuffer(int target, int buffer) {
+        GL15.glBindBuffer(target, buffer);
+    }
+
+    @Override
+    public void bufferData(int target, ByteBuffer data, int usage) {
+        GL15.glBufferData(target, data, usage);
+    }
+
+    @Override
+    public void bufferData(int target, FloatBuffer data, int usage) {
+        GL15.glBufferData(target, data, usage);
+    }
+
+    @Override
+    public void bufferData(int target, IntBuffer data, int usage) {
+        GL15.glBufferData(target, data, usage);
+    }
+
+    @Override
+    public void bufferData(int target, ShortBuffer data, int usage) {
+        GL15.glBufferData(target, data, usage);
+    }
+
+    @Override
+    public void bufferData(int target, long size, int usage) {
+        GL15.glBufferData(target, size, usage);
+    }
+
+    @Override
+    public void bufferSubData(int target, long offset, ByteBuffer data) {
+        GL15.glBufferSubData(target, offset, data);
+    }
+
+    @Override
+    public void bufferSubData(int target, long offset, FloatBuffer data) {
+        GL15.glBufferSubData(target, offset, data);
+    }
+
+    @Override
+    public void bufferSubData(int target, long offset, float[] data) {
+        GL15.glBufferSubData(target, offset, data);
+    }
+
+    @Override
+    public void bindBufferBase(int target, int index, int buffer) {
+        GL30.glBindBufferBase(target, index, buffer);
+    }
+
+    @Override
+    public void bindBufferRange(int target, int index, int buffer, long offset, long size) {
+        GL30.glBindBufferRange(target, index, buffer, offset, size);
+    }
+
+    @Override
+    public void bufferStorage(int target, long size, int flags) {
+        GL44.glBufferStorage(target, size, flags);
+    }
+
+    @Override
+    public ByteBuffer mapBufferRange(int target, long offset, long length, int access) {
+        return GL30.glMapBufferRange(target, offset, length, access);
+    }
+
+    @Override
+    public boolean unmapBuffer(int target) {
+        return GL15.glUnmapBuffer(target);
+    }
+
+    @Override
+    public void deleteBuffer(int buffer) {
+        GL15.glDeleteBuffers(buffer);
+    }
+
+    @Override
+    public long fenceSync(int condition, int flags) {
+        return GL32.glFenceSync(condition, flags);
+    }
+
+    @Override
+    public int clientWaitSync(long sync, int flags, long timeout) {
+        return GL32.glClientWaitSync(sync, flags, timeout);
+    }
+
+    @Override
+    public void deleteSync(long sync) {
+        GL32.glDeleteSync(sync);
+    }
+
+    @Override
+    public int getInteger(int pname) {
+        return GL11.glGetInteger(pname);
+    }
+
+    @Override
+    public boolean supportsBufferStorage() {
+        return GL.getCapabilities().glBufferStorage != 0L;
+    }
+
+    @Override
+    public int genVertexArray() {
+        return GL30.glGenVertexArrays();
+    }
+
+    @Override
+    public void bindVertexArray(int array) {
+        GL30.glBindVertexArray(array);
+    }
+
+    @Override
+    public void deleteVertexArray(int array) {
+        GL30.glDeleteVertexArrays(array);
+    }
+
+    @Override
+    public void enableVertexAttribArray(int index) {
+        GL20.glEnableVertexAttribArray(index);
+    }
+
+    @Override
+    public void disableVertexAttribArray(int index) {
+        GL20.glDisableVertexAttribArray(index);
+    }
+
+    @Override
+    public void vertexAttribPointer(int index, int size, int type, boolean normalized, int stride, long offset) {
+        GL20.glVertexAttribPointer(index, size, type, normalized, stride, offset);
+    }
+
+    @Override
+    public void vertexAttribIPointer(int index, int size, int type, int stride, long offset) {
+        GL30.glVertexAttribIPointer(index, size, type, stride, offset);
+    }
+
+    @Override
+    public void vertexAttribDivisor(int index, int divisor) {
+        GL33.glVertexAttribDivisor(index, divisor);
+    }
+
+    @Override
+    public void useProgram(int program) {
+        GL20.glUseProgram(program);
+    }
+
+    @Override
+    public void drawElements(int mode, int count, int type, long offset) {
+        GL15.glDrawElements(mode, count, type, offset);
+    }
+
+    @Override
+    public void drawElementsBaseVertex(int mode, int count, int type, long offset, int baseVertex) {
+        GL32.glDrawElementsBaseVertex(mode, count, type, offset, baseVertex);
+    }
+
+    @Override
+    public void drawElementsInstanced(int mode, int count, int type, long offset, int instanceCount) {
+        GL31.glDrawElementsInstanced(mode, count, type, offset, instanceCount);
+    }
+
+    @Override
+    public void drawElementsInstancedBaseVertex(int mode, int count, int type, long offset, int instanceCount, int baseVertex) {
+        GL32.glDrawElementsInstancedBaseVertex(mode, count, type, offset, instanceCount, baseVertex);
+    }
+}
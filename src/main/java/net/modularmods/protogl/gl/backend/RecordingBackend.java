@@ -0,0 +1,332 @@
+package net.modularmods.protogl.gl.backend;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.lwjgl.opengl.GL31;
+import org.lwjgl.opengl.GL32;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Headless backend that performs no GL work and only records what would have been done: calls per entry point,
+ * bytes uploaded, draw calls and redundant binds (binding the object that is already bound). Object names are
+ * allocated sequentially and live ones are tracked, so leaks show up as {@link #getLiveBuffers()} staying above zero.
+ * <p>
+ * Bind tracking is global: buffer bindings are not saved per VAO as a real context would for element buffers.
+ */
+public class RecordingBackend implements GraphicsBackend {
+
+    /**
+     * Recorded entry points.
+     */
+    public enum Call {
+        GEN_BUFFER, BIND_BUFFER, BUFFER_DATA, BUFFER_SUB_DATA, BIND_BUFFER_BASE, BIND_BUFFER_RANGE, BUFFER_STORAGE,
+        MAP_BUFFER, UNMAP_BUFFER, DELETE_BUFFER, FENCE_SYNC, CLIENT_WAIT_SYNC, DELETE_SYNC, GET_INTEGER,
+        GEN_VERTEX_ARRAY, BIND_VERTEX_ARRAY, DELETE_VERTEX_ARRAY,
+        ENABLE_VERTEX_ATTRIB_ARRAY, DISABLE_VERTEX_ATTRIB_ARRAY, VERTEX_ATTRIB_POINTER, VERTEX_ATTRIB_DIVISOR,
+        USE_PROGRAM, DRAW
+    }
+
+    private final long[] calls = new long[Call.values().length];
+    @Getter
+    private long bytesUploaded;   // Bytes passed to bufferData and bufferSubData
+    @Getter
+    private long drawCalls;       // Draw calls of any kind
+    @Getter
+    private long instancesDrawn;  // Instances drawn, 1 per non-instanced draw
+    @Getter
+    private long redundantBinds;  // Binds of the object already bound
+
+    @Getter
+    @Setter
+    private boolean bufferStorageSupported = true; // Answer of supportsBufferStorage()
+    @Getter
+    @Setter
+    private int uniformBufferOffsetAlignment = 256; // Answer for GL_UNIFORM_BUFFER_OFFSET_ALIGNMENT
+
+    private int nextName = 1;
+    private final Set<Integer> liveBuffers = new HashSet<>();
+    private final Set<Integer> liveVertexArrays = new HashSet<>();
+    private final Map<Integer, Integer> boundBuffers = new HashMap<>();     // Target -> buffer
+    private final Map<Long, Integer> boundBufferBases = new HashMap<>();    // Target and index -> buffer
+    private final Set<Long> liveSyncs = new HashSet<>();
+    private int boundVertexArray;
+    private int boundProgram;
+
+    /**
+     * Returns how many times an entry point was called since the last reset.
+     * @param call The entry point.
+     * @return The call count.
+     */
+    public long getCalls(Call call) {
+        return calls[call.ordinal()];
+    }
+
+    /**
+     * Returns the number of calls to every entry point since the last reset.
+     * @return The total call count.
+     */
+    public long getTotalCalls() {
+        long total = 0;
+        for (long count : calls) total += count;
+        return total;
+    }
+
+    public int getLiveBuffers() {
+        return liveBuffers.size();
+    }
+
+    public int getLiveVertexArrays() {
+        return liveVertexArrays.size();
+    }
+
+    public int getLiveSyncs() {
+        return liveSyncs.size();
+    }
+
+    /**
+     * Clears the counters. Live objects and bound state are kept.
+     */
+    public void reset() {
+        Arrays.fill(calls, 0);
+        bytesUploaded = 0;
+        drawCalls = 0;
+        instancesDrawn = 0;
+        redundantBinds = 0;
+    }
+
+    private void record(Call call) {
+        calls[call.ordinal()]++;
+    }
+
+    private void upload(long bytes) {
+        bytesUploaded += bytes;
+    }
+
+    private void draw(int instanceCount) {
+        record(Call.DRAW);
+        drawCalls++;
+        instancesDrawn += instanceCount;
+    }
+
+    @Override
+    public int genBuffer() {
+        record(Call.GEN_BUFFER);
+        int name = nextName++;
+        liveBuffers.add(name);
+        return name;
+    }
+
+    @Override
+    public void bindBuffer(int target, int buffer) {
+        record(Call.BIND_BUFFER);
+        Integer previous = boundBuffers.put(target, buffer);
+        if (previous != null && previous == buffer) redundantBinds++;
+    }
+
+    @Override
+    public void bufferData(int target, ByteBuffer data, int usage) {
+        record(Call.BUFFER_DATA);
+        upload(data.remaining());
+    }
+
+    @Override
+    public void bufferData(int target, FloatBuffer data, int usage) {
+        record(Call.BUFFER_DATA);
+        upload((long) data.remaining() * Float.BYTES);
+    }
+
+    @Override
+    public void bufferData(int target, IntBuffer data, int usage) {
+        record(Call.BUFFER_DATA);
+        upload((long) data.remaining() * Integer.BYTES);
+    }
+
+    @Override
+    public void bufferData(int target, ShortBuffer data, int usage) {
+        record(Call.BUFFER_DATA);
+        upload((long) data.remaining() * Short.BYTES);
+    }
+
+    @Override
+    public void bufferData(int target, long size, int usage) {
+        record(Call.BUFFER_DATA); // Allocation only, nothing is transferred
+    }
+
+    @Override
+    public void bufferSubData(int target, long offset, ByteBuffer data) {
+        record(Call.BUFFER_SUB_DATA);
+        upload(data.remaining());
+    }
+
+    @Override
+    public void bufferSubData(int target, long offset, FloatBuffer data) {
+        record(Call.BUFFER_SUB_DATA);
+        upload((long) data.remaining() * Float.BYTES);
+    }
+
+    @Override
+    public void bufferSubData(int target, long offset, float[] data) {
+        record(Call.BUFFER_SUB_DATA);
+        upload((long) data.length * Float.BYTES);
+    }
+
+    @Override
+    public void bindBufferBase(int target, int index, int buffer) {
+        record(Call.BIND_BUFFER_BASE);
+        Integer previous = boundBufferBases.put((long) target << 32 | index, buffer);
+        if (previous != null && previous == buffer) redundantBinds++;
+    }
+
+    @Override
+    public void bindBufferRange(int target, int index, int buffer, long offset, long size) {
+        record(Call.BIND_BUFFER_RANGE);
+        boundBufferBases.put((long) target << 32 | index, buffer); // Ranges differ, so never counted as redundant
+    }
+
+    @Override
+    public void bufferStorage(int target, long size, int flags) {
+        record(Call.BUFFER_STORAGE); // Allocation only, nothing is transferred
+    }
+
+    /**
+     * Returns fresh client memory standing in for the mapped range. Writes to it are not counted as uploads.
+     */
+    @Override
+    public ByteBuffer mapBufferRange(int target, long offset, long length, int access) {
+        record(Call.MAP_BUFFER);
+        return ByteBuffer.allocateDirect((int) length).order(ByteOrder.nativeOrder());
+    }
+
+    @Override
+    public boolean unmapBuffer(int target) {
+        record(Call.UNMAP_BUFFER);
+        return true;
+    }
+
+    @Override
+    public void deleteBuffer(int buffer) {
+        record(Call.DELETE_BUFFER);
+        liveBuffers.remove(buffer);
+    }
+
+    @Override
+    public long fenceSync(int condition, int flags) {
+        record(Call.FENCE_SYNC);
+        long sync = nextName++;
+        liveSyncs.add(sync);
+        return sync;
+    }
+
+    /**
+     * Nothing is ever pending, so every fence is already signaled.
+     */
+    @Override
+    public int clientWaitSync(long sync, int flags, long timeout) {
+        record(Call.CLIENT_WAIT_SYNC);
+        return GL32.GL_ALREADY_SIGNALED;
+    }
+
+    @Override
+    public void deleteSync(long sync) {
+        record(Call.DELETE_SYNC);
+        liveSyncs.remove(sync);
+    }
+
+    @Override
+    public int getInteger(int pname) {
+        record(Call.GET_INTEGER);
+        return switch (pname) {
+            case GL31.GL_UNIFORM_BUFFER_OFFSET_ALIGNMENT -> uniformBufferOffsetAlignment;
+            case GL31.GL_MAX_UNIFORM_BLOCK_SIZE -> 16384; // The minimum guaranteed by GL
+            default -> 0;
+        };
+    }
+
+    @Override
+    public boolean supportsBufferStorage() {
+        return bufferStorageSupported;
+    }
+
+    @Override
+    public int genVertexArray() {
+        record(Call.GEN_VERTEX_ARRAY);
+        int name = nextName++;
+        liveVertexArrays.add(name);
+        return name;
+    }
+
+    @Override
+    public void bindVertexArray(int array) {
+        record(Call.BIND_VERTEX_ARRAY);
+        if (array == boundVertexArray) redundantBinds++;
+        boundVertexArray = array;
+    }
+
+    @Override
+    public void deleteVertexArray(int array) {
+        record(Call.DELETE_VERTEX_ARRAY);
+        liveVertexArrays.remove(array);
+    }
+
+    @Override
+    public void enableVertexAttribArray(int index) {
+        record(Call.ENABLE_VERTEX_ATTRIB_ARRAY);
+    }
+
+    @Override
+    public void disableVertexAttribArray(int index) {
+        record(Call.DISABLE_VERTEX_ATTRIB_ARRAY);
+    }
+
+    @Override
+    public void vertexAttribPointer(int index, int size, int type, boolean normalized, int stride, long offset) {
+        record(Call.VERTEX_ATTRIB_POINTER);
+    }
+
+    @Override
+    public void vertexAttribIPointer(int index, int size, int type, int stride, long offset) {
+        record(Call.VERTEX_ATTRIB_POINTER);
+    }
+
+    @Override
+    public void vertexAttribDivisor(int index, int divisor) {
+        record(Call.VERTEX_ATTRIB_DIVISOR);
+    }
+
+    @Override
+    public void useProgram(int program) {
+        record(Call.USE_PROGRAM);
+        if (program == boundProgram) redundantBinds++;
+        boundProgram = program;
+    }
+
+    @Override
+    public void drawElements(int mode, int count, int type, long offset) {
+        draw(1);
+    }
+
+    @Override
+    public void drawElementsBaseVertex(int mode, int count, int type, long offset, int baseVertex) {
+        draw(1);
+    }
+
+    @Override
+    public void drawElementsInstanced(int mode, int count, int type, long offset, int instanceCount) {
+        draw(instanceCount);
+    }
+
+    @Override
+    public void drawElementsInstancedBaseVertex(int mode, int count, int type, long offset, int instanceCount, int baseVertex) {
+        draw(instanceCount);
+    }
+}
@@ -0,0 +1,64 @@
+package net.modularmods.protogl.gl.buffers;
+
+import net.modularmods.protogl.ProtoGL;
+import net.modularmods.protogl.gl.backend.GraphicsBackend;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL30;
+
+import java.nio.FloatBuffer;
+
+/**
+ * Stream buffer holding one 4x4 matrix per instance, read by instanced draws through attribute locations
+ * {@value #MATRIX_LOCATION} to {@value #MATRIX_LOCATION} + 3 (one column per location, advanced once per instance).
+ * Every upload orphans the previous storage, so the driver never waits for draws still reading it.
+ */
+public class InstanceBuffer {
+	public static final int MATRIX_LOCATION = 5; // First attribute location of the instance matrix, after the vertex attributes
+	private static final int MATRIX_BYTES = 16 * Float.BYTES;
+
+	private final VertexBufferObject vbo = new VertexBufferObject(GL15.GL_ARRAY_BUFFER); // Per-instance matrices
+	private long capacity; // Allocated size in bytes, grown to the largest upload
+
+	/**
+	 * Replaces the contents of the buffer, orphaning the previous storage.
+	 * @param matrices Column-major matrices, from the buffer's position to its limit.
+	 */
+	public void upload(FloatBuffer matrices) {
+		long size = (long) matrices.remaining() * Float.BYTES;
+		if (size > capacity) {
+			capacity = Math.max(size, capacity * 2);
+		}
+		vbo.bind();
+		ProtoGL.getBackend().bufferData(GL15.GL_ARRAY_BUFFER, capacity, GL15.GL_STREAM_DRAW); // Orphan the old storage
+		ProtoGL.getBackend().bufferSubData(GL15.GL_ARRAY_BUFFER, 0, matrices);
+		vbo.unbind();
+	}
+
+	/**
+	 * Points the instance matrix attributes of a VAO at this buffer. Done once per VAO.
+	 * @param vao The VAO to draw instanced.
+	 */
+	public void attach(VertexArrayObject vao) {
+		if (vao.getInstanceBuffer() == this) return;
+
+		GraphicsBackend gl = ProtoGL.getBackend();
+		vao.bind();
+		vbo.bind();
+		for (int column = 0; column < 4; column++) {
+			int location = MATRIX_LOCATION + column;
+			gl.vertexAttribPointer(location, 4, GL30.GL_FLOAT, false, MATRIX_BYTES, (long) column * 4 * Float.BYTES);
+			gl.enableVertexAttribArray(location);
+			gl.vertexAttribDivisor(location, 1); // Advance once per instance instead of once per vertex
+		}
+		vbo.unbind();
+		vao.unbind();
+		vao.setInstanceBuffer(this);
+	}
+
+	/**
+	 * Deletes the buffer. VAOs attached to it must not be drawn instanced afterwards.
+	 */
+	public void cleanup() {
+		vbo.cleanup();
+	}
+}
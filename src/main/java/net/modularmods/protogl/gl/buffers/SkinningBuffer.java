@@ -0,0 +1,190 @@
+package net.modularmods.protogl.gl.buffers;
+
+import lombok.Getter;
+import net.modularmods.protogl.ProtoGL;
+import net.modularmods.protogl.gl.backend.GraphicsBackend;
+import net.modularmods.protogl.profiling.Counter;
+import net.modularmods.protogl.profiling.Metrics;
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL30;
+import org.lwjgl.opengl.GL31;
+import org.lwjgl.opengl.GL32;
+import org.lwjgl.opengl.GL44;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * One uniform buffer shared by every skinned draw of a frame, replacing a UBO and an upload per mesh. Each frame,
+ * the matrix palettes of all skinned instances are written one after the other, and each draw binds its palette
+ * with {@code glBindBufferRange} at binding point {@value #BINDING}.
+ * <p>
+ * The buffer is split into {@value #FRAMES} regions used in turn, so the CPU writes one frame while the GPU may still
+ * read the two previous ones. A fence is placed after each frame, and a region is only rewritten once its fence has
+ * signaled. When buffer storage is supported the whole buffer is persistently mapped and palettes are written
+ * straight into it; otherwise they are staged in client memory and uploaded with a single {@code glBufferSubData}
+ * per frame.
+ * <p>
+ * Palettes start at multiples of {@code GL_UNIFORM_BUFFER_OFFSET_ALIGNMENT}. A bound range is limited by
+ * {@code GL_MAX_UNIFORM_BLOCK_SIZE}, at least 16 KB (256 bones).
+ */
+public class SkinningBuffer {
+	public static final int BINDING = 0; // Uniform block binding of the bone matrices, as used by Mesh
+	public static final int FRAMES = 3;  // Regions in the ring
+	private static final long WAIT_TIMEOUT = 1_000_000_000L; // Nanoseconds waited per fence attempt
+
+	private final int buffer;
+	@Getter
+	private final int alignment;     // Required offset alignment of bound ranges, in bytes
+	@Getter
+	private final int frameCapacity; // Size of each region in bytes, a multiple of the alignment
+	@Getter
+	private final boolean persistent; // Whether palettes are written to persistently mapped memory
+	private final ByteBuffer memory;  // Mapped buffer (whole ring) or staging copy (one region)
+	private final FloatBuffer floats; // Float view of memory
+	private final long[] fences = new long[FRAMES]; // Fence of the last frame written to each region, 0 for none
+
+	private int frame = -1;     // Region being written, -1 before the first frame
+	private int writeOffset;    // Bytes used in the current region, aligned
+	private int uploadedOffset; // Bytes of the current region already uploaded, staging only
+	@Getter
+	private long stalls;        // Frames that had to wait for the GPU to release their region
+
+	/**
+	 * Creates the buffer. Must be called on the GL thread.
+	 * @param frameCapacity Bytes available per frame, rounded up to the alignment. Each palette takes
+	 *                      {@code bones * 64} bytes padded to the alignment (at most 256 bytes on common drivers).
+	 */
+	public SkinningBuffer(int frameCapacity) {
+		GraphicsBackend gl = ProtoGL.getBackend();
+		this.alignment = Math.max(gl.getInteger(GL31.GL_UNIFORM_BUFFER_OFFSET_ALIGNMENT), Float.BYTES);
+		this.frameCapacity = align(frameCapacity);
+		long size = (long) this.frameCapacity * FRAMES;
+
+		this.buffer = gl.genBuffer();
+		gl.bindBuffer(GL31.GL_UNIFORM_BUFFER, buffer);
+		ByteBuffer mapped = null;
+		if (gl.supportsBufferStorage()) {
+			int flags = GL30.GL_MAP_WRITE_BIT | GL44.GL_MAP_PERSISTENT_BIT | GL44.GL_MAP_COHERENT_BIT;
+			// Dynamic storage keeps glBufferSubData usable if mapping fails
+			gl.bufferStorage(GL31.GL_UNIFORM_BUFFER, size, flags | GL44.GL_DYNAMIC_STORAGE_BIT);
+			mapped = gl.mapBufferRange(GL31.GL_UNIFORM_BUFFER, 0, size, flags);
+		} else {
+			gl.bufferData(GL31.GL_UNIFORM_BUFFER, size, GL15.GL_STREAM_DRAW);
+		}
+		gl.bindBuffer(GL31.GL_UNIFORM_BUFFER, 0);
+
+		this.persistent = mapped != null;
+		this.memory = persistent ? mapped.order(ByteOrder.nativeOrder()) : BufferUtils.createByteBuffer(this.frameCapacity);
+		this.floats = memory.asFloatBuffer();
+	}
+
+	/**
+	 * Starts a new frame: fences the region of the previous frame and moves to the next region, waiting until the GPU
+	 * has finished reading it. Must be called on the GL thread, after the previous frame's draws were issued.
+	 */
+	public void beginFrame() {
+		GraphicsBackend gl = ProtoGL.getBackend();
+		if (frame >= 0) {
+			upload();
+			fences[frame] = gl.fenceSync(GL32.GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+		}
+		frame = (frame + 1) % FRAMES;
+
+		long fence = fences[frame];
+		if (fence != 0) {
+			int status = gl.clientWaitSync(fence, 0, 0);
+			if (status == GL32.GL_TIMEOUT_EXPIRED) {
+				stalls++;
+				do {
+					status = gl.clientWaitSync(fence, GL32.GL_SYNC_FLUSH_COMMANDS_BIT, WAIT_TIMEOUT);
+				} while (status == GL32.GL_TIMEOUT_EXPIRED);
+			}
+			gl.deleteSync(fence);
+			fences[frame] = 0;
+		}
+		writeOffset = 0;
+		uploadedOffset = 0;
+	}
+
+	/**
+	 * Appends a matrix palette to the current frame.
+	 * @param palette Bone matrices from the buffer's position to its limit, e.g.
+	 *                {@link net.modularmods.protogl.model.Skeleton#getPalette()}. Its position is left unchanged.
+	 * @return The offset of the palette in the buffer, to pass to {@link #bind(int, int)}.
+	 */
+	public int write(FloatBuffer palette) {
+		if (frame < 0) {
+			throw new IllegalStateException("beginFrame() was not called");
+		}
+		int count = palette.remaining();
+		int bytes = count * Float.BYTES;
+		if (writeOffset + bytes > frameCapacity) {
+			throw new IllegalStateException("Skinning buffer full: " + (writeOffset + bytes) + " of " + frameCapacity + " bytes");
+		}
+		int offset = writeOffset;
+		int base = persistent ? frame * frameCapacity : 0;
+		floats.put((base + offset) / Float.BYTES, palette, palette.position(), count);
+		writeOffset = Math.min(align(offset + bytes), frameCapacity);
+		return frame * frameCapacity + offset;
+	}
+
+	/**
+	 * Makes the palettes written so far visible to the GPU. Staged palettes are uploaded in one call; mapped ones
+	 * need nothing. Called by {@link #beginFrame()} and by render queues before drawing.
+	 */
+	public void upload() {
+		if (persistent || writeOffset == uploadedOffset) return;
+
+		GraphicsBackend gl = ProtoGL.getBackend();
+		gl.bindBuffer(GL31.GL_UNIFORM_BUFFER, buffer);
+		memory.limit(writeOffset).position(uploadedOffset);
+		gl.bufferSubData(GL31.GL_UNIFORM_BUFFER, (long) frame * frameCapacity + uploadedOffset, memory);
+		memory.clear();
+		gl.bindBuffer(GL31.GL_UNIFORM_BUFFER, 0);
+		if (Metrics.ENABLED) Metrics.add(Counter.BONE_BYTES_UPLOADED, writeOffset - uploadedOffset);
+		uploadedOffset = writeOffset;
+	}
+
+	/**
+	 * Binds a palette to binding point {@value #BINDING}.
+	 * @param offset The offset returned by {@link #write(FloatBuffer)}.
+	 * @param size The size of the palette in bytes.
+	 */
+	public void bind(int offset, int size) {
+		ProtoGL.getBackend().bindBufferRange(GL31.GL_UNIFORM_BUFFER, BINDING, buffer, offset, size);
+	}
+
+	/**
+	 * Returns the number of bytes written in the current frame, including alignment padding.
+	 * @return The used size of the current region.
+	 */
+	public int getFrameSize() {
+		return writeOffset;
+	}
+
+	/**
+	 * Deletes the buffer and its pending fences.
+	 */
+	public void cleanup() {
+		GraphicsBackend gl = ProtoGL.getBackend();
+		for (int i = 0; i < FRAMES; i++) {
+			if (fences[i] != 0) {
+				gl.deleteSync(fences[i]);
+				fences[i] = 0;
+			}
+		}
+		if (persistent) {
+			gl.bindBuffer(GL31.GL_UNIFORM_BUFFER, buffer);
+			gl.unmapBuffer(GL31.GL_UNIFORM_BUFFER);
+			gl.bindBuffer(GL31.GL_UNIFORM_BUFFER, 0);
+		}
+		gl.deleteBuffer(buffer);
+	}
+
+	private int align(int bytes) {
+		return (bytes + alignment - 1) / alignment * alignment;
+	}
+}
@@ -2,7 +2,15 @@ package net.modularmods.protogl.gl.buffers;
 
 import lombok.Getter;
 import lombok.Setter;
+import net.modularmods.protogl.ProtoGL;
+import net.modularmods.protogl.gl.VertexFormat;
+import org.lwjgl.BufferUtils;
 import org.lwjgl.opengl.GL30;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -11,6 +19,9 @@ import java.util.List;
  * in OpenGL. This includes creating, binding, unbinding, and cleaning up VAOs and their associated VBOs.
  */
 public class VertexArrayObject {
+	private static final int MAX_SHORT_INDEX = 0xFFFF; // Largest index a GL_UNSIGNED_SHORT index buffer can hold
+
+	@Getter
 	private final int id;  // Unique identifier for the OpenGL Vertex Array Object
 
 	private List<VertexBufferObject> vbos = new ArrayList<>(); // List to store all associated Vertex Buffer Objects (VBOs)
@@ -29,26 +40,41 @@ public class VertexArrayObject {
 	@Setter
 	private int activeAttributeCount; // Keeps track of the number of active vertex attributes
 
+	/**
+	 * -- GETTER --
+	 *  Returns the GL type of the stored indices, to pass to glDrawElements.
+	 */
+	@Getter
+	private int indexType = GL30.GL_UNSIGNED_INT; // Narrowest type able to hold every index, chosen on upload
+
+	@Getter
+	private VertexFormat format; // Layout of the interleaved vertex buffer, or null when each attribute has its own VBO
+
+	@Getter
+	@Setter
+	private InstanceBuffer instanceBuffer; // Buffer the instance matrix attributes point at, or null if never drawn instanced
+
 	/**
 	 * Constructor that creates a new Vertex Array Object (VAO) and generates its unique ID via OpenGL.
 	 */
 	public VertexArrayObject() {
-		id = GL30.glGenVertexArrays();
+		id = ProtoGL.getBackend().genVertexArray();
 	}
 
     /**
 	 * Binds this VertexArrayObject so that it becomes the current VAO in use.
 	 */
 	public void bind() {
-		GL30.glBindVertexArray(id);
+		ProtoGL.getBackend().bindVertexArray(id);
 	}
 
 	/**
-	 * Enables a vertex attribute.
+	 * Enables a vertex attribute. Attributes are enabled once when their data is stored, as part of the VAO state,
+	 * so drawing does not need to call this.
 	 * @param attribute the index of the attribute to enable
 	 */
 	public void bindAttribute(int attribute) {
-		GL30.glEnableVertexAttribArray(attribute);
+		ProtoGL.getBackend().enableVertexAttribArray(attribute);
 	}
 
 	/**
@@ -56,14 +82,14 @@ public class VertexArrayObject {
 	 * @param attribute the index of the attribute to disable
 	 */
 	public void unbindAttribute(int attribute) {
-		GL30.glDisableVertexAttribArray(attribute);
+		ProtoGL.getBackend().disableVertexAttribArray(attribute);
 	}
 
 	/**
 	 * Unbinds the current VertexArrayObject, making no VAO currently bound.
 	 */
 	public void unbind() {
-		GL30.glBindVertexArray(0);
+		ProtoGL.getBackend().bindVertexArray(0);
 	}
 
 	/**
@@ -71,8 +97,10 @@ public class VertexArrayObject {
 	 */
 	public void cleanup() {
 		vbos.forEach(VertexBufferObject::cleanup); // Cleanup all VBOs
-		indexVBO.cleanup(); // Cleanup the index VBO specifically
-		GL30.glDeleteVertexArrays(id); // Finally, delete the VAO
+		if (indexVBO != null) {
+			indexVBO.cleanup(); // Cleanup the index VBO specifically
+		}
+		ProtoGL.getBackend().deleteVertexArray(id); // Finally, delete the VAO
 	}
 
 	/**
@@ -103,6 +131,105 @@ public class VertexArrayObject {
 		elementCount = vertexCount; // Set the element count to the number of vertices
 	}
 
+	/**
+	 * Stores vertex data along with index data for indexed drawing, uploading directly from the given buffers.
+	 * @param vertexCount the count of vertices
+	 * @param indices the direct buffer of indices used for indexed drawing
+	 * @param data the direct buffers of vertex data corresponding to various attributes
+	 */
+	public void storeData(int vertexCount, IntBuffer indices, FloatBuffer... data) {
+		bind(); // Bind the VAO for data storage
+		storeVertexData(vertexCount, data); // Store the vertex data
+		storeIndices(indices); // Store the indices data
+		unbind(); // Unbind the VAO
+
+		elementCount = indices.remaining(); // Update the element count to the number of indices
+	}
+
+	/**
+	 * Stores only vertex data without index data, uploading directly from the given buffers.
+	 * @param vertexCount the count of vertices
+	 * @param data the direct buffers of vertex data for various attributes
+	 */
+	public void storeData(int vertexCount, FloatBuffer... data) {
+		bind(); // Bind the VAO
+		storeVertexData(vertexCount, data); // Store the vertex data
+		unbind(); // Unbind the VAO
+
+		elementCount = vertexCount; // Set the element count to the number of vertices
+	}
+
+	/**
+	 * Stores interleaved vertex data in a single VBO, along with index data for indexed drawing.
+	 * @param format the layout of the interleaved vertices
+	 * @param vertices the packed vertices, see {@link net.modularmods.protogl.gl.VertexPacker}
+	 * @param indices the indices used for indexed drawing
+	 */
+	public void storeInterleaved(VertexFormat format, ByteBuffer vertices, int[] indices) {
+		bind(); // Bind the VAO for data storage
+		storeInterleavedVertexData(format, vertices); // Store the vertex data
+		storeIndices(indices); // Store the indices data
+		unbind(); // Unbind the VAO
+
+		elementCount = indices.length; // Update the element count to the number of indices
+	}
+
+	/**
+	 * Stores interleaved vertex data in a single VBO, along with index data from a direct buffer.
+	 * @param format the layout of the interleaved vertices
+	 * @param vertices the packed vertices, see {@link net.modularmods.protogl.gl.VertexPacker}
+	 * @param indices the direct buffer of indices used for indexed drawing
+	 */
+	public void storeInterleaved(VertexFormat format, ByteBuffer vertices, IntBuffer indices) {
+		bind(); // Bind the VAO for data storage
+		storeInterleavedVertexData(format, vertices); // Store the vertex data
+		storeIndices(indices); // Store the indices data
+		unbind(); // Unbind the VAO
+
+		elementCount = indices.remaining(); // Update the element count to the number of indices
+	}
+
+	/**
+	 * Stores interleaved vertex data in a single VBO without index data.
+	 * @param format the layout of the interleaved vertices
+	 * @param vertices the packed vertices, see {@link net.modularmods.protogl.gl.VertexPacker}
+	 */
+	public void storeInterleaved(VertexFormat format, ByteBuffer vertices) {
+		bind(); // Bind the VAO
+		storeInterleavedVertexData(format, vertices); // Store the vertex data
+		unbind(); // Unbind the VAO
+
+		elementCount = vertices.remaining() / format.getStride(); // Set the element count to the number of vertices
+	}
+
+	/**
+	 * Uploads interleaved vertices into one VBO and points every attribute of the format into it.
+	 * @param format the layout of the interleaved vertices
+	 * @param vertices the packed vertices
+	 */
+	private void storeInterleavedVertexData(VertexFormat format, ByteBuffer vertices) {
+		VertexBufferObject vbo = new VertexBufferObject(GL30.GL_ARRAY_BUFFER);
+		vbos.add(vbo);
+		vbo.bind();
+		vbo.storeData(vertices);
+
+		for (VertexFormat.Element element : format.getElements()) {
+			VertexFormat.Encoding encoding = element.getEncoding();
+			int size = encoding.getGlComponents(element.getSemantic());
+			if (encoding.isInteger()) {
+				// Integer attributes (joint indices) must not be converted to floats
+				ProtoGL.getBackend().vertexAttribIPointer(element.getLocation(), size, encoding.getGlType(), format.getStride(), element.getOffset());
+			} else {
+				ProtoGL.getBackend().vertexAttribPointer(element.getLocation(), size, encoding.getGlType(), encoding.isNormalized(), format.getStride(), element.getOffset());
+			}
+			ProtoGL.getBackend().enableVertexAttribArray(element.getLocation()); // Recorded in the VAO, so draws need not enable it
+		}
+
+		vbo.unbind();
+		this.format = format;
+		this.activeAttributeCount = format.getElements().size();
+	}
+
 	/**
 	 * Stores vertex data into the VAO by creating VBOs for each attribute and configuring them.
 	 * @param vertexCount the number of vertices
@@ -116,6 +243,45 @@ public class VertexArrayObject {
 		}
 	}
 
+	/**
+	 * Stores vertex data from direct buffers into the VAO, one VBO per attribute.
+	 * @param vertexCount the number of vertices
+	 * @param data the buffers of vertex data for different attributes
+	 */
+	private void storeVertexData(int vertexCount, FloatBuffer... data) {
+		int[] attributeSizes = {3, 2, 3, 4, 4}; // Same layout as the array variant
+
+		for (int i = 0; i < data.length; i++) {
+			storeDataInAttributeList(i, attributeSizes[i], data[i]);
+		}
+	}
+
+	/**
+	 * Creates and binds an index VBO for storing indices from a direct buffer.
+	 * @param indices the buffer of indices
+	 */
+	private void storeIndices(IntBuffer indices) {
+		indexVBO = new VertexBufferObject(GL30.GL_ELEMENT_ARRAY_BUFFER);
+		indexVBO.bind();
+
+		int max = 0;
+		for (int i = indices.position(), end = indices.limit(); i < end; i++) {
+			max = Math.max(max, indices.get(i));
+		}
+		if (max <= MAX_SHORT_INDEX) {
+			// Halve the index buffer when every index fits in 16 bits
+			ShortBuffer shorts = BufferUtils.createShortBuffer(indices.remaining());
+			for (int i = indices.position(), end = indices.limit(); i < end; i++) {
+				shorts.put((short) indices.get(i));
+			}
+			indexVBO.storeData(shorts.flip());
+			indexType = GL30.GL_UNSIGNED_SHORT;
+		} else {
+			indexVBO.storeData(indices);
+			indexType = GL30.GL_UNSIGNED_INT;
+		}
+	}
+
 	/**
 	 * Creates and binds an index VBO for storing indices, which are used for indexed drawing.
 	 * @param indices the array of indices
@@ -123,7 +289,23 @@ public class VertexArrayObject {
 	private void storeIndices(int[] indices) {
 		indexVBO = new VertexBufferObject(GL30.GL_ELEMENT_ARRAY_BUFFER);
 		indexVBO.bind();
-		indexVBO.storeData(indices);
+
+		int max = 0;
+		for (int index : indices) {
+			max = Math.max(max, index);
+		}
+		if (max <= MAX_SHORT_INDEX) {
+			// Halve the index buffer when every index fits in 16 bits
+			ShortBuffer shorts = BufferUtils.createShortBuffer(indices.length);
+			for (int index : indices) {
+				shorts.put((short) index);
+			}
+			indexVBO.storeData(shorts.flip());
+			indexType = GL30.GL_UNSIGNED_SHORT;
+		} else {
+			indexVBO.storeData(indices);
+			indexType = GL30.GL_UNSIGNED_INT;
+		}
 	}
 
 	/**
@@ -138,7 +320,26 @@ public class VertexArrayObject {
 		vbo.bind();
 
 		vbo.storeData(data);
-		GL30.glVertexAttribPointer(attributeId, attributeSize, GL30.GL_FLOAT, false, 0, 0);
+		ProtoGL.getBackend().vertexAttribPointer(attributeId, attributeSize, GL30.GL_FLOAT, false, 0, 0);
+		ProtoGL.getBackend().enableVertexAttribArray(attributeId); // Recorded in the VAO, so draws need not enable it
+
+		vbo.unbind();
+	}
+
+	/**
+	 * Stores a direct buffer into a specific vertex attribute list, by creating a VBO and configuring the attribute pointer.
+	 * @param attributeId the attribute index
+	 * @param attributeSize the number of components in the attribute
+	 * @param data the direct data buffer
+	 */
+	private void storeDataInAttributeList(int attributeId, int attributeSize, FloatBuffer data) {
+		VertexBufferObject vbo = new VertexBufferObject(GL30.GL_ARRAY_BUFFER);
+		vbos.add(vbo);
+		vbo.bind();
+
+		vbo.storeData(data);
+		ProtoGL.getBackend().vertexAttribPointer(attributeId, attributeSize, GL30.GL_FLOAT, false, 0, 0);
+		ProtoGL.getBackend().enableVertexAttribArray(attributeId); // Recorded in the VAO, so draws need not enable it
 
 		vbo.unbind();
 	}
@@ -1,9 +1,12 @@
 package net.modularmods.protogl.gl.buffers;
 
+import net.modularmods.protogl.ProtoGL;
 import org.lwjgl.BufferUtils;
 import org.lwjgl.opengl.GL30;
+import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
 
 /**
  * Represents an OpenGL Vertex Buffer Object (VBO) that stores vertex data for rendering. This class provides
@@ -18,7 +21,7 @@ public class VertexBufferObject {
 	 * @param type The type of buffer to be created (e.g., GL_ARRAY_BUFFER, GL_ELEMENT_ARRAY_BUFFER).
 	 */
 	public VertexBufferObject(int type) {
-		this.id = GL30.glGenBuffers(); // Generate a new buffer object
+		this.id = ProtoGL.getBackend().genBuffer(); // Generate a new buffer object
 		this.type = type; // Set the buffer type
 	}
 
@@ -26,14 +29,22 @@ public class VertexBufferObject {
 	 * Binds this buffer as the current buffer of its type.
 	 */
 	public void bind() {
-		GL30.glBindBuffer(type, id); // Bind the buffer with the specified type
+		ProtoGL.getBackend().bindBuffer(type, id); // Bind the buffer with the specified type
 	}
 
 	/**
 	 * Unbinds any buffer of this type.
 	 */
 	public void unbind() {
-		GL30.glBindBuffer(type, 0); // Unbind the buffer by binding to zero
+		ProtoGL.getBackend().bindBuffer(type, 0); // Unbind the buffer by binding to zero
+	}
+
+	/**
+	 * Stores data in this buffer from a ByteBuffer, e.g. packed interleaved vertices.
+	 * @param data The ByteBuffer containing the data to store.
+	 */
+	public void storeData(ByteBuffer data) {
+		ProtoGL.getBackend().bufferData(type, data, GL30.GL_STATIC_DRAW); // Store the buffer data statically
 	}
 
 	/**
@@ -41,7 +52,7 @@ public class VertexBufferObject {
 	 * @param data The FloatBuffer containing the data to store.
 	 */
 	public void storeData(FloatBuffer data) {
-		GL30.glBufferData(type, data, GL30.GL_STATIC_DRAW); // Store the buffer data statically
+		ProtoGL.getBackend().bufferData(type, data, GL30.GL_STATIC_DRAW); // Store the buffer data statically
 	}
 
 	/**
@@ -61,7 +72,15 @@ public class VertexBufferObject {
 	 * @param data The IntBuffer containing the data to store.
 	 */
 	public void storeData(IntBuffer data) {
-		GL30.glBufferData(type, data, GL30.GL_STATIC_DRAW); // Store the buffer data statically
+		ProtoGL.getBackend().bufferData(type, data, GL30.GL_STATIC_DRAW); // Store the buffer data statically
+	}
+
+	/**
+	 * Stores data in this buffer from a ShortBuffer, e.g. 16-bit indices.
+	 * @param data The ShortBuffer containing the data to store.
+	 */
+	public void storeData(ShortBuffer data) {
+		ProtoGL.getBackend().bufferData(type, data, GL30.GL_STATIC_DRAW); // Store the buffer data statically
 	}
 
 	/**
@@ -80,6 +99,6 @@ public class VertexBufferObject {
 	 * Cleans up the buffer by deleting it from the GPU's memory.
 	 */
 	public void cleanup() {
-		GL30.glDeleteBuffers(id); // Delete the buffer
+		ProtoGL.getBackend().deleteBuffer(id); // Delete the buffer
 	}
 }
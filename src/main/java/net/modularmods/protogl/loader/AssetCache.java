@@ -0,0 +1,212 @@
+package net.modularmods.protogl.loader;
+
+import lombok.Getter;
+import net.modularmods.protogl.ProtoGL;
+import net.modularmods.protogl.gl.Mesh;
+import net.modularmods.protogl.loader.data.ModelData;
+import net.modularmods.protogl.loader.data.NodeData;
+import net.modularmods.protogl.model.PModel;
+import net.modularmods.protogl.profiling.Metrics;
+import net.modularmods.protogl.profiling.Timer;
+
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Keyed, reference-counted cache of decoded {@link ModelData} and of the {@link Mesh} objects uploaded from it.
+ * Every model acquired under the same key shares one decoded copy and one set of GPU buffers.
+ * <p>
+ * Each acquire must be paired with a {@link #release(String)}. Entries nobody references stay cached so they can be
+ * reused, and are evicted least recently used first once the cached geometry exceeds the byte budget; evicting an
+ * entry is the only place its meshes are cleaned up. Geometry is counted once on the heap and once more on the GPU
+ * when uploaded. Referenced entries are never evicted, so the budget may be exceeded while they are in use.
+ * <p>
+ * Methods are synchronized. {@link #acquireModel} uploads meshes and must be called on the GL thread, as must any
+ * call that can evict uploaded meshes ({@link #release(String)}, {@link #setBudgetBytes(long)}, {@link #trim()}).
+ */
+public class AssetCache {
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true); // Access order, eldest first
+    private final boolean mergeMeshes; // Whether compatible meshes of a node are merged when uploaded
+
+    @Getter
+    private long budgetBytes; // Size above which unreferenced entries are evicted
+    @Getter
+    private long sizeBytes;   // Heap and GPU bytes held by all entries
+    @Getter
+    private long hits;        // Acquires served from the cache
+    @Getter
+    private long misses;      // Acquires that had to load or upload
+    @Getter
+    private long evictions;   // Entries evicted to honour the budget
+
+    /**
+     * Creates an empty cache.
+     * @param budgetBytes Heap and GPU bytes the cache may keep for unreferenced entries.
+     * @param mergeMeshes Whether compatible meshes of a node are merged into a single VAO when uploaded.
+     */
+    public AssetCache(long budgetBytes, boolean mergeMeshes) {
+        this.budgetBytes = budgetBytes;
+        this.mergeMeshes = mergeMeshes;
+    }
+
+    /**
+     * Returns the decoded model data for a key, loading it on a miss. Adds a reference to the entry.
+     * @param key The asset key, typically the file path.
+     * @param loader Decodes the model on a miss, e.g. {@code () -> PModelLoader.loadPMod(path)}.
+     * @return The shared model data.
+     */
+    public synchronized ModelData acquireModelData(String key, Supplier<ModelData> loader) {
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            hits++;
+        } else {
+            misses++;
+            entry = new Entry(loader.get());
+            entries.put(key, entry);
+            sizeBytes += entry.heapBytes;
+        }
+        entry.references++;
+        return entry.modelData;
+    }
+
+    /**
+     * Builds a model sharing the cached data and meshes of a key, loading and uploading them on a miss. Adds a
+     * reference to the entry. Must be called on the GL thread.
+     * @param key The asset key, typically the file path.
+     * @param name The name of the model's root node.
+     * @param loader Decodes the model if it is not cached.
+     * @return A new model drawing the shared meshes.
+     */
+    public synchronized PModel acquireModel(String key, String name, Supplier<ModelData> loader) {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.meshes != null) {
+            hits++;
+        } else {
+            misses++;
+            if (entry == null) {
+                entry = new Entry(loader.get());
+                entries.put(key, entry);
+                sizeBytes += entry.heapBytes;
+            }
+            long start = Metrics.ENABLED ? System.nanoTime() : 0L;
+            entry.upload(mergeMeshes);
+            if (Metrics.ENABLED) Metrics.asset(Timer.UPLOAD, key, entry.heapBytes, System.nanoTime() - start);
+            sizeBytes += entry.heapBytes; // The same geometry now also lives on the GPU
+        }
+        entry.references++;
+        Map<NodeData, List<Mesh>> meshes = entry.meshes;
+        return new PModel(name, entry.modelData, meshes::get);
+    }
+
+    /**
+     * Drops a reference taken by an acquire. Once unreferenced, the entry may be evicted to honour the budget.
+     * @param key The asset key.
+     */
+    public synchronized void release(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null || entry.references == 0) {
+            throw new IllegalStateException("Asset " + key + " is not acquired");
+        }
+        entry.references--;
+        trim();
+    }
+
+    /**
+     * Changes the budget, evicting unreferenced entries if the cache no longer fits.
+     * @param budgetBytes The new budget in bytes.
+     */
+    public synchronized void setBudgetBytes(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+        trim();
+    }
+
+    /**
+     * Evicts unreferenced entries, least recently used first, until the cache fits in its budget.
+     */
+    public synchronized void trim() {
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (sizeBytes > budgetBytes && iterator.hasNext()) {
+            Map.Entry<String, Entry> mapEntry = iterator.next();
+            Entry entry = mapEntry.getValue();
+            if (entry.references > 0) continue;
+
+            iterator.remove();
+            sizeBytes -= entry.dispose();
+            evictions++;
+            ProtoGL.getLogger().debug("Evicted asset {}", mapEntry.getKey());
+        }
+    }
+
+    /**
+     * Indicates whether a key is cached.
+     * @param key The asset key.
+     * @return true if cached, referenced or not.
+     */
+    public synchronized boolean contains(String key) {
+        return entries.containsKey(key);
+    }
+
+    /**
+     * Returns the number of references held on a key.
+     * @param key The asset key.
+     * @return The reference count, 0 if unreferenced or not cached.
+     */
+    public synchronized int getReferenceCount(String key) {
+        Entry entry = entries.get(key);
+        return entry != null ? entry.references : 0;
+    }
+
+    /**
+     * Returns the fraction of acquires served from the cache.
+     * @return The hit ratio, 0 before any acquire.
+     */
+    public synchronized double getHitRatio() {
+        long total = hits + misses;
+        return total == 0 ? 0 : hits / (double) total;
+    }
+
+    /**
+     * Cached asset: decoded data, its uploaded meshes and the number of users.
+     */
+    private static class Entry {
+        private final ModelData modelData;
+        private final long heapBytes;          // Geometry size of the decoded data
+        private Map<NodeData, List<Mesh>> meshes; // Uploaded meshes per node, null until first uploaded
+        private int references;
+
+        Entry(ModelData modelData) {
+            this.modelData = modelData;
+            this.heapBytes = modelData.getSizeInBytes();
+        }
+
+        void upload(boolean mergeMeshes) {
+            Map<NodeData, List<Mesh>> uploaded = new IdentityHashMap<>();
+            if (modelData.getNodeData() != null) {
+                for (NodeData node : modelData.getNodeData()) {
+                    if (node != null && node.hasMeshes()) {
+                        uploaded.put(node, PModel.createMeshes(node.getMeshes(), mergeMeshes));
+                    }
+                }
+            }
+            meshes = uploaded;
+        }
+
+        /**
+         * Releases the GPU meshes of the entry.
+         * @return The number of bytes freed.
+         */
+        long dispose() {
+            if (meshes == null) return heapBytes;
+            for (List<Mesh> nodeMeshes : meshes.values()) {
+                nodeMeshes.forEach(Mesh::cleanup);
+            }
+            meshes = null;
+            return heapBytes * 2;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package net.modularmods.protogl.loader;
+
+import net.modularmods.protogl.ProtoGL;
+import net.modularmods.protogl.gl.Mesh;
+import net.modularmods.protogl.gl.MeshData;
+import net.modularmods.protogl.loader.data.ModelData;
+import net.modularmods.protogl.loader.data.NodeData;
+import net.modularmods.protogl.model.PModel;
+import net.modularmods.protogl.profiling.Metrics;
+import net.modularmods.protogl.profiling.Timer;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Second phase of asynchronous loading: uploads decoded {@link ModelData} to the GPU on the GL thread, a bounded
+ * amount per frame. Models can be submitted from any thread (typically as the continuation of
+ * {@link PModelLoader#loadPModAsync}), while {@link #process(long, long)} must be called once per frame by the thread
+ * owning the GL context.
+ * <p>
+ * Uploads are done one node at a time: a model with many nodes is spread over several frames instead of stalling one.
+ */
+public class GLUploadQueue {
+
+    private final Queue<Upload> pending = new ConcurrentLinkedQueue<>(); // Models waiting for their first upload
+    private Upload current;                                               // Model being uploaded, GL thread only
+
+    /**
+     * Queues a model for upload. Safe to call from any thread.
+     * @param name The name of the model's root node.
+     * @param modelData The decoded model.
+     * @param mergeMeshes Whether compatible meshes of a node are merged into a single VAO.
+     * @return A future completed on the GL thread with the built model, or exceptionally if an upload failed.
+     */
+    public CompletableFuture<PModel> submit(String name, ModelData modelData, boolean mergeMeshes) {
+        Upload upload = new Upload(name, modelData, mergeMeshes);
+        pending.add(upload);
+        return upload.future;
+    }
+
+    /**
+     * Uploads queued meshes until the time or byte budget is spent. At least one node is uploaded per call when
+     * work is pending, so a node larger than the budget still makes progress.
+     * @param budgetNanos Maximum time to spend, in nanoseconds.
+     * @param budgetBytes Maximum amount of geometry to upload, in bytes.
+     * @return The number of nodes uploaded.
+     */
+    public int process(long budgetNanos, long budgetBytes) {
+        long start = System.nanoTime();
+        long bytes = 0;
+        int uploads = 0;
+
+        while (uploads == 0 || (System.nanoTime() - start < budgetNanos && bytes < budgetBytes)) {
+            if (current == null && (current = pending.poll()) == null) {
+                break;
+            }
+            try {
+                long uploadStart = Metrics.ENABLED ? System.nanoTime() : 0L;
+                long uploaded = current.uploadNext();
+                bytes += uploaded;
+                if (Metrics.ENABLED) {
+                    current.uploadNanos += System.nanoTime() - uploadStart;
+                    current.uploadedBytes += uploaded;
+                }
+                uploads++;
+                if (current.isUploaded()) {
+                    current.complete();
+                    current = null;
+                }
+            } catch (RuntimeException e) {
+                ProtoGL.getLogger().error("Failed to upload model {}", current.name, e);
+                current.fail(e);
+                current = null;
+            }
+        }
+        return uploads;
+    }
+
+    /**
+     * Indicates whether models are waiting to be uploaded.
+     * @return true if {@link #process(long, long)} has work left.
+     */
+    public boolean isEmpty() {
+        return current == null && pending.isEmpty();
+    }
+
+    /**
+     * Upload state of one model.
+     */
+    private static class Upload {
+        private final String name;
+        private final ModelData modelData;
+        private final boolean mergeMeshes;
+        private final CompletableFuture<PModel> future = new CompletableFuture<>();
+        private final Map<NodeData, List<Mesh>> meshes = new IdentityHashMap<>(); // Meshes uploaded so far
+        private int nextNode;                                                     // Next node to look at
+        private long uploadNanos;                                                 // Time spent uploading, over all frames
+        private long uploadedBytes;
+
+        Upload(String name, ModelData modelData, boolean mergeMeshes) {
+            this.name = name;
+            this.modelData = modelData;
+            this.mergeMeshes = mergeMeshes;
+        }
+
+        /**
+         * Uploads the meshes of the next node that has any.
+         * @return The number of bytes uploaded.
+         */
+        long uploadNext() {
+            NodeData[] nodes = modelData.getNodeData();
+            while (nodes != null && nextNode < nodes.length) {
+                NodeData node = nodes[nextNode++];
+                if (node == null || !node.hasMeshes()) continue;
+
+                long size = 0;
+                for (MeshData mesh : node.getMeshes()) {
+                    size += mesh.getSizeInBytes();
+                }
+                meshes.put(node, PModel.createMeshes(node.getMeshes(), mergeMeshes));
+                return size;
+            }
+            return 0;
+        }
+
+        boolean isUploaded() {
+            NodeData[] nodes = modelData.getNodeData();
+            return nodes == null || nextNode >= nodes.length;
+        }
+
+        void complete() {
+            if (Metrics.ENABLED) Metrics.asset(Timer.UPLOAD, name, uploadedBytes, uploadNanos);
+            future.complete(new PModel(name, modelData, node -> meshes.get(node)));
+        }
+
+        void fail(Throwable cause) {
+            for (List<Mesh> nodeMeshes : meshes.values()) {
+                nodeMeshes.forEach(Mesh::cleanup);
+            }
+            meshes.clear();
+            future.completeExceptionally(cause);
+        }
+    }
+}
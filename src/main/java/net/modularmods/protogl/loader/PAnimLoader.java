@@ -0,0 +1,140 @@
+package net.modularmods.protogl.loader;
+
+import net.modularmods.protogl.animation.AnimationClip;
+import net.modularmods.protogl.utils.IOUtils;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+
+/**
+ * Handles loading of animation clips from {@code .panim} files.
+ */
+public class PAnimLoader {
+
+    /**
+     * Loads a PAnim file from the classpath.
+     * @param classLoader The class loader to use to load the file.
+     * @param file The path to the PAnim file to load.
+     * @return The animation clips contained in the file.
+     */
+    public static AnimationClip[] loadPAnim(ClassLoader classLoader, String file) {
+        try {
+            return loadPAnim(IOUtils.readResource(classLoader, file));
+        } catch (FileNotFoundException e) {
+            throw new RuntimeException("File not found: " + e.getMessage(), e);
+        } catch (IOException e) {
+            throw new RuntimeException("IO error reading file: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Loads a PAnim file from the filesystem.
+     * @param path The path to the PAnim file to load.
+     * @return The animation clips contained in the file.
+     */
+    public static AnimationClip[] loadPAnim(Path path) {
+        try {
+            return loadPAnim(IOUtils.readFile(path));
+        } catch (NoSuchFileException e) {
+            throw new RuntimeException("File not found: " + e.getMessage(), e);
+        } catch (IOException e) {
+            throw new RuntimeException("IO error reading file: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Decodes PAnim data from a buffer positioned at the magic number.
+     * @param buffer The buffer holding the PAnim contents.
+     * @return The animation clips contained in the data.
+     */
+    public static AnimationClip[] loadPAnim(ByteBuffer buffer) {
+        try {
+            // Check the magic number to confirm it's a valid PANIM file
+            if (!IOUtils.readMagicNumber(buffer, 5).equals("PANIM")) {
+                throw new IOException("Invalid file format");
+            }
+
+            // Read file version and flags
+            byte majorVersion = IOUtils.readByte(buffer, "Major version");
+            byte minorVersion = IOUtils.readByte(buffer, "Minor version");
+            byte flags = IOUtils.readByte(buffer, "Flags");
+            buffer.order((flags & PModelLoader.FLAG_LITTLE_ENDIAN) != 0 ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+
+            int animationsCount = Byte.toUnsignedInt(IOUtils.readByte(buffer, "Number of animations"));
+            AnimationClip[] clips = new AnimationClip[animationsCount];
+
+            for (int i = 0; i < animationsCount; i++) {
+                clips[i] = readAnimation(buffer);
+            }
+            return clips;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new RuntimeException("IO error reading file: unexpected end of data", e);
+        } catch (IOException e) {
+            throw new RuntimeException("IO error reading file: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Reads a single animation and packs all of its channels into shared primitive arrays.
+     * @param buffer The buffer positioned at the animation name.
+     * @return The decoded clip.
+     */
+    private static AnimationClip readAnimation(ByteBuffer buffer) throws IOException {
+        String animationName = IOUtils.readString(buffer, "Animation name");
+        int channelsCount = Byte.toUnsignedInt(IOUtils.readByte(buffer, "      Number of channels"));
+
+        byte[] channelTypes = new byte[channelsCount];
+        String[] nodeNames = new String[channelsCount];
+        int[] keyOffsets = new int[channelsCount];
+        int[] keyCounts = new int[channelsCount];
+        int[] valueOffsets = new int[channelsCount];
+        float[][] channelTimes = new float[channelsCount][];
+        float[][] channelValues = new float[channelsCount][];
+
+        int totalKeys = 0;
+        int totalValues = 0;
+        for (int c = 0; c < channelsCount; c++) {
+            byte channelType = IOUtils.readByte(buffer, "           Channel type");
+            if (channelType < AnimationClip.CHANNEL_TRANSLATION || channelType > AnimationClip.CHANNEL_SCALE) {
+                throw new IOException("Invalid channel type: " + channelType);
+            }
+            String nodeName = IOUtils.readString(buffer, "           Node name");
+            int keyframesCount = IOUtils.readInt(buffer, "           Number of keyframes");
+            int valueSize = AnimationClip.getValueSize(channelType);
+
+            // Keyframes are stored interleaved (time, value); split them into separate time and value blocks
+            float[] keyframes = IOUtils.readFloats(buffer, keyframesCount * (1 + valueSize), "               Keyframes");
+            float[] times = new float[keyframesCount];
+            float[] values = new float[keyframesCount * valueSize];
+            for (int k = 0; k < keyframesCount; k++) {
+                int src = k * (1 + valueSize);
+                times[k] = keyframes[src];
+                System.arraycopy(keyframes, src + 1, values, k * valueSize, valueSize);
+            }
+
+            channelTypes[c] = channelType;
+            nodeNames[c] = nodeName;
+            keyOffsets[c] = totalKeys;
+            keyCounts[c] = keyframesCount;
+            valueOffsets[c] = totalValues;
+            channelTimes[c] = times;
+            channelValues[c] = values;
+            totalKeys += keyframesCount;
+            totalValues += values.length;
+        }
+
+        float[] times = new float[totalKeys];
+        float[] values = new float[totalValues];
+        for (int c = 0; c < channelsCount; c++) {
+            System.arraycopy(channelTimes[c], 0, times, keyOffsets[c], keyCounts[c]);
+            System.arraycopy(channelValues[c], 0, values, valueOffsets[c], channelValues[c].length);
+        }
+
+        return new AnimationClip(animationName, channelTypes, nodeNames, keyOffsets, keyCounts, valueOffsets, times, values);
+    }
+}
@@ -0,0 +1,127 @@
+package net.modularmods.protogl.loader;
+
+import net.modularmods.protogl.animation.AnimationClip;
+import net.modularmods.protogl.animation.CompressedClip;
+import net.modularmods.protogl.utils.IOUtils;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+
+/**
+ * Handles loading of compressed animation clips from {@code .pcanim} files written by {@link PCAnimWriter}.
+ */
+public class PCAnimLoader {
+
+    /**
+     * Loads a PCAnim file from the classpath.
+     * @param classLoader The class loader to use to load the file.
+     * @param file The path to the PCAnim file to load.
+     * @return The compressed clips contained in the file.
+     */
+    public static CompressedClip[] loadPCAnim(ClassLoader classLoader, String file) {
+        try {
+            return loadPCAnim(IOUtils.readResource(classLoader, file));
+        } catch (FileNotFoundException e) {
+            throw new RuntimeException("File not found: " + e.getMessage(), e);
+        } catch (IOException e) {
+            throw new RuntimeException("IO error reading file: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Loads a PCAnim file from the filesystem.
+     * @param path The path to the PCAnim file to load.
+     * @return The compressed clips contained in the file.
+     */
+    public static CompressedClip[] loadPCAnim(Path path) {
+        try {
+            return loadPCAnim(IOUtils.readFile(path));
+        } catch (NoSuchFileException e) {
+            throw new RuntimeException("File not found: " + e.getMessage(), e);
+        } catch (IOException e) {
+            throw new RuntimeException("IO error reading file: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Decodes PCAnim data from a buffer positioned at the magic number.
+     * @param buffer The buffer holding the PCAnim contents.
+     * @return The compressed clips contained in the data.
+     */
+    public static CompressedClip[] loadPCAnim(ByteBuffer buffer) {
+        try {
+            // Check the magic number to confirm it's a valid PCANIM file
+            if (!IOUtils.readMagicNumber(buffer, 6).equals("PCANIM")) {
+                throw new IOException("Invalid file format");
+            }
+
+            // Read file version and flags
+            byte majorVersion = IOUtils.readByte(buffer, "Major version");
+            byte minorVersion = IOUtils.readByte(buffer, "Minor version");
+            byte flags = IOUtils.readByte(buffer, "Flags");
+            buffer.order((flags & PModelLoader.FLAG_LITTLE_ENDIAN) != 0 ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+
+            int animationsCount = Byte.toUnsignedInt(IOUtils.readByte(buffer, "Number of animations"));
+            CompressedClip[] clips = new CompressedClip[animationsCount];
+
+            for (int i = 0; i < animationsCount; i++) {
+                clips[i] = readAnimation(buffer);
+            }
+            return clips;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new RuntimeException("IO error reading file: unexpected end of data", e);
+        } catch (IOException e) {
+            throw new RuntimeException("IO error reading file: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Reads a single compressed animation.
+     * @param buffer The buffer positioned at the animation name.
+     * @return The decoded clip.
+     */
+    private static CompressedClip readAnimation(ByteBuffer buffer) throws IOException {
+        String animationName = IOUtils.readString(buffer, "Animation name");
+        float duration = buffer.getFloat();
+        float sampleRate = buffer.getFloat();
+        int frameCount = IOUtils.readInt(buffer, "      Number of frames");
+        int channelsCount = Byte.toUnsignedInt(IOUtils.readByte(buffer, "      Number of channels"));
+
+        byte[] channelTypes = new byte[channelsCount];
+        String[] nodeNames = new String[channelsCount];
+        int[] slots = new int[channelsCount];
+        float[] ranges = new float[channelsCount * 6];
+        for (int c = 0; c < channelsCount; c++) {
+            byte channelType = IOUtils.readByte(buffer, "           Channel type");
+            if (channelType < AnimationClip.CHANNEL_TRANSLATION || channelType > AnimationClip.CHANNEL_SCALE) {
+                throw new IOException("Invalid channel type: " + channelType);
+            }
+            channelTypes[c] = channelType;
+            nodeNames[c] = IOUtils.readString(buffer, "           Node name");
+            slots[c] = IOUtils.readInt(buffer, "           Slot");
+            System.arraycopy(IOUtils.readFloats(buffer, 6, "           Range"), 0, ranges, c * 6, 6);
+        }
+
+        short[] constants = IOUtils.readShorts(buffer, IOUtils.readInt(buffer, "      Constant shorts"), "      Constants");
+        int frameStride = IOUtils.readInt(buffer, "      Frame stride");
+        short[] frames = IOUtils.readShorts(buffer, frameCount * frameStride, "      Frames");
+
+        // Reject slots pointing outside of the key data so sampling cannot run off the arrays
+        for (int c = 0; c < channelsCount; c++) {
+            int slot = slots[c];
+            int offset = slot < 0 ? -1 - slot : slot;
+            int limit = slot < 0 ? constants.length : frameStride;
+            if (offset + CompressedClip.KEY_SHORTS > limit) {
+                throw new IOException("Invalid slot for channel " + c + ": " + slot);
+            }
+        }
+
+        return new CompressedClip(animationName, duration, sampleRate, frameCount, channelTypes, nodeNames, slots,
+                ranges, constants, frames, frameStride);
+    }
+}
@@ -0,0 +1,105 @@
+package net.modularmods.protogl.loader;
+
+import net.modularmods.protogl.ProtoGL;
+import net.modularmods.protogl.animation.AnimationClip;
+import net.modularmods.protogl.animation.ClipCompressor;
+import net.modularmods.protogl.animation.CompressedClip;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes {@link CompressedClip}s to the PCAnim format. This is the offline half of animation compression: the
+ * {@link #main} entry point converts a {@code .panim} file with a {@link ClipCompressor} and logs a
+ * {@link net.modularmods.protogl.animation.CompressionReport} per clip.
+ */
+public class PCAnimWriter {
+
+    /**
+     * Converts a PAnim file to a PCAnim file with the default error budget.
+     * @param args The source {@code .panim} path and the target {@code .pcanim} path.
+     */
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.err.println("Usage: PCAnimWriter <source.panim> <target.pcanim>");
+            System.exit(1);
+        }
+        convert(Path.of(args[0]), Path.of(args[1]), new ClipCompressor());
+    }
+
+    /**
+     * Compresses every clip of a PAnim file and writes them to a PCAnim file in native byte order.
+     * @param source The PAnim file.
+     * @param target The PCAnim file to write.
+     * @param compressor The compressor holding the error budget.
+     * @return The compressed clips.
+     */
+    public static CompressedClip[] convert(Path source, Path target, ClipCompressor compressor) {
+        AnimationClip[] clips = PAnimLoader.loadPAnim(source);
+        CompressedClip[] compressed = new CompressedClip[clips.length];
+        for (int i = 0; i < clips.length; i++) {
+            compressed[i] = compressor.compress(clips[i]);
+            ProtoGL.getLogger().info("Compressed {}", ClipCompressor.measure(clips[i], compressed[i]));
+        }
+        writePCAnim(compressed, target, ByteOrder.nativeOrder());
+        return compressed;
+    }
+
+    /**
+     * Writes compressed clips to a file.
+     * @param clips The clips to write.
+     * @param path The destination file.
+     * @param order The byte order of everything following the flags byte.
+     */
+    public static void writePCAnim(CompressedClip[] clips, Path path, ByteOrder order) {
+        ByteBuffer buffer = ByteBuffer.wrap(toBytes(clips, order));
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("IO error writing file: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Encodes compressed clips in the PCAnim format.
+     * @param clips The clips to encode, at most 255.
+     * @param order The byte order of everything following the flags byte.
+     * @return The encoded file contents.
+     */
+    public static byte[] toBytes(CompressedClip[] clips, ByteOrder order) {
+        PModelWriter.Output out = new PModelWriter.Output(order);
+        out.bytes("PCANIM".getBytes(StandardCharsets.US_ASCII));
+        out.put((byte) 1); // Major version
+        out.put((byte) 0); // Minor version
+        out.put((byte) (order == ByteOrder.LITTLE_ENDIAN ? PModelLoader.FLAG_LITTLE_ENDIAN : 0));
+        out.put((byte) clips.length);
+
+        for (CompressedClip clip : clips) {
+            out.string(clip.getName());
+            out.putFloat(clip.getDuration());
+            out.putFloat(clip.getSampleRate());
+            out.putInt(clip.getFrameCount());
+            out.put((byte) clip.getChannelCount());
+            for (int c = 0; c < clip.getChannelCount(); c++) {
+                out.put(clip.getChannelTypes()[c]);
+                out.string(clip.getNodeNames()[c]);
+                out.putInt(clip.getSlots()[c]);
+                for (int i = 0; i < 6; i++) {
+                    out.putFloat(clip.getRanges()[c * 6 + i]);
+                }
+            }
+            out.putInt(clip.getConstants().length);
+            out.shorts(clip.getConstants());
+            out.putInt(clip.getFrameStride());
+            out.shorts(clip.getFrames());
+        }
+        return out.toByteArray();
+    }
+}
@@ -1,23 +1,39 @@
 package net.modularmods.protogl.loader;
 
-import net.modularmods.protogl.gl.Mesh;
 import net.modularmods.protogl.gl.MeshData;
 import net.modularmods.protogl.loader.data.JointData;
 import net.modularmods.protogl.loader.data.NodeData;
 import net.modularmods.protogl.loader.data.ModelData;
+import net.modularmods.protogl.profiling.Metrics;
+import net.modularmods.protogl.profiling.Timer;
 import net.modularmods.protogl.utils.IOUtils;
 
-import java.io.DataInputStream;
-import java.io.FileInputStream;
+import org.lwjgl.BufferUtils;
+
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.util.Objects;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Handles loading of PModel data from a file, supporting both skeletal animations and static models.
  */
 public class PModelLoader {
 
+    public static final int FLAG_NODES = 0x01;         // The model contains nodes
+    public static final int FLAG_ARMATURE = 0x02;      // The model contains an armature
+    public static final int FLAG_LITTLE_ENDIAN = 0x04; // Everything after the flags byte is little-endian
+
     /**
      * Loads a PMod file and constructs a PModel object based on its contents.
      * @param classLoader The class loader to use to load the file.
@@ -25,34 +41,142 @@ public class PModelLoader {
      * @return A fully constructed PModel object.
      */
     public static ModelData loadPMod(ClassLoader classLoader, String file) {
-        try (DataInputStream dis = new DataInputStream(Objects.requireNonNull(classLoader.getResourceAsStream(file)))) {
+        try {
+            long start = Metrics.ENABLED ? System.nanoTime() : 0L;
+            ModelData modelData = loadPMod(IOUtils.readResource(classLoader, file));
+            if (Metrics.ENABLED) recordLoad(file, modelData, start);
+            return modelData;
+        } catch (FileNotFoundException e) {
+            throw new RuntimeException("File not found: " + e.getMessage(), e);
+        } catch (IOException e) {
+            throw new RuntimeException("IO error reading file: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Loads a PMod file from the filesystem.
+     * @param path The path to the PMod file to load.
+     * @return The decoded model data.
+     */
+    public static ModelData loadPMod(Path path) {
+        try {
+            long start = Metrics.ENABLED ? System.nanoTime() : 0L;
+            ModelData modelData = loadPMod(IOUtils.readFile(path));
+            if (Metrics.ENABLED) recordLoad(path.toString(), modelData, start);
+            return modelData;
+        } catch (NoSuchFileException e) {
+            throw new RuntimeException("File not found: " + e.getMessage(), e);
+        } catch (IOException e) {
+            throw new RuntimeException("IO error reading file: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Loads a PMod file from the filesystem by memory-mapping it. Attribute and index blocks are exposed to the
+     * resulting {@link MeshData} as direct buffer views of the mapping, so geometry never lands on the Java heap and
+     * is uploaded straight from the page cache. Files written in native byte order (see {@link PModelWriter}) are
+     * zero-copy; other files have each block converted into an off-heap buffer instead.
+     * @param path The path to the PMod file to load.
+     * @return The decoded model data, holding buffer-backed mesh data.
+     */
+    public static ModelData loadPModMapped(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed and is released once its views are unreachable
+            long start = Metrics.ENABLED ? System.nanoTime() : 0L;
+            ModelData modelData = decode(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), true);
+            if (Metrics.ENABLED) recordLoad(path.toString(), modelData, start);
+            return modelData;
+        } catch (NoSuchFileException e) {
+            throw new RuntimeException("File not found: " + e.getMessage(), e);
+        } catch (IOException e) {
+            throw new RuntimeException("IO error reading file: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Reads and decodes a PMod resource on the given executor. Decoding makes no GL call, so any number of files
+     * can be decoded concurrently; the result is then uploaded on the GL thread, e.g. through a {@link GLUploadQueue}.
+     * @param classLoader The class loader to use to load the file.
+     * @param file The path to the PMod file to load.
+     * @param executor The executor running the decode.
+     * @return A future completed with the decoded model data, or exceptionally if loading failed.
+     */
+    public static CompletableFuture<ModelData> loadPModAsync(ClassLoader classLoader, String file, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> loadPMod(classLoader, file), executor);
+    }
+
+    /**
+     * Reads and decodes a PMod file on the common fork-join pool.
+     * @param path The path to the PMod file to load.
+     * @return A future completed with the decoded model data, or exceptionally if loading failed.
+     */
+    public static CompletableFuture<ModelData> loadPModAsync(Path path) {
+        return loadPModAsync(path, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Reads and decodes a PMod file on the given executor.
+     * @param path The path to the PMod file to load.
+     * @param executor The executor running the decode.
+     * @return A future completed with the decoded model data, or exceptionally if loading failed.
+     */
+    public static CompletableFuture<ModelData> loadPModAsync(Path path, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> loadPMod(path), executor);
+    }
+
+    /**
+     * Decodes PMod data from a buffer positioned at the magic number. Index and attribute blocks are decoded in bulk.
+     * @param buffer The buffer holding the PMod contents.
+     * @return The decoded model data.
+     */
+    public static ModelData loadPMod(ByteBuffer buffer) {
+        try {
+            return decode(buffer, false);
+        } catch (IOException e) {
+            throw new RuntimeException("IO error reading file: " + e.getMessage(), e);
+        }
+    }
+
+    private static void recordLoad(String asset, ModelData modelData, long start) {
+        Metrics.asset(Timer.LOAD, asset, modelData.getSizeInBytes(), System.nanoTime() - start);
+    }
+
+    /**
+     * Decodes PMod data, either into arrays or into buffer views of the source.
+     * @param buffer The buffer holding the PMod contents.
+     * @param views Whether mesh blocks should be exposed as direct buffer views instead of arrays.
+     * @return The decoded model data.
+     */
+    private static ModelData decode(ByteBuffer buffer, boolean views) throws IOException {
+        try {
             // Check the magic number to confirm it's a valid PMOD file
-            if (!IOUtils.readMagicNumber(dis).equals("PMOD")) {
+            if (!IOUtils.readMagicNumber(buffer).equals("PMOD")) {
                 throw new IOException("Invalid file format");
             }
 
             // Read file version and flags
-            byte majorVersion = IOUtils.readByte(dis, "Major version");
-            byte minorVersion = IOUtils.readByte(dis, "Minor version");
-            byte flags = IOUtils.readByte(dis, "Flags");
+            byte majorVersion = IOUtils.readByte(buffer, "Major version");
+            byte minorVersion = IOUtils.readByte(buffer, "Minor version");
+            byte flags = IOUtils.readByte(buffer, "Flags");
 
-            // Determine whether the model includes armature or nodes
-            boolean hasArmature = (flags & 0x02) != 0;
-            boolean hasNodes = (flags & 0x01) != 0;
+            // Determine whether the model includes armature or nodes, and the byte order of the remaining data
+            boolean hasArmature = (flags & FLAG_ARMATURE) != 0;
+            boolean hasNodes = (flags & FLAG_NODES) != 0;
+            buffer.order((flags & FLAG_LITTLE_ENDIAN) != 0 ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
 
             // Read counts of joints, nodes, and materials
-            int jointsCount = IOUtils.readByte(dis, "Number of joints");
-            int nodesCount = IOUtils.readByte(dis, "Number of nodes");
+            int jointsCount = Byte.toUnsignedInt(IOUtils.readByte(buffer, "Number of joints"));
+            int nodesCount = Byte.toUnsignedInt(IOUtils.readByte(buffer, "Number of nodes"));
 
             JointData[] jointData = null;
             String skeletonName = null;
             if (hasArmature) {
                 jointData = new JointData[jointsCount];
-                skeletonName = IOUtils.readString(dis, "Skeleton name");
+                skeletonName = IOUtils.readString(buffer, "Skeleton name");
                 for (int i = 0; i < jointsCount; i++) {
-                    String jointName = IOUtils.readString(dis, "Joint name");
-                    String parentJointName = IOUtils.readString(dis, "      Joint parent");
-                    float[] invBindMatrix = IOUtils.readFloats(dis, 16, "           InvBindMatrix");
+                    String jointName = IOUtils.readString(buffer, "Joint name");
+                    String parentJointName = IOUtils.readString(buffer, "      Joint parent");
+                    float[] invBindMatrix = IOUtils.readFloats(buffer, 16, "           InvBindMatrix");
                     jointData[i] = new JointData(jointName, parentJointName, invBindMatrix);
                 }
             }
@@ -61,49 +185,20 @@ public class PModelLoader {
 
             if (hasNodes) {
                 for (int i = 0; i < nodesCount; i++) {
-                    String nodeName = IOUtils.readString(dis, "Node name");
-                    String parentNodeName = IOUtils.readString(dis, "      Parent name");
-                    float[] translation = IOUtils.readFloats(dis, 3, "           Translation");
-                    float[] rotation = IOUtils.readFloats(dis, 4, "           Rotation");
-                    float[] scale = IOUtils.readFloats(dis, 3, "           Scale");
-                    int numMeshes = IOUtils.readInt(dis, "           Number of meshes");
-
-                    MeshData meshData = null;
-
-                    if (numMeshes > 0) {
-                        for (int j = 0; j < numMeshes; j++) {
-                            String meshName = IOUtils.readString(dis, "               Mesh name");
-                            int numIndices = IOUtils.readInt(dis, "               Number of indices");
-                            int numVertices = IOUtils.readInt(dis, "               Number of vertices");
-                            int numUvs = IOUtils.readInt(dis, "               Number of Uvs");
-                            int numJoints = IOUtils.readInt(dis, "               Number of joints");
-                            int numWeights = IOUtils.readInt(dis, "               Number of weights");
-
-                            int[] indices = IOUtils.readInts(dis, numIndices, "               Indices");
-                            float[] vertices = IOUtils.readFloats(dis, numVertices * 3, "               Vertices");
-                            float[] uvs = IOUtils.readFloats(dis, numUvs, "               UVs");
-                            float[] normals = IOUtils.readFloats(dis, numVertices * 3, "               Normals");
-
-                            if (numJoints > 0) {
-                                int[] joints = IOUtils.readInts(dis, numJoints, "               Joints");
-
-                                // Conversion from int to float for joints is a temporary solution
-                                float[] jointsFloat = new float[joints.length];
-                                for (int k = 0; k < joints.length; k++) {
-                                    jointsFloat[k] = (float) joints[k];
-                                }
-
-                                float[] weights = IOUtils.readFloats(dis, numWeights, "               Weights");
-
-                                // Create MeshData for skinned meshes
-                                meshData = new MeshData(vertices, uvs, normals, indices, jointsFloat, weights);
-                            } else {
-                                // Create MeshData for static meshes
-                                meshData = new MeshData(vertices, uvs, normals, indices);
-                            }
-                        }
+                    String nodeName = IOUtils.readString(buffer, "Node name");
+                    String parentNodeName = IOUtils.readString(buffer, "      Parent name");
+                    float[] translation = IOUtils.readFloats(buffer, 3, "           Translation");
+                    float[] rotation = IOUtils.readFloats(buffer, 4, "           Rotation");
+                    float[] scale = IOUtils.readFloats(buffer, 3, "           Scale");
+                    int numMeshes = IOUtils.readInt(buffer, "           Number of meshes");
+
+                    MeshData[] meshes = new MeshData[numMeshes];
+
+                    for (int j = 0; j < numMeshes; j++) {
+                        meshes[j] = views ? readMeshViews(buffer) : readMesh(buffer);
+                        meshes[j].computeBounds();
                     }
-                    nodeData[i] = new NodeData(nodeName, parentNodeName, translation, rotation, scale, meshData);
+                    nodeData[i] = NodeData.withMeshes(nodeName, parentNodeName, translation, rotation, scale, meshes);
                 }
             }
 
@@ -112,10 +207,78 @@ public class PModelLoader {
             } else {
                 return new ModelData(nodeData);
             }
-        } catch (FileNotFoundException e) {
-            throw new RuntimeException("File not found: " + e.getMessage(), e);
-        } catch (IOException e) {
-            throw new RuntimeException("IO error reading file: " + e.getMessage(), e);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IOException("Unexpected end of data", e);
+        }
+    }
+
+    /**
+     * Reads a single mesh block into arrays.
+     * @param buffer The buffer positioned at the mesh name.
+     * @return The decoded mesh data.
+     */
+    private static MeshData readMesh(ByteBuffer buffer) {
+        String meshName = IOUtils.readString(buffer, "               Mesh name");
+        int numIndices = IOUtils.readInt(buffer, "               Number of indices");
+        int numVertices = IOUtils.readInt(buffer, "               Number of vertices");
+        int numUvs = IOUtils.readInt(buffer, "               Number of Uvs");
+        int numJoints = IOUtils.readInt(buffer, "               Number of joints");
+        int numWeights = IOUtils.readInt(buffer, "               Number of weights");
+
+        int[] indices = IOUtils.readInts(buffer, numIndices, "               Indices");
+        float[] vertices = IOUtils.readFloats(buffer, numVertices * 3, "               Vertices");
+        float[] uvs = IOUtils.readFloats(buffer, numUvs, "               UVs");
+        float[] normals = IOUtils.readFloats(buffer, numVertices * 3, "               Normals");
+
+        if (numJoints > 0) {
+            int[] joints = IOUtils.readInts(buffer, numJoints, "               Joints");
+
+            // Conversion from int to float for joints is a temporary solution
+            float[] jointsFloat = new float[joints.length];
+            for (int k = 0; k < joints.length; k++) {
+                jointsFloat[k] = (float) joints[k];
+            }
+
+            float[] weights = IOUtils.readFloats(buffer, numWeights, "               Weights");
+
+            // Create MeshData for skinned meshes
+            return new MeshData(vertices, uvs, normals, indices, jointsFloat, weights);
+        } else {
+            // Create MeshData for static meshes
+            return new MeshData(vertices, uvs, normals, indices);
+        }
+    }
+
+    /**
+     * Reads a single mesh block as direct buffer views of the source buffer.
+     * @param buffer The direct buffer positioned at the mesh name.
+     * @return The buffer-backed mesh data.
+     */
+    private static MeshData readMeshViews(ByteBuffer buffer) {
+        String meshName = IOUtils.readString(buffer, "               Mesh name");
+        int numIndices = IOUtils.readInt(buffer, "               Number of indices");
+        int numVertices = IOUtils.readInt(buffer, "               Number of vertices");
+        int numUvs = IOUtils.readInt(buffer, "               Number of Uvs");
+        int numJoints = IOUtils.readInt(buffer, "               Number of joints");
+        int numWeights = IOUtils.readInt(buffer, "               Number of weights");
+
+        IntBuffer indices = IOUtils.readIntView(buffer, numIndices);
+        FloatBuffer vertices = IOUtils.readFloatView(buffer, numVertices * 3);
+        FloatBuffer uvs = IOUtils.readFloatView(buffer, numUvs);
+        FloatBuffer normals = IOUtils.readFloatView(buffer, numVertices * 3);
+
+        if (numJoints > 0) {
+            // Joints are stored as ints but uploaded as float attributes, so they need their own (small) direct copy
+            IntBuffer joints = IOUtils.readIntView(buffer, numJoints);
+            FloatBuffer jointsFloat = BufferUtils.createFloatBuffer(numJoints);
+            for (int k = 0; k < numJoints; k++) {
+                jointsFloat.put(k, (float) joints.get(k));
+            }
+
+            FloatBuffer weights = IOUtils.readFloatView(buffer, numWeights);
+            return new MeshData(vertices, uvs, normals, indices, jointsFloat, weights);
+        } else {
+            return new MeshData(vertices, uvs, normals, indices, null, null);
         }
     }
 }
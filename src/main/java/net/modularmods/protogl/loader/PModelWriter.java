@@ -0,0 +1,210 @@
+package net.modularmods.protogl.loader;
+
+import net.modularmods.protogl.gl.MeshData;
+import net.modularmods.protogl.loader.data.JointData;
+import net.modularmods.protogl.loader.data.ModelData;
+import net.modularmods.protogl.loader.data.NodeData;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes {@link ModelData} back to the PMod format. Besides round-tripping models, this is used to build an
+ * endian-converted cache: a file written in {@link ByteOrder#nativeOrder()} can be memory-mapped by
+ * {@link PModelLoader#loadPModMapped(Path)} and uploaded without any conversion.
+ */
+public class PModelWriter {
+
+    public static final int MAX_COUNT = 255; // Joints and nodes are counted in one unsigned byte
+
+    /**
+     * Writes model data to a file.
+     * @param modelData The model data to write.
+     * @param path The destination file.
+     * @param order The byte order of everything following the flags byte.
+     * @throws IllegalArgumentException if the model has more than {@value #MAX_COUNT} joints or nodes.
+     */
+    public static void writePMod(ModelData modelData, Path path, ByteOrder order) {
+        ByteBuffer buffer = ByteBuffer.wrap(toBytes(modelData, order));
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("IO error writing file: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Rewrites a PMod file in native byte order so it can be memory-mapped without conversion.
+     * @param source The original (usually big-endian) file.
+     * @param target The cache file to write.
+     */
+    public static void convertToNativeOrder(Path source, Path target) {
+        writePMod(PModelLoader.loadPMod(source), target, ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Encodes model data in the PMod format.
+     * @param modelData The model data to encode.
+     * @param order The byte order of everything following the flags byte.
+     * @return The encoded file contents.
+     * @throws IllegalArgumentException if the model has more than {@value #MAX_COUNT} joints or nodes.
+     */
+    public static byte[] toBytes(ModelData modelData, ByteOrder order) {
+        Output out = new Output(order);
+        NodeData[] nodes = modelData.getNodeData();
+        JointData[] joints = modelData.getJointData();
+
+        int flags = 0;
+        if (nodes != null && nodes.length > 0) flags |= PModelLoader.FLAG_NODES;
+        if (modelData.isHasArmature()) flags |= PModelLoader.FLAG_ARMATURE;
+        if (order == ByteOrder.LITTLE_ENDIAN) flags |= PModelLoader.FLAG_LITTLE_ENDIAN;
+
+        out.bytes("PMOD".getBytes(StandardCharsets.US_ASCII));
+        out.put((byte) 1); // Major version
+        out.put((byte) 0); // Minor version
+        out.put((byte) flags);
+        out.put(count(joints != null ? joints.length : 0, "joints"));
+        out.put(count(nodes != null ? nodes.length : 0, "nodes"));
+
+        if (modelData.isHasArmature()) {
+            out.string(modelData.getSkeletonName());
+            for (JointData joint : joints) {
+                out.string(joint.getJointName());
+                out.string(joint.getParentJointName());
+                out.floats(joint.getInvBindMatrix());
+            }
+        }
+
+        if (nodes != null) {
+            for (NodeData node : nodes) {
+                out.string(node.getNodeName());
+                out.string(node.getParentNodeName());
+                out.floats(node.getTranslation());
+                out.floats(node.getRotation());
+                out.floats(node.getScale());
+
+                MeshData[] meshes = node.getMeshes();
+                out.putInt(meshes.length);
+                for (int j = 0; j < meshes.length; j++) {
+                    writeMesh(out, meshes.length > 1 ? node.getNodeName() + "." + j : node.getNodeName(), meshes[j]);
+                }
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static byte count(int count, String what) {
+        if (count > MAX_COUNT) {
+            throw new IllegalArgumentException("PMod files hold at most " + MAX_COUNT + " " + what + ", got " + count);
+        }
+        return (byte) count;
+    }
+
+    private static void writeMesh(Output out, String meshName, MeshData mesh) {
+        boolean buffers = mesh.isBufferBacked();
+        int[] indices = buffers ? toArray(mesh.getIndexBuffer()) : mesh.getIndices();
+        float[] vertices = buffers ? toArray(mesh.getVertexBuffer()) : mesh.getVertices();
+        float[] uvs = buffers ? toArray(mesh.getUvBuffer()) : mesh.getUvs();
+        float[] normals = buffers ? toArray(mesh.getNormalBuffer()) : mesh.getNormals();
+        float[] joints = buffers ? toArray(mesh.getJointBuffer()) : mesh.getJoints();
+        float[] weights = buffers ? toArray(mesh.getWeightBuffer()) : mesh.getWeights();
+
+        out.string(meshName);
+        out.putInt(indices != null ? indices.length : 0);
+        out.putInt(mesh.getVertexCount());
+        out.putInt(uvs != null ? uvs.length : 0);
+        out.putInt(joints != null ? joints.length : 0);
+        out.putInt(joints != null && weights != null ? weights.length : 0);
+
+        out.ints(indices);
+        out.floats(vertices);
+        out.floats(uvs);
+        out.floats(normals != null ? normals : new float[vertices.length]);
+        if (joints != null) {
+            for (float joint : joints) {
+                out.putInt((int) joint);
+            }
+            out.floats(weights);
+        }
+    }
+
+    private static float[] toArray(FloatBuffer buffer) {
+        if (buffer == null) return null;
+        float[] array = new float[buffer.remaining()];
+        buffer.get(buffer.position(), array);
+        return array;
+    }
+
+    private static int[] toArray(IntBuffer buffer) {
+        if (buffer == null) return null;
+        int[] array = new int[buffer.remaining()];
+        buffer.get(buffer.position(), array);
+        return array;
+    }
+
+    /**
+     * Growable output honouring a byte order.
+     */
+    static class Output {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final ByteBuffer scratch;
+
+        Output(ByteOrder order) {
+            this.scratch = ByteBuffer.allocate(Long.BYTES).order(order);
+        }
+
+        void put(byte b) {
+            bytes.write(b);
+        }
+
+        void bytes(byte[] b) {
+            bytes.write(b, 0, b.length);
+        }
+
+        void putShort(short s) {
+            bytes.write(scratch.clear().putShort(s).array(), 0, Short.BYTES);
+        }
+
+        void putInt(int i) {
+            bytes.write(scratch.clear().putInt(i).array(), 0, Integer.BYTES);
+        }
+
+        void putFloat(float f) {
+            bytes.write(scratch.clear().putFloat(f).array(), 0, Float.BYTES);
+        }
+
+        void shorts(short[] values) {
+            if (values == null) return;
+            for (short value : values) putShort(value);
+        }
+
+        void ints(int[] values) {
+            if (values == null) return;
+            for (int value : values) putInt(value);
+        }
+
+        void floats(float[] values) {
+            if (values == null) return;
+            for (float value : values) putFloat(value);
+        }
+
+        void string(String s) {
+            if (s != null) bytes(s.getBytes(StandardCharsets.ISO_8859_1));
+            put((byte) 0);
+        }
+
+        byte[] toByteArray() {
+            return bytes.toByteArray();
+        }
+    }
+}
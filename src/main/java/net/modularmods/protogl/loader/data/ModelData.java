@@ -1,6 +1,7 @@
 package net.modularmods.protogl.loader.data;
 
 import lombok.Getter;
+import net.modularmods.protogl.gl.MeshData;
 
 /**
  * Represents a 3D model that can consist of multiple nodes and potentially include an armature for skeletal animation.
@@ -36,4 +37,21 @@ public class ModelData {
         this.jointData = jointData; // Set the joint data for skeletal animation
         this.skeletonName = skeletonName; // Set the name of the skeleton
     }
+
+    /**
+     * Returns the size of the geometry of every mesh in the model.
+     * @return The size in bytes, see {@link MeshData#getSizeInBytes()}.
+     */
+    public long getSizeInBytes() {
+        long size = 0;
+        if (nodeData != null) {
+            for (NodeData node : nodeData) {
+                if (node == null) continue;
+                for (MeshData mesh : node.getMeshes()) {
+                    size += mesh.getSizeInBytes();
+                }
+            }
+        }
+        return size;
+    }
 }
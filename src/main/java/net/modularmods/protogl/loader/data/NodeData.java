@@ -1,7 +1,7 @@
 package net.modularmods.protogl.loader.data;
 
 import lombok.Getter;
-import net.modularmods.protogl.gl.Mesh;
+import lombok.Setter;
 import net.modularmods.protogl.gl.MeshData;
 
 /**
@@ -16,7 +16,8 @@ public class NodeData {
     private float[] translation;    // Translation vector of the node
     private float[] rotation;       // Rotation quaternion of the node
     private float[] scale;          // Scaling vector of the node
-    private MeshData meshData;              // Mesh object attached to the node (optional)
+    @Setter
+    private MeshData[] meshes;      // Meshes attached to the node, empty if the node displays no geometry
 
     /**
      * Constructs a NodeData object, encapsulating the transformation properties and optional mesh data.
@@ -28,11 +29,49 @@ public class NodeData {
      * @param meshData Mesh if the node displays geometry.
      */
     public NodeData(String nodeName, String parentNodeName, float[] translation, float[] rotation, float[] scale, MeshData meshData) {
+        this(nodeName, parentNodeName, translation, rotation, scale, meshData != null ? new MeshData[]{meshData} : new MeshData[0]);
+    }
+
+    private NodeData(String nodeName, String parentNodeName, float[] translation, float[] rotation, float[] scale, MeshData[] meshes) {
         this.nodeName = nodeName;
         this.parentNodeName = parentNodeName;
         this.translation = translation;
         this.rotation = rotation;
         this.scale = scale;
-        this.meshData = meshData;
+        this.meshes = meshes;
+    }
+
+    /**
+     * Creates a NodeData object holding any number of meshes.
+     * @param nodeName Name of the node.
+     * @param parentNodeName Name of the node's parent.
+     * @param translation 3D translation vector.
+     * @param rotation 3D rotation represented as a quaternion.
+     * @param scale 3D scaling vector.
+     * @param meshes Meshes displayed by the node, in file order.
+     * @return the node data.
+     */
+    public static NodeData withMeshes(String nodeName, String parentNodeName, float[] translation, float[] rotation, float[] scale, MeshData... meshes) {
+        return new NodeData(nodeName, parentNodeName, translation, rotation, scale, meshes != null ? meshes : new MeshData[0]);
+    }
+
+    /**
+     * Returns the first mesh of the node. Nodes used to hold a single mesh, and the loader kept only the last mesh
+     * of a node that had several: for such nodes this now returns the first one, while {@link #getMeshes()} returns
+     * all of them.
+     * @return the first mesh, or null if the node has none.
+     * @deprecated Use {@link #getMeshes()}, which does not drop the other meshes of the node.
+     */
+    @Deprecated
+    public MeshData getMeshData() {
+        return meshes.length > 0 ? meshes[0] : null;
+    }
+
+    /**
+     * Indicates whether the node displays any geometry.
+     * @return true if the node has at least one mesh.
+     */
+    public boolean hasMeshes() {
+        return meshes.length > 0;
     }
 }
@@ -0,0 +1,248 @@
+package net.modularmods.protogl.model;
+
+import lombok.Getter;
+import net.modularmods.protogl.gl.Bounds;
+import net.modularmods.protogl.gl.Mesh;
+import net.modularmods.protogl.profiling.Counter;
+import net.modularmods.protogl.profiling.Metrics;
+import org.joml.FrustumIntersection;
+import org.joml.Matrix4fc;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * View-frustum culling of a model or instance, on the CPU and without any GL call.
+ * <p>
+ * {@link #updateBounds} computes the world box of each node's meshes from its world matrix, then, in a reverse pass
+ * over the hierarchy, the box of each node's whole subtree. {@link #cull} then walks the hierarchy in order: a subtree
+ * whose box is outside the frustum is culled at once, its nodes only inheriting the result, and a subtree fully inside
+ * is accepted without testing its descendants. A mesh node is visible if its own box intersects the frustum.
+ * <p>
+ * Skinned meshes are bounded conservatively by the union of their per-joint boxes
+ * ({@link Bounds#ofJoints}) transformed by the skeleton's last palette; without a skeleton, or for meshes without
+ * bounds, nodes are never culled. A culler keeps the results of the last model or instance it culled, and reuses its
+ * arrays from call to call.
+ */
+public class FrustumCuller {
+
+    private static final int BOX = Bounds.BOX_STRIDE;
+    private static final int MATRIX_STRIDE = TransformHierarchy.MATRIX_STRIDE;
+    private static final float UNBOUNDED = 1e30f; // Extent of the box of meshes without usable bounds
+
+    private static final byte OUTSIDE = 0;   // Subtree outside the frustum
+    private static final byte INTERSECT = 1; // Subtree crossing the frustum
+    private static final byte INSIDE = 2;    // Subtree fully inside the frustum
+
+    private final FrustumIntersection frustum = new FrustumIntersection();
+
+    private float[] ownBoxes = new float[64 * BOX];     // World box of each node's meshes
+    private float[] subtreeBoxes = new float[64 * BOX]; // World box of each node and its descendants
+    private byte[] states = new byte[64];               // Result of each node's subtree
+    private boolean[] visible = new boolean[64];        // Whether each node has a mesh in the frustum
+    private final float[] skinBox = new float[BOX];     // Model-space box of a skinned mesh
+    private final float[] boxScratch = new float[BOX];
+    private final float[] matrixScratch = new float[MATRIX_STRIDE];
+
+    @Getter
+    private int nodeCount;         // Nodes covered by the last cull
+    @Getter
+    private int visitedCount;      // Subtree boxes tested against the frustum during the last cull
+    @Getter
+    private int culledCount;       // Nodes culled during the last cull, along with their subtrees
+    @Getter
+    private int visibleMeshCount;  // Mesh nodes left visible by the last cull
+
+    /**
+     * Sets the frustum to cull against.
+     * @param viewProjection The projection matrix multiplied by the view matrix.
+     * @return this.
+     */
+    public FrustumCuller setFrustum(Matrix4fc viewProjection) {
+        frustum.set(viewProjection);
+        return this;
+    }
+
+    /**
+     * Culls the nodes of a model against the frustum, using the world matrices of its last update.
+     * @param model The model.
+     * @return The number of visible mesh nodes.
+     */
+    public int cull(PModel model) {
+        TransformHierarchy transforms = model.getTransforms();
+        return cull(transforms, transforms.getWorlds(), transforms.getCount(), model.getSkeleton());
+    }
+
+    /**
+     * Culls the nodes of an instance against the frustum, using the world matrices of its last update.
+     * @param instance The instance.
+     * @return The number of visible mesh nodes.
+     */
+    public int cull(ModelInstance instance) {
+        return cull(instance.getModel().getTransforms(), instance.getWorlds(), instance.getNodeCount(), instance.getSkeleton());
+    }
+
+    int cull(TransformHierarchy transforms, float[] worlds, int count, Skeleton skeleton) {
+        updateBounds(transforms, worlds, count, skeleton);
+        int[] parents = transforms.getParents();
+        float[] ownBoxes = this.ownBoxes;
+        float[] subtreeBoxes = this.subtreeBoxes;
+        byte[] states = this.states;
+        boolean[] visible = this.visible;
+        int visited = 0;
+        int culled = 0;
+        int visibleMeshes = 0;
+
+        for (int i = 0; i < count; i++) {
+            int parent = parents[i];
+            byte state = parent < 0 ? INTERSECT : states[parent];
+            if (state == INTERSECT) {
+                // Only subtrees crossing the frustum are tested; the others pass their result down
+                visited++;
+                state = test(subtreeBoxes, i * BOX);
+            }
+            states[i] = state;
+            if (state == OUTSIDE) culled++;
+
+            int o = i * BOX;
+            boolean own = state != OUTSIDE && !Bounds.isEmpty(ownBoxes, o)
+                    && (state == INSIDE || test(ownBoxes, o) != OUTSIDE);
+            visible[i] = own;
+            if (own) visibleMeshes++;
+        }
+
+        visitedCount = visited;
+        culledCount = culled;
+        visibleMeshCount = visibleMeshes;
+        if (Metrics.ENABLED) {
+            Metrics.add(Counter.BOUNDS_TESTED, visited);
+            Metrics.add(Counter.NODES_CULLED, culled);
+        }
+        return visibleMeshes;
+    }
+
+    /**
+     * Indicates whether a node of the last culled model or instance has a mesh in the frustum.
+     * @param handle The node handle.
+     * @return true if the node's meshes must be drawn.
+     */
+    public boolean isVisible(int handle) {
+        return handle < nodeCount && visible[handle];
+    }
+
+    /**
+     * Computes the world boxes of the nodes of a model, as {@link #cull(PModel)} does, without culling.
+     * @param model The model.
+     */
+    public void updateBounds(PModel model) {
+        TransformHierarchy transforms = model.getTransforms();
+        updateBounds(transforms, transforms.getWorlds(), transforms.getCount(), model.getSkeleton());
+    }
+
+    /**
+     * Computes the world boxes of the nodes of an instance, as {@link #cull(ModelInstance)} does, without culling.
+     * @param instance The instance.
+     */
+    public void updateBounds(ModelInstance instance) {
+        updateBounds(instance.getModel().getTransforms(), instance.getWorlds(), instance.getNodeCount(), instance.getSkeleton());
+    }
+
+    /**
+     * Copies the world box of a node and all of its descendants, as computed by the last update or cull.
+     * @param handle The node handle; the box of handle 0 encloses the whole model.
+     * @param dest The array receiving the box, minimum x y z then maximum x y z.
+     * @param offset Offset of the box in dest.
+     */
+    public void getSubtreeBounds(int handle, float[] dest, int offset) {
+        System.arraycopy(subtreeBoxes, handle * BOX, dest, offset, BOX);
+    }
+
+    void updateBounds(TransformHierarchy transforms, float[] worlds, int count, Skeleton skeleton) {
+        ensureCapacity(count);
+        nodeCount = count;
+        int[] parents = transforms.getParents();
+        float[] ownBoxes = this.ownBoxes;
+        float[] subtreeBoxes = this.subtreeBoxes;
+
+        for (int i = 0; i < count; i++) {
+            int o = i * BOX;
+            Bounds.clear(ownBoxes, o);
+            if (transforms.getNode(i) instanceof MeshNode meshNode) {
+                List<Mesh> meshes = meshNode.meshes;
+                for (int m = 0, size = meshes.size(); m < size; m++) {
+                    addMesh(meshes.get(m), worlds, i * MATRIX_STRIDE, skeleton, ownBoxes, o);
+                }
+            }
+        }
+        System.arraycopy(ownBoxes, 0, subtreeBoxes, 0, count * BOX);
+        // Children come after their parents, so a reverse pass merges every subtree into its root in one go
+        for (int i = count - 1; i >= 0; i--) {
+            int parent = parents[i];
+            if (parent >= 0 && !Bounds.isEmpty(subtreeBoxes, i * BOX)) {
+                Bounds.union(subtreeBoxes, i * BOX, subtreeBoxes, parent * BOX);
+            }
+        }
+    }
+
+    /**
+     * Grows a node's world box to enclose a mesh drawn with the node's world matrix.
+     */
+    private void addMesh(Mesh mesh, float[] worlds, int worldOffset, Skeleton skeleton, float[] boxes, int o) {
+        float[] box = boxScratch;
+        if (mesh.isSkinned) {
+            float[] jointBounds = mesh.getJointBounds();
+            if (jointBounds == null || skeleton == null) {
+                unbounded(boxes, o);
+                return;
+            }
+            // Union of the joint boxes moved by the skinning matrices, in the space of the node
+            FloatBuffer palette = skeleton.getPalette();
+            int joints = jointBounds.length / BOX;
+            if (joints > skeleton.getJointCount()) {
+                unbounded(boxes, o); // Joints missing from the skeleton leave vertices anywhere
+                return;
+            }
+            Bounds.clear(skinBox, 0);
+            for (int j = 0; j < joints; j++) {
+                if (Bounds.isEmpty(jointBounds, j * BOX)) continue;
+                palette.get(j * MATRIX_STRIDE, matrixScratch);
+                Bounds.transform(matrixScratch, 0, jointBounds, j * BOX, box, 0);
+                Bounds.union(box, 0, skinBox, 0);
+            }
+            if (Bounds.isEmpty(skinBox, 0)) return;
+            Bounds.transform(worlds, worldOffset, skinBox, 0, box, 0);
+        } else {
+            Bounds bounds = mesh.getBounds();
+            if (bounds == null) {
+                unbounded(boxes, o);
+                return;
+            }
+            if (bounds.isEmpty()) return;
+            bounds.getBox(box, 0);
+            Bounds.transform(worlds, worldOffset, box, 0, box, 0);
+        }
+        Bounds.union(box, 0, boxes, o);
+    }
+
+    private static void unbounded(float[] boxes, int o) {
+        boxes[o] = boxes[o + 1] = boxes[o + 2] = -UNBOUNDED;
+        boxes[o + 3] = boxes[o + 4] = boxes[o + 5] = UNBOUNDED;
+    }
+
+    private byte test(float[] boxes, int o) {
+        if (Bounds.isEmpty(boxes, o)) return OUTSIDE;
+        int result = frustum.intersectAab(boxes[o], boxes[o + 1], boxes[o + 2], boxes[o + 3], boxes[o + 4], boxes[o + 5]);
+        if (result == FrustumIntersection.INSIDE) return INSIDE;
+        return result == FrustumIntersection.INTERSECT ? INTERSECT : OUTSIDE;
+    }
+
+    private void ensureCapacity(int count) {
+        if (states.length >= count) return;
+        int capacity = Math.max(count, states.length * 2);
+        ownBoxes = Arrays.copyOf(ownBoxes, capacity * BOX);
+        subtreeBoxes = Arrays.copyOf(subtreeBoxes, capacity * BOX);
+        states = Arrays.copyOf(states, capacity);
+        visible = Arrays.copyOf(visible, capacity);
+    }
+}
@@ -1,27 +1,48 @@
 package net.modularmods.protogl.model;
 
 import net.modularmods.protogl.gl.Mesh;
-import org.joml.Matrix4f;
 
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A node drawing one or more meshes. The meshes are held in {@link #meshes}, which replaces the former single
+ * {@code mesh} field; {@link #getMesh()} and {@link #setMesh(Mesh)} remain for code written against it.
+ */
 public class MeshNode extends Node {
 
-    public Mesh mesh;
+    public final List<Mesh> meshes = new ArrayList<>(); // Meshes drawn by this node, in order
 
     public MeshNode(String nodeName) {
         super(nodeName);
     }
 
-    @Override
-    public void render(Matrix4f parentMatrix) {
-        updateModelViewMatrix(); // Only updates if transform is dirty
-        Matrix4f transform = new Matrix4f(parentMatrix).mul(this.modelMatrix);
+    /**
+     * Returns the first mesh of this node.
+     * @return the first mesh, or null if the node has none.
+     * @deprecated Use {@link #meshes}, as a node may draw several meshes.
+     */
+    @Deprecated
+    public Mesh getMesh() {
+        return meshes.isEmpty() ? null : meshes.get(0);
+    }
 
-        if (this.mesh != null) {
-            this.mesh.render(); // Render the mesh
-        }
+    /**
+     * Makes this node draw a single mesh, replacing all of its meshes.
+     * @param mesh The mesh, or null to draw nothing.
+     * @deprecated Modify {@link #meshes} instead.
+     */
+    @Deprecated
+    public void setMesh(Mesh mesh) {
+        meshes.clear();
+        if (mesh != null) meshes.add(mesh);
+    }
 
-        for (Node child : this.children) {
-            child.render(transform); // Render child nodes
+    @Override
+    protected void draw() {
+        List<Mesh> meshes = this.meshes;
+        for (int i = 0, size = meshes.size(); i < size; i++) {
+            meshes.get(i).render(); // Render the mesh
         }
     }
 }
@@ -0,0 +1,150 @@
+package net.modularmods.protogl.model;
+
+import lombok.Getter;
+import org.joml.Matrix4f;
+import org.joml.Matrix4fc;
+
+import java.util.Arrays;
+
+/**
+ * A lightweight copy of a {@link PModel}: it shares the model's node hierarchy and meshes and only owns its transform
+ * state, i.e. one local TRS and one world matrix per node ({@code 105} bytes per node), plus its own
+ * {@link Skeleton} pose for rigged models. Nodes are addressed by the handles of the model
+ * ({@link PModel#resolve(String)}).
+ * <p>
+ * An instance covers the nodes the model had when it was instantiated; nodes added to the model later are ignored.
+ * <p>
+ * Different instances, including instances of the same model, may be {@link #update updated} on different threads at
+ * once, e.g. to spread a crowd over workers. A single instance is not thread-safe, and rendering and skinning upload to
+ * shared GL objects, so they stay on the GL thread.
+ */
+public class ModelInstance {
+
+    @Getter
+    private final PModel model;
+
+    private final int count;      // Number of nodes covered by this instance
+    @Getter
+    private final float[] locals; // Local TRS per node, laid out as TransformHierarchy#getLocals()
+    @Getter
+    private final float[] worlds; // World matrix per node, laid out as TransformHierarchy#getWorlds()
+    private final byte[] flags;   // Dirty bits per node
+    @Getter
+    private final Skeleton skeleton; // Pose of this instance's joints, null if the model has no armature
+
+    private final Matrix4f parentScratch = new Matrix4f(); // Own scratch, so instances of a model update concurrently
+    private final Matrix4f localScratch = new Matrix4f();
+
+    /**
+     * Creates an instance starting from the model's current local transforms.
+     * @param model The model to share.
+     */
+    ModelInstance(PModel model) {
+        TransformHierarchy transforms = model.getTransforms();
+        this.model = model;
+        this.count = transforms.getCount();
+        this.locals = new float[count * TransformHierarchy.LOCAL_STRIDE];
+        this.worlds = new float[count * TransformHierarchy.MATRIX_STRIDE];
+        this.flags = new byte[count];
+        System.arraycopy(transforms.getLocals(), 0, locals, 0, locals.length);
+        Arrays.fill(flags, TransformHierarchy.DIRTY);
+        this.skeleton = model.getSkeleton() != null ? model.getSkeleton().copy() : null;
+    }
+
+    /**
+     * Returns the number of nodes covered by this instance.
+     * @return The node count.
+     */
+    public int getNodeCount() {
+        return count;
+    }
+
+    public void setTranslation(int handle, float x, float y, float z) {
+        int offset = handle * TransformHierarchy.LOCAL_STRIDE;
+        locals[offset] = x;
+        locals[offset + 1] = y;
+        locals[offset + 2] = z;
+        flags[handle] |= TransformHierarchy.DIRTY;
+    }
+
+    public void setRotation(int handle, float x, float y, float z, float w) {
+        int offset = handle * TransformHierarchy.LOCAL_STRIDE + 3;
+        locals[offset] = x;
+        locals[offset + 1] = y;
+        locals[offset + 2] = z;
+        locals[offset + 3] = w;
+        flags[handle] |= TransformHierarchy.DIRTY;
+    }
+
+    public void setScale(int handle, float x, float y, float z) {
+        int offset = handle * TransformHierarchy.LOCAL_STRIDE + 7;
+        locals[offset] = x;
+        locals[offset + 1] = y;
+        locals[offset + 2] = z;
+        flags[handle] |= TransformHierarchy.DIRTY;
+    }
+
+    /**
+     * Marks a node's local transform as changed, e.g. after writing to {@link #getLocals()} directly.
+     * @param handle The node handle.
+     */
+    public void markDirty(int handle) {
+        flags[handle] |= TransformHierarchy.DIRTY;
+    }
+
+    /**
+     * Copies a node's world matrix, as computed by the last update.
+     * @param handle The node handle.
+     * @param dest The matrix receiving the result.
+     * @return dest.
+     */
+    public Matrix4f getWorldMatrix(int handle, Matrix4f dest) {
+        return dest.set(worlds, handle * TransformHierarchy.MATRIX_STRIDE);
+    }
+
+    /**
+     * Recomputes the world matrices of this instance in one linear pass over the shared hierarchy. The pass only
+     * touches this instance's state, so other instances of the model may be updated on other threads meanwhile.
+     * @param rootMatrix The matrix placing this instance in the world.
+     * @param rootChanged Whether the root matrix changed since the last update.
+     */
+    public void update(Matrix4fc rootMatrix, boolean rootChanged) {
+        model.getTransforms().updateWorldMatrices(count, locals, worlds, flags, rootMatrix, rootChanged, parentScratch, localScratch);
+    }
+
+    /**
+     * Computes this instance's matrix palette and uploads it to the skinned meshes it shares with the model. Since
+     * the bone buffers are shared, this must be called right before drawing the instance. Must be called on the GL
+     * thread; does nothing for models without an armature.
+     */
+    public void updateSkinning() {
+        if (skeleton == null) return;
+        skeleton.update();
+        PModel.uploadSkinning(model.getTransforms(), count, skeleton);
+    }
+
+    /**
+     * Updates the world matrices, then draws the shared meshes in hierarchy order. Must be called on the GL thread.
+     * @param rootMatrix The matrix placing this instance in the world.
+     * @param rootChanged Whether the root matrix changed since the last render.
+     */
+    public void render(Matrix4fc rootMatrix, boolean rootChanged) {
+        render(rootMatrix, rootChanged, null);
+    }
+
+    /**
+     * Updates the world matrices, then draws the shared meshes in the view in hierarchy order. Must be called on the
+     * GL thread.
+     * @param rootMatrix The matrix placing this instance in the world.
+     * @param rootChanged Whether the root matrix changed since the last render.
+     * @param culler The culler skipping nodes outside the view, or null to draw every node.
+     */
+    public void render(Matrix4fc rootMatrix, boolean rootChanged, FrustumCuller culler) {
+        update(rootMatrix, rootChanged);
+        if (culler != null) culler.cull(this);
+        TransformHierarchy transforms = model.getTransforms();
+        for (int i = 0; i < count; i++) {
+            if (culler == null || culler.isVisible(i)) transforms.getNode(i).draw();
+        }
+    }
+}
@@ -1,14 +1,22 @@
 package net.modularmods.protogl.model;
 
+import net.modularmods.protogl.profiling.Counter;
+import net.modularmods.protogl.profiling.Metrics;
 import lombok.Getter;
 import lombok.Setter;
 import org.joml.Matrix4f;
+import org.joml.Matrix4fc;
 import org.joml.Quaternionf;
 import org.joml.Vector3f;
 
 import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * A node of the scene graph, holding a local transform and a list of children. Standalone nodes store their own
+ * transform; nodes owned by a {@link PModel} are views over the model's {@link TransformHierarchy}, and every
+ * transform accessor reads from and writes to that flat storage instead.
+ */
 public class Node {
 
     public String nodeName;
@@ -27,10 +35,19 @@ public class Node {
     protected Quaternionf rotation;
     protected Vector3f scale;
 
-    @Getter
     protected Matrix4f modelMatrix;
 
+    protected Matrix4f worldMatrix;
+
+    @Getter
+    protected TransformHierarchy hierarchy; // Flat storage this node is a view of, or null for standalone nodes
+    @Getter
+    protected int hierarchyIndex = -1;      // Slot of this node in the hierarchy
+
     private boolean isTransformDirty = true;
+    private boolean isWorldDirty = true; // Set when the node is (re)attached, forcing a world matrix update
+
+    private Matrix4f lastParentMatrix; // Parent matrix of the last render, only used when this node is a traversal root
 
     public Node(String nodeName) {
         this.nodeName = nodeName;
@@ -39,6 +56,7 @@ public class Node {
         this.rotation = new Quaternionf();
         this.scale = new Vector3f(1f, 1f, 1f);
         this.modelMatrix = new Matrix4f();
+        this.worldMatrix = new Matrix4f();
         updateModelViewMatrix();
     }
 
@@ -46,6 +64,30 @@ public class Node {
     public void addChild(Node child) {
         children.add(child);
         child.parent = this;
+        child.isWorldDirty = true;
+        if (hierarchy != null) {
+            child.bind(hierarchy, hierarchyIndex); // Keep the flat storage in sync with the tree
+        }
+    }
+
+    /**
+     * Moves this node and its subtree into a flat hierarchy, copying the current transforms. From then on the node
+     * is a view over its slot in the hierarchy.
+     *
+     * @param hierarchy   The hierarchy to append to.
+     * @param parentIndex The slot of this node's parent, or -1 for a root.
+     */
+    protected void bind(TransformHierarchy hierarchy, int parentIndex) {
+        int index = hierarchy.add(this, parentIndex);
+        hierarchy.setTranslation(index, position.x, position.y, position.z);
+        hierarchy.setRotation(index, rotation.x, rotation.y, rotation.z, rotation.w);
+        hierarchy.setScale(index, scale.x, scale.y, scale.z);
+        this.hierarchy = hierarchy;
+        this.hierarchyIndex = index;
+
+        for (int i = 0, size = children.size(); i < size; i++) {
+            children.get(i).bind(hierarchy, index);
+        }
     }
 
     /**
@@ -73,47 +115,158 @@ public class Node {
     }
 
     public void setPosition(float x, float y, float z) {
+        if (hierarchy != null) {
+            hierarchy.setTranslation(hierarchyIndex, x, y, z);
+            return;
+        }
         this.position.set(x, y, z);
         isTransformDirty = true;
     }
 
     public void setRotation(float x, float y, float z) {
         this.rotation.rotationXYZ(x, y, z);
+        if (hierarchy != null) {
+            hierarchy.setRotation(hierarchyIndex, rotation.x, rotation.y, rotation.z, rotation.w);
+            return;
+        }
         isTransformDirty = true;
     }
 
     public void setRotation(float x, float y, float z, float w) {
-        this.rotation = new Quaternionf(x, y, z, w);
+        if (hierarchy != null) {
+            hierarchy.setRotation(hierarchyIndex, x, y, z, w);
+            return;
+        }
+        this.rotation.set(x, y, z, w);
+        isTransformDirty = true;
     }
 
     public void setScale(float x, float y, float z) {
+        if (hierarchy != null) {
+            hierarchy.setScale(hierarchyIndex, x, y, z);
+            return;
+        }
         this.scale.set(x, y, z);
         isTransformDirty = true;
     }
 
     public void rotate(float angle, float x, float y, float z) {
-        Quaternionf deltaRotation = new Quaternionf().rotationAxis(angle, x, y, z);
-        rotation.mul(deltaRotation);
+        if (hierarchy != null) {
+            float[] locals = hierarchy.getLocals();
+            int offset = hierarchyIndex * TransformHierarchy.LOCAL_STRIDE + 3;
+            rotation.set(locals[offset], locals[offset + 1], locals[offset + 2], locals[offset + 3]).rotateAxis(angle, x, y, z);
+            hierarchy.setRotation(hierarchyIndex, rotation.x, rotation.y, rotation.z, rotation.w);
+            return;
+        }
+        rotation.rotateAxis(angle, x, y, z); // Same as multiplying by a delta rotation, without allocating it
         isTransformDirty = true;
     }
 
-    protected void updateModelViewMatrix() {
+    /**
+     * Returns the local model matrix, recomputing it if needed.
+     *
+     * @return The local model matrix.
+     */
+    public Matrix4f getModelMatrix() {
+        updateModelViewMatrix();
+        return modelMatrix;
+    }
+
+    /**
+     * Returns the world matrix (parent world matrix times the local model matrix) computed by the last render.
+     *
+     * @return The world matrix.
+     */
+    public Matrix4f getWorldMatrix() {
+        if (hierarchy != null) {
+            return hierarchy.getWorldMatrix(hierarchyIndex, worldMatrix);
+        }
+        return worldMatrix;
+    }
+
+    /**
+     * Recomputes the local model matrix if the transform is dirty.
+     *
+     * @return Whether the matrix was recomputed.
+     */
+    protected boolean updateModelViewMatrix() {
+        if (hierarchy != null) {
+            hierarchy.getLocalMatrix(hierarchyIndex, modelMatrix);
+            return hierarchy.isDirty(hierarchyIndex);
+        }
         if (isTransformDirty) {
             this.modelMatrix.identity()
                     .translate(position)
                     .rotate(rotation)
                     .scale(scale);
             isTransformDirty = false;
+            return true;
         }
+        return false;
     }
 
+    /**
+     * Recomputes the cached world matrix if this node, or one of its ancestors, changed since the last traversal.
+     *
+     * @param parentMatrix  The world matrix of the parent.
+     * @param parentChanged Whether the parent world matrix changed since the last traversal.
+     * @return Whether the world matrix was recomputed, meaning the children must update too.
+     */
+    protected boolean updateWorldMatrix(Matrix4fc parentMatrix, boolean parentChanged) {
+        boolean changed = updateModelViewMatrix() | parentChanged | isWorldDirty;
+        if (changed) {
+            parentMatrix.mul(this.modelMatrix, this.worldMatrix);
+            isWorldDirty = false;
+            if (hierarchy != null) {
+                hierarchy.setWorldMatrix(hierarchyIndex, this.worldMatrix);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Renders this node and its subtree. This is the traversal entry point: the parent matrix is compared with the
+     * one of the previous call, and only the world matrices of dirty nodes and their descendants are recomputed.
+     *
+     * @param parentMatrix The world matrix to place this node under.
+     */
     public void render(Matrix4f parentMatrix) {
-        updateModelViewMatrix(); // Only updates if transform is dirty
-        Matrix4f transform = new Matrix4f(parentMatrix).mul(this.modelMatrix);
+        boolean parentChanged = lastParentMatrix == null || !lastParentMatrix.equals(parentMatrix);
+        if (parentChanged) {
+            if (lastParentMatrix == null) {
+                lastParentMatrix = new Matrix4f(parentMatrix); // Only allocated once, on the first render of a root
+            } else {
+                lastParentMatrix.set(parentMatrix);
+            }
+        }
+        render(parentMatrix, parentChanged);
+    }
+
+    /**
+     * Renders this node and its subtree without allocating.
+     *
+     * @param parentMatrix  The world matrix of the parent.
+     * @param parentChanged Whether the parent world matrix changed since the last traversal.
+     */
+    protected void render(Matrix4fc parentMatrix, boolean parentChanged) {
+        boolean changed = updateWorldMatrix(parentMatrix, parentChanged);
+        if (Metrics.ENABLED) {
+            Metrics.add(Counter.NODES_VISITED, 1);
+            if (changed) Metrics.add(Counter.MATRICES_RECOMPUTED, 1);
+        }
 
-        for (Node child : this.children) {
-            child.render(transform); // Render child nodes
+        draw();
+
+        List<Node> children = this.children;
+        for (int i = 0, size = children.size(); i < size; i++) {
+            children.get(i).render(this.worldMatrix, changed); // Render child nodes
         }
     }
 
+    /**
+     * Draws whatever this node displays, once its world matrix is up to date. Plain nodes draw nothing.
+     */
+    protected void draw() {
+    }
+
 }
\ No newline at end of file
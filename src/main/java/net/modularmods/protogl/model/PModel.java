@@ -1,21 +1,67 @@
 package net.modularmods.protogl.model;
 
 import net.modularmods.protogl.gl.Mesh;
+import net.modularmods.protogl.gl.MeshData;
+import net.modularmods.protogl.loader.data.JointData;
 import net.modularmods.protogl.loader.data.ModelData;
 import net.modularmods.protogl.loader.data.NodeData;
-import org.joml.Quaternionf;
-import org.joml.Vector3f;
+import lombok.Getter;
+import lombok.Setter;
+import org.joml.Matrix4fc;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 
+/**
+ * A model built from {@link ModelData}. The node tree is kept for navigation, while all transforms live in a flat
+ * {@link TransformHierarchy} owned by the model: rendering updates every world matrix in one linear pass, then draws
+ * the mesh nodes in hierarchy order, skipping those outside the view when a {@link FrustumCuller} is set.
+ */
 public class PModel extends Node {
 
     private ModelData modelData;
 
+    @Getter
+    private final TransformHierarchy transforms;
+
+    private final Function<NodeData, List<Mesh>> meshProvider; // Supplies the GPU meshes of each node
+
+    @Getter
+    private final Skeleton skeleton; // Built from the model's joints, null if the model has no armature
+
+    @Getter
+    @Setter
+    private FrustumCuller culler; // Skips nodes outside the view when rendering, null to draw every node
+
     public PModel(String nodeName, ModelData modelData) {
+        this(nodeName, modelData, false);
+    }
+
+    /**
+     * Builds a model, optionally merging the meshes of each multi-mesh node into a single VAO.
+     * @param nodeName The name of the model's root node.
+     * @param modelData The decoded model.
+     * @param mergeMeshes Whether nodes with several compatible meshes get one merged mesh with sub-draw ranges,
+     *                    costing one buffer bind instead of one per mesh.
+     */
+    public PModel(String nodeName, ModelData modelData, boolean mergeMeshes) {
+        this(nodeName, modelData, nodeData -> createMeshes(nodeData.getMeshes(), mergeMeshes));
+    }
+
+    /**
+     * Builds a model whose meshes are supplied by the caller, e.g. meshes uploaded ahead of time by an upload
+     * queue or shared through a cache. No GL call is made by this constructor unless the provider makes one.
+     * @param nodeName The name of the model's root node.
+     * @param modelData The decoded model.
+     * @param meshProvider Returns the meshes to draw for each node that has mesh data.
+     */
+    public PModel(String nodeName, ModelData modelData, Function<NodeData, List<Mesh>> meshProvider) {
         super(nodeName);
         this.modelData = modelData;
+        this.meshProvider = meshProvider;
         Map<String, Node> nodesMap = new HashMap<>();
 
         // Create all nodes
@@ -23,13 +69,102 @@ public class PModel extends Node {
 
         // Establish parent-child relationships
         establishHierarchy(modelData, nodesMap);
+
+        // Move every transform into flat storage, in parent-before-child order
+        this.transforms = new TransformHierarchy(nodesMap.size() + 1);
+        bind(transforms, -1);
+
+        JointData[] jointData = modelData.getJointData();
+        this.skeleton = modelData.isHasArmature() && jointData != null ? new Skeleton(jointData) : null;
     }
 
+    @Override
+    protected void render(Matrix4fc parentMatrix, boolean parentChanged) {
+        TransformHierarchy transforms = this.transforms;
+        transforms.updateWorldMatrices(parentMatrix, parentChanged);
+
+        FrustumCuller culler = this.culler;
+        if (culler != null) culler.cull(this);
+        for (int i = 0, count = transforms.getCount(); i < count; i++) {
+            if (culler == null || culler.isVisible(i)) transforms.getNode(i).draw();
+        }
+    }
+
+    /**
+     * Computes the skeleton's matrix palette from its current pose and uploads it to every skinned mesh of the
+     * model. Must be called on the GL thread, before rendering. Does nothing for models without an armature.
+     */
+    public void updateSkinning() {
+        if (skeleton == null) return;
+        skeleton.update();
+        uploadSkinning(transforms, transforms.getCount(), skeleton);
+    }
+
+    static void uploadSkinning(TransformHierarchy transforms, int count, Skeleton skeleton) {
+        for (int i = 0; i < count; i++) {
+            if (transforms.getNode(i) instanceof MeshNode meshNode) {
+                List<Mesh> meshes = meshNode.meshes;
+                for (int m = 0, size = meshes.size(); m < size; m++) {
+                    Mesh mesh = meshes.get(m);
+                    if (mesh.isSkinned) skeleton.upload(mesh);
+                }
+            }
+        }
+    }
+
+    /**
+     * Looks up a node of this model by name, through the index kept by the model's hierarchy.
+     * @param nodeName The node name.
+     * @return The node, or null if the model has no node with that name.
+     */
     public Node getNode(String nodeName) {
-        if (this.nodeName.equals(nodeName)) {
-            return this;
+        int handle = resolve(nodeName);
+        return handle >= 0 ? node(handle) : null;
+    }
+
+    /**
+     * Resolves a node name to an integer handle once, so that hot code can access the node without hashing strings.
+     * Handles stay valid for the lifetime of the model, including nodes added later through {@link #addChild}.
+     * @param nodeName The node name.
+     * @return The node handle, or -1 if the model has no node with that name.
+     */
+    public int resolve(String nodeName) {
+        return transforms.indexOf(nodeName);
+    }
+
+    /**
+     * Returns the node behind a handle obtained from {@link #resolve(String)}.
+     * @param handle The node handle.
+     * @return The node.
+     */
+    public Node node(int handle) {
+        return transforms.getNode(handle);
+    }
+
+    /**
+     * Creates a lightweight instance sharing this model's hierarchy and meshes, with its own transforms initialized
+     * from the model's current local transforms.
+     * @return The new instance.
+     */
+    public ModelInstance instantiate() {
+        return new ModelInstance(this);
+    }
+
+    /**
+     * Uploads the meshes of a node. Must be called on the GL thread.
+     * @param meshes The mesh data of the node.
+     * @param mergeMeshes Whether compatible meshes are merged into a single VAO.
+     * @return The uploaded meshes.
+     */
+    public static List<Mesh> createMeshes(MeshData[] meshes, boolean mergeMeshes) {
+        if (mergeMeshes && Mesh.canMerge(meshes)) {
+            return List.of(Mesh.loadMerged(meshes));
+        }
+        List<Mesh> result = new ArrayList<>(meshes.length);
+        for (MeshData meshData : meshes) {
+            result.add(Mesh.load(meshData));
         }
-        return this.getAllChildren().stream().filter(node -> node.nodeName.equals(nodeName)).findFirst().orElse(null);
+        return result;
     }
 
     private void createNodes(ModelData modelData, Map<String, Node> nodesMap) {
@@ -41,15 +176,19 @@ public class PModel extends Node {
 
     private Node createNodeFromData(NodeData nodeData) {
         Node node;
-        if (nodeData.getMeshData() != null) {
-            node = new MeshNode(nodeData.getNodeName());
-            ((MeshNode) node).mesh = Mesh.load(nodeData.getMeshData());
+        if (nodeData.hasMeshes()) {
+            MeshNode meshNode = new MeshNode(nodeData.getNodeName());
+            meshNode.meshes.addAll(meshProvider.apply(nodeData));
+            node = meshNode;
         } else {
             node = new Node(nodeData.getNodeName());
         }
-        node.position = new Vector3f(nodeData.getTranslation());
-        node.rotation = new Quaternionf(nodeData.getRotation()[0], nodeData.getRotation()[1], nodeData.getRotation()[2], nodeData.getRotation()[3]);
-        node.scale = new Vector3f(nodeData.getScale());
+        float[] translation = nodeData.getTranslation();
+        float[] rotation = nodeData.getRotation();
+        float[] scale = nodeData.getScale();
+        node.setPosition(translation[0], translation[1], translation[2]);
+        node.setRotation(rotation[0], rotation[1], rotation[2], rotation[3]);
+        node.setScale(scale[0], scale[1], scale[2]);
         return node;
     }
 
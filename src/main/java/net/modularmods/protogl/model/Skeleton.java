@@ -0,0 +1,253 @@
+package net.modularmods.protogl.model;
+
+import lombok.Getter;
+import net.modularmods.protogl.gl.Mesh;
+import net.modularmods.protogl.loader.data.JointData;
+import org.joml.Matrix4f;
+import org.joml.Quaternionf;
+import org.joml.Vector3f;
+import org.lwjgl.BufferUtils;
+
+import java.nio.FloatBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Runtime skeleton built from the {@link JointData} of a model. Joints keep the index they have in the file, which is
+ * the index skinned vertices refer to, and are evaluated in parent-first order, so world matrices are computed in one
+ * linear pass like {@link TransformHierarchy}.
+ * <p>
+ * Each {@link #update()} computes the world matrix of every joint and its skinning matrix ({@code world * invBind})
+ * straight into one direct buffer, the matrix palette, ready to be passed to {@link Mesh#updateBoneTransforms}.
+ * Updating does not allocate, and the palette holds exactly one matrix per joint.
+ * <p>
+ * Local transforms use the layout of {@link TransformHierarchy#getLocals()} and start at the bind pose.
+ */
+public class Skeleton {
+
+    private static final int LOCAL_STRIDE = TransformHierarchy.LOCAL_STRIDE;
+    private static final int MATRIX_STRIDE = TransformHierarchy.MATRIX_STRIDE;
+
+    private final String[] names;     // Joint name per joint, shared by copies
+    @Getter
+    private final int[] parents;      // Parent index per joint, -1 for roots, shared by copies
+    private final int[] order;        // Joint indices in parent-first order, shared by copies
+    private final float[] invBinds;   // Inverse bind matrix per joint, shared by copies
+    private final Map<String, Integer> indicesByName; // Shared by copies
+
+    @Getter
+    private final float[] locals;     // Local TRS per joint
+    @Getter
+    private final float[] worlds;     // Model-space matrix per joint, as computed by the last update
+    @Getter
+    private final FloatBuffer palette; // Skinning matrix per joint, position 0 and limit at the last joint
+
+    private final Matrix4f parentScratch = new Matrix4f();
+    private final Matrix4f localScratch = new Matrix4f();
+    private final Matrix4f skinScratch = new Matrix4f();
+
+    /**
+     * Builds a skeleton in its bind pose.
+     * @param joints The joints of the model, in file order. Joints whose parent is unknown are roots.
+     */
+    public Skeleton(JointData[] joints) {
+        int count = joints.length;
+        this.names = new String[count];
+        this.parents = new int[count];
+        this.order = new int[count];
+        this.invBinds = new float[count * MATRIX_STRIDE];
+        this.indicesByName = new HashMap<>();
+        this.locals = new float[count * LOCAL_STRIDE];
+        this.worlds = new float[count * MATRIX_STRIDE];
+        this.palette = BufferUtils.createFloatBuffer(Math.max(count, 1) * MATRIX_STRIDE);
+        palette.limit(count * MATRIX_STRIDE);
+
+        for (int i = 0; i < count; i++) {
+            names[i] = joints[i].getJointName();
+            indicesByName.putIfAbsent(names[i], i);
+            System.arraycopy(joints[i].getInvBindMatrix(), 0, invBinds, i * MATRIX_STRIDE, MATRIX_STRIDE);
+        }
+        for (int i = 0; i < count; i++) {
+            String parentName = joints[i].getParentJointName();
+            Integer parent = parentName != null ? indicesByName.get(parentName) : null;
+            parents[i] = parent != null && parent != i ? parent : -1;
+        }
+        sortParentFirst();
+        setBindPose();
+    }
+
+    /**
+     * Creates a skeleton sharing the joints of another one, with its own pose and palette.
+     */
+    private Skeleton(Skeleton source) {
+        int count = source.getJointCount();
+        this.names = source.names;
+        this.parents = source.parents;
+        this.order = source.order;
+        this.invBinds = source.invBinds;
+        this.indicesByName = source.indicesByName;
+        this.locals = source.locals.clone();
+        this.worlds = source.worlds.clone();
+        this.palette = BufferUtils.createFloatBuffer(Math.max(count, 1) * MATRIX_STRIDE);
+        palette.put(source.palette.duplicate()).flip();
+    }
+
+    /**
+     * Creates a skeleton sharing this one's joints, e.g. for a {@link ModelInstance}, starting from the current pose.
+     * @return The new skeleton.
+     */
+    public Skeleton copy() {
+        return new Skeleton(this);
+    }
+
+    public int getJointCount() {
+        return names.length;
+    }
+
+    /**
+     * Looks up a joint by name.
+     * @param jointName The joint name.
+     * @return The joint index, or -1 if the skeleton has no joint with that name.
+     */
+    public int indexOf(String jointName) {
+        Integer index = indicesByName.get(jointName);
+        return index != null ? index : -1;
+    }
+
+    public String getJointName(int joint) {
+        return names[joint];
+    }
+
+    public void setTranslation(int joint, float x, float y, float z) {
+        int offset = joint * LOCAL_STRIDE;
+        locals[offset] = x;
+        locals[offset + 1] = y;
+        locals[offset + 2] = z;
+    }
+
+    public void setRotation(int joint, float x, float y, float z, float w) {
+        int offset = joint * LOCAL_STRIDE + 3;
+        locals[offset] = x;
+        locals[offset + 1] = y;
+        locals[offset + 2] = z;
+        locals[offset + 3] = w;
+    }
+
+    public void setScale(int joint, float x, float y, float z) {
+        int offset = joint * LOCAL_STRIDE + 7;
+        locals[offset] = x;
+        locals[offset + 1] = y;
+        locals[offset + 2] = z;
+    }
+
+    /**
+     * Computes the model-space matrix of every joint, then its skinning matrix into the palette.
+     */
+    public void update() {
+        float[] locals = this.locals;
+        float[] worlds = this.worlds;
+        int[] parents = this.parents;
+        FloatBuffer palette = this.palette;
+
+        for (int j : order) {
+            int parent = parents[j];
+            Matrix4f local = TransformHierarchy.getLocalMatrix(locals, j, localScratch);
+            if (parent < 0) {
+                local.get(worlds, j * MATRIX_STRIDE);
+            } else {
+                parentScratch.set(worlds, parent * MATRIX_STRIDE).mul(local).get(worlds, j * MATRIX_STRIDE);
+            }
+        }
+        for (int j = 0, count = names.length; j < count; j++) {
+            int offset = j * MATRIX_STRIDE;
+            parentScratch.set(worlds, offset)
+                    .mul(skinScratch.set(invBinds, offset))
+                    .get(offset, palette);
+        }
+        palette.limit(names.length * MATRIX_STRIDE);
+    }
+
+    /**
+     * Uploads the palette of the last update to the bone UBO of a skinned mesh.
+     * @param mesh The mesh, skinned against this skeleton.
+     */
+    public void upload(Mesh mesh) {
+        mesh.updateBoneTransforms(palette);
+    }
+
+    /**
+     * Copies a joint's model-space matrix, as computed by the last update.
+     * @param joint The joint index.
+     * @param dest The matrix receiving the result.
+     * @return dest.
+     */
+    public Matrix4f getWorldMatrix(int joint, Matrix4f dest) {
+        return dest.set(worlds, joint * MATRIX_STRIDE);
+    }
+
+    /**
+     * Copies a joint's skinning matrix, as computed by the last update.
+     * @param joint The joint index.
+     * @param dest The matrix receiving the result.
+     * @return dest.
+     */
+    public Matrix4f getSkinMatrix(int joint, Matrix4f dest) {
+        return dest.set(joint * MATRIX_STRIDE, palette);
+    }
+
+    /**
+     * Fills {@link #order} so that every joint comes after its parent, keeping file order among siblings. Cycles are
+     * broken by treating the joint closing the cycle as a root.
+     */
+    private void sortParentFirst() {
+        int count = names.length;
+        byte[] state = new byte[count]; // 0 unvisited, 1 in progress, 2 placed
+        int[] stack = new int[count];
+        int placed = 0;
+        for (int i = 0; i < count; i++) {
+            // Walk up to the first unplaced ancestor, then place the chain top-down
+            int depth = 0;
+            int joint = i;
+            while (joint >= 0 && state[joint] == 0) {
+                state[joint] = 1;
+                stack[depth++] = joint;
+                joint = parents[joint];
+            }
+            if (joint >= 0 && state[joint] == 1) {
+                parents[stack[depth - 1]] = -1;
+            }
+            while (depth > 0) {
+                int next = stack[--depth];
+                state[next] = 2;
+                order[placed++] = next;
+            }
+        }
+    }
+
+    /**
+     * Derives each joint's local transform from the inverse bind matrices: {@code local = invBind(parent) * bind}.
+     */
+    private void setBindPose() {
+        Matrix4f bind = new Matrix4f();
+        Matrix4f local = new Matrix4f();
+        Vector3f translation = new Vector3f();
+        Quaternionf rotation = new Quaternionf();
+        Vector3f scale = new Vector3f();
+        for (int j = 0, count = names.length; j < count; j++) {
+            bind.set(invBinds, j * MATRIX_STRIDE).invert();
+            int parent = parents[j];
+            if (parent < 0) {
+                local.set(bind);
+            } else {
+                local.set(invBinds, parent * MATRIX_STRIDE).mul(bind);
+            }
+            local.getTranslation(translation);
+            local.getNormalizedRotation(rotation);
+            local.getScale(scale);
+            setTranslation(j, translation.x, translation.y, translation.z);
+            setRotation(j, rotation.x, rotation.y, rotation.z, rotation.w);
+            setScale(j, scale.x, scale.y, scale.z);
+        }
+        update();
+    }
+}
@@ -0,0 +1,243 @@
+package net.modularmods.protogl.model;
+
+import net.modularmods.protogl.profiling.Counter;
+import net.modularmods.protogl.profiling.Metrics;
+import net.modularmods.protogl.profiling.Timer;
+import lombok.Getter;
+import org.joml.Matrix4f;
+import org.joml.Matrix4fc;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Flat, data-oriented storage for the transforms of a node hierarchy. Nodes are stored in topological order (every
+ * parent before its children) with their parent index in {@link #getParents()}, so world matrices are computed in a
+ * single linear pass over contiguous arrays instead of a pointer-chasing recursion.
+ * <p>
+ * Local transforms are packed as {@value #LOCAL_STRIDE} floats per node (translation x y z, rotation quaternion
+ * x y z w, scale x y z) and world matrices as {@value #MATRIX_STRIDE} floats per node, in JOML's column-major order.
+ */
+public class TransformHierarchy {
+
+    public static final int LOCAL_STRIDE = 10;
+    public static final int MATRIX_STRIDE = 16;
+
+    static final byte DIRTY = 0x01;   // Local transform changed since the last pass
+    static final byte UPDATED = 0x02; // World matrix recomputed during the last pass
+
+    @Getter
+    private int count;       // Number of nodes stored
+    @Getter
+    private int[] parents;   // Parent index per node, -1 for roots
+    @Getter
+    private float[] locals;  // Local TRS per node
+    @Getter
+    private float[] worlds;  // World matrix per node
+    private byte[] flags;    // DIRTY / UPDATED bits per node
+    private Node[] nodes;    // Node viewing each slot
+    private final Map<String, Integer> indicesByName = new HashMap<>(); // First slot holding each node name
+
+    private final Matrix4f parentScratch = new Matrix4f(); // Used by the pass over this hierarchy's own arrays
+    private final Matrix4f localScratch = new Matrix4f();
+
+    /**
+     * Creates an empty hierarchy.
+     * @param capacity Initial number of node slots.
+     */
+    public TransformHierarchy(int capacity) {
+        capacity = Math.max(capacity, 1);
+        this.parents = new int[capacity];
+        this.locals = new float[capacity * LOCAL_STRIDE];
+        this.worlds = new float[capacity * MATRIX_STRIDE];
+        this.flags = new byte[capacity];
+        this.nodes = new Node[capacity];
+    }
+
+    /**
+     * Appends a node. Since the parent must already be stored, appending keeps the topological order.
+     * @param node The node viewing the new slot.
+     * @param parent Index of the parent node, or -1 for a root.
+     * @return The index of the new node.
+     */
+    public int add(Node node, int parent) {
+        if (parent >= count) {
+            throw new IllegalArgumentException("Parent " + parent + " must be added before its children");
+        }
+        if (count == parents.length) {
+            grow(count * 2);
+        }
+        int index = count++;
+        parents[index] = parent;
+        nodes[index] = node;
+        if (node.nodeName != null) {
+            indicesByName.putIfAbsent(node.nodeName, index);
+        }
+        setTranslation(index, 0f, 0f, 0f);
+        setRotation(index, 0f, 0f, 0f, 1f);
+        setScale(index, 1f, 1f, 1f);
+        return index;
+    }
+
+    /**
+     * Returns the node viewing a slot.
+     * @param index The node index.
+     * @return The node.
+     */
+    public Node getNode(int index) {
+        return nodes[index];
+    }
+
+    /**
+     * Looks up the slot of a node by name in constant time.
+     * @param name The node name.
+     * @return The index of the first node added with that name, or -1 if there is none.
+     */
+    public int indexOf(String name) {
+        Integer index = indicesByName.get(name);
+        return index != null ? index : -1;
+    }
+
+    public void setTranslation(int index, float x, float y, float z) {
+        int offset = index * LOCAL_STRIDE;
+        locals[offset] = x;
+        locals[offset + 1] = y;
+        locals[offset + 2] = z;
+        flags[index] |= DIRTY;
+    }
+
+    public void setRotation(int index, float x, float y, float z, float w) {
+        int offset = index * LOCAL_STRIDE + 3;
+        locals[offset] = x;
+        locals[offset + 1] = y;
+        locals[offset + 2] = z;
+        locals[offset + 3] = w;
+        flags[index] |= DIRTY;
+    }
+
+    public void setScale(int index, float x, float y, float z) {
+        int offset = index * LOCAL_STRIDE + 7;
+        locals[offset] = x;
+        locals[offset + 1] = y;
+        locals[offset + 2] = z;
+        flags[index] |= DIRTY;
+    }
+
+    /**
+     * Marks a node's local transform as changed, e.g. after writing to {@link #getLocals()} directly.
+     * @param index The node index.
+     */
+    public void markDirty(int index) {
+        flags[index] |= DIRTY;
+    }
+
+    /**
+     * Indicates whether a node's local transform changed since its world matrix was last computed.
+     * @param index The node index.
+     * @return true if dirty.
+     */
+    public boolean isDirty(int index) {
+        return (flags[index] & DIRTY) != 0;
+    }
+
+    /**
+     * Computes a node's local matrix from its packed TRS.
+     * @param index The node index.
+     * @param dest The matrix receiving the result.
+     * @return dest.
+     */
+    public Matrix4f getLocalMatrix(int index, Matrix4f dest) {
+        return getLocalMatrix(locals, index, dest);
+    }
+
+    static Matrix4f getLocalMatrix(float[] locals, int index, Matrix4f dest) {
+        int o = index * LOCAL_STRIDE;
+        return dest.translationRotateScale(locals[o], locals[o + 1], locals[o + 2],
+                locals[o + 3], locals[o + 4], locals[o + 5], locals[o + 6],
+                locals[o + 7], locals[o + 8], locals[o + 9]);
+    }
+
+    /**
+     * Copies a node's world matrix, as computed by the last pass.
+     * @param index The node index.
+     * @param dest The matrix receiving the result.
+     * @return dest.
+     */
+    public Matrix4f getWorldMatrix(int index, Matrix4f dest) {
+        return dest.set(worlds, index * MATRIX_STRIDE);
+    }
+
+    /**
+     * Stores a world matrix computed outside of the linear pass and clears the node's dirty bit.
+     * @param index The node index.
+     * @param world The world matrix.
+     */
+    public void setWorldMatrix(int index, Matrix4fc world) {
+        world.get(worlds, index * MATRIX_STRIDE);
+        flags[index] &= ~DIRTY;
+    }
+
+    /**
+     * Recomputes world matrices in one linear pass. A node is recomputed if its local transform is dirty or its
+     * parent was recomputed in the same pass; other nodes are skipped.
+     * @param rootMatrix The matrix that root nodes are placed under.
+     * @param rootChanged Whether the root matrix changed since the last pass.
+     */
+    public void updateWorldMatrices(Matrix4fc rootMatrix, boolean rootChanged) {
+        updateWorldMatrices(count, locals, worlds, flags, rootMatrix, rootChanged, parentScratch, localScratch);
+    }
+
+    /**
+     * Runs the linear pass of {@link #updateWorldMatrices(Matrix4fc, boolean)} over transform arrays owned by someone
+     * else, using this hierarchy's parent indices. This lets several {@link ModelInstance}s share one hierarchy while
+     * keeping their own transforms. The pass only reads the parent indices of this hierarchy and works in the
+     * caller's scratch matrices, so passes over different transform arrays may run on several threads at once.
+     * @param count Number of nodes to update, at most {@link #getCount()}.
+     * @param locals Local TRS per node, laid out as {@link #getLocals()}.
+     * @param worlds World matrix per node, laid out as {@link #getWorlds()}.
+     * @param flags Dirty bits per node.
+     * @param rootMatrix The matrix that root nodes are placed under.
+     * @param rootChanged Whether the root matrix changed since the last pass.
+     * @param parentScratch Scratch matrix owned by the caller.
+     * @param localScratch Scratch matrix owned by the caller.
+     */
+    void updateWorldMatrices(int count, float[] locals, float[] worlds, byte[] flags, Matrix4fc rootMatrix, boolean rootChanged,
+                             Matrix4f parentScratch, Matrix4f localScratch) {
+        long start = Metrics.ENABLED ? System.nanoTime() : 0L;
+        int[] parents = this.parents;
+        int recomputed = 0;
+
+        for (int i = 0; i < count; i++) {
+            int parent = parents[i];
+            boolean parentUpdated = parent < 0 ? rootChanged : (flags[parent] & UPDATED) != 0;
+
+            if (parentUpdated || (flags[i] & DIRTY) != 0) {
+                if (parent < 0) {
+                    parentScratch.set(rootMatrix);
+                } else {
+                    parentScratch.set(worlds, parent * MATRIX_STRIDE);
+                }
+                parentScratch.mul(getLocalMatrix(locals, i, localScratch)).get(worlds, i * MATRIX_STRIDE);
+                flags[i] = UPDATED;
+                recomputed++;
+            } else {
+                flags[i] = 0;
+            }
+        }
+
+        if (Metrics.ENABLED) {
+            Metrics.add(Counter.NODES_VISITED, count);
+            Metrics.add(Counter.MATRICES_RECOMPUTED, recomputed);
+            Metrics.stop(Timer.WORLD_UPDATE, start);
+        }
+    }
+
+    private void grow(int capacity) {
+        parents = Arrays.copyOf(parents, capacity);
+        locals = Arrays.copyOf(locals, capacity * LOCAL_STRIDE);
+        worlds = Arrays.copyOf(worlds, capacity * MATRIX_STRIDE);
+        flags = Arrays.copyOf(flags, capacity);
+        nodes = Arrays.copyOf(nodes, capacity);
+    }
+}
@@ -0,0 +1,33 @@
+package net.modularmods.protogl.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event emitted when a model has been decoded or uploaded.
+ */
+@Name("net.modularmods.protogl.Asset")
+@Label("Asset Load")
+@Category({"ProtoGL", "Loading"})
+@Description("A model decoded from a file or uploaded to the GPU")
+class AssetEvent extends Event {
+
+    @Label("Asset")
+    String asset;
+
+    @Label("Phase")
+    String phase; // LOAD or UPLOAD
+
+    @Label("Geometry Size")
+    @DataAmount
+    long bytes;
+
+    @Label("Time")
+    @Timespan
+    long nanos;
+}
@@ -0,0 +1,20 @@
+package net.modularmods.protogl.profiling;
+
+/**
+ * Quantities counted per frame by {@link Metrics}.
+ */
+public enum Counter {
+    NODES_VISITED,        // Nodes walked by world matrix updates
+    MATRICES_RECOMPUTED,  // World matrices actually recomputed
+    MESHES_DRAWN,         // Mesh draws, instanced draws counting once
+    DRAW_CALLS,           // glDraw* calls
+    GL_CALLS,             // Calls made through the graphics backend
+    BYTES_UPLOADED,       // Bytes passed to buffer uploads, all buffers included
+    BONE_BYTES_UPLOADED,  // Bytes uploaded to bone transform uniform buffers
+    ASSETS_LOADED,        // Models decoded
+    ASSETS_UPLOADED,      // Models whose meshes finished uploading
+    POSES_EVALUATED,      // Animation poses evaluated by the scheduler
+    POSES_SKIPPED,        // Scheduled pose evaluations skipped for rate or budget
+    BOUNDS_TESTED,        // Node bounds tested against a view frustum
+    NODES_CULLED          // Nodes culled against a view frustum, with their subtrees
+}
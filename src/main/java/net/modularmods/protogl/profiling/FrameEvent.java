@@ -0,0 +1,82 @@
+package net.modularmods.protogl.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event carrying the metrics of one frame.
+ */
+@Name("net.modularmods.protogl.Frame")
+@Label("Frame Metrics")
+@Category({"ProtoGL", "Rendering"})
+@Description("Counters and timers of one frame of the ProtoGL render path")
+class FrameEvent extends Event {
+
+    @Label("Frame")
+    long frame;
+
+    @Label("Nodes Visited")
+    long nodesVisited;
+
+    @Label("Matrices Recomputed")
+    long matricesRecomputed;
+
+    @Label("Meshes Drawn")
+    long meshesDrawn;
+
+    @Label("Draw Calls")
+    long drawCalls;
+
+    @Label("GL Calls")
+    long glCalls;
+
+    @Label("Bytes Uploaded")
+    @DataAmount
+    long bytesUploaded;
+
+    @Label("Bone Bytes Uploaded")
+    @DataAmount
+    long boneBytesUploaded;
+
+    @Label("Poses Evaluated")
+    long posesEvaluated;
+
+    @Label("Poses Skipped")
+    long posesSkipped;
+
+    @Label("Bounds Tested")
+    long boundsTested;
+
+    @Label("Nodes Culled")
+    long nodesCulled;
+
+    @Label("World Update Time")
+    @Timespan
+    long worldUpdateNanos;
+
+    @Label("Submit Time")
+    @Timespan
+    long submitNanos;
+
+    void set(FrameSnapshot snapshot) {
+        frame = snapshot.getFrame();
+        nodesVisited = snapshot.get(Counter.NODES_VISITED);
+        matricesRecomputed = snapshot.get(Counter.MATRICES_RECOMPUTED);
+        meshesDrawn = snapshot.get(Counter.MESHES_DRAWN);
+        drawCalls = snapshot.get(Counter.DRAW_CALLS);
+        glCalls = snapshot.get(Counter.GL_CALLS);
+        bytesUploaded = snapshot.get(Counter.BYTES_UPLOADED);
+        boneBytesUploaded = snapshot.get(Counter.BONE_BYTES_UPLOADED);
+        posesEvaluated = snapshot.get(Counter.POSES_EVALUATED);
+        posesSkipped = snapshot.get(Counter.POSES_SKIPPED);
+        boundsTested = snapshot.get(Counter.BOUNDS_TESTED);
+        nodesCulled = snapshot.get(Counter.NODES_CULLED);
+        worldUpdateNanos = snapshot.getNanos(Timer.WORLD_UPDATE);
+        submitNanos = snapshot.getNanos(Timer.SUBMIT);
+    }
+}
@@ -0,0 +1,47 @@
+package net.modularmods.protogl.profiling;
+
+import lombok.Getter;
+
+/**
+ * Immutable copy of the counters and timers of one frame.
+ */
+public class FrameSnapshot {
+
+    @Getter
+    private final long frame;         // Frame number, starting at 0
+    private final long[] counters;    // Value per Counter ordinal
+    private final long[] timerNanos;  // Accumulated nanoseconds per Timer ordinal
+    private final long[] timerCounts; // Number of timed sections per Timer ordinal
+
+    FrameSnapshot(long frame, long[] counters, long[] timerNanos, long[] timerCounts) {
+        this.frame = frame;
+        this.counters = counters;
+        this.timerNanos = timerNanos;
+        this.timerCounts = timerCounts;
+    }
+
+    public long get(Counter counter) {
+        return counters[counter.ordinal()];
+    }
+
+    public long getNanos(Timer timer) {
+        return timerNanos[timer.ordinal()];
+    }
+
+    public long getCount(Timer timer) {
+        return timerCounts[timer.ordinal()];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("Frame ").append(frame).append(':');
+        for (Counter counter : Counter.values()) {
+            builder.append(' ').append(counter.name().toLowerCase()).append('=').append(get(counter));
+        }
+        for (Timer timer : Timer.values()) {
+            builder.append(' ').append(timer.name().toLowerCase()).append('=')
+                    .append(String.format("%.3fms", getNanos(timer) / 1e6)).append('/').append(getCount(timer));
+        }
+        return builder.toString();
+    }
+}
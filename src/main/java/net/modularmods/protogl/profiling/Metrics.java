@@ -0,0 +1,125 @@
+package net.modularmods.protogl.profiling;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+/**
+ * Opt-in instrumentation of the render and loading paths. Disabled unless the JVM is started with
+ * {@code -Dprotogl.metrics=true}; since {@link #ENABLED} is a static final, the JIT removes every guarded call site
+ * when it is off, so instrumented code costs nothing. Call sites follow the pattern:
+ * <pre>{@code
+ * if (Metrics.ENABLED) Metrics.add(Counter.DRAW_CALLS, 1);
+ * }</pre>
+ * Counters and timers accumulate until {@link #endFrame()}, which publishes a {@link FrameSnapshot} to the listeners
+ * and starts a new frame. They may be updated from any thread (loading runs on workers).
+ * <p>
+ * For deeper profiling in production, per-asset load and upload times and per-frame snapshots are also emitted as
+ * JFR events ({@link AssetEvent}, {@link FrameEvent}), recorded only while a JFR recording enables them.
+ */
+public final class Metrics {
+
+    public static final boolean ENABLED = Boolean.getBoolean("protogl.metrics");
+
+    private static final int COUNTERS = Counter.values().length;
+    private static final int TIMERS = Timer.values().length;
+
+    private static final AtomicLongArray counters = new AtomicLongArray(COUNTERS);
+    private static final AtomicLongArray timerNanos = new AtomicLongArray(TIMERS);
+    private static final AtomicLongArray timerCounts = new AtomicLongArray(TIMERS);
+    private static final List<Consumer<FrameSnapshot>> listeners = new CopyOnWriteArrayList<>();
+    private static volatile FrameSnapshot lastFrame;
+    private static long frame;
+
+    private Metrics() {
+    }
+
+    /**
+     * Adds to a counter of the current frame.
+     * @param counter The counter.
+     * @param amount The amount to add.
+     */
+    public static void add(Counter counter, long amount) {
+        counters.addAndGet(counter.ordinal(), amount);
+    }
+
+    /**
+     * Adds a timed section to a timer of the current frame.
+     * @param timer The timer.
+     * @param startNanos The {@link System#nanoTime()} at the start of the section.
+     */
+    public static void stop(Timer timer, long startNanos) {
+        timerNanos.addAndGet(timer.ordinal(), System.nanoTime() - startNanos);
+        timerCounts.incrementAndGet(timer.ordinal());
+    }
+
+    /**
+     * Records the time spent loading or uploading one asset, as a timer section and as a JFR event.
+     * @param timer {@link Timer#LOAD} or {@link Timer#UPLOAD}.
+     * @param asset The asset name.
+     * @param bytes The size of the asset's geometry.
+     * @param nanos The time spent, in nanoseconds. Uploads spread over several frames pass their total.
+     */
+    public static void asset(Timer timer, String asset, long bytes, long nanos) {
+        timerNanos.addAndGet(timer.ordinal(), nanos);
+        timerCounts.incrementAndGet(timer.ordinal());
+        add(timer == Timer.LOAD ? Counter.ASSETS_LOADED : Counter.ASSETS_UPLOADED, 1);
+        AssetEvent event = new AssetEvent();
+        if (event.isEnabled()) {
+            event.asset = asset;
+            event.phase = timer.name();
+            event.bytes = bytes;
+            event.nanos = nanos;
+            event.commit();
+        }
+    }
+
+    /**
+     * Ends the current frame: snapshots and resets every counter and timer, then notifies the listeners.
+     * Should be called once per frame by the render thread.
+     * @return The snapshot of the frame that ended.
+     */
+    public static FrameSnapshot endFrame() {
+        long[] counterValues = new long[COUNTERS];
+        long[] nanos = new long[TIMERS];
+        long[] counts = new long[TIMERS];
+        for (int i = 0; i < COUNTERS; i++) counterValues[i] = counters.getAndSet(i, 0);
+        for (int i = 0; i < TIMERS; i++) {
+            nanos[i] = timerNanos.getAndSet(i, 0);
+            counts[i] = timerCounts.getAndSet(i, 0);
+        }
+        FrameSnapshot snapshot = new FrameSnapshot(frame++, counterValues, nanos, counts);
+        lastFrame = snapshot;
+
+        FrameEvent event = new FrameEvent();
+        if (event.isEnabled()) {
+            event.set(snapshot);
+            event.commit();
+        }
+        for (Consumer<FrameSnapshot> listener : listeners) {
+            listener.accept(snapshot);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Returns the snapshot published by the last {@link #endFrame()}.
+     * @return The snapshot, or null before the first frame ended.
+     */
+    public static FrameSnapshot getLastFrame() {
+        return lastFrame;
+    }
+
+    /**
+     * Registers a listener receiving every frame snapshot, e.g. to log or plot them.
+     * @param listener The listener.
+     */
+    public static void addListener(Consumer<FrameSnapshot> listener) {
+        listeners.add(listener);
+    }
+
+    public static void removeListener(Consumer<FrameSnapshot> listener) {
+        listeners.remove(listener);
+    }
+}
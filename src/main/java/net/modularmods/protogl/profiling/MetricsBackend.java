@@ -0,0 +1,235 @@
+package net.modularmods.protogl.profiling;
+
+import net.modularmods.protogl.gl.backend.GraphicsBackend;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * Backend decorator counting GL calls, draw calls and uploaded bytes into {@link Metrics} before forwarding each call.
+ * Installed automatically by {@link net.modularmods.protogl.ProtoGL} when metrics are enabled.
+ */
+public class MetricsBackend implements GraphicsBackend {
+
+    private final GraphicsBackend delegate; // Backend doing the actual work
+
+    public MetricsBackend(GraphicsBackend delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public int genBuffer() {
+        Metrics.add(Counter.GL_CALLS, 1);
+        return delegate.genBuffer();
+    }
+
+    @Override
+    public void bindBuffer(int target, int buffer) {
+        Metrics.add(Counter.GL_CALLS, 1);
+        delegate.bindBuffer(target, buffer);
+    }
+
+    @Override
+    public void bufferData(int target, ByteBuffer data, int usage) {
+        Metrics.add(Counter.GL_CALLS, 1);
+        Metrics.add(Counter.BYTES_UPLOADED, data.remaining());
+        delegate.bufferData(target, data, usage);
+    }
+
+    @Override
+    public void bufferData(int target, FloatBuffer data, int usage) {
+        Metrics.add(Counter.GL_CALLS, 1);
+        Metrics.add(Counter.BYTES_UPLOADED, (long) data.remaining() * Float.BYTES);
+        delegate.bufferData(target, data, usage);
+    }
+
+    @Override
+    public void bufferData(int target, IntBuffer data, int usage) {
+        Metrics.add(Counter.GL_CALLS, 1);
+        Metrics.add(Counter.BYTES_UPLOADED, (long) data.remaining() * Integer.BYTES);
+        delegate.bufferData(target, data, usage);
+    }
+
+    @Override
+    public void bufferData(int target, ShortBuffer data, int usage) {
+        Metrics.add(Counter.GL_CALLS, 1);
+        Metrics.add(Counter.BYTES_UPLOADED, (long) data.remaining() * Short.BYTES);
+        delegate.bufferData(target, data, usage);
+    }
+
+    @Override
+    public void bufferData(int target, long size, int usage) {
+        Metrics.add(Counter.GL_CALLS, 1);
+        delegate.bufferData(target, size, usage);
+    }
+
+    @Override
+    public void bufferSubData(int target, long offset, ByteBuffer data) {
+        Metrics.add(Counter.GL_CALLS, 1);
+        Metrics.add(Counter.BYTES_UPLOADED, data.remaining());
+        delegate.bufferSubData(target, offset, data);
+    }
+
+    @Override
+    public void bufferSubData(int target, long offset, FloatBuffer data) {
+        Metrics.add(Counter.GL_CALLS, 1);
+        Metrics.add(Counter.BYTES_UPLOADED, (long) data.remaining() * Float.BYTES);
+        delegate.bufferSubData(target, offset, data);
+    }
+
+    @Override
+    public void bufferSubData(int target, long offset, float[] data) {
+        Metrics.add(Counter.GL_CALLS, 1);
+        Metrics.add(Counter.BYTES_UPLOADED, (long) data.length * Float.BYTES);
+        delegate.bufferSubData(target, offset, data);
+    }
+
+    @Override
+    public void bindBufferBase(int target, int index, int buffer) {
+        Metrics.add(Counter.GL_CALLS, 1);
+        delegate.bindBufferBase(target, index, buffer);
+    }
+
+    @Override
+    public void bindBufferRange(int target, int index, int buffer, long offset, long size) {
+        Metrics.add(Counter.GL_CALLS, 1);
+        delegate.bindBufferRange(target, index, buffer, offset, size);
+    }
+
+    @Override
+    public void bufferStorage(int target, long size, int flags) {
+        Metrics.add(Counter.GL_CALLS, 1);
+        delegate.bufferStorage(target, size, flags);
+    }
+
+    @Override
+    public ByteBuffer mapBufferRange(int target, long offset, long length, int access) {
+        Metrics.add(Counter.GL_CALLS, 1);
+        return delegate.mapBufferRange(target, offset, length, access);
+    }
+
+    @Override
+    public boolean unmapBuffer(int target) {
+        Metrics.add(Counter.GL_CALLS, 1);
+        return delegate.unmapBuffer(target);
+    }
+
+    @Override
+    public long fenceSync(int condition, int flags) {
+        Metrics.add(Counter.GL_CALLS, 1);
+        return delegate.fenceSync(condition, flags);
+    }
+
+    @Override
+    public int clientWaitSync(long sync, int flags, long timeout) {
+        Metrics.add(Counter.GL_CALLS, 1);
+        return delegate.clientWaitSync(sync, flags, timeout);
+    }
+
+    @Override
+    public void deleteSync(long sync) {
+        Metrics.add(Counter.GL_CALLS, 1);
+        delegate.deleteSync(sync);
+    }
+
+    @Override
+    public int getInteger(int pname) {
+        Metrics.add(Counter.GL_CALLS, 1);
+        return delegate.getInteger(pname);
+    }
+
+    @Override
+    public boolean supportsBufferStorage() {
+        return delegate.supportsBufferStorage();
+    }
+
+    @Override
+    public void deleteBuffer(int buffer) {
+        Metrics.add(Counter.GL_CALLS, 1);
+        delegate.deleteBuffer(buffer);
+    }
+
+    @Override
+    public int genVertexArray() {
+        Metrics.add(Counter.GL_CALLS, 1);
+        return delegate.genVertexArray();
+    }
+
+    @Override
+    public void bindVertexArray(int array) {
+        Metrics.add(Counter.GL_CALLS, 1);
+        delegate.bindVertexArray(array);
+    }
+
+    @Override
+    public void deleteVertexArray(int array) {
+        Metrics.add(Counter.GL_CALLS, 1);
+        delegate.deleteVertexArray(array);
+    }
+
+    @Override
+    public void enableVertexAttribArray(int index) {
+        Metrics.add(Counter.GL_CALLS, 1);
+        delegate.enableVertexAttribArray(index);
+    }
+
+    @Override
+    public void disableVertexAttribArray(int index) {
+        Metrics.add(Counter.GL_CALLS, 1);
+        delegate.disableVertexAttribArray(index);
+    }
+
+    @Override
+    public void vertexAttribPointer(int index, int size, int type, boolean normalized, int stride, long offset) {
+        Metrics.add(Counter.GL_CALLS, 1);
+        delegate.vertexAttribPointer(index, size, type, normalized, stride, offset);
+    }
+
+    @Override
+    public void vertexAttribIPointer(int index, int size, int type, int stride, long offset) {
+        Metrics.add(Counter.GL_CALLS, 1);
+        delegate.vertexAttribIPointer(index, size, type, stride, offset);
+    }
+
+    @Override
+    public void vertexAttribDivisor(int index, int divisor) {
+        Metrics.add(Counter.GL_CALLS, 1);
+        delegate.vertexAttribDivisor(index, divisor);
+    }
+
+    @Override
+    public void useProgram(int program) {
+        Metrics.add(Counter.GL_CALLS, 1);
+        delegate.useProgram(program);
+    }
+
+    @Override
+    public void drawElements(int mode, int count, int type, long offset) {
+        Metrics.add(Counter.GL_CALLS, 1);
+        Metrics.add(Counter.DRAW_CALLS, 1);
+        delegate.drawElements(mode, count, type, offset);
+    }
+
+    @Override
+    public void drawElementsBaseVertex(int mode, int count, int type, long offset, int baseVertex) {
+        Metrics.add(Counter.GL_CALLS, 1);
+        Metrics.add(Counter.DRAW_CALLS, 1);
+        delegate.drawElementsBaseVertex(mode, count, type, offset, baseVertex);
+    }
+
+    @Override
+    public void drawElementsInstanced(int mode, int count, int type, long offset, int instanceCount) {
+        Metrics.add(Counter.GL_CALLS, 1);
+        Metrics.add(Counter.DRAW_CALLS, 1);
+        delegate.drawElementsInstanced(mode, count, type, offset, instanceCount);
+    }
+
+    @Override
+    public void drawElementsInstancedBaseVertex(int mode, int count, int type, long offset, int instanceCount, int baseVertex) {
+        Metrics.add(Counter.GL_CALLS, 1);
+        Metrics.add(Counter.DRAW_CALLS, 1);
+        delegate.drawElementsInstancedBaseVertex(mode, count, type, offset, instanceCount, baseVertex);
+    }
+}
@@ -0,0 +1,11 @@
+package net.modularmods.protogl.profiling;
+
+/**
+ * Durations accumulated per frame by {@link Metrics}, in nanoseconds.
+ */
+public enum Timer {
+    WORLD_UPDATE, // Linear world matrix passes
+    SUBMIT,       // Render queue sorting and submission
+    LOAD,         // Decoding model files, on any thread
+    UPLOAD        // Creating VAOs and VBOs on the GL thread
+}
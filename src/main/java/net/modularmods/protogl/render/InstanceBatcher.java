@@ -0,0 +1,216 @@
+package net.modularmods.protogl.render;
+
+import net.modularmods.protogl.gl.Mesh;
+import net.modularmods.protogl.gl.buffers.InstanceBuffer;
+import net.modularmods.protogl.model.MeshNode;
+import net.modularmods.protogl.model.ModelInstance;
+import net.modularmods.protogl.model.Node;
+import net.modularmods.protogl.model.PModel;
+import net.modularmods.protogl.model.TransformHierarchy;
+import org.joml.Matrix4fc;
+import org.lwjgl.BufferUtils;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Groups the world matrices of every draw sharing a {@link Mesh}, so that each mesh is drawn once per frame with
+ * {@link Mesh#renderInstanced(int)} instead of once per node. Gathering and buffer filling are plain CPU work;
+ * only {@link #render(InstanceBuffer)} touches GL.
+ * <p>
+ * Typical frame: {@link #clear()}, {@link #add} every visible instance after updating its world matrices, then
+ * {@link #render(InstanceBuffer)}.
+ * <p>
+ * Skinned meshes are not batched: an instanced draw binds a single bone palette, while each instance poses its own
+ * skeleton. {@link #add(ModelInstance)} and {@link #add(PModel)} skip them, returning how many were left out, and
+ * the other {@code add} methods reject them. Draw them per instance, e.g. through a
+ * {@link RenderQueue} with a {@link net.modularmods.protogl.gl.buffers.SkinningBuffer}.
+ */
+public class InstanceBatcher {
+
+    private static final int MATRIX_FLOATS = TransformHierarchy.MATRIX_STRIDE;
+
+    private final Map<Mesh, Batch> batchesByMesh = new IdentityHashMap<>();
+    private final List<Batch> batches = new ArrayList<>(); // Batches in first-use order
+    private final List<Batch> pool = new ArrayList<>();    // Cleared batches kept for their arrays
+    private FloatBuffer staging = BufferUtils.createFloatBuffer(64 * MATRIX_FLOATS); // Matrices of the batch being uploaded
+
+    /**
+     * Adds one instance of a mesh.
+     * @param mesh The mesh to draw.
+     * @param matrices Array holding the world matrix, column-major.
+     * @param offset Offset of the matrix in the array.
+     * @throws IllegalArgumentException if the mesh is skinned.
+     */
+    public void add(Mesh mesh, float[] matrices, int offset) {
+        checkNotSkinned(mesh);
+        Batch batch = batchesByMesh.get(mesh);
+        if (batch == null) {
+            batch = pool.isEmpty() ? new Batch() : pool.remove(pool.size() - 1);
+            batch.mesh = mesh;
+            batchesByMesh.put(mesh, batch);
+            batches.add(batch);
+        }
+        batch.add(matrices, offset);
+    }
+
+    /**
+     * Adds one instance of a mesh.
+     * @param mesh The mesh to draw.
+     * @param matrix The world matrix.
+     * @throws IllegalArgumentException if the mesh is skinned.
+     */
+    public void add(Mesh mesh, Matrix4fc matrix) {
+        checkNotSkinned(mesh);
+        Batch batch = batchesByMesh.get(mesh);
+        if (batch != null) {
+            batch.ensureCapacity();
+            matrix.get(batch.matrices, batch.count * MATRIX_FLOATS);
+            batch.count++;
+        } else {
+            add(mesh, matrix.get(new float[MATRIX_FLOATS]), 0);
+        }
+    }
+
+    /**
+     * Adds every static mesh of a model instance, using the world matrices of its last update.
+     * @param instance The instance.
+     * @return The number of skinned meshes skipped, to be drawn separately.
+     */
+    public int add(ModelInstance instance) {
+        return add(instance.getModel().getTransforms(), instance.getWorlds(), instance.getNodeCount());
+    }
+
+    /**
+     * Adds every static mesh of a model, using the world matrices of its last update.
+     * @param model The model.
+     * @return The number of skinned meshes skipped, to be drawn separately.
+     */
+    public int add(PModel model) {
+        TransformHierarchy transforms = model.getTransforms();
+        return add(transforms, transforms.getWorlds(), transforms.getCount());
+    }
+
+    private int add(TransformHierarchy transforms, float[] worlds, int count) {
+        int skipped = 0;
+        for (int i = 0; i < count; i++) {
+            Node node = transforms.getNode(i);
+            if (node instanceof MeshNode meshNode) {
+                List<Mesh> meshes = meshNode.meshes;
+                for (int m = 0, size = meshes.size(); m < size; m++) {
+                    Mesh mesh = meshes.get(m);
+                    if (mesh.isSkinned) {
+                        skipped++;
+                    } else {
+                        add(mesh, worlds, i * MATRIX_FLOATS);
+                    }
+                }
+            }
+        }
+        return skipped;
+    }
+
+    private static void checkNotSkinned(Mesh mesh) {
+        if (mesh.isSkinned) {
+            throw new IllegalArgumentException("Skinned meshes cannot be instanced with a shared palette");
+        }
+    }
+
+    /**
+     * Returns the number of distinct meshes gathered, i.e. the number of instanced draws {@link #render} issues.
+     * @return The batch count.
+     */
+    public int getBatchCount() {
+        return batches.size();
+    }
+
+    /**
+     * Returns the mesh of a batch.
+     * @param batch The batch index, in first-use order.
+     * @return The mesh.
+     */
+    public Mesh getMesh(int batch) {
+        return batches.get(batch).mesh;
+    }
+
+    /**
+     * Returns the number of instances gathered for a batch.
+     * @param batch The batch index, in first-use order.
+     * @return The instance count.
+     */
+    public int getInstanceCount(int batch) {
+        return batches.get(batch).count;
+    }
+
+    /**
+     * Copies the matrices of a batch into the staging buffer.
+     * @param batch The batch index, in first-use order.
+     * @return The staging buffer, holding {@code 16 * instanceCount} floats from position 0 to its limit. It is reused
+     * by the next call.
+     */
+    public FloatBuffer fill(int batch) {
+        Batch b = batches.get(batch);
+        int floats = b.count * MATRIX_FLOATS;
+        if (staging.capacity() < floats) {
+            staging = BufferUtils.createFloatBuffer(Math.max(floats, staging.capacity() * 2));
+        }
+        staging.clear();
+        staging.put(b.matrices, 0, floats);
+        return staging.flip();
+    }
+
+    /**
+     * Uploads the matrices of each batch and draws it with a single instanced call. Must be called on the GL thread.
+     * @param buffer The instance buffer to stream matrices through.
+     * @return The number of draw calls issued.
+     */
+    public int render(InstanceBuffer buffer) {
+        int drawCalls = 0;
+        for (int i = 0, size = batches.size(); i < size; i++) {
+            Batch batch = batches.get(i);
+            buffer.upload(fill(i));
+            buffer.attach(batch.mesh.getVAO());
+            batch.mesh.renderInstanced(batch.count);
+            drawCalls++;
+        }
+        return drawCalls;
+    }
+
+    /**
+     * Removes every gathered instance, keeping allocated arrays for the next frame.
+     */
+    public void clear() {
+        for (Batch batch : batches) {
+            batch.mesh = null;
+            batch.count = 0;
+            pool.add(batch);
+        }
+        batches.clear();
+        batchesByMesh.clear();
+    }
+
+    /**
+     * Matrices gathered for one mesh.
+     */
+    private static class Batch {
+        private Mesh mesh;
+        private float[] matrices = new float[16 * MATRIX_FLOATS];
+        private int count; // Number of matrices stored
+
+        void add(float[] source, int offset) {
+            ensureCapacity();
+            System.arraycopy(source, offset, matrices, count * MATRIX_FLOATS, MATRIX_FLOATS);
+            count++;
+        }
+
+        void ensureCapacity() {
+            if ((count + 1) * MATRIX_FLOATS > matrices.length) {
+                matrices = Arrays.copyOf(matrices, matrices.length * 2);
+            }
+        }
+    }
+}
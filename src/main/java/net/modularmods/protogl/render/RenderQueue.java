@@ -0,0 +1,343 @@
+package net.modularmods.protogl.render;
+
+import lombok.Getter;
+import lombok.Setter;
+import net.modularmods.protogl.ProtoGL;
+import net.modularmods.protogl.gl.Mesh;
+import net.modularmods.protogl.gl.backend.GraphicsBackend;
+import net.modularmods.protogl.gl.buffers.SkinningBuffer;
+import net.modularmods.protogl.model.FrustumCuller;
+import net.modularmods.protogl.model.MeshNode;
+import net.modularmods.protogl.model.ModelInstance;
+import net.modularmods.protogl.model.Node;
+import net.modularmods.protogl.model.PModel;
+import net.modularmods.protogl.model.Skeleton;
+import net.modularmods.protogl.model.TransformHierarchy;
+import net.modularmods.protogl.profiling.Metrics;
+import net.modularmods.protogl.profiling.Timer;
+import org.joml.Matrix4fc;
+import org.lwjgl.opengl.GL31;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Decouples scene traversal from GL submission. Traversal emits compact draw packets (a 64-bit {@link SortKey}, a mesh
+ * and a world matrix); {@link #flush()} radix-sorts them by key and submits them while tracking bound state, so a
+ * program, VAO or bone UBO is only bound when it differs from the previous packet's.
+ * <p>
+ * Packets are stored in flat arrays that are reused from frame to frame; emitting does not allocate once the queue
+ * has grown to its working size.
+ * <p>
+ * With a {@link SkinningBuffer} set, submitting a rigged model or instance writes its matrix palette into the shared
+ * buffer once, and its skinned packets bind that range instead of a per-mesh UBO. Call
+ * {@link SkinningBuffer#beginFrame()} before the first submit of each frame. Without one, skinned packets bind the
+ * mesh's own UBO, which only holds the pose last uploaded to the shared mesh: this is right for a {@link PModel}
+ * drawn with its own palette, but instances of a rigged model would all be drawn with the same pose, so submitting
+ * their skinned meshes requires a skinning buffer.
+ */
+public class RenderQueue {
+
+    private static final int MATRIX_FLOATS = TransformHierarchy.MATRIX_STRIDE;
+    private static final int RADIX_BITS = 8;
+    private static final int RADIX = 1 << RADIX_BITS;
+
+    /**
+     * Called before each packet is drawn, with its program bound, e.g. to upload the model matrix uniform.
+     */
+    @FunctionalInterface
+    public interface DrawCallback {
+        void beforeDraw(int program, int material, float[] matrices, int offset);
+    }
+
+    @Getter
+    private final RenderStats stats = new RenderStats(); // Counters of the last flush
+
+    @Getter
+    @Setter
+    private float maxDepth = 1000f; // View distance mapped to the largest depth key
+
+    @Setter
+    private DrawCallback drawCallback; // Optional per-packet hook, null for none
+
+    @Getter
+    @Setter
+    private SkinningBuffer skinningBuffer; // Shared palette storage for skinned packets, null to use per-mesh UBOs
+
+    private int count;                 // Packets queued
+    private long[] keys = new long[256];
+    private Mesh[] meshes = new Mesh[256];
+    private int[] programs = new int[256];
+    private int[] materials = new int[256];
+    private float[] matrices = new float[256 * MATRIX_FLOATS];
+    private int[] boneOffsets = new int[256]; // Palette offset in the skinning buffer, -1 for none
+    private int[] boneSizes = new int[256];   // Palette size in bytes
+    private int[] order = new int[256];   // Packet indices in sorted order
+    private int[] scratch = new int[256]; // Radix sort ping-pong buffer
+    private final int[] histogram = new int[RADIX];
+
+    /**
+     * Queues one draw of a mesh.
+     * @param mesh The mesh to draw.
+     * @param program The shader program to draw with, or 0 to leave the bound program unchanged.
+     * @param material A material id, passed back to the draw callback and used to group packets.
+     * @param worlds Array holding the world matrix, column-major.
+     * @param offset Offset of the matrix in the array.
+     * @param depth Distance to the camera.
+     */
+    public void submit(Mesh mesh, int program, int material, float[] worlds, int offset, float depth) {
+        submit(mesh, program, material, worlds, offset, depth, -1, 0);
+    }
+
+    /**
+     * Queues one draw of a skinned mesh whose palette was written to the {@link #getSkinningBuffer() skinning buffer}.
+     * @param mesh The mesh to draw.
+     * @param program The shader program to draw with, or 0 to leave the bound program unchanged.
+     * @param material A material id, passed back to the draw callback and used to group packets.
+     * @param worlds Array holding the world matrix, column-major.
+     * @param offset Offset of the matrix in the array.
+     * @param depth Distance to the camera.
+     * @param boneOffset Offset returned by {@link SkinningBuffer#write}, or -1 to use the mesh's own UBO.
+     * @param boneSize Size of the palette in bytes.
+     */
+    public void submit(Mesh mesh, int program, int material, float[] worlds, int offset, float depth, int boneOffset, int boneSize) {
+        if (count == keys.length) {
+            grow(count * 2);
+        }
+        int i = count++;
+        keys[i] = SortKey.make(program, mesh.getVAO().getId(), material, SortKey.quantizeDepth(depth, maxDepth));
+        meshes[i] = mesh;
+        programs[i] = program;
+        materials[i] = material;
+        boneOffsets[i] = boneOffset;
+        boneSizes[i] = boneSize;
+        System.arraycopy(worlds, offset, matrices, i * MATRIX_FLOATS, MATRIX_FLOATS);
+    }
+
+    /**
+     * Queues every mesh of a model, using the world matrices of its last update and, if a skinning buffer is set, the
+     * palette of its skeleton's last update.
+     * @param model The model.
+     * @param program The shader program to draw with.
+     * @param material The material id.
+     * @param view The view matrix, used to compute the depth of each packet.
+     */
+    public void submit(PModel model, int program, int material, Matrix4fc view) {
+        submit(model, program, material, view, null);
+    }
+
+    /**
+     * Queues the meshes of a model that are in the view, culling them with the world matrices of its last update.
+     * @param model The model.
+     * @param program The shader program to draw with.
+     * @param material The material id.
+     * @param view The view matrix, used to compute the depth of each packet.
+     * @param culler The culler, its frustum set for this view, or null to queue every mesh.
+     */
+    public void submit(PModel model, int program, int material, Matrix4fc view, FrustumCuller culler) {
+        if (culler != null) culler.cull(model);
+        TransformHierarchy transforms = model.getTransforms();
+        submit(transforms, transforms.getWorlds(), transforms.getCount(), model.getSkeleton(), program, material, view, culler, false);
+    }
+
+    /**
+     * Queues every mesh of a model instance, using the world matrices of its last update and the palette of its
+     * skeleton's last update.
+     * @param instance The instance.
+     * @param program The shader program to draw with.
+     * @param material The material id.
+     * @param view The view matrix, used to compute the depth of each packet.
+     * @throws IllegalStateException if the instance has skinned meshes and no skinning buffer is set.
+     */
+    public void submit(ModelInstance instance, int program, int material, Matrix4fc view) {
+        submit(instance, program, material, view, null);
+    }
+
+    /**
+     * Queues the meshes of a model instance that are in the view, culling them with the world matrices of its last
+     * update.
+     * @param instance The instance.
+     * @param program The shader program to draw with.
+     * @param material The material id.
+     * @param view The view matrix, used to compute the depth of each packet.
+     * @param culler The culler, its frustum set for this view, or null to queue every mesh.
+     * @throws IllegalStateException if the instance has skinned meshes and no skinning buffer is set.
+     */
+    public void submit(ModelInstance instance, int program, int material, Matrix4fc view, FrustumCuller culler) {
+        if (culler != null) culler.cull(instance);
+        submit(instance.getModel().getTransforms(), instance.getWorlds(), instance.getNodeCount(), instance.getSkeleton(),
+                program, material, view, culler, true);
+    }
+
+    /**
+     * Queues the meshes of a model or instance.
+     * @param sharedMeshes Whether the meshes' own bone UBOs may hold another pose, so skinned meshes need the
+     *                     skinning buffer.
+     */
+    private void submit(TransformHierarchy transforms, float[] worlds, int nodeCount, Skeleton skeleton,
+                        int program, int material, Matrix4fc view, FrustumCuller culler, boolean sharedMeshes) {
+        int first = count;
+        int boneOffset = -1;
+        int boneSize = 0;
+        for (int i = 0; i < nodeCount; i++) {
+            Node node = transforms.getNode(i);
+            if (!(node instanceof MeshNode meshNode) || culler != null && !culler.isVisible(i)) continue;
+
+            int offset = i * MATRIX_FLOATS;
+            float x = worlds[offset + 12];
+            float y = worlds[offset + 13];
+            float z = worlds[offset + 14];
+            float depth = -(view.m02() * x + view.m12() * y + view.m22() * z + view.m32()); // View-space distance
+
+            List<Mesh> nodeMeshes = meshNode.meshes;
+            for (int m = 0, size = nodeMeshes.size(); m < size; m++) {
+                Mesh mesh = nodeMeshes.get(m);
+                if (mesh.isSkinned && skeleton != null && boneOffset < 0) {
+                    if (skinningBuffer == null) {
+                        if (sharedMeshes) {
+                            // Deferred packets of several instances would all read the last pose uploaded to the mesh
+                            Arrays.fill(meshes, first, count, null);
+                            count = first;
+                            throw new IllegalStateException("Skinned instances need a skinning buffer to be queued");
+                        }
+                    } else {
+                        // Written once per model, on its first skinned mesh
+                        boneOffset = skinningBuffer.write(skeleton.getPalette());
+                        boneSize = skeleton.getPalette().remaining() * Float.BYTES;
+                    }
+                }
+                submit(mesh, program, material, worlds, offset, depth, mesh.isSkinned ? boneOffset : -1, boneSize);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of queued packets.
+     * @return The packet count.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Sorts the queued packets by key. Called by {@link #flush()}.
+     * @return The packet indices in sorted order, valid for the first {@link #size()} entries.
+     */
+    public int[] sort() {
+        int n = count;
+        int[] src = order;
+        int[] dst = scratch;
+        for (int i = 0; i < n; i++) src[i] = i;
+
+        // Least significant digit first; a pass is skipped when every key has the same digit
+        for (int shift = 0; shift < Long.SIZE; shift += RADIX_BITS) {
+            Arrays.fill(histogram, 0);
+            for (int i = 0; i < n; i++) {
+                histogram[(int) (keys[i] >>> shift) & (RADIX - 1)]++;
+            }
+            if (n == 0 || histogram[(int) (keys[0] >>> shift) & (RADIX - 1)] == n) continue;
+
+            int sum = 0;
+            for (int b = 0; b < RADIX; b++) {
+                int c = histogram[b];
+                histogram[b] = sum;
+                sum += c;
+            }
+            for (int i = 0; i < n; i++) {
+                int packet = src[i];
+                dst[histogram[(int) (keys[packet] >>> shift) & (RADIX - 1)]++] = packet;
+            }
+            int[] swap = src;
+            src = dst;
+            dst = swap;
+        }
+        order = src;
+        scratch = dst;
+        return src;
+    }
+
+    /**
+     * Sorts and draws every queued packet, then empties the queue. Must be called on the GL thread.
+     * The statistics of the submission are available from {@link #getStats()}.
+     */
+    public void flush() {
+        long start = Metrics.ENABLED ? System.nanoTime() : 0L;
+        stats.reset();
+        int[] sorted = sort();
+        GraphicsBackend gl = ProtoGL.getBackend();
+
+        if (skinningBuffer != null) {
+            skinningBuffer.upload();
+        }
+
+        int boundProgram = -1;
+        int boundVao = -1;
+        int boundUbo = -1;
+        int boundBones = -1; // Offset of the palette bound from the skinning buffer
+        for (int i = 0, n = count; i < n; i++) {
+            int packet = sorted[i];
+            Mesh mesh = meshes[packet];
+            int program = programs[packet];
+
+            if (program != 0 && program != boundProgram) {
+                gl.useProgram(program);
+                boundProgram = program;
+                stats.countProgramChange();
+            }
+            int vao = mesh.getVAO().getId();
+            if (vao != boundVao) {
+                mesh.getVAO().bind();
+                boundVao = vao;
+                stats.countVaoBind();
+            }
+            int boneOffset = boneOffsets[packet];
+            if (boneOffset >= 0) {
+                if (boneOffset != boundBones) {
+                    skinningBuffer.bind(boneOffset, boneSizes[packet]);
+                    boundBones = boneOffset;
+                    boundUbo = -1;
+                    stats.countUniformBufferBind();
+                }
+            } else if (mesh.getBoneTransformsUBO() != 0 && mesh.getBoneTransformsUBO() != boundUbo) {
+                gl.bindBufferBase(GL31.GL_UNIFORM_BUFFER, 0, mesh.getBoneTransformsUBO());
+                boundUbo = mesh.getBoneTransformsUBO();
+                boundBones = -1;
+                stats.countUniformBufferBind();
+            }
+            if (drawCallback != null) {
+                drawCallback.beforeDraw(program, materials[packet], matrices, packet * MATRIX_FLOATS);
+            }
+            stats.countDrawCalls(mesh.drawBound(0));
+            stats.countPacket();
+        }
+
+        if (boundUbo != -1 || boundBones != -1) {
+            gl.bindBufferBase(GL31.GL_UNIFORM_BUFFER, 0, 0);
+        }
+        if (boundVao != -1) {
+            gl.bindVertexArray(0);
+        }
+        clear();
+        if (Metrics.ENABLED) Metrics.stop(Timer.SUBMIT, start);
+    }
+
+    /**
+     * Drops every queued packet without drawing it.
+     */
+    public void clear() {
+        Arrays.fill(meshes, 0, count, null);
+        count = 0;
+    }
+
+    private void grow(int capacity) {
+        keys = Arrays.copyOf(keys, capacity);
+        meshes = Arrays.copyOf(meshes, capacity);
+        programs = Arrays.copyOf(programs, capacity);
+        materials = Arrays.copyOf(materials, capacity);
+        boneOffsets = Arrays.copyOf(boneOffsets, capacity);
+        boneSizes = Arrays.copyOf(boneSizes, capacity);
+        matrices = Arrays.copyOf(matrices, capacity * MATRIX_FLOATS);
+        order = new int[capacity];
+        scratch = new int[capacity];
+    }
+}
@@ -0,0 +1,58 @@
+package net.modularmods.protogl.render;
+
+import lombok.Getter;
+
+/**
+ * Counters describing the GL work of one frame, reset by the {@link RenderQueue} at the start of each submission.
+ */
+@Getter
+public class RenderStats {
+
+    private int packets;            // Draw packets submitted
+    private int drawCalls;          // glDraw* calls issued
+    private int programChanges;     // glUseProgram calls
+    private int vaoBinds;           // glBindVertexArray calls
+    private int uniformBufferBinds; // glBindBufferBase calls for bone UBOs
+
+    /**
+     * Returns the total number of state changes (program, VAO and uniform buffer binds).
+     * @return The state change count.
+     */
+    public int getStateChanges() {
+        return programChanges + vaoBinds + uniformBufferBinds;
+    }
+
+    void reset() {
+        packets = 0;
+        drawCalls = 0;
+        programChanges = 0;
+        vaoBinds = 0;
+        uniformBufferBinds = 0;
+    }
+
+    void countPacket() {
+        packets++;
+    }
+
+    void countDrawCalls(int count) {
+        drawCalls += count;
+    }
+
+    void countProgramChange() {
+        programChanges++;
+    }
+
+    void countVaoBind() {
+        vaoBinds++;
+    }
+
+    void countUniformBufferBind() {
+        uniformBufferBinds++;
+    }
+
+    @Override
+    public String toString() {
+        return packets + " packets, " + drawCalls + " draw calls, " + getStateChanges() + " state changes ("
+                + programChanges + " programs, " + vaoBinds + " VAOs, " + uniformBufferBinds + " UBOs)";
+    }
+}
@@ -0,0 +1,65 @@
+package net.modularmods.protogl.render;
+
+/**
+ * Builds the 64-bit keys draw packets are sorted by. From the most to the least significant bits:
+ * <pre>
+ * 63..48  program  (16 bits)
+ * 47..28  VAO      (20 bits)
+ * 27..16  material (12 bits)
+ * 15..0   depth    (16 bits, front to back)
+ * </pre>
+ * Sorting by key groups packets by the most expensive state change first, and orders packets sharing all state
+ * front to back to help early depth rejection. Fields wider than their slot are truncated.
+ */
+public final class SortKey {
+
+    public static final int DEPTH_BITS = 16;
+    private static final int MATERIAL_SHIFT = 16;
+    private static final int VAO_SHIFT = 28;
+    private static final int PROGRAM_SHIFT = 48;
+
+    private SortKey() {
+    }
+
+    /**
+     * Composes a sort key.
+     * @param program The shader program id.
+     * @param vao The VAO id.
+     * @param material The material id.
+     * @param depth The quantized depth, see {@link #quantizeDepth(float, float)}.
+     * @return The key.
+     */
+    public static long make(int program, int vao, int material, int depth) {
+        return (program & 0xFFFFL) << PROGRAM_SHIFT
+                | (vao & 0xFFFFFL) << VAO_SHIFT
+                | (material & 0xFFFL) << MATERIAL_SHIFT
+                | (depth & 0xFFFFL);
+    }
+
+    /**
+     * Maps a view distance onto the depth field, clamping to [0, maxDepth].
+     * @param depth The distance to the camera.
+     * @param maxDepth The distance mapped to the largest value.
+     * @return The quantized depth.
+     */
+    public static int quantizeDepth(float depth, float maxDepth) {
+        float normalized = Math.max(0f, Math.min(1f, depth / maxDepth));
+        return (int) (normalized * ((1 << DEPTH_BITS) - 1));
+    }
+
+    public static int getProgram(long key) {
+        return (int) (key >>> PROGRAM_SHIFT) & 0xFFFF;
+    }
+
+    public static int getVao(long key) {
+        return (int) (key >>> VAO_SHIFT) & 0xFFFFF;
+    }
+
+    public static int getMaterial(long key) {
+        return (int) (key >>> MATERIAL_SHIFT) & 0xFFF;
+    }
+
+    public static int getDepth(long key) {
+        return (int) key & 0xFFFF;
+    }
+}
@@ -0,0 +1,899 @@
+package net.modularmods.protogl.spatial;
+
+import lombok.Getter;
+import lombok.Setter;
+import net.modularmods.protogl.gl.Bounds;
+import org.joml.FrustumIntersection;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * Dynamic bounding volume hierarchy over entries with an axis-aligned box, e.g. model instances, answering frustum,
+ * ray, sphere and box queries in logarithmic time instead of testing every entry. It makes no GL call, so it serves
+ * server-side picking and proximity queries as well as rendering.
+ * <p>
+ * Entries are addressed by integer proxies, stable for their lifetime. Each leaf holds one entry with its box grown by
+ * {@link #getMargin()}: {@link #update} does nothing while an entry stays within its grown box, and otherwise moves
+ * the leaf and refits the ancestors it leaves and joins. Inserts descend towards the cheapest sibling by surface area.
+ * Incremental updates slowly degrade the tree; {@link #rebuild()} builds it again top-down with a binned surface area heuristic
+ * (SAH), splitting large subtrees across the workers of a {@link ForkJoinPool}. Batch inserts and removes of a large
+ * share of the entries rebuild rather than updating one by one.
+ * <p>
+ * Boxes are {@value Bounds#BOX_STRIDE} floats, as handled by {@link Bounds}. Nodes live in flat arrays reused across
+ * updates; queries do not allocate, but share a traversal stack, so a hierarchy must not be queried from several
+ * threads at once.
+ */
+public class BoundingVolumeHierarchy<T> {
+
+    private static final int BOX = Bounds.BOX_STRIDE;
+    private static final int NULL = -1;
+    private static final int BINS = 16;             // Candidate split planes per axis, plus one
+    private static final int PARALLEL_LEAVES = 2048; // Subtrees with fewer leaves are built by a single worker
+
+    @Getter
+    @Setter
+    private float margin = 0.1f; // Growth of leaf boxes on each side, so that small moves need no refit
+
+    @Getter
+    private final ForkJoinPool pool; // Runs rebuilds
+
+    // Nodes; a leaf has no children and holds a proxy, an internal node always has two children
+    private int root = NULL;
+    private int nodeCount;                  // Node slots in use or freed
+    private float[] nodeBoxes;              // Box per node, grown by the margin for leaves
+    private int[] nodeParents;
+    private int[] nodeLefts;
+    private int[] nodeRights;
+    private int[] nodeProxies;              // Proxy held by each leaf, NULL for internal nodes
+    private int[] freeNodes = new int[16];
+    private int freeNodeCount;
+
+    // Proxies
+    private Object[] items;
+    private float[] proxyBoxes;             // Exact box per proxy
+    private int[] proxyLeaves;              // Leaf per proxy, NULL for free proxies
+    private int proxyCount;                 // Proxy slots in use or freed
+    private int[] freeProxies = new int[16];
+    private int freeProxyCount;
+    @Getter
+    private int size;                       // Live entries
+
+    private int[] stack = new int[64];
+    private int picked;
+    private final RayCallback nearest = (proxy, distance) -> {
+        picked = proxy;
+        return distance;
+    };
+
+    /**
+     * Creates an empty hierarchy rebuilding on the common pool.
+     */
+    public BoundingVolumeHierarchy() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates an empty hierarchy.
+     * @param pool The pool running rebuilds; its parallelism sets the number of threads used.
+     */
+    public BoundingVolumeHierarchy(ForkJoinPool pool) {
+        this.pool = pool;
+        allocateNodes(32);
+        this.items = new Object[16];
+        this.proxyBoxes = new float[16 * BOX];
+        this.proxyLeaves = new int[16];
+    }
+
+    /**
+     * Adds an entry.
+     * @param item The entry.
+     * @param box The array holding the entry's box.
+     * @param offset Offset of the box.
+     * @return The entry's proxy.
+     */
+    public int insert(T item, float[] box, int offset) {
+        int proxy = allocateProxy(item, box, offset);
+        int leaf = createLeaf(proxy);
+        insertLeaf(leaf);
+        return proxy;
+    }
+
+    /**
+     * Adds several entries, rebuilding the whole hierarchy when they outnumber the entries already present.
+     * @param items The entries.
+     * @param boxes The boxes of the entries, one after the other.
+     * @param proxies The array receiving the proxy of each entry, in order.
+     */
+    public void insertAll(List<? extends T> items, float[] boxes, int[] proxies) {
+        int count = items.size();
+        if (count <= size) {
+            for (int i = 0; i < count; i++) {
+                proxies[i] = insert(items.get(i), boxes, i * BOX);
+            }
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            proxies[i] = allocateProxy(items.get(i), boxes, i * BOX);
+        }
+        rebuild();
+    }
+
+    /**
+     * Removes an entry; its proxy may then be reused.
+     * @param proxy The entry's proxy.
+     */
+    public void remove(int proxy) {
+        int leaf = checkProxy(proxy);
+        removeLeaf(leaf);
+        freeNode(leaf);
+        freeProxy(proxy);
+    }
+
+    /**
+     * Removes several entries, rebuilding the hierarchy when they make up at least half of it. The proxies are all
+     * checked first, so that an invalid or repeated one leaves the hierarchy unchanged.
+     * @param proxies The proxies of the entries.
+     * @param count The number of proxies to read.
+     * @throws IllegalArgumentException if a proxy is invalid or appears twice.
+     */
+    public void removeAll(int[] proxies, int count) {
+        checkProxies(proxies, count);
+        if (count * 2 < size) {
+            for (int i = 0; i < count; i++) {
+                remove(proxies[i]);
+            }
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            freeProxy(proxies[i]);
+        }
+        rebuild();
+    }
+
+    /**
+     * Moves an entry. If its new box leaves its leaf's grown box, the leaf is grown again around it and reinserted
+     * next to its cheapest sibling, refitting the ancestors it leaves and joins; growing boxes in place instead would
+     * let entries that travel far inflate every box above them.
+     * @param proxy The entry's proxy.
+     * @param box The array holding the new box.
+     * @param offset Offset of the box.
+     * @return true if the tree was refitted.
+     */
+    public boolean update(int proxy, float[] box, int offset) {
+        int leaf = checkProxy(proxy);
+        System.arraycopy(box, offset, proxyBoxes, proxy * BOX, BOX);
+        if (contains(nodeBoxes, leaf * BOX, box, offset)) return false;
+
+        removeLeaf(leaf);
+        setGrownBox(leaf, proxy);
+        insertLeaf(leaf);
+        return true;
+    }
+
+    /**
+     * Returns the entry behind a proxy.
+     * @param proxy The proxy.
+     * @return The entry.
+     */
+    @SuppressWarnings("unchecked")
+    public T get(int proxy) {
+        checkProxy(proxy);
+        return (T) items[proxy];
+    }
+
+    /**
+     * Copies the exact box of an entry.
+     * @param proxy The entry's proxy.
+     * @param dest The array receiving the box.
+     * @param offset Offset of the box in dest.
+     */
+    public void getBox(int proxy, float[] dest, int offset) {
+        checkProxy(proxy);
+        System.arraycopy(proxyBoxes, proxy * BOX, dest, offset, BOX);
+    }
+
+    /**
+     * Returns the SAH cost of the tree, i.e. the surface area of its internal nodes relative to the root's. It grows
+     * as incremental updates degrade the tree, which a {@link #rebuild()} brings back down.
+     * @return The cost, 0 for fewer than two entries.
+     */
+    public double getCost() {
+        if (root == NULL || nodeProxies[root] != NULL) return 0.0;
+        double rootArea = area(nodeBoxes, root * BOX);
+        if (rootArea <= 0.0) return 0.0;
+        double total = 0.0;
+        int top = push(0, root);
+        while (top > 0) {
+            int node = stack[--top];
+            if (nodeProxies[node] != NULL) continue;
+            total += area(nodeBoxes, node * BOX);
+            top = push(top, nodeLefts[node]);
+            top = push(top, nodeRights[node]);
+        }
+        return total / rootArea;
+    }
+
+    /**
+     * Returns the height of the tree.
+     * @return The number of nodes on the longest path from the root to a leaf, 0 when empty.
+     */
+    public int getHeight() {
+        return root == NULL ? 0 : height(root);
+    }
+
+    private int height(int node) {
+        if (nodeProxies[node] != NULL) return 1;
+        return 1 + Math.max(height(nodeLefts[node]), height(nodeRights[node]));
+    }
+
+    /**
+     * Builds the tree again from all entries, top-down with a binned SAH. Subtrees of at least
+     * {@value #PARALLEL_LEAVES} leaves are split across the pool's workers; each subtree writes its own range of
+     * nodes, so no locking is involved.
+     */
+    public void rebuild() {
+        int count = size;
+        root = NULL;
+        nodeCount = 0;
+        freeNodeCount = 0;
+        if (count == 0) return;
+
+        int nodes = 2 * count - 1;
+        if (nodeProxies.length < nodes) allocateNodes(nodes);
+        nodeCount = nodes;
+        // Proxies with their boxes and centroids by position, partitioned together so the build reads memory in order
+        BuildData data = new BuildData(count);
+        int i = 0;
+        for (int p = 0; p < proxyCount; p++) {
+            if (proxyLeaves[p] == NULL) continue;
+            data.order[i] = p;
+            System.arraycopy(proxyBoxes, p * BOX, data.boxes, i * BOX, BOX);
+            boolean empty = Bounds.isEmpty(data.boxes, i * BOX);
+            for (int k = 0; k < 3; k++) {
+                data.centroids[i * 3 + k] = empty ? 0f : (data.boxes[i * BOX + k] + data.boxes[i * BOX + 3 + k]) * 0.5f;
+            }
+            i++;
+        }
+        if (count >= PARALLEL_LEAVES) {
+            pool.invoke(new BuildJob(data, 0, count, 0, NULL));
+        } else {
+            build(data, 0, count, 0, NULL, new SplitScratch());
+        }
+        root = 0;
+    }
+
+    /**
+     * Reports the entries whose box intersects a frustum. Subtrees fully inside the frustum are reported without
+     * testing their entries.
+     * @param frustum The frustum.
+     * @param visitor Receives the proxy of each entry.
+     * @return The number of entries reported.
+     */
+    public int queryFrustum(FrustumIntersection frustum, IntConsumer visitor) {
+        if (root == NULL) return 0;
+        int reported = 0;
+        int top = push(0, root);
+        while (top > 0) {
+            int entry = stack[--top];
+            boolean inside = entry < 0; // Encoded as ~node below a node fully inside
+            int node = inside ? ~entry : entry;
+            int o = node * BOX;
+            int proxy = nodeProxies[node];
+            if (proxy != NULL) {
+                int p = proxy * BOX;
+                if (Bounds.isEmpty(proxyBoxes, p)) continue;
+                if (inside || frustum.testAab(proxyBoxes[p], proxyBoxes[p + 1], proxyBoxes[p + 2],
+                        proxyBoxes[p + 3], proxyBoxes[p + 4], proxyBoxes[p + 5])) {
+                    visitor.accept(proxy);
+                    reported++;
+                }
+                continue;
+            }
+            if (!inside) {
+                if (Bounds.isEmpty(nodeBoxes, o)) continue;
+                int result = frustum.intersectAab(nodeBoxes[o], nodeBoxes[o + 1], nodeBoxes[o + 2],
+                        nodeBoxes[o + 3], nodeBoxes[o + 4], nodeBoxes[o + 5]);
+                if (result != FrustumIntersection.INSIDE && result != FrustumIntersection.INTERSECT) continue;
+                inside = result == FrustumIntersection.INSIDE;
+            }
+            top = push(top, inside ? ~nodeLefts[node] : nodeLefts[node]);
+            top = push(top, inside ? ~nodeRights[node] : nodeRights[node]);
+        }
+        return reported;
+    }
+
+    /**
+     * Reports the entries whose box overlaps a sphere.
+     * @param x The sphere center's x.
+     * @param y The sphere center's y.
+     * @param z The sphere center's z.
+     * @param radius The sphere radius.
+     * @param visitor Receives the proxy of each entry.
+     * @return The number of entries reported.
+     */
+    public int querySphere(float x, float y, float z, float radius, IntConsumer visitor) {
+        if (root == NULL) return 0;
+        float radiusSquared = radius * radius;
+        int reported = 0;
+        int top = push(0, root);
+        while (top > 0) {
+            int node = stack[--top];
+            int proxy = nodeProxies[node];
+            float[] boxes = proxy != NULL ? proxyBoxes : nodeBoxes;
+            int o = (proxy != NULL ? proxy : node) * BOX;
+            if (Bounds.isEmpty(boxes, o) || distanceSquared(boxes, o, x, y, z) > radiusSquared) continue;
+            if (proxy != NULL) {
+                visitor.accept(proxy);
+                reported++;
+            } else {
+                top = push(top, nodeLefts[node]);
+                top = push(top, nodeRights[node]);
+            }
+        }
+        return reported;
+    }
+
+    /**
+     * Reports the entries whose box overlaps a box.
+     * @param box The array holding the box.
+     * @param offset Offset of the box.
+     * @param visitor Receives the proxy of each entry.
+     * @return The number of entries reported.
+     */
+    public int queryBox(float[] box, int offset, IntConsumer visitor) {
+        if (root == NULL) return 0;
+        int reported = 0;
+        int top = push(0, root);
+        while (top > 0) {
+            int node = stack[--top];
+            int proxy = nodeProxies[node];
+            float[] boxes = proxy != NULL ? proxyBoxes : nodeBoxes;
+            int o = (proxy != NULL ? proxy : node) * BOX;
+            if (!overlaps(boxes, o, box, offset)) continue;
+            if (proxy != NULL) {
+                visitor.accept(proxy);
+                reported++;
+            } else {
+                top = push(top, nodeLefts[node]);
+                top = push(top, nodeRights[node]);
+            }
+        }
+        return reported;
+    }
+
+    /**
+     * Casts a ray through the hierarchy, reporting the entries whose box it enters. Nearer children are visited first,
+     * and subtrees beyond the maximum distance returned by the callback are skipped.
+     * @param ox The ray origin's x.
+     * @param oy The ray origin's y.
+     * @param oz The ray origin's z.
+     * @param dx The ray direction's x.
+     * @param dy The ray direction's y.
+     * @param dz The ray direction's z.
+     * @param maxDistance The distance the ray stops at, in multiples of its direction.
+     * @param callback Receives each entry crossed and returns the new maximum distance.
+     * @return The final maximum distance.
+     */
+    public float raycast(float ox, float oy, float oz, float dx, float dy, float dz, float maxDistance, RayCallback callback) {
+        if (root == NULL) return maxDistance;
+        float ix = 1f / dx, iy = 1f / dy, iz = 1f / dz;
+        int top = push(0, root);
+        while (top > 0) {
+            int node = stack[--top];
+            if (enter(nodeBoxes, node * BOX, ox, oy, oz, ix, iy, iz, maxDistance) < 0f) continue;
+
+            int proxy = nodeProxies[node];
+            if (proxy != NULL) {
+                float distance = enter(proxyBoxes, proxy * BOX, ox, oy, oz, ix, iy, iz, maxDistance);
+                if (distance < 0f) continue;
+                maxDistance = callback.hit(proxy, distance);
+                if (maxDistance < 0f) break;
+                continue;
+            }
+            int left = nodeLefts[node];
+            int right = nodeRights[node];
+            float leftDistance = enter(nodeBoxes, left * BOX, ox, oy, oz, ix, iy, iz, maxDistance);
+            float rightDistance = enter(nodeBoxes, right * BOX, ox, oy, oz, ix, iy, iz, maxDistance);
+            // The nearer child is pushed last so that it is visited first
+            if (leftDistance >= 0f && rightDistance >= 0f) {
+                boolean leftFirst = leftDistance <= rightDistance;
+                top = push(top, leftFirst ? right : left);
+                top = push(top, leftFirst ? left : right);
+            } else if (leftDistance >= 0f) {
+                top = push(top, left);
+            } else if (rightDistance >= 0f) {
+                top = push(top, right);
+            }
+        }
+        return maxDistance;
+    }
+
+    /**
+     * Finds the entry whose box a ray enters first, e.g. to pick an instance under the cursor.
+     * @param ox The ray origin's x.
+     * @param oy The ray origin's y.
+     * @param oz The ray origin's z.
+     * @param dx The ray direction's x.
+     * @param dy The ray direction's y.
+     * @param dz The ray direction's z.
+     * @param maxDistance The distance the ray stops at, in multiples of its direction.
+     * @return The proxy of the nearest entry, or -1 if the ray enters no box.
+     */
+    public int pick(float ox, float oy, float oz, float dx, float dy, float dz, float maxDistance) {
+        picked = NULL;
+        raycast(ox, oy, oz, dx, dy, dz, maxDistance, nearest);
+        return picked;
+    }
+
+    /**
+     * Entries being built into a tree, by position.
+     */
+    private static class BuildData {
+        final int[] order;       // Proxy per position
+        final float[] centroids; // Box center per position
+        final float[] boxes;     // Exact box per position
+
+        BuildData(int count) {
+            this.order = new int[count];
+            this.centroids = new float[count * 3];
+            this.boxes = new float[count * BOX];
+        }
+    }
+
+    /**
+     * Bins of one worker, reused by every split it makes.
+     */
+    private static class SplitScratch {
+        final int[] counts = new int[BINS];
+        final float[] binBoxes = new float[BINS * BOX];
+        final double[] rightCosts = new double[BINS];
+        final float[] sweep = new float[BOX];
+    }
+
+    /**
+     * Builds a large subtree on a worker of the pool.
+     */
+    @SuppressWarnings("serial") // Never serialized
+    private class BuildJob extends RecursiveAction {
+        private final BuildData data;
+        private final int from;
+        private final int to;
+        private final int node;
+        private final int parent;
+
+        BuildJob(BuildData data, int from, int to, int node, int parent) {
+            this.data = data;
+            this.from = from;
+            this.to = to;
+            this.node = node;
+            this.parent = parent;
+        }
+
+        @Override
+        protected void compute() {
+            build(data, from, to, node, parent, new SplitScratch());
+        }
+    }
+
+    /**
+     * Builds the subtree of a range of entries into a range of nodes: the subtree of n leaves takes 2n - 1 nodes, its
+     * root first, then the left subtree, then the right one. Ranges of at least {@value #PARALLEL_LEAVES} entries
+     * build their halves as two jobs.
+     */
+    private void build(BuildData data, int from, int to, int node, int parent, SplitScratch scratch) {
+        nodeParents[node] = parent;
+        if (to - from == 1) {
+            int proxy = data.order[from];
+            nodeProxies[node] = proxy;
+            nodeLefts[node] = NULL;
+            nodeRights[node] = NULL;
+            proxyLeaves[proxy] = node;
+            setGrownBox(node, proxy);
+            return;
+        }
+
+        int mid = split(data, from, to, scratch);
+        int left = node + 1;
+        int right = node + 2 * (mid - from);
+        if (to - from >= PARALLEL_LEAVES) {
+            ForkJoinTask.invokeAll(new BuildJob(data, from, mid, left, node), new BuildJob(data, mid, to, right, node));
+        } else {
+            build(data, from, mid, left, node, scratch);
+            build(data, mid, to, right, node, scratch);
+        }
+        nodeProxies[node] = NULL;
+        nodeLefts[node] = left;
+        nodeRights[node] = right;
+        unionChildren(node);
+    }
+
+    /**
+     * Partitions a range of entries along the split plane of lowest SAH cost among {@value #BINS} bins of centroids on
+     * the longest axis of the centroids' box.
+     * @return The first index of the right part, strictly inside the range.
+     */
+    private static int split(BuildData data, int from, int to, SplitScratch scratch) {
+        if (to - from == 2) return from + 1;
+        float[] centroids = data.centroids;
+        float[] boxes = data.boxes;
+        float[] extent = scratch.sweep;
+        Bounds.clear(extent, 0);
+        for (int i = from; i < to; i++) {
+            for (int k = 0; k < 3; k++) {
+                extent[k] = Math.min(extent[k], centroids[i * 3 + k]);
+                extent[3 + k] = Math.max(extent[3 + k], centroids[i * 3 + k]);
+            }
+        }
+        int axis = 0;
+        for (int k = 1; k < 3; k++) {
+            if (extent[3 + k] - extent[k] > extent[3 + axis] - extent[axis]) axis = k;
+        }
+        float min = extent[axis];
+        float length = extent[3 + axis] - min;
+        if (!(length > 0f)) return (from + to) >>> 1; // Every centroid at the same place
+
+        int[] counts = scratch.counts;
+        float[] binBoxes = scratch.binBoxes;
+        Arrays.fill(counts, 0);
+        for (int b = 0; b < BINS; b++) {
+            Bounds.clear(binBoxes, b * BOX);
+        }
+        float scale = BINS / length;
+        for (int i = from; i < to; i++) {
+            int b = bin(centroids[i * 3 + axis], min, scale);
+            counts[b]++;
+            if (!Bounds.isEmpty(boxes, i * BOX)) Bounds.union(boxes, i * BOX, binBoxes, b * BOX);
+        }
+
+        // Sweep from the right to get the cost of the right side of each plane, then from the left to pick the best
+        double[] rightCosts = scratch.rightCosts;
+        float[] sweep = scratch.sweep;
+        Bounds.clear(sweep, 0);
+        int rightCount = 0;
+        for (int b = BINS - 1; b > 0; b--) {
+            rightCount += counts[b];
+            Bounds.union(binBoxes, b * BOX, sweep, 0);
+            rightCosts[b] = rightCount * area(sweep, 0);
+        }
+        Bounds.clear(sweep, 0);
+        int leftCount = 0;
+        int bestPlane = NULL;
+        double bestCost = Double.POSITIVE_INFINITY;
+        for (int b = 0; b < BINS - 1; b++) {
+            leftCount += counts[b];
+            Bounds.union(binBoxes, b * BOX, sweep, 0);
+            if (leftCount == 0 || leftCount == to - from) continue;
+            double cost = leftCount * area(sweep, 0) + rightCosts[b + 1];
+            if (cost < bestCost) {
+                bestCost = cost;
+                bestPlane = b;
+            }
+        }
+        if (bestPlane == NULL) return (from + to) >>> 1;
+
+        // Entries in bins up to the plane go left
+        int i = from;
+        int j = to - 1;
+        while (i <= j) {
+            if (bin(centroids[i * 3 + axis], min, scale) <= bestPlane) {
+                i++;
+            } else {
+                swap(data, i, j--);
+            }
+        }
+        return i;
+    }
+
+    private static void swap(BuildData data, int i, int j) {
+        int proxy = data.order[i];
+        data.order[i] = data.order[j];
+        data.order[j] = proxy;
+        float[] centroids = data.centroids;
+        for (int k = 0; k < 3; k++) {
+            float c = centroids[i * 3 + k];
+            centroids[i * 3 + k] = centroids[j * 3 + k];
+            centroids[j * 3 + k] = c;
+        }
+        float[] boxes = data.boxes;
+        for (int k = 0; k < BOX; k++) {
+            float c = boxes[i * BOX + k];
+            boxes[i * BOX + k] = boxes[j * BOX + k];
+            boxes[j * BOX + k] = c;
+        }
+    }
+
+    private static int bin(float centroid, float min, float scale) {
+        return Math.min((int) ((centroid - min) * scale), BINS - 1);
+    }
+
+    private int allocateProxy(T item, float[] box, int offset) {
+        int proxy;
+        if (freeProxyCount > 0) {
+            proxy = freeProxies[--freeProxyCount];
+        } else {
+            if (proxyCount == proxyLeaves.length) {
+                int capacity = proxyCount * 2;
+                items = Arrays.copyOf(items, capacity);
+                proxyBoxes = Arrays.copyOf(proxyBoxes, capacity * BOX);
+                proxyLeaves = Arrays.copyOf(proxyLeaves, capacity);
+            }
+            proxy = proxyCount++;
+        }
+        items[proxy] = item;
+        System.arraycopy(box, offset, proxyBoxes, proxy * BOX, BOX);
+        proxyLeaves[proxy] = Integer.MAX_VALUE; // Live, until a leaf is assigned
+        size++;
+        return proxy;
+    }
+
+    private void freeProxy(int proxy) {
+        items[proxy] = null;
+        proxyLeaves[proxy] = NULL;
+        if (freeProxyCount == freeProxies.length) freeProxies = Arrays.copyOf(freeProxies, freeProxyCount * 2);
+        freeProxies[freeProxyCount++] = proxy;
+        size--;
+    }
+
+    private int checkProxy(int proxy) {
+        if (proxy < 0 || proxy >= proxyCount || proxyLeaves[proxy] == NULL) {
+            throw new IllegalArgumentException("Invalid proxy " + proxy);
+        }
+        return proxyLeaves[proxy];
+    }
+
+    /**
+     * Checks that proxies are valid and distinct. Each checked proxy's leaf is flipped below NULL, so that a repeat
+     * shows as marked, then all of them are flipped back.
+     */
+    private void checkProxies(int[] proxies, int count) {
+        int marked = 0;
+        String error = null;
+        for (; marked < count; marked++) {
+            int proxy = proxies[marked];
+            if (proxy < 0 || proxy >= proxyCount || proxyLeaves[proxy] == NULL) {
+                error = "Invalid proxy " + proxy;
+                break;
+            }
+            if (proxyLeaves[proxy] < NULL) {
+                error = "Duplicate proxy " + proxy;
+                break;
+            }
+            proxyLeaves[proxy] = mark(proxyLeaves[proxy]);
+        }
+        for (int i = 0; i < marked; i++) {
+            proxyLeaves[proxies[i]] = mark(proxyLeaves[proxies[i]]);
+        }
+        if (error != null) throw new IllegalArgumentException(error);
+    }
+
+    private static int mark(int leaf) {
+        return NULL - 1 - leaf; // Swaps leaves and marks, both ways
+    }
+
+    private int createLeaf(int proxy) {
+        int leaf = allocateNode();
+        nodeProxies[leaf] = proxy;
+        nodeLefts[leaf] = NULL;
+        nodeRights[leaf] = NULL;
+        proxyLeaves[proxy] = leaf;
+        setGrownBox(leaf, proxy);
+        return leaf;
+    }
+
+    private int allocateNode() {
+        if (freeNodeCount > 0) return freeNodes[--freeNodeCount];
+        if (nodeCount == nodeProxies.length) allocateNodes(nodeCount * 2);
+        return nodeCount++;
+    }
+
+    private void freeNode(int node) {
+        if (freeNodeCount == freeNodes.length) freeNodes = Arrays.copyOf(freeNodes, freeNodeCount * 2);
+        freeNodes[freeNodeCount++] = node;
+    }
+
+    private void allocateNodes(int capacity) {
+        if (nodeProxies == null) {
+            nodeBoxes = new float[capacity * BOX];
+            nodeParents = new int[capacity];
+            nodeLefts = new int[capacity];
+            nodeRights = new int[capacity];
+            nodeProxies = new int[capacity];
+            return;
+        }
+        nodeBoxes = Arrays.copyOf(nodeBoxes, capacity * BOX);
+        nodeParents = Arrays.copyOf(nodeParents, capacity);
+        nodeLefts = Arrays.copyOf(nodeLefts, capacity);
+        nodeRights = Arrays.copyOf(nodeRights, capacity);
+        nodeProxies = Arrays.copyOf(nodeProxies, capacity);
+    }
+
+    /**
+     * Inserts a leaf next to the sibling that grows the tree's surface area the least, descending from the root while
+     * a child is cheaper than pairing with the current node.
+     */
+    private void insertLeaf(int leaf) {
+        if (root == NULL) {
+            root = leaf;
+            nodeParents[leaf] = NULL;
+            return;
+        }
+
+        float[] boxes = nodeBoxes;
+        int l = leaf * BOX;
+        int sibling = root;
+        while (nodeProxies[sibling] == NULL) {
+            int left = nodeLefts[sibling];
+            int right = nodeRights[sibling];
+            double area = area(boxes, sibling * BOX);
+            double combined = unionArea(boxes, sibling * BOX, boxes, l);
+            double cost = 2.0 * combined;              // Pairing with this node
+            double inheritance = 2.0 * (combined - area); // Growth pushed onto every ancestor below
+
+            double leftCost = childCost(left, l) + inheritance;
+            double rightCost = childCost(right, l) + inheritance;
+            if (cost < leftCost && cost < rightCost) break;
+            sibling = leftCost < rightCost ? left : right;
+        }
+
+        int oldParent = nodeParents[sibling];
+        int parent = allocateNode();
+        nodeParents[parent] = oldParent;
+        nodeProxies[parent] = NULL;
+        nodeLefts[parent] = sibling;
+        nodeRights[parent] = leaf;
+        nodeParents[sibling] = parent;
+        nodeParents[leaf] = parent;
+        if (oldParent == NULL) {
+            root = parent;
+        } else if (nodeLefts[oldParent] == sibling) {
+            nodeLefts[oldParent] = parent;
+        } else {
+            nodeRights[oldParent] = parent;
+        }
+        refit(parent);
+    }
+
+    private double childCost(int child, int leafBox) {
+        double combined = unionArea(nodeBoxes, child * BOX, nodeBoxes, leafBox);
+        return nodeProxies[child] != NULL ? combined : combined - area(nodeBoxes, child * BOX);
+    }
+
+    /**
+     * Detaches a leaf, replacing its parent by its sibling.
+     */
+    private void removeLeaf(int leaf) {
+        if (leaf == root) {
+            root = NULL;
+            return;
+        }
+        int parent = nodeParents[leaf];
+        int grandParent = nodeParents[parent];
+        int sibling = nodeLefts[parent] == leaf ? nodeRights[parent] : nodeLefts[parent];
+        nodeParents[sibling] = grandParent;
+        if (grandParent == NULL) {
+            root = sibling;
+        } else {
+            if (nodeLefts[grandParent] == parent) {
+                nodeLefts[grandParent] = sibling;
+            } else {
+                nodeRights[grandParent] = sibling;
+            }
+            refit(grandParent);
+        }
+        freeNode(parent);
+    }
+
+    /**
+     * Recomputes the boxes of a node and all of its ancestors from their children.
+     */
+    private void refit(int node) {
+        while (node != NULL) {
+            unionChildren(node);
+            node = nodeParents[node];
+        }
+    }
+
+    private void unionChildren(int node) {
+        int o = node * BOX;
+        System.arraycopy(nodeBoxes, nodeLefts[node] * BOX, nodeBoxes, o, BOX);
+        Bounds.union(nodeBoxes, nodeRights[node] * BOX, nodeBoxes, o);
+    }
+
+    private void setGrownBox(int leaf, int proxy) {
+        int o = leaf * BOX;
+        int p = proxy * BOX;
+        float margin = this.margin;
+        for (int k = 0; k < 3; k++) {
+            nodeBoxes[o + k] = proxyBoxes[p + k] - margin;
+            nodeBoxes[o + 3 + k] = proxyBoxes[p + 3 + k] + margin;
+        }
+    }
+
+    private int push(int top, int node) {
+        if (top == stack.length) stack = Arrays.copyOf(stack, top * 2);
+        stack[top] = node;
+        return top + 1;
+    }
+
+    /**
+     * Returns half the surface area of a box, 0 for an empty one. Computed in double precision, as unbounded boxes
+     * overflow floats.
+     */
+    private static double area(float[] boxes, int o) {
+        if (Bounds.isEmpty(boxes, o)) return 0.0;
+        double x = boxes[o + 3] - boxes[o];
+        double y = boxes[o + 4] - boxes[o + 1];
+        double z = boxes[o + 5] - boxes[o + 2];
+        return x * y + y * z + z * x;
+    }
+
+    private static double unionArea(float[] a, int ao, float[] b, int bo) {
+        if (Bounds.isEmpty(a, ao)) return area(b, bo);
+        if (Bounds.isEmpty(b, bo)) return area(a, ao);
+        double x = (double) Math.max(a[ao + 3], b[bo + 3]) - Math.min(a[ao], b[bo]);
+        double y = (double) Math.max(a[ao + 4], b[bo + 4]) - Math.min(a[ao + 1], b[bo + 1]);
+        double z = (double) Math.max(a[ao + 5], b[bo + 5]) - Math.min(a[ao + 2], b[bo + 2]);
+        return x * y + y * z + z * x;
+    }
+
+    private static boolean contains(float[] outer, int oo, float[] inner, int io) {
+        return inner[io] >= outer[oo] && inner[io + 1] >= outer[oo + 1] && inner[io + 2] >= outer[oo + 2]
+                && inner[io + 3] <= outer[oo + 3] && inner[io + 4] <= outer[oo + 4] && inner[io + 5] <= outer[oo + 5];
+    }
+
+    private static boolean overlaps(float[] a, int ao, float[] b, int bo) {
+        return a[ao] <= b[bo + 3] && a[ao + 3] >= b[bo]
+                && a[ao + 1] <= b[bo + 4] && a[ao + 4] >= b[bo + 1]
+                && a[ao + 2] <= b[bo + 5] && a[ao + 5] >= b[bo + 2];
+    }
+
+    private static float distanceSquared(float[] boxes, int o, float x, float y, float z) {
+        float dx = Math.max(Math.max(boxes[o] - x, x - boxes[o + 3]), 0f);
+        float dy = Math.max(Math.max(boxes[o + 1] - y, y - boxes[o + 4]), 0f);
+        float dz = Math.max(Math.max(boxes[o + 2] - z, z - boxes[o + 5]), 0f);
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    /**
+     * Returns the distance at which a ray enters a box (slab test), 0 if it starts inside, or -1 if it misses the box
+     * before the maximum distance.
+     */
+    private static float enter(float[] boxes, int o, float ox, float oy, float oz, float ix, float iy, float iz, float maxDistance) {
+        if (Bounds.isEmpty(boxes, o)) return -1f;
+        float near = 0f;
+        float far = maxDistance;
+        float t1 = (boxes[o] - ox) * ix, t2 = (boxes[o + 3] - ox) * ix;
+        // Comparisons ignore the NaN of a ray lying in a slab's plane
+        if (t1 > t2) {
+            float swap = t1;
+            t1 = t2;
+            t2 = swap;
+        }
+        if (t1 > near) near = t1;
+        if (t2 < far) far = t2;
+        t1 = (boxes[o + 1] - oy) * iy;
+        t2 = (boxes[o + 4] - oy) * iy;
+        if (t1 > t2) {
+            float swap = t1;
+            t1 = t2;
+            t2 = swap;
+        }
+        if (t1 > near) near = t1;
+        if (t2 < far) far = t2;
+        t1 = (boxes[o + 2] - oz) * iz;
+        t2 = (boxes[o + 5] - oz) * iz;
+        if (t1 > t2) {
+            float swap = t1;
+            t1 = t2;
+            t2 = swap;
+        }
+        if (t1 > near) near = t1;
+        if (t2 < far) far = t2;
+        return near <= far ? near : -1f;
+    }
+}
@@ -0,0 +1,160 @@
+package net.modularmods.protogl.spatial;
+
+import lombok.Getter;
+import net.modularmods.protogl.gl.Bounds;
+import net.modularmods.protogl.model.FrustumCuller;
+import net.modularmods.protogl.model.ModelInstance;
+import org.joml.FrustumIntersection;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+/**
+ * Indexes {@link ModelInstance}s by their world box in a {@link BoundingVolumeHierarchy}, so that a scene of many
+ * instances is culled or picked without visiting each one. An instance's box encloses the bounds of all its meshes
+ * under its last computed world matrices, as computed by {@link FrustumCuller#updateBounds(ModelInstance)}: after
+ * moving or animating an instance and updating its world matrices, call {@link #refit(ModelInstance)}.
+ */
+public class InstanceIndex {
+
+    private static final int BOX = Bounds.BOX_STRIDE;
+
+    @Getter
+    private final BoundingVolumeHierarchy<ModelInstance> hierarchy;
+    private final FrustumCuller bounds = new FrustumCuller(); // Computes the world box of an instance
+    private final Map<ModelInstance, Integer> proxies = new IdentityHashMap<>();
+    private final float[] box = new float[BOX];
+
+    private List<ModelInstance> results; // Receives the instances found by the current query
+    private final IntConsumer collector;
+
+    public InstanceIndex() {
+        this(new BoundingVolumeHierarchy<>());
+    }
+
+    /**
+     * Creates an index over an existing, empty hierarchy, e.g. one rebuilding on a dedicated pool.
+     * @param hierarchy The hierarchy.
+     */
+    public InstanceIndex(BoundingVolumeHierarchy<ModelInstance> hierarchy) {
+        this.hierarchy = hierarchy;
+        this.collector = proxy -> results.add(hierarchy.get(proxy));
+    }
+
+    /**
+     * Adds an instance, using its last computed world matrices.
+     * @param instance The instance.
+     */
+    public void add(ModelInstance instance) {
+        if (proxies.containsKey(instance)) return;
+        proxies.put(instance, hierarchy.insert(instance, worldBox(instance), 0));
+    }
+
+    /**
+     * Adds several instances at once, see {@link BoundingVolumeHierarchy#insertAll}.
+     * @param instances The instances, none of them indexed yet.
+     */
+    public void addAll(List<ModelInstance> instances) {
+        int count = instances.size();
+        float[] boxes = new float[count * BOX];
+        for (int i = 0; i < count; i++) {
+            System.arraycopy(worldBox(instances.get(i)), 0, boxes, i * BOX, BOX);
+        }
+        int[] handles = new int[count];
+        hierarchy.insertAll(instances, boxes, handles);
+        for (int i = 0; i < count; i++) {
+            proxies.put(instances.get(i), handles[i]);
+        }
+    }
+
+    /**
+     * Removes an instance.
+     * @param instance The instance.
+     */
+    public void remove(ModelInstance instance) {
+        Integer proxy = proxies.remove(instance);
+        if (proxy != null) hierarchy.remove(proxy);
+    }
+
+    /**
+     * Removes several instances at once, see {@link BoundingVolumeHierarchy#removeAll}.
+     * @param instances The instances.
+     */
+    public void removeAll(List<ModelInstance> instances) {
+        int[] handles = new int[instances.size()];
+        int count = 0;
+        for (int i = 0, size = instances.size(); i < size; i++) {
+            Integer proxy = proxies.remove(instances.get(i));
+            if (proxy != null) handles[count++] = proxy;
+        }
+        hierarchy.removeAll(handles, count);
+    }
+
+    /**
+     * Updates the box of an instance from its last computed world matrices, refitting the hierarchy if the instance
+     * left the margin of its leaf.
+     * @param instance The instance, whose node transforms changed.
+     * @return true if the hierarchy was refitted.
+     */
+    public boolean refit(ModelInstance instance) {
+        Integer proxy = proxies.get(instance);
+        return proxy != null && hierarchy.update(proxy, worldBox(instance), 0);
+    }
+
+    /**
+     * Collects the instances whose box intersects a frustum.
+     * @param frustum The frustum.
+     * @param dest The list receiving the instances.
+     * @return The number of instances found.
+     */
+    public int cull(FrustumIntersection frustum, List<ModelInstance> dest) {
+        results = dest;
+        try {
+            return hierarchy.queryFrustum(frustum, collector);
+        } finally {
+            results = null;
+        }
+    }
+
+    /**
+     * Collects the instances whose box overlaps a sphere, e.g. those near a player.
+     * @param x The sphere center's x.
+     * @param y The sphere center's y.
+     * @param z The sphere center's z.
+     * @param radius The sphere radius.
+     * @param dest The list receiving the instances.
+     * @return The number of instances found.
+     */
+    public int querySphere(float x, float y, float z, float radius, List<ModelInstance> dest) {
+        results = dest;
+        try {
+            return hierarchy.querySphere(x, y, z, radius, collector);
+        } finally {
+            results = null;
+        }
+    }
+
+    /**
+     * Finds the instance whose box a ray enters first.
+     * @param ox The ray origin's x.
+     * @param oy The ray origin's y.
+     * @param oz The ray origin's z.
+     * @param dx The ray direction's x.
+     * @param dy The ray direction's y.
+     * @param dz The ray direction's z.
+     * @param maxDistance The distance the ray stops at, in multiples of its direction.
+     * @return The instance, or null if the ray enters no box.
+     */
+    public ModelInstance pick(float ox, float oy, float oz, float dx, float dy, float dz, float maxDistance) {
+        int proxy = hierarchy.pick(ox, oy, oz, dx, dy, dz, maxDistance);
+        return proxy >= 0 ? hierarchy.get(proxy) : null;
+    }
+
+    private float[] worldBox(ModelInstance instance) {
+        bounds.updateBounds(instance);
+        bounds.getSubtreeBounds(0, box, 0);
+        return box;
+    }
+}
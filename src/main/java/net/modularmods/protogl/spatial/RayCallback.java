@@ -0,0 +1,17 @@
+package net.modularmods.protogl.spatial;
+
+/**
+ * Receives the entries a ray crosses during {@link BoundingVolumeHierarchy#raycast}.
+ */
+@FunctionalInterface
+public interface RayCallback {
+
+    /**
+     * Called for each entry whose box the ray enters before its current maximum distance.
+     * @param proxy The entry's handle.
+     * @param distance Distance at which the ray enters the entry's box, in multiples of the ray direction.
+     * @return The new maximum distance: the distance received to keep only nearer entries, the current maximum to
+     * keep going, or a negative value to stop.
+     */
+    float hit(int proxy, float distance);
+}
@@ -1,56 +1,170 @@
 package net.modularmods.protogl.utils;
 
 import net.modularmods.protogl.ProtoGL;
+import org.apache.logging.log4j.Logger;
+import org.lwjgl.BufferUtils;
 
-import java.io.DataInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 
+/**
+ * Binary helpers used by the loaders. Every read works on a {@link ByteBuffer} positioned at the next value,
+ * so the byte order of the buffer decides how multi-byte values are decoded (big-endian by default).
+ * Debug output is only built when debug logging is enabled.
+ */
 public class IOUtils {
 
-    public static String readMagicNumber(DataInputStream dis) throws IOException {
-        byte[] magicNumber = new byte[4];
-        dis.readFully(magicNumber);
-        ProtoGL.getLogger().debug("Magic number read: {}", new String(magicNumber));
-        return new String(magicNumber);
+    /**
+     * Reads a whole classpath resource into a heap buffer.
+     * @param classLoader The class loader to resolve the resource with.
+     * @param file The resource path.
+     * @return A big-endian buffer holding the resource contents.
+     * @throws IOException If the resource is missing or cannot be read.
+     */
+    public static ByteBuffer readResource(ClassLoader classLoader, String file) throws IOException {
+        try (InputStream is = classLoader.getResourceAsStream(file)) {
+            if (is == null) {
+                throw new FileNotFoundException(file);
+            }
+            return ByteBuffer.wrap(is.readAllBytes());
+        }
+    }
+
+    /**
+     * Reads a whole file into a heap buffer through a single {@link FileChannel}.
+     * @param path The file to read.
+     * @return A big-endian buffer holding the file contents.
+     * @throws IOException If the file is missing or cannot be read.
+     */
+    public static ByteBuffer readFile(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("File too large: " + path);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new IOException("Unexpected end of file: " + path);
+                }
+            }
+            return buffer.flip();
+        }
+    }
+
+    public static String readMagicNumber(ByteBuffer buffer) {
+        return readMagicNumber(buffer, 4);
     }
 
-    public static int readInt(DataInputStream dis, String data) throws IOException {
-        int i = dis.readInt();
+    public static String readMagicNumber(ByteBuffer buffer, int length) {
+        byte[] magicNumber = new byte[length];
+        buffer.get(magicNumber);
+        String s = new String(magicNumber, StandardCharsets.US_ASCII);
+        ProtoGL.getLogger().debug("Magic number read: {}", s);
+        return s;
+    }
+
+    public static int readInt(ByteBuffer buffer, String data) {
+        int i = buffer.getInt();
         ProtoGL.getLogger().debug("{}: {}", data, i);
         return i;
     }
 
-    public static float[] readFloats(DataInputStream dis, int count, String data) throws IOException {
+    public static float[] readFloats(ByteBuffer buffer, int count, String data) {
         float[] floats = new float[count];
-        for (int i = 0; i < count; i++) {
-            floats[i] = dis.readFloat();
+        buffer.asFloatBuffer().get(floats); // Bulk decode, honouring the buffer's byte order
+        buffer.position(buffer.position() + count * Float.BYTES);
+        Logger logger = ProtoGL.getLogger();
+        if (logger.isDebugEnabled()) {
+            logger.debug("{}: {}", data, floats);
         }
-        ProtoGL.getLogger().debug("{}: {}", data, floats);
         return floats;
     }
 
-    public static int[] readInts(DataInputStream dis, int count, String data) throws IOException {
+    public static short[] readShorts(ByteBuffer buffer, int count, String data) {
+        short[] shorts = new short[count];
+        buffer.asShortBuffer().get(shorts); // Bulk decode, honouring the buffer's byte order
+        buffer.position(buffer.position() + count * Short.BYTES);
+        Logger logger = ProtoGL.getLogger();
+        if (logger.isDebugEnabled()) {
+            logger.debug("{}: {}", data, shorts);
+        }
+        return shorts;
+    }
+
+    public static int[] readInts(ByteBuffer buffer, int count, String data) {
         int[] ints = new int[count];
-        for (int i = 0; i < count; i++) {
-            ints[i] = dis.readInt();
+        buffer.asIntBuffer().get(ints); // Bulk decode, honouring the buffer's byte order
+        buffer.position(buffer.position() + count * Integer.BYTES);
+        Logger logger = ProtoGL.getLogger();
+        if (logger.isDebugEnabled()) {
+            logger.debug("{}: {}", data, ints);
         }
-        ProtoGL.getLogger().debug("{}: {}", data, ints);
         return ints;
     }
 
-    public static byte readByte(DataInputStream dis, String data) throws IOException {
-        byte b = dis.readByte();
+    /**
+     * Exposes the next {@code count} floats as a direct view of the buffer and skips past them. When the data is not
+     * in native byte order (or the source is not direct) it is converted into a new off-heap buffer instead, so the
+     * result can always be handed to OpenGL as-is.
+     * @param buffer The source buffer.
+     * @param count The number of floats.
+     * @return A direct, native-order buffer holding the floats.
+     */
+    public static FloatBuffer readFloatView(ByteBuffer buffer, int count) {
+        ByteBuffer slice = slice(buffer, count * Float.BYTES);
+        if (slice.isDirect() && slice.order() == ByteOrder.nativeOrder()) {
+            return slice.asFloatBuffer();
+        }
+        return BufferUtils.createFloatBuffer(count).put(slice.asFloatBuffer()).flip();
+    }
+
+    /**
+     * Exposes the next {@code count} ints as a direct view of the buffer and skips past them.
+     * @param buffer The source buffer.
+     * @param count The number of ints.
+     * @return A direct, native-order buffer holding the ints.
+     * @see #readFloatView(ByteBuffer, int)
+     */
+    public static IntBuffer readIntView(ByteBuffer buffer, int count) {
+        ByteBuffer slice = slice(buffer, count * Integer.BYTES);
+        if (slice.isDirect() && slice.order() == ByteOrder.nativeOrder()) {
+            return slice.asIntBuffer();
+        }
+        return BufferUtils.createIntBuffer(count).put(slice.asIntBuffer()).flip();
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int bytes) {
+        ByteBuffer slice = buffer.slice(buffer.position(), bytes).order(buffer.order());
+        buffer.position(buffer.position() + bytes);
+        return slice;
+    }
+
+    public static byte readByte(ByteBuffer buffer, String data) {
+        byte b = buffer.get();
         ProtoGL.getLogger().debug("{}: {}", data, b);
         return b;
     }
 
-    public static String readString(DataInputStream dis, String data) throws IOException {
-        StringBuilder sb = new StringBuilder();
-        byte b;
-        while (Byte.toUnsignedInt(b = dis.readByte()) != 0) {
-            sb.append((char) b);
+    public static String readString(ByteBuffer buffer, String data) {
+        int start = buffer.position();
+        int end = start;
+        while (buffer.get(end) != 0) {
+            end++;
         }
-        String s = sb.toString();
+        byte[] bytes = new byte[end - start];
+        buffer.get(bytes);
+        buffer.get(); // Skip the 0x00 terminator
+        String s = new String(bytes, StandardCharsets.ISO_8859_1);
         ProtoGL.getLogger().debug("{}: {}", data, s);
         return s;
     }
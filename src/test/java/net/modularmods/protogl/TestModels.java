@@ -0,0 +1,79 @@
+package net.modularmods.protogl;
+
+import net.modularmods.protogl.gl.MeshData;
+import net.modularmods.protogl.loader.data.JointData;
+import net.modularmods.protogl.loader.data.ModelData;
+import net.modularmods.protogl.loader.data.NodeData;
+
+/**
+ * Small models built in code for tests.
+ */
+public final class TestModels {
+
+    public static final float[] IDENTITY_ROTATION = {0f, 0f, 0f, 1f};
+    public static final float[] UNIT_SCALE = {1f, 1f, 1f};
+
+    private TestModels() {
+    }
+
+    /**
+     * Builds a unit quad in the XZ plane, from (0,0,0) to (1,0,1).
+     * @param skinned Whether to bind each vertex fully to one of the first {@code joints} joints.
+     * @param joints Number of joints the vertices are spread over when skinned.
+     * @return The mesh data.
+     */
+    public static MeshData quad(boolean skinned, int joints) {
+        float[] positions = {0f, 0f, 0f, 1f, 0f, 0f, 0f, 0f, 1f, 1f, 0f, 1f};
+        float[] uvs = {0f, 0f, 1f, 0f, 0f, 1f, 1f, 1f};
+        float[] normals = {0f, 1f, 0f, 0f, 1f, 0f, 0f, 1f, 0f, 0f, 1f, 0f};
+        int[] indices = {0, 2, 1, 1, 2, 3};
+        if (!skinned) {
+            return new MeshData(positions, uvs, normals, indices);
+        }
+        float[] jointIndices = new float[16];
+        float[] weights = new float[16];
+        for (int v = 0; v < 4; v++) {
+            jointIndices[v * 4] = v % joints;
+            weights[v * 4] = 1f;
+        }
+        return new MeshData(positions, uvs, normals, indices, jointIndices, weights);
+    }
+
+    /**
+     * Builds a node.
+     * @param name The node name.
+     * @param parent The parent name, or null for a root.
+     * @param x Translation along x.
+     * @param y Translation along y.
+     * @param z Translation along z.
+     * @param mesh The node's mesh, or null.
+     * @return The node data.
+     */
+    public static NodeData node(String name, String parent, float x, float y, float z, MeshData mesh) {
+        return new NodeData(name, parent, new float[]{x, y, z}, IDENTITY_ROTATION.clone(), UNIT_SCALE.clone(), mesh);
+    }
+
+    /**
+     * Builds an armature of joints chained one after the other, with identity inverse bind matrices.
+     * @param count Number of joints, named {@code "joint" + index}.
+     * @return The joints.
+     */
+    public static JointData[] chain(int count) {
+        JointData[] joints = new JointData[count];
+        for (int j = 0; j < count; j++) {
+            float[] inverseBind = new float[16];
+            inverseBind[0] = inverseBind[5] = inverseBind[10] = inverseBind[15] = 1f;
+            joints[j] = new JointData("joint" + j, j == 0 ? "" : "joint" + (j - 1), inverseBind);
+        }
+        return joints;
+    }
+
+    /**
+     * Builds a model of one skinned quad bound to a chain of joints.
+     * @param joints Number of joints.
+     * @return The model data.
+     */
+    public static ModelData skinnedQuad(int joints) {
+        return new ModelData(new NodeData[]{node("skin", null, 0f, 0f, 0f, quad(true, joints))}, "skeleton", chain(joints));
+    }
+}
@@ -0,0 +1,150 @@
+package net.modularmods.protogl.gl;
+
+import net.modularmods.protogl.animation.CpuSkinning;
+import org.joml.Matrix4f;
+import org.joml.Quaternionf;
+import org.joml.Vector3f;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BoundsTest {
+
+    private static final int BOX = Bounds.BOX_STRIDE;
+    private static final float EPSILON = 1e-4f;
+
+    private final Random random = new Random(42);
+
+    @Test
+    void enclosesVertices() {
+        Bounds bounds = Bounds.of(new float[]{1f, 2f, 3f, -1f, 5f, 0f, 0f, 0f, 4f});
+        float[] box = new float[BOX];
+        bounds.getBox(box, 0);
+        assertArrayEquals(new float[]{-1f, 0f, 0f, 1f, 5f, 4f}, box);
+        assertFalse(bounds.isEmpty());
+        assertTrue(Bounds.of(new float[0]).isEmpty());
+    }
+
+    @Test
+    void unionOfEmptyBoxCopies() {
+        float[] boxes = new float[2 * BOX];
+        Bounds.clear(boxes, BOX);
+        assertTrue(Bounds.isEmpty(boxes, BOX));
+
+        float[] box = {1f, 2f, 3f, 4f, 5f, 6f};
+        Bounds.union(box, 0, boxes, BOX);
+        assertFalse(Bounds.isEmpty(boxes, BOX));
+        assertArrayEquals(box, Arrays.copyOfRange(boxes, BOX, 2 * BOX));
+
+        Bounds.union(new float[]{-1f, 3f, 3f, 2f, 9f, 4f}, 0, boxes, BOX);
+        assertArrayEquals(new float[]{-1f, 2f, 3f, 4f, 9f, 6f}, Arrays.copyOfRange(boxes, BOX, 2 * BOX));
+    }
+
+    @Test
+    void transformMatchesTransformedCorners() {
+        float[] matrix = new float[16];
+        float[] box = new float[BOX];
+        float[] result = new float[BOX];
+        Vector3f corner = new Vector3f();
+        for (int iteration = 0; iteration < 200; iteration++) {
+            randomAffine().get(matrix);
+            for (int k = 0; k < 3; k++) {
+                float a = random.nextFloat() * 20f - 10f;
+                float b = random.nextFloat() * 20f - 10f;
+                box[k] = Math.min(a, b);
+                box[k + 3] = Math.max(a, b);
+            }
+            Bounds.transform(matrix, 0, box, 0, result, 0);
+
+            float[] expected = new float[BOX];
+            Bounds.clear(expected, 0);
+            Matrix4f m = new Matrix4f().set(matrix);
+            for (int c = 0; c < 8; c++) {
+                m.transformPosition(box[(c & 1) == 0 ? 0 : 3], box[(c & 2) == 0 ? 1 : 4], box[(c & 4) == 0 ? 2 : 5], corner);
+                expected[0] = Math.min(expected[0], corner.x);
+                expected[1] = Math.min(expected[1], corner.y);
+                expected[2] = Math.min(expected[2], corner.z);
+                expected[3] = Math.max(expected[3], corner.x);
+                expected[4] = Math.max(expected[4], corner.y);
+                expected[5] = Math.max(expected[5], corner.z);
+            }
+            assertArrayEquals(expected, result, EPSILON * 100);
+        }
+    }
+
+    @Test
+    void transformInPlace() {
+        float[] boxes = {0f, 0f, 0f, 1f, 1f, 1f};
+        float[] matrix = new Matrix4f().translation(5f, 0f, 0f).scale(2f).get(new float[16]);
+        Bounds.transform(matrix, 0, boxes, 0, boxes, 0);
+        assertArrayEquals(new float[]{5f, 0f, 0f, 7f, 2f, 2f}, boxes, EPSILON);
+    }
+
+    @Test
+    void jointBoxesEnclosePosedVertices() {
+        int vertexCount = 200;
+        int jointCount = 6;
+        float[] positions = new float[vertexCount * 3];
+        float[] joints = new float[vertexCount * 4];
+        float[] weights = new float[vertexCount * 4];
+        for (int v = 0; v < vertexCount; v++) {
+            for (int k = 0; k < 3; k++) {
+                positions[v * 3 + k] = random.nextFloat() * 4f - 2f;
+            }
+            float sum = 0f;
+            for (int i = 0; i < 4; i++) {
+                joints[v * 4 + i] = random.nextInt(jointCount - 1); // The last joint influences nothing
+                weights[v * 4 + i] = i == 3 ? 0f : random.nextFloat();
+                sum += weights[v * 4 + i];
+            }
+            for (int i = 0; i < 4; i++) {
+                weights[v * 4 + i] /= sum;
+            }
+        }
+        MeshData data = new MeshData(positions, null, null, null, joints, weights);
+        float[] jointBounds = Bounds.ofJoints(data);
+        assertEquals((jointCount - 1) * BOX, jointBounds.length);
+        assertNull(Bounds.ofJoints(new MeshData(positions)));
+
+        CpuSkinning skinning = new CpuSkinning(data);
+        float[] palette = new float[jointCount * 16];
+        float[] skinned = new float[vertexCount * 3];
+        float[] enclosing = new float[BOX];
+        float[] box = new float[BOX];
+        for (int pose = 0; pose < 20; pose++) {
+            for (int j = 0; j < jointCount; j++) {
+                randomAffine().get(palette, j * 16);
+            }
+            skinning.skin(palette, 0, vertexCount, skinned, null);
+
+            Bounds.clear(enclosing, 0);
+            for (int j = 0; j < jointBounds.length / BOX; j++) {
+                if (Bounds.isEmpty(jointBounds, j * BOX)) continue;
+                Bounds.transform(palette, j * 16, jointBounds, j * BOX, box, 0);
+                Bounds.union(box, 0, enclosing, 0);
+            }
+            for (int v = 0; v < vertexCount; v++) {
+                for (int k = 0; k < 3; k++) {
+                    float value = skinned[v * 3 + k];
+                    assertTrue(value >= enclosing[k] - EPSILON && value <= enclosing[k + 3] + EPSILON,
+                            "vertex " + v + " axis " + k + " at " + value + " outside the joint boxes");
+                }
+            }
+        }
+    }
+
+    private Matrix4f randomAffine() {
+        Quaternionf rotation = new Quaternionf().rotateXYZ(random.nextFloat() * 6.3f, random.nextFloat() * 6.3f, random.nextFloat() * 6.3f);
+        return new Matrix4f().translationRotateScale(
+                random.nextFloat() * 10f - 5f, random.nextFloat() * 10f - 5f, random.nextFloat() * 10f - 5f,
+                rotation.x, rotation.y, rotation.z, rotation.w,
+                0.5f + random.nextFloat(), 0.5f + random.nextFloat(), 0.5f + random.nextFloat());
+    }
+}
@@ -0,0 +1,38 @@
+package net.modularmods.protogl.gl;
+
+import net.modularmods.protogl.TestModels;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MeshTest {
+
+    @Test
+    void mergesPartsWithTheSameAttributes() {
+        assertTrue(Mesh.canMerge(new MeshData[]{TestModels.quad(false, 0), TestModels.quad(false, 0)}));
+        assertTrue(Mesh.canMerge(new MeshData[]{TestModels.quad(true, 2), TestModels.quad(true, 2)}));
+        assertFalse(Mesh.canMerge(new MeshData[]{TestModels.quad(false, 0), TestModels.quad(true, 2)}));
+    }
+
+    @Test
+    void doesNotMergePartsWithoutUvs() {
+        MeshData withUvs = TestModels.quad(false, 0);
+        // As loaded from a file without UVs: the attribute is there, but empty
+        MeshData withoutUvs = new MeshData(withUvs.getVertices(), new float[0], withUvs.getNormals(), withUvs.getIndices());
+        assertFalse(Mesh.canMerge(new MeshData[]{withUvs, withoutUvs}));
+        assertFalse(Mesh.canMerge(new MeshData[]{withoutUvs, withUvs}));
+        assertFalse(Mesh.canMerge(new MeshData[]{withoutUvs, withoutUvs}));
+        assertThrows(IllegalArgumentException.class, () -> Mesh.loadMerged(new MeshData[]{withUvs, withoutUvs}));
+    }
+
+    @Test
+    void doesNotMergePartsWithShortAttributes() {
+        MeshData full = TestModels.quad(true, 2);
+        float[] weights = new float[full.getWeights().length - 4];
+        MeshData shortWeights = new MeshData(full.getVertices(), full.getUvs(), full.getNormals(), full.getIndices(),
+                full.getJoints(), weights);
+        assertFalse(Mesh.canMerge(new MeshData[]{full, shortWeights}));
+    }
+}
@@ -0,0 +1,192 @@
+package net.modularmods.protogl.gl;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VertexPackerTest {
+
+    private final Random random = new Random(42);
+
+    @Test
+    void halfFloatRoundTrip() {
+        float[] exact = {0f, -0f, 1f, -2f, 0.5f, 0.099975586f, 1024f, 65504f, 6.1035156e-5f, 5.9604645e-8f};
+        for (float value : exact) {
+            assertEquals(value, halfToFloat(VertexPacker.floatToHalf(value)), "exact " + value);
+        }
+        for (int i = 0; i < 10000; i++) {
+            float value = (random.nextFloat() * 2f - 1f) * (float) Math.pow(2, random.nextInt(30) - 14);
+            float decoded = halfToFloat(VertexPacker.floatToHalf(value));
+            // Half of one unit in the last place: 11 significant bits, or the subnormal step below 2^-14
+            float tolerance = Math.max(Math.abs(value) * 0x1p-11f, 0x1p-25f);
+            assertEquals(value, decoded, tolerance, "value " + value);
+        }
+    }
+
+    @Test
+    void halfFloatRoundsToNearestEven() {
+        assertEquals(1f, halfToFloat(VertexPacker.floatToHalf(1f + 0x1p-11f)));                 // Tie, mantissa even
+        assertEquals(1f + 0x1p-9f, halfToFloat(VertexPacker.floatToHalf(1f + 0x1p-10f + 0x1p-11f))); // Tie, rounds up
+        assertEquals(1f + 0x1p-10f, halfToFloat(VertexPacker.floatToHalf(1f + 0x1p-11f + 0x1p-20f)));
+        assertEquals(2048f, halfToFloat(VertexPacker.floatToHalf(2047.9f)));                  // Carry into the exponent
+    }
+
+    @Test
+    void halfFloatSpecialValues() {
+        assertEquals(Float.POSITIVE_INFINITY, halfToFloat(VertexPacker.floatToHalf(1e6f)));
+        assertEquals(Float.NEGATIVE_INFINITY, halfToFloat(VertexPacker.floatToHalf(Float.NEGATIVE_INFINITY)));
+        assertTrue(Float.isNaN(halfToFloat(VertexPacker.floatToHalf(Float.NaN))));
+        assertEquals(0f, halfToFloat(VertexPacker.floatToHalf(1e-10f)));
+    }
+
+    @Test
+    void snorm10RoundTrip() {
+        float tolerance = 0.5f / 511f + 1e-6f;
+        for (int i = 0; i < 10000; i++) {
+            float[] normal = randomUnitVector();
+            int packed = VertexPacker.packSnorm10(normal[0], normal[1], normal[2]);
+            assertEquals(0, packed >>> 30); // w
+            assertEquals(normal[0], snorm10(packed << 22), tolerance);
+            assertEquals(normal[1], snorm10(packed << 12), tolerance);
+            assertEquals(normal[2], snorm10(packed << 2), tolerance);
+        }
+        int clamped = VertexPacker.packSnorm10(2f, -2f, 0f);
+        assertEquals(1f, snorm10(clamped << 22));
+        assertEquals(-1f, snorm10(clamped << 12));
+    }
+
+    @Test
+    void octahedralRoundTrip() {
+        float[][] axes = {{1f, 0f, 0f}, {-1f, 0f, 0f}, {0f, 1f, 0f}, {0f, -1f, 0f}, {0f, 0f, 1f}, {0f, 0f, -1f}};
+        for (float[] axis : axes) {
+            assertDirection(axis, decodeOctahedral(VertexPacker.packOctahedral(axis[0], axis[1], axis[2])), 1e-4f);
+        }
+        for (int i = 0; i < 10000; i++) {
+            float[] normal = randomUnitVector();
+            float[] decoded = decodeOctahedral(VertexPacker.packOctahedral(normal[0], normal[1], normal[2]));
+            assertDirection(normal, decoded, 1e-4f); // 16-bit octahedral error is about 3e-5 rad
+        }
+    }
+
+    @Test
+    void weightsQuantizeToExactly255() {
+        int vertexCount = 1000;
+        float[] positions = new float[vertexCount * 3];
+        float[] joints = new float[vertexCount * 4];
+        float[] weights = new float[vertexCount * 4];
+        for (int v = 0; v < vertexCount; v++) {
+            int influences = 1 + v % 4;
+            float sum = 0f;
+            for (int i = 0; i < influences; i++) {
+                weights[v * 4 + i] = random.nextFloat();
+                sum += weights[v * 4 + i];
+            }
+            for (int i = 0; i < influences; i++) {
+                weights[v * 4 + i] /= sum;
+                joints[v * 4 + i] = i;
+            }
+        }
+        float[] uvs = new float[vertexCount * 2];
+        float[] normals = new float[vertexCount * 3];
+        MeshData data = new MeshData(positions, uvs, normals, null, joints, weights);
+
+        VertexFormat format = VertexFormat.PACKED_SKINNED;
+        ByteBuffer packed = VertexPacker.pack(data, format);
+        int offset = format.getElement(VertexFormat.Semantic.WEIGHTS).getOffset();
+        for (int v = 0; v < vertexCount; v++) {
+            int sum = 0;
+            for (int i = 0; i < 4; i++) {
+                int quantized = packed.get(v * format.getStride() + offset + i) & 0xFF;
+                float weight = weights[v * 4 + i];
+                sum += quantized;
+                if (weight == 0f) {
+                    assertEquals(0, quantized, "unused influence of vertex " + v);
+                } else {
+                    assertEquals(weight * 255f, quantized, 2f, "influence " + i + " of vertex " + v);
+                }
+            }
+            assertEquals(255, sum, "vertex " + v);
+        }
+    }
+
+    @Test
+    void meshWithoutUvsLeavesThemOut() {
+        float[] positions = {0f, 0f, 0f, 1f, 0f, 0f, 0f, 0f, 1f};
+        float[] normals = {0f, 1f, 0f, 0f, 1f, 0f, 0f, 1f, 0f};
+        // As loaded from a file without UVs: the attribute is there, but empty
+        MeshData data = new MeshData(positions, new float[0], normals, new int[]{0, 1, 2});
+        assertFalse(VertexPacker.hasAttribute(data, VertexFormat.Semantic.UV));
+        assertTrue(VertexPacker.hasAttribute(data, VertexFormat.Semantic.NORMAL));
+
+        VertexFormat format = VertexFormat.PACKED_STATIC.forData(data);
+        assertNull(format.getElement(VertexFormat.Semantic.UV));
+        ByteBuffer packed = VertexPacker.pack(data, format);
+        assertEquals(3 * format.getStride(), packed.remaining());
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> VertexPacker.pack(data, VertexFormat.PACKED_STATIC));
+        assertTrue(e.getMessage().contains("UV"), e.getMessage());
+    }
+
+    private float[] randomUnitVector() {
+        float x, y, z, length;
+        do {
+            x = random.nextFloat() * 2f - 1f;
+            y = random.nextFloat() * 2f - 1f;
+            z = random.nextFloat() * 2f - 1f;
+            length = (float) Math.sqrt(x * x + y * y + z * z);
+        } while (length < 0.1f || length > 1f);
+        return new float[]{x / length, y / length, z / length};
+    }
+
+    private static void assertDirection(float[] expected, float[] actual, float tolerance) {
+        for (int c = 0; c < 3; c++) {
+            assertEquals(expected[c], actual[c], tolerance);
+        }
+    }
+
+    /**
+     * Decodes a 10-bit field moved to the top of an int, as GL does for a signed normalized attribute.
+     */
+    private static float snorm10(int topBits) {
+        return Math.max((topBits >> 22) / 511f, -1f);
+    }
+
+    /**
+     * Decodes an octahedral normal the way the vertex shader does.
+     */
+    private static float[] decodeOctahedral(int packed) {
+        float x = Math.max((short) packed / 32767f, -1f);
+        float y = Math.max((short) (packed >>> 16) / 32767f, -1f);
+        float z = 1f - Math.abs(x) - Math.abs(y);
+        if (z < 0f) {
+            float fx = (1f - Math.abs(y)) * (x >= 0f ? 1f : -1f);
+            float fy = (1f - Math.abs(x)) * (y >= 0f ? 1f : -1f);
+            x = fx;
+            y = fy;
+        }
+        float length = (float) Math.sqrt(x * x + y * y + z * z);
+        return new float[]{x / length, y / length, z / length};
+    }
+
+    private static float halfToFloat(short half) {
+        int bits = half & 0xFFFF;
+        float sign = (bits & 0x8000) != 0 ? -1f : 1f;
+        int exponent = (bits >>> 10) & 0x1F;
+        int mantissa = bits & 0x3FF;
+        if (exponent == 0x1F) {
+            return mantissa != 0 ? Float.NaN : sign * Float.POSITIVE_INFINITY;
+        }
+        if (exponent == 0) {
+            return sign * (mantissa * 0x1p-24f);
+        }
+        return sign * (1f + mantissa / 1024f) * (float) Math.pow(2, exponent - 15);
+    }
+}
@@ -0,0 +1,170 @@
+package net.modularmods.protogl.gl.buffers;
+
+import net.modularmods.protogl.ProtoGL;
+import net.modularmods.protogl.gl.backend.RecordingBackend;
+import net.modularmods.protogl.gl.backend.RecordingBackend.Call;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.lwjgl.BufferUtils;
+
+import java.nio.FloatBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SkinningBufferTest {
+
+    private static final int ALIGNMENT = 256;
+    private static final int BONES = 3; // 192 bytes, padded to one alignment unit
+
+    private RecordingBackend backend;
+
+    @BeforeEach
+    void setUp() {
+        backend = new RecordingBackend();
+        backend.setUniformBufferOffsetAlignment(ALIGNMENT);
+        ProtoGL.setBackend(backend);
+    }
+
+    @Test
+    void offsetsAreAligned() {
+        backend.setUniformBufferOffsetAlignment(64 * 4 + 16); // Not a power of two, as some drivers report
+        SkinningBuffer buffer = new SkinningBuffer(4096);
+        int alignment = buffer.getAlignment();
+        assertEquals(272, alignment);
+        assertEquals(0, buffer.getFrameCapacity() % alignment);
+
+        buffer.beginFrame();
+        int previous = -1;
+        for (int bones = 1; bones <= 4; bones++) {
+            int offset = buffer.write(palette(bones));
+            assertEquals(0, offset % alignment, "offset " + offset);
+            assertTrue(offset > previous);
+            previous = offset;
+        }
+        assertEquals(0, buffer.getFrameSize() % alignment);
+        buffer.cleanup();
+    }
+
+    @Test
+    void frameCapacityIsRoundedUp() {
+        SkinningBuffer buffer = new SkinningBuffer(1000);
+        assertEquals(1024, buffer.getFrameCapacity());
+        buffer.cleanup();
+    }
+
+    @Test
+    void regionsAdvanceEachFrame() {
+        SkinningBuffer buffer = new SkinningBuffer(4 * ALIGNMENT);
+        int capacity = buffer.getFrameCapacity();
+        for (int frame = 0; frame < 2 * SkinningBuffer.FRAMES + 1; frame++) {
+            buffer.beginFrame();
+            int region = (frame % SkinningBuffer.FRAMES) * capacity;
+            assertEquals(region, buffer.write(palette(BONES)));
+            assertEquals(region + ALIGNMENT, buffer.write(palette(BONES)));
+        }
+        buffer.cleanup();
+    }
+
+    @Test
+    void writeBeforeBeginFrameThrows() {
+        SkinningBuffer buffer = new SkinningBuffer(ALIGNMENT);
+        assertThrows(IllegalStateException.class, () -> buffer.write(palette(BONES)));
+        buffer.cleanup();
+    }
+
+    @Test
+    void overflowThrows() {
+        SkinningBuffer buffer = new SkinningBuffer(2 * ALIGNMENT);
+        buffer.beginFrame();
+        buffer.write(palette(BONES));
+        buffer.write(palette(BONES));
+        assertThrows(IllegalStateException.class, () -> buffer.write(palette(BONES)));
+        buffer.cleanup();
+
+        SkinningBuffer small = new SkinningBuffer(ALIGNMENT);
+        small.beginFrame();
+        assertThrows(IllegalStateException.class, () -> small.write(palette(8))); // 512 bytes in 256
+        small.cleanup();
+    }
+
+    @Test
+    void persistentPathMapsOnceAndNeverUploads() {
+        backend.setBufferStorageSupported(true);
+        SkinningBuffer buffer = new SkinningBuffer(4 * ALIGNMENT);
+        assertTrue(buffer.isPersistent());
+        assertEquals(1, backend.getCalls(Call.BUFFER_STORAGE));
+        assertEquals(1, backend.getCalls(Call.MAP_BUFFER));
+
+        backend.reset();
+        for (int frame = 0; frame < 5; frame++) {
+            buffer.beginFrame();
+            buffer.write(palette(BONES));
+            buffer.upload();
+        }
+        assertEquals(0, backend.getCalls(Call.BUFFER_SUB_DATA));
+        assertEquals(0, backend.getBytesUploaded());
+        buffer.cleanup();
+        assertEquals(1, backend.getCalls(Call.UNMAP_BUFFER));
+    }
+
+    @Test
+    void stagingPathUploadsOncePerFrame() {
+        backend.setBufferStorageSupported(false);
+        SkinningBuffer buffer = new SkinningBuffer(8 * ALIGNMENT);
+        assertFalse(buffer.isPersistent());
+
+        int frames = 5;
+        backend.reset();
+        for (int frame = 0; frame < frames; frame++) {
+            buffer.beginFrame();
+            for (int i = 0; i < 4; i++) {
+                buffer.write(palette(BONES));
+            }
+        }
+        buffer.beginFrame(); // Uploads the last frame
+        assertEquals(frames, backend.getCalls(Call.BUFFER_SUB_DATA));
+        assertEquals((long) frames * 4 * ALIGNMENT, backend.getBytesUploaded());
+        buffer.cleanup();
+    }
+
+    @Test
+    void explicitUploadIsNotRepeated() {
+        backend.setBufferStorageSupported(false);
+        SkinningBuffer buffer = new SkinningBuffer(8 * ALIGNMENT);
+        buffer.beginFrame();
+        buffer.write(palette(BONES));
+        buffer.upload();
+        buffer.upload();
+        backend.reset();
+        buffer.beginFrame();
+        assertEquals(0, backend.getCalls(Call.BUFFER_SUB_DATA)); // Nothing written since the last upload
+        buffer.cleanup();
+    }
+
+    @Test
+    void cleanupDeletesFencesAndBuffer() {
+        for (boolean storage : new boolean[] {true, false}) {
+            backend.setBufferStorageSupported(storage);
+            SkinningBuffer buffer = new SkinningBuffer(ALIGNMENT);
+            for (int frame = 0; frame < SkinningBuffer.FRAMES + 1; frame++) {
+                buffer.beginFrame();
+                buffer.write(palette(BONES));
+            }
+            assertTrue(backend.getLiveSyncs() > 0);
+            buffer.cleanup();
+            assertEquals(0, backend.getLiveSyncs());
+            assertEquals(0, backend.getLiveBuffers());
+        }
+    }
+
+    private static FloatBuffer palette(int bones) {
+        FloatBuffer palette = BufferUtils.createFloatBuffer(bones * 16);
+        for (int i = 0; i < palette.capacity(); i++) {
+            palette.put(i, i);
+        }
+        return palette;
+    }
+}
@@ -0,0 +1,83 @@
+package net.modularmods.protogl.loader;
+
+import net.modularmods.protogl.ProtoGL;
+import net.modularmods.protogl.TestModels;
+import net.modularmods.protogl.gl.backend.RecordingBackend;
+import net.modularmods.protogl.loader.data.ModelData;
+import net.modularmods.protogl.loader.data.NodeData;
+import net.modularmods.protogl.model.PModel;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GLUploadQueueTest {
+
+    private static final int NODES = 6;
+
+    private RecordingBackend backend;
+    private long nodeBytes; // Budgeted size of one node, all nodes being alike
+
+    @BeforeEach
+    void setUp() {
+        backend = new RecordingBackend();
+        ProtoGL.setBackend(backend);
+        nodeBytes = TestModels.quad(false, 0).getSizeInBytes();
+    }
+
+    @Test
+    void stopsOnceTheByteBudgetIsSpent() {
+        GLUploadQueue queue = new GLUploadQueue();
+        CompletableFuture<PModel> future = queue.submit("model", model(), false);
+
+        assertEquals(1, queue.process(Long.MAX_VALUE, nodeBytes));
+        assertEquals(2, queue.process(Long.MAX_VALUE, nodeBytes + 1));
+        assertEquals(2, queue.process(Long.MAX_VALUE, 2 * nodeBytes));
+        assertFalse(future.isDone());
+
+        assertEquals(1, queue.process(Long.MAX_VALUE, Long.MAX_VALUE));
+        assertTrue(queue.isEmpty());
+        assertTrue(future.isDone());
+        assertEquals(NODES, backend.getLiveVertexArrays());
+    }
+
+    @Test
+    void progressesWithoutBudget() {
+        GLUploadQueue queue = new GLUploadQueue();
+        CompletableFuture<PModel> future = queue.submit("model", model(), false);
+        for (int frame = 0; frame < NODES; frame++) {
+            assertFalse(future.isDone());
+            assertEquals(1, queue.process(0L, 0L)); // One node per frame, however small the budget
+        }
+        assertNotNull(future.join().getNode("node" + (NODES - 1)));
+        assertEquals(0, queue.process(0L, 0L));
+    }
+
+    @Test
+    void budgetSpansModels() {
+        GLUploadQueue queue = new GLUploadQueue();
+        CompletableFuture<PModel> first = queue.submit("first", model(), false);
+        CompletableFuture<PModel> second = queue.submit("second", model(), false);
+
+        assertEquals(NODES + 2, queue.process(Long.MAX_VALUE, (NODES + 2) * nodeBytes));
+        assertTrue(first.isDone());
+        assertFalse(second.isDone());
+
+        queue.process(Long.MAX_VALUE, Long.MAX_VALUE);
+        assertTrue(second.isDone());
+        assertTrue(queue.isEmpty());
+    }
+
+    private static ModelData model() {
+        NodeData[] nodes = new NodeData[NODES];
+        for (int n = 0; n < NODES; n++) {
+            nodes[n] = TestModels.node("node" + n, n == 0 ? null : "node0", n, 0f, 0f, TestModels.quad(false, 0));
+        }
+        return new ModelData(nodes);
+    }
+}
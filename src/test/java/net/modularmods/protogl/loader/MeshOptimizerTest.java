@@ -0,0 +1,124 @@
+package net.modularmods.protogl.loader;
+
+import net.modularmods.protogl.ProtoGL;
+import net.modularmods.protogl.gl.Mesh;
+import net.modularmods.protogl.gl.MeshData;
+import net.modularmods.protogl.gl.backend.RecordingBackend;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MeshOptimizerTest {
+
+    private static final int SIDE = 12; // Grid of SIDE x SIDE vertices
+
+    @BeforeEach
+    void setUp() {
+        ProtoGL.setBackend(new RecordingBackend());
+    }
+
+    @Test
+    void keepsTheAttributesOfTheSource() {
+        float[] positions = positions();
+        int[] indices = indices();
+        float[] uvs = new float[SIDE * SIDE * 2];
+        float[] normals = new float[SIDE * SIDE * 3];
+        float[] joints = new float[SIDE * SIDE * 4];
+        float[] weights = new float[SIDE * SIDE * 4];
+        MeshData[] sources = {
+                new MeshData(positions, indices),
+                new MeshData(positions, uvs, indices),
+                new MeshData(positions, uvs, normals, indices),
+                new MeshData(positions, uvs, normals, indices, joints, weights)
+        };
+        for (MeshData source : sources) {
+            MeshData result = MeshOptimizer.optimize(source, "grid");
+            assertEquals(source.getActiveAttributeCount(), result.getActiveAttributeCount());
+            assertEquals(source.hasJoints(), result.hasJoints());
+            for (float[] attribute : result.getAttributes()) {
+                assertNotNull(attribute);
+            }
+            assertEquals(source.getSizeInBytes(), result.getSizeInBytes());
+            Mesh.load(result).cleanup();
+        }
+    }
+
+    @Test
+    void keepsEveryTriangle() {
+        float[] positions = positions();
+        MeshData result = MeshOptimizer.optimize(new MeshData(positions, indices()), "grid");
+        assertEquals(triangles(positions, indices()), triangles(result.getVertices(), result.getIndices()));
+    }
+
+    @Test
+    void improvesVertexCacheReuse() {
+        int[] indices = shuffledIndices();
+        int vertexCount = SIDE * SIDE;
+        float before = MeshOptimizer.computeACMR(indices, vertexCount, MeshOptimizer.ACMR_CACHE_SIZE);
+        int[] optimized = MeshOptimizer.optimizeVertexCache(indices, vertexCount);
+        float after = MeshOptimizer.computeACMR(optimized, vertexCount, MeshOptimizer.ACMR_CACHE_SIZE);
+        assertTrue(after < before, "ACMR " + before + " -> " + after);
+    }
+
+    private static float[] positions() {
+        float[] positions = new float[SIDE * SIDE * 3];
+        for (int v = 0; v < SIDE * SIDE; v++) {
+            positions[v * 3] = v % SIDE;
+            positions[v * 3 + 2] = v / SIDE;
+        }
+        return positions;
+    }
+
+    private static int[] indices() {
+        int[] indices = new int[(SIDE - 1) * (SIDE - 1) * 6];
+        int i = 0;
+        for (int y = 0; y < SIDE - 1; y++) {
+            for (int x = 0; x < SIDE - 1; x++) {
+                int v = y * SIDE + x;
+                indices[i++] = v;
+                indices[i++] = v + SIDE;
+                indices[i++] = v + 1;
+                indices[i++] = v + 1;
+                indices[i++] = v + SIDE;
+                indices[i++] = v + SIDE + 1;
+            }
+        }
+        return indices;
+    }
+
+    /**
+     * Returns the triangles of a grid in a scattered order, so that a FIFO cache rarely hits.
+     */
+    private static int[] shuffledIndices() {
+        int[] indices = indices();
+        int triangles = indices.length / 3;
+        int[] shuffled = new int[indices.length];
+        for (int t = 0; t < triangles; t++) {
+            int source = (int) ((long) t * 97 % triangles); // 97 is prime to the triangle count
+            System.arraycopy(indices, source * 3, shuffled, t * 3, 3);
+        }
+        return shuffled;
+    }
+
+    /**
+     * Collects triangles as the positions of their corners, which renumbering vertices does not change.
+     */
+    private static Set<String> triangles(float[] positions, int[] indices) {
+        Set<String> triangles = new HashSet<>();
+        for (int i = 0; i < indices.length; i += 3) {
+            StringBuilder triangle = new StringBuilder();
+            for (int c = 0; c < 3; c++) {
+                int v = indices[i + c];
+                triangle.append(positions[v * 3]).append(',').append(positions[v * 3 + 2]).append(';');
+            }
+            triangles.add(triangle.toString());
+        }
+        return triangles;
+    }
+}
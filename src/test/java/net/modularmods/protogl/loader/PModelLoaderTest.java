@@ -0,0 +1,133 @@
+package net.modularmods.protogl.loader;
+
+import net.modularmods.protogl.ProtoGL;
+import net.modularmods.protogl.TestModels;
+import net.modularmods.protogl.gl.MeshData;
+import net.modularmods.protogl.gl.backend.RecordingBackend;
+import net.modularmods.protogl.loader.data.ModelData;
+import net.modularmods.protogl.loader.data.NodeData;
+import net.modularmods.protogl.model.PModel;
+import net.modularmods.protogl.model.Skeleton;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteOrder;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PModelLoaderTest {
+
+    private static final int FILES = 32;
+    private static final int THREADS = 8;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void concurrentAsyncLoadsDecodeEveryFile() throws Exception {
+        List<Path> paths = new ArrayList<>();
+        List<ModelData> models = new ArrayList<>();
+        for (int i = 0; i < FILES; i++) {
+            ModelData model = model(i);
+            Path path = directory.resolve("model" + i + ".pmod");
+            // Alternate byte orders, so both decode paths run at the same time
+            PModelWriter.writePMod(model, path, i % 2 == 0 ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+            paths.add(path);
+            models.add(model);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<CompletableFuture<ModelData>> futures = new ArrayList<>();
+            for (Path path : paths) {
+                futures.add(PModelLoader.loadPModAsync(path, executor));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(30, TimeUnit.SECONDS);
+            for (int i = 0; i < FILES; i++) {
+                assertSameModel(models.get(i), futures.get(i).join());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void missingFileCompletesExceptionally() {
+        CompletableFuture<ModelData> future = PModelLoader.loadPModAsync(directory.resolve("missing.pmod"));
+        assertThrows(Exception.class, future::join);
+    }
+
+    @Test
+    void loadsMoreThan127JointsAndNodes() {
+        ProtoGL.setBackend(new RecordingBackend());
+        int count = 200;
+        NodeData[] nodes = new NodeData[count];
+        nodes[0] = TestModels.node("skin", null, 0f, 0f, 0f, TestModels.quad(true, count));
+        for (int n = 1; n < count; n++) {
+            nodes[n] = TestModels.node("node" + n, "skin", n, 0f, 0f, null);
+        }
+        Path path = directory.resolve("rig.pmod");
+        PModelWriter.writePMod(new ModelData(nodes, "skeleton", TestModels.chain(count)), path, ByteOrder.BIG_ENDIAN);
+
+        ModelData loaded = PModelLoader.loadPMod(path);
+        assertEquals(count, loaded.getJointData().length);
+        assertEquals(count, loaded.getNodeData().length);
+        PModel model = new PModel("rig", loaded);
+        Skeleton skeleton = model.getSkeleton();
+        assertEquals(count, skeleton.getJointCount());
+        model.updateSkinning();
+        assertEquals(count * 16, skeleton.getPalette().limit());
+        assertEquals(count - 1, skeleton.indexOf("joint" + (count - 1)));
+    }
+
+    @Test
+    void writerRejectsMoreThan255Joints() {
+        ModelData model = TestModels.skinnedQuad(PModelWriter.MAX_COUNT + 1);
+        assertThrows(IllegalArgumentException.class, () -> PModelWriter.toBytes(model, ByteOrder.BIG_ENDIAN));
+    }
+
+    /**
+     * Builds a model whose node count and geometry depend on its index.
+     */
+    private static ModelData model(int index) {
+        int nodeCount = 1 + index % 5;
+        NodeData[] nodes = new NodeData[nodeCount];
+        for (int n = 0; n < nodeCount; n++) {
+            MeshData quad = TestModels.quad(false, 0);
+            float[] vertices = quad.getVertices();
+            for (int v = 0; v < vertices.length; v += 3) {
+                vertices[v] += index;
+                vertices[v + 2] += n;
+            }
+            nodes[n] = TestModels.node("node" + n, n == 0 ? null : "node0", index, n, 0f, quad);
+        }
+        return new ModelData(nodes);
+    }
+
+    private static void assertSameModel(ModelData expected, ModelData actual) {
+        NodeData[] expectedNodes = expected.getNodeData();
+        NodeData[] actualNodes = actual.getNodeData();
+        assertEquals(expectedNodes.length, actualNodes.length);
+        for (int n = 0; n < expectedNodes.length; n++) {
+            NodeData expectedNode = expectedNodes[n];
+            NodeData actualNode = actualNodes[n];
+            assertEquals(expectedNode.getNodeName(), actualNode.getNodeName());
+            assertArrayEquals(expectedNode.getTranslation(), actualNode.getTranslation());
+            assertEquals(expectedNode.getMeshes().length, actualNode.getMeshes().length);
+            MeshData expectedMesh = expectedNode.getMeshes()[0];
+            MeshData actualMesh = actualNode.getMeshes()[0];
+            assertArrayEquals(expectedMesh.getVertices(), actualMesh.getVertices());
+            assertArrayEquals(expectedMesh.getNormals(), actualMesh.getNormals());
+            assertArrayEquals(expectedMesh.getIndices(), actualMesh.getIndices());
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package net.modularmods.protogl.loader.data;
+
+import net.modularmods.protogl.TestModels;
+import net.modularmods.protogl.gl.MeshData;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NodeDataTest {
+
+    @Test
+    @SuppressWarnings("deprecation")
+    void nodeWithoutMesh() {
+        NodeData node = new NodeData("empty", null, new float[3], TestModels.IDENTITY_ROTATION, TestModels.UNIT_SCALE, null);
+        assertFalse(node.hasMeshes());
+        assertEquals(0, node.getMeshes().length);
+        assertNull(node.getMeshData());
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    void nodeWithSeveralMeshes() {
+        MeshData first = TestModels.quad(false, 0);
+        MeshData second = TestModels.quad(true, 1);
+        NodeData node = NodeData.withMeshes("pair", null, new float[3], TestModels.IDENTITY_ROTATION, TestModels.UNIT_SCALE,
+                first, second);
+        assertTrue(node.hasMeshes());
+        assertArrayEquals(new MeshData[]{first, second}, node.getMeshes());
+        assertSame(first, node.getMeshData());
+
+        NodeData none = NodeData.withMeshes("none", null, new float[3], TestModels.IDENTITY_ROTATION, TestModels.UNIT_SCALE);
+        assertFalse(none.hasMeshes());
+    }
+}
@@ -0,0 +1,145 @@
+package net.modularmods.protogl.model;
+
+import net.modularmods.protogl.ProtoGL;
+import net.modularmods.protogl.TestModels;
+import net.modularmods.protogl.gl.backend.RecordingBackend;
+import net.modularmods.protogl.loader.data.ModelData;
+import net.modularmods.protogl.loader.data.NodeData;
+import net.modularmods.protogl.profiling.Counter;
+import net.modularmods.protogl.profiling.FrameSnapshot;
+import net.modularmods.protogl.profiling.Metrics;
+import org.joml.Matrix4f;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class FrustumCullerTest {
+
+    private static final Matrix4f VIEW_PROJECTION = new Matrix4f().ortho(-10f, 10f, -10f, 10f, -10f, 10f);
+
+    private PModel model;
+    private final FrustumCuller culler = new FrustumCuller().setFrustum(VIEW_PROJECTION);
+
+    @BeforeEach
+    void setUp() {
+        ProtoGL.setBackend(new RecordingBackend());
+        // A subtree far to the right of the view and one around its center, each a mesh node with two mesh children
+        NodeData[] nodes = {
+                TestModels.node("root", null, 0f, 0f, 0f, null),
+                TestModels.node("far", "root", 100f, 0f, 0f, TestModels.quad(false, 0)),
+                TestModels.node("farA", "far", 0f, 0f, 2f, TestModels.quad(false, 0)),
+                TestModels.node("farB", "far", 1f, 0f, 0f, TestModels.quad(false, 0)),
+                TestModels.node("near", "root", 0f, 0f, 0f, TestModels.quad(false, 0)),
+                TestModels.node("nearA", "near", 1f, 0f, 0f, TestModels.quad(false, 0)),
+                TestModels.node("nearB", "near", 2f, 0f, 0f, TestModels.quad(false, 0))
+        };
+        model = new PModel("model", new ModelData(nodes));
+        model.getTransforms().updateWorldMatrices(new Matrix4f(), true);
+    }
+
+    @Test
+    void outsideSubtreeIsCulledWithOneTest() {
+        assertEquals(3, culler.cull(model));
+        assertEquals(8, culler.getNodeCount()); // The model's own root and its 7 nodes
+        // The model root, "root", then one test for each of "far" and "near": no descendant of either is tested
+        assertEquals(4, culler.getVisitedCount());
+        assertEquals(3, culler.getCulledCount());
+        assertEquals(3, culler.getVisibleMeshCount());
+
+        for (String name : new String[]{"far", "farA", "farB"}) {
+            assertFalse(culler.isVisible(model.resolve(name)), name);
+        }
+        for (String name : new String[]{"near", "nearA", "nearB"}) {
+            assertTrue(culler.isVisible(model.resolve(name)), name);
+        }
+        assertFalse(culler.isVisible(model.resolve("root"))); // No mesh of its own
+    }
+
+    @Test
+    void countersAreReportedToMetrics() {
+        assumeTrue(Metrics.ENABLED);
+        ModelInstance instance = model.instantiate();
+        instance.update(new Matrix4f().translation(0f, 50f, 0f), true);
+
+        Metrics.endFrame();
+        culler.cull(model);
+        int visited = culler.getVisitedCount();
+        int culled = culler.getCulledCount();
+        culler.cull(instance);
+        visited += culler.getVisitedCount();
+        culled += culler.getCulledCount();
+        FrameSnapshot frame = Metrics.endFrame();
+        assertEquals(5, visited); // 4 for the model, 1 for the instance culled at its root
+        assertEquals(visited, frame.get(Counter.BOUNDS_TESTED));
+        assertEquals(culled, frame.get(Counter.NODES_CULLED));
+    }
+
+    @Test
+    void modelOutsideTheViewIsCulledAtItsRoot() {
+        model.getTransforms().updateWorldMatrices(new Matrix4f().translation(0f, 50f, 0f), true);
+        assertEquals(0, culler.cull(model));
+        assertEquals(1, culler.getVisitedCount());
+        assertEquals(culler.getNodeCount(), culler.getCulledCount());
+    }
+
+    @Test
+    void insideSubtreeIsAcceptedWithoutTestingDescendants() {
+        culler.setFrustum(new Matrix4f().ortho(-1000f, 1000f, -1000f, 1000f, -1000f, 1000f));
+        assertEquals(6, culler.cull(model));
+        assertEquals(1, culler.getVisitedCount()); // The whole model is inside
+        assertEquals(0, culler.getCulledCount());
+    }
+
+    @Test
+    void subtreeBoundsEncloseDescendants() {
+        culler.updateBounds(model);
+        float[] box = new float[6];
+        culler.getSubtreeBounds(model.resolve("far"), box, 0);
+        assertArrayEquals(new float[]{100f, 0f, 0f, 102f, 0f, 3f}, box, 1e-5f);
+        culler.getSubtreeBounds(0, box, 0);
+        assertArrayEquals(new float[]{0f, 0f, 0f, 102f, 0f, 3f}, box, 1e-5f);
+    }
+
+    @Test
+    void instancesAreCulledWithTheirOwnMatrices() {
+        ModelInstance inside = model.instantiate();
+        inside.update(new Matrix4f(), true);
+        ModelInstance outside = model.instantiate();
+        outside.update(new Matrix4f().translation(0f, 0f, 500f), true);
+
+        assertEquals(3, culler.cull(inside));
+        assertEquals(0, culler.cull(outside));
+        assertEquals(1, culler.getVisitedCount());
+    }
+
+    @Test
+    void skinnedMeshesFollowThePose() {
+        PModel skinned = new PModel("skinned", TestModels.skinnedQuad(2));
+        ModelInstance instance = skinned.instantiate();
+        instance.update(new Matrix4f(), true);
+        Skeleton skeleton = instance.getSkeleton();
+        skeleton.update();
+        int mesh = skinned.resolve("skin");
+
+        culler.cull(instance);
+        assertTrue(culler.isVisible(mesh));
+
+        // Moving the root joint carries both joints, and every vertex, out of the view
+        skeleton.setTranslation(0, 500f, 0f, 0f);
+        skeleton.update();
+        culler.cull(instance);
+        assertFalse(culler.isVisible(mesh));
+
+        // Only one joint in view still keeps the mesh
+        skeleton.setTranslation(0, 0f, 0f, 0f);
+        skeleton.setTranslation(1, 500f, 0f, 0f);
+        skeleton.update();
+        culler.cull(instance);
+        assertTrue(culler.isVisible(mesh));
+    }
+}
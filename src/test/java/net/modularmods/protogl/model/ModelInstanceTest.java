@@ -0,0 +1,79 @@
+package net.modularmods.protogl.model;
+
+import net.modularmods.protogl.ProtoGL;
+import net.modularmods.protogl.TestModels;
+import net.modularmods.protogl.gl.backend.RecordingBackend;
+import net.modularmods.protogl.loader.data.ModelData;
+import net.modularmods.protogl.loader.data.NodeData;
+import org.joml.Matrix4f;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+class ModelInstanceTest {
+
+    private static final int NODES = 32;
+    private static final int INSTANCES = 64;
+    private static final int THREADS = 8;
+    private static final int PASSES = 200;
+
+    private PModel model;
+
+    @BeforeEach
+    void setUp() {
+        ProtoGL.setBackend(new RecordingBackend());
+        NodeData[] nodes = new NodeData[NODES];
+        for (int n = 0; n < NODES; n++) {
+            nodes[n] = TestModels.node("node" + n, n == 0 ? null : "node" + (n - 1), 1f, 0f, 0.5f, null);
+        }
+        model = new PModel("chain", new ModelData(nodes));
+    }
+
+    @Test
+    void instancesOfOneModelUpdateConcurrently() throws Exception {
+        List<ModelInstance> instances = new ArrayList<>();
+        Matrix4f[] roots = new Matrix4f[INSTANCES];
+        float[][] expected = new float[INSTANCES][];
+        for (int i = 0; i < INSTANCES; i++) {
+            ModelInstance instance = model.instantiate();
+            roots[i] = new Matrix4f().translation(i, 0f, 0f).rotateY(i * 0.1f);
+            for (int n = 1; n < instance.getNodeCount(); n++) {
+                instance.setRotation(n, 0f, (float) Math.sin(i * 0.01f), 0f, (float) Math.cos(i * 0.01f));
+            }
+            instance.update(roots[i], true);
+            expected[i] = instance.getWorlds().clone();
+            instances.add(instance);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    for (int pass = 0; pass < PASSES; pass++) {
+                        for (int i = thread; i < INSTANCES; i += THREADS) {
+                            instances.get(i).update(roots[i], true); // Every node is recomputed
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        for (int i = 0; i < INSTANCES; i++) {
+            assertArrayEquals(expected[i], instances.get(i).getWorlds(), "instance " + i);
+        }
+    }
+}
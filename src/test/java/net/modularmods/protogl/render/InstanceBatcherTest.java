@@ -0,0 +1,164 @@
+package net.modularmods.protogl.render;
+
+import net.modularmods.protogl.ProtoGL;
+import net.modularmods.protogl.TestModels;
+import net.modularmods.protogl.gl.Mesh;
+import net.modularmods.protogl.gl.backend.RecordingBackend;
+import net.modularmods.protogl.gl.backend.RecordingBackend.Call;
+import net.modularmods.protogl.gl.buffers.InstanceBuffer;
+import net.modularmods.protogl.loader.data.ModelData;
+import net.modularmods.protogl.loader.data.NodeData;
+import net.modularmods.protogl.model.ModelInstance;
+import net.modularmods.protogl.model.PModel;
+import org.joml.Matrix4f;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.FloatBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class InstanceBatcherTest {
+
+    private RecordingBackend backend;
+    private Mesh a;
+    private Mesh b;
+
+    @BeforeEach
+    void setUp() {
+        backend = new RecordingBackend();
+        ProtoGL.setBackend(backend);
+        a = Mesh.load(TestModels.quad(false, 0));
+        b = Mesh.load(TestModels.quad(false, 0));
+    }
+
+    @Test
+    void groupsInstancesByMesh() {
+        InstanceBatcher batcher = new InstanceBatcher();
+        Matrix4f matrix = new Matrix4f();
+        batcher.add(a, matrix.translation(1f, 0f, 0f));
+        batcher.add(b, matrix.translation(2f, 0f, 0f));
+        batcher.add(a, matrix.translation(3f, 0f, 0f));
+
+        assertEquals(2, batcher.getBatchCount());
+        assertSame(a, batcher.getMesh(0));
+        assertSame(b, batcher.getMesh(1));
+        assertEquals(2, batcher.getInstanceCount(0));
+        assertEquals(1, batcher.getInstanceCount(1));
+
+        FloatBuffer matrices = batcher.fill(0);
+        assertEquals(0, matrices.position());
+        assertEquals(32, matrices.limit());
+        assertEquals(1f, matrices.get(12)); // Translation x of the first matrix
+        assertEquals(3f, matrices.get(16 + 12));
+    }
+
+    @Test
+    void addsMatricesFromArrays() {
+        InstanceBatcher batcher = new InstanceBatcher();
+        float[] matrices = new float[3 * 16];
+        for (int i = 0; i < 3; i++) {
+            new Matrix4f().translation(i, 0f, 0f).get(matrices, i * 16);
+            batcher.add(a, matrices, i * 16);
+        }
+        FloatBuffer filled = batcher.fill(0);
+        assertEquals(48, filled.remaining());
+        for (int i = 0; i < 48; i++) {
+            assertEquals(matrices[i], filled.get(i));
+        }
+    }
+
+    @Test
+    void growsPastInitialCapacity() {
+        InstanceBatcher batcher = new InstanceBatcher();
+        Matrix4f matrix = new Matrix4f();
+        for (int i = 0; i < 100; i++) {
+            batcher.add(a, matrix.translation(i, 0f, 0f));
+        }
+        assertEquals(100, batcher.getInstanceCount(0));
+        FloatBuffer matrices = batcher.fill(0);
+        assertEquals(100 * 16, matrices.remaining());
+        assertEquals(99f, matrices.get(99 * 16 + 12));
+    }
+
+    @Test
+    void reusedAfterClear() {
+        InstanceBatcher batcher = new InstanceBatcher();
+        Matrix4f matrix = new Matrix4f();
+        batcher.add(a, matrix);
+        batcher.add(b, matrix);
+        batcher.clear();
+        assertEquals(0, batcher.getBatchCount());
+
+        batcher.add(b, matrix.translation(5f, 0f, 0f));
+        assertEquals(1, batcher.getBatchCount());
+        assertSame(b, batcher.getMesh(0));
+        assertEquals(1, batcher.getInstanceCount(0));
+        assertEquals(5f, batcher.fill(0).get(12));
+    }
+
+    @Test
+    void addsEveryMeshOfInstances() {
+        NodeData[] nodes = {
+                TestModels.node("root", null, 0f, 0f, 0f, TestModels.quad(false, 0)),
+                TestModels.node("child", "root", 1f, 0f, 0f, TestModels.quad(false, 0))
+        };
+        PModel model = new PModel("model", new ModelData(nodes));
+        InstanceBatcher batcher = new InstanceBatcher();
+        Matrix4f placement = new Matrix4f();
+        for (int i = 0; i < 5; i++) {
+            ModelInstance instance = model.instantiate();
+            instance.update(placement.translation(0f, 0f, i), true);
+            assertEquals(0, batcher.add(instance));
+        }
+        assertEquals(2, batcher.getBatchCount());
+        assertEquals(5, batcher.getInstanceCount(0));
+        assertEquals(5, batcher.getInstanceCount(1));
+        FloatBuffer children = batcher.fill(1);
+        assertEquals(1f, children.get(12));
+        assertEquals(4f, children.get(4 * 16 + 14));
+    }
+
+    @Test
+    void skipsSkinnedMeshes() {
+        PModel model = new PModel("skinned", TestModels.skinnedQuad(2));
+        ModelInstance instance = model.instantiate();
+        instance.update(new Matrix4f(), true);
+
+        InstanceBatcher batcher = new InstanceBatcher();
+        assertEquals(1, batcher.add(instance));
+        assertEquals(1, batcher.add(model));
+        assertEquals(0, batcher.getBatchCount());
+
+        Mesh skinned = Mesh.load(TestModels.quad(true, 2));
+        assertThrows(IllegalArgumentException.class, () -> batcher.add(skinned, new Matrix4f()));
+        assertThrows(IllegalArgumentException.class, () -> batcher.add(skinned, new float[16], 0));
+    }
+
+    @Test
+    void rendersOneDrawPerBatch() {
+        InstanceBatcher batcher = new InstanceBatcher();
+        Matrix4f matrix = new Matrix4f();
+        for (int i = 0; i < 7; i++) {
+            batcher.add(i % 3 == 0 ? b : a, matrix.translation(i, 0f, 0f));
+        }
+        InstanceBuffer buffer = new InstanceBuffer();
+        backend.reset();
+
+        assertEquals(2, batcher.render(buffer));
+        assertEquals(2, backend.getCalls(Call.DRAW));
+        assertEquals(2, backend.getDrawCalls());
+        assertEquals(7, backend.getInstancesDrawn());
+        assertEquals(7L * 16 * Float.BYTES, backend.getBytesUploaded());
+
+        // Attaching is done once per VAO, so a second frame only uploads and draws
+        batcher.clear();
+        batcher.add(a, matrix);
+        backend.reset();
+        assertEquals(1, batcher.render(buffer));
+        assertEquals(0, backend.getCalls(Call.VERTEX_ATTRIB_DIVISOR));
+        assertEquals(1, backend.getInstancesDrawn());
+    }
+}
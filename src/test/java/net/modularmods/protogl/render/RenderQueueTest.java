@@ -0,0 +1,91 @@
+package net.modularmods.protogl.render;
+
+import net.modularmods.protogl.ProtoGL;
+import net.modularmods.protogl.TestModels;
+import net.modularmods.protogl.gl.Mesh;
+import net.modularmods.protogl.gl.backend.RecordingBackend;
+import net.modularmods.protogl.gl.buffers.SkinningBuffer;
+import net.modularmods.protogl.loader.data.ModelData;
+import net.modularmods.protogl.loader.data.NodeData;
+import net.modularmods.protogl.model.ModelInstance;
+import net.modularmods.protogl.model.PModel;
+import org.joml.Matrix4f;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RenderQueueTest {
+
+    private final Matrix4f view = new Matrix4f();
+    private RecordingBackend backend;
+
+    @BeforeEach
+    void setUp() {
+        backend = new RecordingBackend();
+        ProtoGL.setBackend(backend);
+    }
+
+    @Test
+    void sortReturnsPacketsInKeyOrder() {
+        RenderQueue queue = new RenderQueue();
+        Mesh mesh = Mesh.load(TestModels.quad(false, 0));
+        float[] world = new Matrix4f().get(new float[16]);
+        int[] programs = {3, 1, 2, 1, 3};
+        for (int program : programs) {
+            queue.submit(mesh, program, 0, world, 0, 1f);
+        }
+        int[] sorted = queue.sort();
+        int[] expected = {1, 3, 2, 0, 4}; // By program, stable within a program
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], sorted[i]);
+        }
+    }
+
+    @Test
+    void skinnedInstancesWithoutSkinningBufferAreRejected() {
+        NodeData[] nodes = {
+                TestModels.node("static", null, 0f, 0f, 0f, TestModels.quad(false, 0)),
+                TestModels.node("skin", null, 0f, 0f, 0f, TestModels.quad(true, 2))
+        };
+        PModel model = new PModel("model", new ModelData(nodes, "skeleton", TestModels.chain(2)));
+        ModelInstance instance = model.instantiate();
+        instance.update(new Matrix4f(), true);
+
+        RenderQueue queue = new RenderQueue();
+        assertThrows(IllegalStateException.class, () -> queue.submit(instance, 1, 0, view));
+        assertEquals(0, queue.size()); // The static mesh queued first was dropped too
+
+        // The model draws with its own palette, so it needs no skinning buffer
+        model.getTransforms().updateWorldMatrices(new Matrix4f(), true);
+        queue.submit(model, 1, 0, view);
+        assertEquals(2, queue.size());
+        queue.flush();
+    }
+
+    @Test
+    void skinnedInstancesBindTheirOwnPalette() {
+        PModel model = new PModel("skinned", TestModels.skinnedQuad(2));
+        SkinningBuffer buffer = new SkinningBuffer(4096);
+        RenderQueue queue = new RenderQueue();
+        queue.setSkinningBuffer(buffer);
+        buffer.beginFrame();
+        for (int i = 0; i < 3; i++) {
+            ModelInstance instance = model.instantiate();
+            instance.update(new Matrix4f().translation(i, 0f, 0f), true);
+            queue.submit(instance, 1, 0, view);
+        }
+        assertEquals(3, queue.size());
+        assertNotEquals(0, buffer.getFrameSize());
+
+        backend.reset();
+        queue.flush();
+        assertEquals(3, backend.getDrawCalls());
+        assertEquals(3, queue.getStats().getUniformBufferBinds()); // One palette range per instance
+        assertTrue(buffer.getFrameSize() >= 3 * buffer.getAlignment());
+        buffer.cleanup();
+    }
+}
@@ -0,0 +1,85 @@
+package net.modularmods.protogl.spatial;
+
+import net.modularmods.protogl.gl.Bounds;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BoundingVolumeHierarchyTest {
+
+    private static final int BOX = Bounds.BOX_STRIDE;
+    private static final int COUNT = 64;
+
+    @Test
+    void removeAllRebuilds() {
+        BoundingVolumeHierarchy<Integer> bvh = new BoundingVolumeHierarchy<>();
+        int[] proxies = fill(bvh);
+        bvh.removeAll(proxies, COUNT / 2);
+        assertEquals(COUNT / 2, bvh.getSize());
+        Set<Integer> found = new HashSet<>();
+        bvh.queryBox(new float[]{-1f, -1f, -1f, COUNT, 1f, 1f}, 0, proxy -> found.add(bvh.get(proxy)));
+        assertEquals(COUNT / 2, found.size());
+        for (int i = COUNT / 2; i < COUNT; i++) {
+            assertEquals(i, bvh.get(proxies[i]));
+        }
+    }
+
+    @Test
+    void removeAllRejectsRepeatedProxiesUnchanged() {
+        for (int count : new int[]{4, COUNT}) { // Incremental path, then rebuild path
+            BoundingVolumeHierarchy<Integer> bvh = new BoundingVolumeHierarchy<>();
+            int[] proxies = fill(bvh);
+            int[] removed = proxies.clone();
+            removed[count - 1] = removed[0];
+            assertThrows(IllegalArgumentException.class, () -> bvh.removeAll(removed, count));
+            assertUnchanged(bvh, proxies);
+        }
+    }
+
+    @Test
+    void removeAllRejectsInvalidProxiesUnchanged() {
+        BoundingVolumeHierarchy<Integer> bvh = new BoundingVolumeHierarchy<>();
+        int[] proxies = fill(bvh);
+        int[] removed = proxies.clone();
+        removed[COUNT - 1] = COUNT + 10;
+        assertThrows(IllegalArgumentException.class, () -> bvh.removeAll(removed, COUNT));
+        assertUnchanged(bvh, proxies);
+
+        bvh.remove(proxies[0]);
+        assertThrows(IllegalArgumentException.class, () -> bvh.removeAll(proxies, COUNT));
+        assertEquals(COUNT - 1, bvh.getSize());
+    }
+
+    /**
+     * Inserts unit boxes along X, entry i at x = i.
+     */
+    private static int[] fill(BoundingVolumeHierarchy<Integer> bvh) {
+        List<Integer> items = new ArrayList<>();
+        float[] boxes = new float[COUNT * BOX];
+        for (int i = 0; i < COUNT; i++) {
+            items.add(i);
+            boxes[i * BOX] = i;
+            boxes[i * BOX + 3] = i + 0.5f;
+            boxes[i * BOX + 4] = 0.5f;
+            boxes[i * BOX + 5] = 0.5f;
+        }
+        int[] proxies = new int[COUNT];
+        bvh.insertAll(items, boxes, proxies);
+        return proxies;
+    }
+
+    private static void assertUnchanged(BoundingVolumeHierarchy<Integer> bvh, int[] proxies) {
+        assertEquals(COUNT, bvh.getSize());
+        for (int i = 0; i < COUNT; i++) {
+            assertEquals(i, bvh.get(proxies[i]));
+            float x = i + 0.25f;
+            assertEquals(proxies[i], bvh.pick(x, 2f, 0.25f, 0f, -1f, 0f, 10f));
+        }
+    }
+}